@@ -0,0 +1,133 @@
+package com.tcpviewer.buffer;
+
+import com.tcpviewer.metrics.MetricsRegistry;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool of heap byte slabs in power-of-two size classes.
+ * Requests are rounded up to the next class; requests above the largest class are
+ * served with unpooled arrays and counted as misses. Each class keeps at most a
+ * bounded number of idle slabs, so the pool never holds more than its byte budget.
+ * Slabs are heap arrays because the stream wrappers read into byte[].
+ */
+public class BufferPool {
+
+    static final int MIN_CLASS_SIZE = 1024;
+
+    private final int maxClassSize;
+    private final SizeClass[] sizeClasses;
+    private final AtomicInteger inUse = new AtomicInteger();
+
+    private final MetricsRegistry.Counter hits;
+    private final MetricsRegistry.Counter misses;
+
+    /**
+     * @param maxClassSize   largest pooled slab size, rounded up to a power of two
+     * @param maxPooledBytes upper bound for the bytes held by idle slabs, split evenly across classes
+     * @param metrics        registry receiving the pool metrics
+     */
+    public BufferPool(int maxClassSize, long maxPooledBytes, MetricsRegistry metrics) {
+        this.maxClassSize = roundUp(Math.max(maxClassSize, MIN_CLASS_SIZE));
+        int classes = Integer.numberOfTrailingZeros(this.maxClassSize / MIN_CLASS_SIZE) + 1;
+        this.sizeClasses = new SizeClass[classes];
+        for (int i = 0; i < classes; i++) {
+            sizeClasses[i] = new SizeClass((int) Math.max(1, maxPooledBytes / classes / classSize(i)));
+        }
+
+        this.hits = metrics.counter("buffer.pool.hits");
+        this.misses = metrics.counter("buffer.pool.misses");
+        metrics.gauge("buffer.pool.in-use", inUse::get);
+        metrics.gauge("buffer.pool.idle", this::getIdleCount);
+        metrics.gauge("buffer.pool.idle.bytes", this::getIdleBytes);
+    }
+
+    /**
+     * Borrows a slab of at least the given capacity. The caller owns one reference.
+     *
+     * @param minCapacity the minimum capacity in bytes
+     * @return an empty buffer
+     */
+    public PooledBuffer acquire(int minCapacity) {
+        if (minCapacity > maxClassSize) {
+            misses.increment();
+            return new PooledBuffer(new byte[minCapacity], null);
+        }
+        int sizeClass = classIndex(minCapacity);
+        PooledBuffer buffer = sizeClasses[sizeClass].idle.poll();
+        if (buffer != null) {
+            sizeClasses[sizeClass].idleCount.decrementAndGet();
+            buffer.reset();
+            hits.increment();
+        } else {
+            buffer = new PooledBuffer(new byte[classSize(sizeClass)], this);
+            misses.increment();
+        }
+        inUse.incrementAndGet();
+        return buffer;
+    }
+
+    /**
+     * Takes back a slab whose last reference was released.
+     */
+    void recycle(PooledBuffer buffer) {
+        inUse.decrementAndGet();
+        SizeClass sizeClass = sizeClasses[classIndex(buffer.capacity())];
+        if (sizeClass.idleCount.incrementAndGet() <= sizeClass.maxIdle) {
+            sizeClass.idle.offer(buffer);
+        } else {
+            sizeClass.idleCount.decrementAndGet();
+        }
+    }
+
+    public int getMaxClassSize() {
+        return maxClassSize;
+    }
+
+    public int getInUseCount() {
+        return inUse.get();
+    }
+
+    public long getIdleCount() {
+        long count = 0;
+        for (SizeClass sizeClass : sizeClasses) {
+            count += sizeClass.idleCount.get();
+        }
+        return count;
+    }
+
+    public long getIdleBytes() {
+        long bytes = 0;
+        for (int i = 0; i < sizeClasses.length; i++) {
+            bytes += (long) sizeClasses[i].idleCount.get() * classSize(i);
+        }
+        return bytes;
+    }
+
+    private static int classSize(int sizeClass) {
+        return MIN_CLASS_SIZE << sizeClass;
+    }
+
+    private static int classIndex(int capacity) {
+        return Integer.numberOfTrailingZeros(roundUp(Math.max(capacity, MIN_CLASS_SIZE)) / MIN_CLASS_SIZE);
+    }
+
+    static int roundUp(int value) {
+        return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+    }
+
+    /**
+     * Idle slabs of one size class with their count and bound, indexed without a generic array.
+     */
+    private static final class SizeClass {
+        private final Queue<PooledBuffer> idle = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger idleCount = new AtomicInteger();
+        private final int maxIdle;
+
+        private SizeClass(int maxIdle) {
+            this.maxIdle = maxIdle;
+        }
+    }
+}
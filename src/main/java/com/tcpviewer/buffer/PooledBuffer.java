@@ -0,0 +1,128 @@
+package com.tcpviewer.buffer;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reference-counted byte slab, usually borrowed from a {@link BufferPool}.
+ * A buffer starts with one reference. Every holder that keeps it past a call must
+ * {@link #retain()} it, and every reference must be dropped with {@link #release()};
+ * the last release returns the slab to its pool.
+ */
+public final class PooledBuffer {
+
+    private final byte[] array;
+    private final BufferPool pool;
+    private final AtomicInteger referenceCount = new AtomicInteger(1);
+    private int length;
+
+    PooledBuffer(byte[] array, BufferPool pool) {
+        this.array = array;
+        this.pool = pool;
+    }
+
+    /**
+     * Wraps an array in a buffer that belongs to no pool.
+     *
+     * @param data the bytes, taken over without copying
+     * @return a buffer whose length is the array length
+     */
+    public static PooledBuffer wrap(byte[] data) {
+        PooledBuffer buffer = new PooledBuffer(data, null);
+        buffer.length = data.length;
+        return buffer;
+    }
+
+    /**
+     * Allocates an empty buffer that belongs to no pool.
+     *
+     * @param capacity the capacity in bytes
+     * @return the new buffer
+     */
+    public static PooledBuffer allocate(int capacity) {
+        return new PooledBuffer(new byte[capacity], null);
+    }
+
+    /**
+     * @return the backing array; only the first {@link #length()} bytes are valid
+     */
+    public byte[] array() {
+        return array;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    public int capacity() {
+        return array.length;
+    }
+
+    public int writableBytes() {
+        return array.length - length;
+    }
+
+    /**
+     * Appends bytes after the current content.
+     *
+     * @throws IndexOutOfBoundsException if the bytes do not fit
+     */
+    public void write(byte[] source, int offset, int count) {
+        if (count > writableBytes()) {
+            throw new IndexOutOfBoundsException("Buffer full: " + count + " > " + writableBytes());
+        }
+        System.arraycopy(source, offset, array, length, count);
+        length += count;
+    }
+
+    /**
+     * @return a new array holding exactly the valid bytes
+     */
+    public byte[] toByteArray() {
+        return Arrays.copyOf(array, length);
+    }
+
+    public PooledBuffer retain() {
+        if (referenceCount.getAndIncrement() <= 0) {
+            referenceCount.getAndDecrement();
+            throw new IllegalStateException("Buffer already released");
+        }
+        return this;
+    }
+
+    /**
+     * Drops one reference, returning the slab to its pool when none are left.
+     *
+     * @return true if this was the last reference
+     */
+    public boolean release() {
+        int remaining = referenceCount.decrementAndGet();
+        if (remaining < 0) {
+            referenceCount.incrementAndGet();
+            throw new IllegalStateException("Buffer released more often than retained");
+        }
+        if (remaining == 0) {
+            if (pool != null) {
+                pool.recycle(this);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    public int referenceCount() {
+        return referenceCount.get();
+    }
+
+    boolean isPooled() {
+        return pool != null;
+    }
+
+    /**
+     * Prepares a recycled slab for its next borrower.
+     */
+    void reset() {
+        length = 0;
+        referenceCount.set(1);
+    }
+}
@@ -0,0 +1,180 @@
+package com.tcpviewer.buffer;
+
+import com.tcpviewer.metrics.MetricsRegistry;
+
+/**
+ * Chooses the size of the buffer each connection direction reads into.
+ * In fixed mode every read buffer has the initial size. In adaptive mode a direction
+ * doubles its buffer after a read that filled it and halves it after consecutive reads
+ * that used less than half of it, so bulk transfers get large reads and chatty protocols
+ * small ones. Sizes are powers of two of at least 1 KB and match the pool size classes.
+ */
+public class ReadBufferAllocator {
+
+    public static final int DEFAULT_SIZE = 8192;
+
+    private static final int SHRINK_AFTER_READS = 2;
+
+    private final BufferPool bufferPool;
+    private final int initialSize;
+    private final int minSize;
+    private final int maxSize;
+    private final boolean adaptive;
+
+    private final MetricsRegistry.Counter[] readsBySize;
+    private final MetricsRegistry.Counter grown;
+    private final MetricsRegistry.Counter shrunk;
+
+    /**
+     * Creates an allocator handing out buffers of one fixed size.
+     */
+    public ReadBufferAllocator(BufferPool bufferPool, int size, MetricsRegistry metrics) {
+        this(bufferPool, size, size, size, false, metrics);
+    }
+
+    /**
+     * @param bufferPool  pool lending the buffers, or null to allocate them
+     * @param initialSize size of a new connection's buffer
+     * @param minSize     smallest size an adaptive buffer shrinks to
+     * @param maxSize     largest size an adaptive buffer grows to
+     * @param adaptive    whether buffers are resized based on how much the reads fill them
+     * @param metrics     registry receiving the read size metrics
+     */
+    public ReadBufferAllocator(BufferPool bufferPool, int initialSize, int minSize, int maxSize,
+                               boolean adaptive, MetricsRegistry metrics) {
+        this.minSize = normalize(minSize);
+        this.maxSize = normalize(maxSize);
+        if (this.minSize > this.maxSize) {
+            throw new IllegalArgumentException("Min read buffer size " + minSize
+                    + " exceeds max size " + maxSize);
+        }
+        this.initialSize = Math.min(Math.max(normalize(initialSize), this.minSize), this.maxSize);
+        this.bufferPool = bufferPool;
+        this.adaptive = adaptive;
+
+        this.readsBySize = new MetricsRegistry.Counter[sizeIndex(this.maxSize) + 1];
+        for (int i = 0; i < readsBySize.length; i++) {
+            readsBySize[i] = metrics.counter("buffer.read.size." + (this.minSize << i));
+        }
+        this.grown = metrics.counter("buffer.read.grown");
+        this.shrunk = metrics.counter("buffer.read.shrunk");
+    }
+
+    /**
+     * Creates an allocator of fixed-size unpooled buffers whose metrics are not reported.
+     */
+    public static ReadBufferAllocator unpooled(int size) {
+        return new ReadBufferAllocator(null, size, new MetricsRegistry());
+    }
+
+    /**
+     * Creates the sizing state for one connection direction. Handles are not thread-safe.
+     */
+    public Handle newHandle() {
+        return new Handle();
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public int getInitialSize() {
+        return initialSize;
+    }
+
+    public int getMinSize() {
+        return minSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public boolean isAdaptive() {
+        return adaptive;
+    }
+
+    private int sizeIndex(int size) {
+        return Integer.numberOfTrailingZeros(size / minSize);
+    }
+
+    private static int normalize(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("Read buffer size must be positive: " + size);
+        }
+        return BufferPool.roundUp(Math.max(size, BufferPool.MIN_CLASS_SIZE));
+    }
+
+    /**
+     * Read buffer of one connection direction.
+     * The buffer is replaced on the next {@link #buffer()} call once its size changed.
+     */
+    public final class Handle {
+
+        private int size = initialSize;
+        private int smallReads;
+        private PooledBuffer current;
+
+        private Handle() {
+        }
+
+        /**
+         * Returns the buffer to read into, borrowing a new one if the size changed since the last call.
+         */
+        public PooledBuffer buffer() {
+            if (current != null && current.capacity() != size) {
+                current.release();
+                current = null;
+            }
+            if (current == null) {
+                current = bufferPool != null ? bufferPool.acquire(size) : PooledBuffer.allocate(size);
+            }
+            return current;
+        }
+
+        /**
+         * Records a read into the current buffer and adapts the size for the next one.
+         *
+         * @param bytesRead the number of bytes the read returned
+         */
+        public void record(int bytesRead) {
+            readsBySize[sizeIndex(size)].increment();
+            if (!adaptive) {
+                return;
+            }
+
+            if (bytesRead >= size) {
+                smallReads = 0;
+                if (size < maxSize) {
+                    size <<= 1;
+                    grown.increment();
+                }
+            } else if (bytesRead < size >>> 1 && size > minSize) {
+                if (++smallReads >= SHRINK_AFTER_READS) {
+                    smallReads = 0;
+                    size >>>= 1;
+                    shrunk.increment();
+                }
+            } else {
+                smallReads = 0;
+            }
+        }
+
+        /**
+         * @return the size of the next read buffer
+         */
+        public int size() {
+            return size;
+        }
+
+        /**
+         * Returns the current buffer to its pool.
+         */
+        public void release() {
+            if (current != null) {
+                current.release();
+                current = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.tcpviewer.capture;
+
+import com.tcpviewer.buffer.PooledBuffer;
+import com.tcpviewer.model.Direction;
+
+import java.util.UUID;
+
+/**
+ * A capture notification waiting in the capture pipeline.
+ * Either carries captured data or marks the connection as closed.
+ * A data event owns one reference to its buffer until it is dispatched or discarded.
+ */
+final class CaptureEvent {
+
+    final int consumerId;
+    final UUID connectionId;
+    final PooledBuffer data;
+    final Direction direction;
+
+    private CaptureEvent(int consumerId, UUID connectionId, PooledBuffer data, Direction direction) {
+        this.consumerId = consumerId;
+        this.connectionId = connectionId;
+        this.data = data;
+        this.direction = direction;
+    }
+
+    static CaptureEvent data(int consumerId, UUID connectionId, PooledBuffer data, Direction direction) {
+        return new CaptureEvent(consumerId, connectionId, data, direction);
+    }
+
+    static CaptureEvent closed(int consumerId, UUID connectionId) {
+        return new CaptureEvent(consumerId, connectionId, null, null);
+    }
+
+    boolean isClosed() {
+        return data == null;
+    }
+}
@@ -0,0 +1,299 @@
+package com.tcpviewer.capture;
+
+import com.tcpviewer.buffer.PooledBuffer;
+import com.tcpviewer.lang.wrapper.ThreadWrapper;
+import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.model.CaptureSwitch;
+import com.tcpviewer.model.Direction;
+import com.tcpviewer.model.TlsHandshake;
+import com.tcpviewer.proxy.DataCaptureListener;
+import com.tcpviewer.util.TimerWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Decouples capture consumers from the forwarding threads.
+ * Listeners returned by {@link #attach(DataCaptureListener)} only enqueue events into a
+ * bounded lock-free ring buffer; a dedicated capture worker drains it and calls the consumer.
+ * When the buffer is full the configured {@link OverflowPolicy} applies to captured data.
+ * Connection-closed events are never dropped: they block, or spill under the SPILL policy.
+ * Dropped data is reported to its consumer through {@link DataCaptureListener#onDataDropped},
+ * on the submitting thread.
+ * Under the BLOCK policy, data submitted from the timer wheel thread is spilled instead, as
+ * parking there would stall every timeout of the shared wheel.
+ * Pooled buffers stay referenced while queued and are released once the consumer has them.
+ */
+public class CapturePipeline implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CapturePipeline.class);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long BLOCK_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final MpscRingBuffer<CaptureEvent> queue;
+    private final OverflowPolicy overflowPolicy;
+    private final SpillFile spillFile;
+    private final List<DataCaptureListener> consumers = new CopyOnWriteArrayList<>();
+    private final ThreadWrapper workerThread;
+
+    private final MetricsRegistry.Counter enqueued;
+    private final MetricsRegistry.Counter delivered;
+    private final MetricsRegistry.Counter dropped;
+    private final MetricsRegistry.Counter blocked;
+    private final MetricsRegistry.Counter spilled;
+
+    private final Object spillLock = new Object();
+    private volatile boolean spilling;
+    private volatile long spillBytes;
+    private volatile boolean running = true;
+    private volatile boolean workerWaiting;
+    private volatile Thread worker;
+
+    /**
+     * Creates the pipeline and starts its capture worker.
+     *
+     * @param capacity       capacity of the ring buffer, rounded up to a power of two
+     * @param overflowPolicy what to do with captured data when the buffer is full
+     * @param spillDirectory directory for the spill file, or null for the system temp directory
+     * @param threadFactory  factory for the capture worker thread
+     * @param metrics        registry receiving the capture metrics
+     */
+    public CapturePipeline(int capacity, OverflowPolicy overflowPolicy, Path spillDirectory,
+                           ThreadFactory threadFactory, MetricsRegistry metrics) {
+        this.queue = new MpscRingBuffer<>(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.spillFile = new SpillFile(spillDirectory);
+
+        this.enqueued = metrics.counter("capture.enqueued");
+        this.delivered = metrics.counter("capture.delivered");
+        this.dropped = metrics.counter("capture.dropped");
+        this.blocked = metrics.counter("capture.blocked");
+        this.spilled = metrics.counter("capture.spilled");
+        metrics.gauge("capture.queue.size", queue::size);
+        metrics.gauge("capture.queue.capacity", queue::capacity);
+        metrics.gauge("capture.spill.bytes", () -> spillBytes);
+
+        this.workerThread = threadFactory.createDaemonThread(this, "CaptureWorker");
+        this.workerThread.start();
+    }
+
+    /**
+     * Attaches a consumer and returns the listener the forwarders should report to.
+     * Captured data and closings reach the consumer on the capture worker thread; handshakes,
+     * capture switch lookups and drop reports are passed on on the calling thread.
+     *
+     * @param consumer the consumer of capture events
+     * @return a listener that enqueues events for the consumer
+     */
+    public DataCaptureListener attach(DataCaptureListener consumer) {
+        consumers.add(consumer);
+        int consumerId = consumers.size() - 1;
+        return new DataCaptureListener() {
+            @Override
+            public void onDataCaptured(UUID connectionId, byte[] data, Direction direction) {
+                submit(CaptureEvent.data(consumerId, connectionId, PooledBuffer.wrap(data), direction));
+            }
+
+            @Override
+            public void onBufferCaptured(UUID connectionId, PooledBuffer data, Direction direction) {
+                submit(CaptureEvent.data(consumerId, connectionId, data, direction));
+            }
+
+            @Override
+            public void onTlsHandshake(UUID connectionId, TlsHandshake client, TlsHandshake server) {
+                // Once per connection and before any data, so it needs no queueing
+                consumer.onTlsHandshake(connectionId, client, server);
+            }
+
+            @Override
+            public void onDataDropped(UUID connectionId, Direction direction, int bytes) {
+                consumer.onDataDropped(connectionId, direction, bytes);
+            }
+
+            @Override
+            public CaptureSwitch getCaptureSwitch(UUID connectionId) {
+                // A lookup when forwarding starts, not an event
+                return consumer.getCaptureSwitch(connectionId);
+            }
+
+            @Override
+            public void onConnectionClosed(UUID connectionId) {
+                submit(CaptureEvent.closed(consumerId, connectionId));
+            }
+        };
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Stops the capture worker after it has delivered all queued events.
+     */
+    public void shutdown() {
+        running = false;
+        wakeWorker();
+        try {
+            workerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (spillLock) {
+            try {
+                spillFile.close();
+            } catch (IOException e) {
+                logger.warn("Error deleting capture spill file: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void submit(CaptureEvent event) {
+        if (!spilling && queue.offer(event)) {
+            enqueued.increment();
+            wakeWorker();
+            return;
+        }
+
+        // Once spilling, later events go to the file too, so none overtakes a spilled one
+        if (overflowPolicy == OverflowPolicy.SPILL || spilling) {
+            spill(event);
+        } else if (overflowPolicy == OverflowPolicy.DROP && !event.isClosed()) {
+            discard(event);
+        } else if (TimerWheel.isWheelThread()) {
+            spill(event);
+        } else {
+            blocked.increment();
+            while (!queue.offer(event)) {
+                if (!running) {
+                    discard(event);
+                    return;
+                }
+                wakeWorker();
+                LockSupport.parkNanos(BLOCK_PARK_NANOS);
+            }
+            enqueued.increment();
+            wakeWorker();
+        }
+    }
+
+    private void spill(CaptureEvent event) {
+        synchronized (spillLock) {
+            // Keep order: once spilling, later events go to the file until the worker caught up
+            if (!spilling && queue.offer(event)) {
+                enqueued.increment();
+            } else {
+                try {
+                    spillFile.write(event);
+                    spilling = true;
+                    spillBytes = spillFile.pendingBytes();
+                    spilled.increment();
+                } catch (IOException e) {
+                    logger.error("Error writing capture spill file, dropping event: {}", e.getMessage());
+                    dropped.increment();
+                    reportDropped(event);
+                }
+                // The file keeps its own copy, so the buffer is done with either way
+                if (!event.isClosed()) {
+                    event.data.release();
+                }
+            }
+        }
+        wakeWorker();
+    }
+
+    private CaptureEvent readSpilled() {
+        if (!spilling) {
+            return null;
+        }
+        synchronized (spillLock) {
+            try {
+                CaptureEvent event = spillFile.read();
+                if (spillFile.isEmpty()) {
+                    spilling = false;
+                }
+                spillBytes = spillFile.pendingBytes();
+                return event;
+            } catch (IOException e) {
+                logger.error("Error reading capture spill file, discarding it: {}", e.getMessage());
+                spilling = false;
+                spillBytes = 0;
+                try {
+                    spillFile.close();
+                } catch (IOException closeError) {
+                    logger.trace("Error closing spill file: {}", closeError.getMessage());
+                }
+                return null;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        worker = Thread.currentThread();
+        while (running || !queue.isEmpty() || spilling) {
+            CaptureEvent event = queue.poll();
+            if (event == null) {
+                event = readSpilled();
+            }
+            if (event != null) {
+                dispatch(event);
+                continue;
+            }
+
+            workerWaiting = true;
+            if (queue.isEmpty() && !spilling && running) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+            workerWaiting = false;
+        }
+        logger.debug("Capture worker stopped");
+    }
+
+    private void discard(CaptureEvent event) {
+        dropped.increment();
+        reportDropped(event);
+        if (!event.isClosed()) {
+            event.data.release();
+        }
+    }
+
+    private void reportDropped(CaptureEvent event) {
+        if (event.isClosed()) {
+            return;
+        }
+        try {
+            consumers.get(event.consumerId).onDataDropped(event.connectionId, event.direction, event.data.length());
+        } catch (Exception e) {
+            logger.error("Error reporting dropped capture data: {}", e.getMessage(), e);
+        }
+    }
+
+    private void dispatch(CaptureEvent event) {
+        DataCaptureListener consumer = consumers.get(event.consumerId);
+        try {
+            if (event.isClosed()) {
+                consumer.onConnectionClosed(event.connectionId);
+            } else {
+                consumer.onBufferCaptured(event.connectionId, event.data, event.direction);
+            }
+            delivered.increment();
+        } catch (RuntimeException e) {
+            logger.error("Error in capture consumer for {}: {}", event.connectionId, e.getMessage(), e);
+        }
+    }
+
+    private void wakeWorker() {
+        Thread thread = worker;
+        if (workerWaiting && thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.tcpviewer.capture;
+
+import com.tcpviewer.model.Direction;
+import com.tcpviewer.model.PacketPayload;
+
+import java.time.LocalDateTime;
+
+/**
+ * Keeps the payloads of captured packets.
+ */
+public interface CaptureStore {
+
+    /**
+     * Stores a packet payload.
+     *
+     * @param timestamp when the packet was captured
+     * @param direction the direction of data flow
+     * @param data      the payload; the store may keep the array, so the caller must not modify it afterwards
+     * @return the stored payload
+     */
+    PacketPayload store(LocalDateTime timestamp, Direction direction, byte[] data);
+
+    /**
+     * @return true if payloads stay on the heap, false if they are loaded on demand
+     */
+    boolean isOnHeap();
+
+    /**
+     * Discards all stored payloads, for example when a new session starts.
+     * Payloads handed out before remain readable.
+     */
+    void reset();
+
+    /**
+     * Discards all stored payloads and releases the store's resources.
+     */
+    void close();
+}
@@ -0,0 +1,231 @@
+package com.tcpviewer.capture;
+
+import com.tcpviewer.buffer.BufferPool;
+import com.tcpviewer.buffer.PooledBuffer;
+import com.tcpviewer.model.Direction;
+import com.tcpviewer.proxy.DataCaptureListener;
+import com.tcpviewer.util.TimerWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Capture side of one connection direction.
+ * The forwarder appends every chunk it has written; the stream copies the bytes into a
+ * pooled slab and returns immediately. Completed packets are handed to the listener as
+ * pooled buffers, on the timer wheel thread and in order, except for the final packet
+ * which close() delivers on the calling thread so it precedes the connection-closed
+ * notification. The listener owns the delivered reference and releases it once consumed.
+ */
+public class CaptureStream {
+
+    private static final Logger logger = LoggerFactory.getLogger(CaptureStream.class);
+    private static final int INITIAL_SLAB_SIZE = 4096;
+
+    private final UUID connectionId;
+    private final Direction direction;
+    private final DataCaptureListener listener;
+    private final TimerWheel timerWheel;
+    private final BufferPool bufferPool;
+    private final long idleGapNanos;
+    private final int maxPacketSize;
+
+    private final Object deliveryLock = new Object();
+
+    // Guarded by this
+    private final ArrayDeque<PooledBuffer> completed = new ArrayDeque<>();
+    private PooledBuffer pending;
+    private long lastAppendNanos;
+    private boolean idleCheckScheduled;
+    private boolean deliveryScheduled;
+    private boolean closed;
+
+    CaptureStream(UUID connectionId, Direction direction, DataCaptureListener listener,
+                  TimerWheel timerWheel, BufferPool bufferPool, long idleGapNanos, int maxPacketSize) {
+        this.connectionId = connectionId;
+        this.direction = direction;
+        this.listener = listener;
+        this.timerWheel = timerWheel;
+        this.bufferPool = bufferPool;
+        this.idleGapNanos = idleGapNanos;
+        this.maxPacketSize = maxPacketSize;
+    }
+
+    /**
+     * Creates a stream without coalescing: every appended chunk becomes its own
+     * packet and is delivered on the calling thread.
+     *
+     * @param connectionId the connection the data belongs to
+     * @param direction    the direction of data flow
+     * @param listener     receiver of the packets
+     * @return a new capture stream, or null if the listener is null
+     */
+    public static CaptureStream perChunk(UUID connectionId, Direction direction, DataCaptureListener listener) {
+        return perChunk(connectionId, direction, listener, null);
+    }
+
+    /**
+     * Creates a stream without coalescing that copies chunks into slabs from the given pool.
+     *
+     * @param bufferPool pool for the packet slabs, or null to allocate them
+     * @return a new capture stream, or null if the listener is null
+     */
+    public static CaptureStream perChunk(UUID connectionId, Direction direction, DataCaptureListener listener,
+                                         BufferPool bufferPool) {
+        if (listener == null) {
+            return null;
+        }
+        return new CaptureStream(connectionId, direction, listener, null, bufferPool, 0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Appends forwarded bytes to the current packet. Never blocks on the listener.
+     *
+     * @param data   buffer holding the bytes
+     * @param offset start offset in the buffer
+     * @param length number of bytes to append
+     */
+    public void append(byte[] data, int offset, int length) {
+        if (length <= 0) {
+            return;
+        }
+        if (timerWheel == null) {
+            PooledBuffer packet = acquire(length);
+            packet.write(data, offset, length);
+            deliver(packet);
+            return;
+        }
+
+        boolean scheduleDelivery = false;
+        boolean scheduleIdleCheck = false;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            while (length > 0) {
+                ensureWritable(length);
+                int n = Math.min(length, Math.min(pending.writableBytes(), maxPacketSize - pending.length()));
+                pending.write(data, offset, n);
+                offset += n;
+                length -= n;
+                if (pending.length() >= maxPacketSize) {
+                    completePending();
+                }
+            }
+            lastAppendNanos = System.nanoTime();
+            if (!completed.isEmpty() && !deliveryScheduled) {
+                deliveryScheduled = true;
+                scheduleDelivery = true;
+            }
+            if (pending != null && !idleCheckScheduled) {
+                idleCheckScheduled = true;
+                scheduleIdleCheck = true;
+            }
+        }
+        if (scheduleDelivery) {
+            timerWheel.schedule(this::deliverCompleted, 0, TimeUnit.NANOSECONDS);
+        }
+        if (scheduleIdleCheck) {
+            timerWheel.schedule(this::checkIdle, idleGapNanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Ends the stream and delivers everything still buffered on the calling thread.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            completePending();
+        }
+        deliverCompleted();
+    }
+
+    /**
+     * Runs on the timer wheel. Completes the pending packet if the direction has been
+     * idle long enough, otherwise re-arms for the remainder of the gap.
+     */
+    private void checkIdle() {
+        long remaining = 0;
+        synchronized (this) {
+            idleCheckScheduled = false;
+            if (closed || pending == null) {
+                return;
+            }
+            long idle = System.nanoTime() - lastAppendNanos;
+            if (idle >= idleGapNanos) {
+                completePending();
+            } else {
+                idleCheckScheduled = true;
+                remaining = idleGapNanos - idle;
+            }
+        }
+        if (remaining > 0) {
+            timerWheel.schedule(this::checkIdle, remaining, TimeUnit.NANOSECONDS);
+        } else {
+            deliverCompleted();
+        }
+    }
+
+    /**
+     * Makes room in the pending slab, moving its content to a larger slab if it is full
+     * but still below the maximum packet size. Must hold this.
+     */
+    private void ensureWritable(int length) {
+        if (pending == null) {
+            pending = acquire(Math.min(maxPacketSize, Math.max(length, INITIAL_SLAB_SIZE)));
+        } else if (pending.writableBytes() == 0) {
+            int capacity = Math.min(maxPacketSize, Math.max(pending.capacity() * 2, pending.length() + length));
+            PooledBuffer larger = acquire(capacity);
+            larger.write(pending.array(), 0, pending.length());
+            pending.release();
+            pending = larger;
+        }
+    }
+
+    // Must hold this
+    private void completePending() {
+        if (pending != null && pending.length() > 0) {
+            completed.add(pending);
+        } else if (pending != null) {
+            pending.release();
+        }
+        pending = null;
+    }
+
+    private PooledBuffer acquire(int capacity) {
+        return bufferPool != null ? bufferPool.acquire(capacity) : PooledBuffer.allocate(capacity);
+    }
+
+    private void deliverCompleted() {
+        synchronized (deliveryLock) {
+            while (true) {
+                PooledBuffer packet;
+                synchronized (this) {
+                    deliveryScheduled = false;
+                    packet = completed.poll();
+                }
+                if (packet == null) {
+                    return;
+                }
+                deliver(packet);
+            }
+        }
+    }
+
+    private void deliver(PooledBuffer packet) {
+        int length = packet.length();
+        try {
+            listener.onBufferCaptured(connectionId, packet, direction);
+            logger.trace("Captured packet with {} bytes ({})", length, direction);
+        } catch (RuntimeException e) {
+            logger.error("Error delivering captured data for {}: {}", connectionId, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.tcpviewer.capture;
+
+import com.tcpviewer.model.Direction;
+import com.tcpviewer.model.PacketPayload;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+
+/**
+ * Capture store keeping every payload on the heap, without copying it.
+ */
+public class HeapCaptureStore implements CaptureStore {
+
+    @Override
+    public PacketPayload store(LocalDateTime timestamp, Direction direction, byte[] data) {
+        return PacketPayload.of(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public boolean isOnHeap() {
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        // Payloads are collected together with their packets
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
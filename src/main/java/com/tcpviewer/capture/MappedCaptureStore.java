@@ -0,0 +1,248 @@
+package com.tcpviewer.capture;
+
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.model.Direction;
+import com.tcpviewer.model.PacketPayload;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Capture store appending payloads to memory-mapped segment files.
+ * Every session gets its own directory of append-only segments; each record is a header
+ * (payload length, direction, capture time in epoch microseconds) followed by the payload.
+ * The heap only keeps a small reference per packet, and the operating system pages payloads
+ * in when they are displayed, so sessions can grow far beyond the heap size.
+ * <p>
+ * If a segment cannot be created, payloads fall back to the heap until the next session.
+ * A segment is deleted once all its payloads have been released, i.e. their packets were
+ * evicted, and all segments are deleted when the session is reset; payloads handed out
+ * before stay readable while their mapping is referenced.
+ */
+public class MappedCaptureStore implements CaptureStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedCaptureStore.class);
+    private static final int RECORD_HEADER_SIZE = Integer.BYTES + Byte.BYTES + Long.BYTES;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<Segment> segments = new ArrayList<>();
+    private final AtomicLong storedBytes = new AtomicLong();
+    private final MetricsRegistry.Counter failures;
+
+    private Path sessionDirectory;
+    private Segment current;
+    private int nextSegmentNumber;
+    private boolean failed;
+
+    /**
+     * @param directory   directory in which the session directories are created
+     * @param segmentSize size of each segment file in bytes
+     * @param metrics     registry receiving the store metrics
+     */
+    public MappedCaptureStore(Path directory, int segmentSize, MetricsRegistry metrics) {
+        if (segmentSize <= RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        this.failures = metrics.counter("capture.store.failures");
+        metrics.gauge("capture.store.bytes", storedBytes::get);
+        metrics.gauge("capture.store.segments", this::getSegmentCount);
+    }
+
+    @Override
+    public synchronized PacketPayload store(LocalDateTime timestamp, Direction direction, byte[] data) {
+        int recordSize = RECORD_HEADER_SIZE + data.length;
+        if (!failed && (current == null || current.remaining() < recordSize)) {
+            Segment full = current;
+            try {
+                current = createSegment(Math.max(segmentSize, recordSize));
+                if (full != null && full.liveRecords == 0) {
+                    reclaim(full);
+                }
+            } catch (IOException e) {
+                logger.error("Cannot create capture segment, keeping payloads on the heap: {}", e.getMessage());
+                failed = true;
+                current = null;
+            }
+        }
+        if (failed) {
+            failures.increment();
+            return PacketPayload.of(ByteBuffer.wrap(data));
+        }
+
+        MappedByteBuffer buffer = current.buffer;
+        int offset = current.position;
+        buffer.putInt(offset, data.length);
+        buffer.put(offset + Integer.BYTES, (byte) direction.ordinal());
+        buffer.putLong(offset + Integer.BYTES + Byte.BYTES, toEpochMicros(timestamp));
+        buffer.put(offset + RECORD_HEADER_SIZE, data);
+        current.position += recordSize;
+        current.liveRecords++;
+        storedBytes.addAndGet(recordSize);
+
+        return new StoredPayload(this, current, offset + RECORD_HEADER_SIZE, data.length);
+    }
+
+    @Override
+    public boolean isOnHeap() {
+        return false;
+    }
+
+    @Override
+    public synchronized void reset() {
+        for (Segment segment : segments) {
+            delete(segment.file);
+        }
+        if (sessionDirectory != null) {
+            delete(sessionDirectory);
+        }
+        segments.clear();
+        sessionDirectory = null;
+        current = null;
+        nextSegmentNumber = 0;
+        failed = false;
+        storedBytes.set(0);
+    }
+
+    @Override
+    public void close() {
+        reset();
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Counts a payload as released and deletes its segment once no payload of it is retained,
+     * unless it is still being written.
+     */
+    private synchronized void release(StoredPayload payload) {
+        Segment segment = payload.segment;
+        // A segment of a session that was reset is gone already
+        if (payload.released || !segments.contains(segment)) {
+            return;
+        }
+        payload.released = true;
+        segment.liveRecords--;
+        if (segment.liveRecords == 0 && segment != current) {
+            reclaim(segment);
+        }
+    }
+
+    // Must hold this
+    private void reclaim(Segment segment) {
+        segments.remove(segment);
+        storedBytes.addAndGet(-segment.position);
+        delete(segment.file);
+        logger.debug("Reclaimed capture segment {}", segment.file.getFileName());
+    }
+
+    private Segment createSegment(int size) throws IOException {
+        if (sessionDirectory == null) {
+            Files.createDirectories(directory);
+            sessionDirectory = Files.createTempDirectory(directory, "capture-");
+            logger.info("Capturing payloads to {}", sessionDirectory);
+        }
+
+        // Segments are reclaimed out of order, so their count cannot number them
+        Path file = sessionDirectory.resolve(String.format("segment-%05d.dat", nextSegmentNumber++));
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            Segment segment = new Segment(file, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            segments.add(segment);
+            return segment;
+        }
+    }
+
+    private static long toEpochMicros(LocalDateTime timestamp) {
+        return ChronoUnit.MICROS.between(Instant.EPOCH, timestamp.atZone(ZoneId.systemDefault()).toInstant());
+    }
+
+    private static void delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // Still mapped on some platforms; try again when the JVM exits
+            logger.debug("Cannot delete {} yet: {}", path, e.getMessage());
+            path.toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * One mapped segment file. Written under the store lock, read concurrently through slices.
+     */
+    private static final class Segment {
+        private final Path file;
+        private final MappedByteBuffer buffer;
+        private int position;
+        // Payloads stored and not yet released, guarded by the store lock
+        private int liveRecords;
+
+        Segment(Path file, MappedByteBuffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        int remaining() {
+            return buffer.capacity() - position;
+        }
+    }
+
+    /**
+     * Reference to a payload inside a segment.
+     */
+    private static final class StoredPayload implements PacketPayload {
+        private final MappedCaptureStore store;
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+        // Guarded by the store lock
+        private boolean released;
+
+        StoredPayload(MappedCaptureStore store, Segment segment, int offset, int length) {
+            this.store = store;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int size() {
+            return length;
+        }
+
+        @Override
+        public ByteBuffer read() {
+            return segment.buffer.slice(offset, length).asReadOnlyBuffer();
+        }
+
+        @Override
+        public boolean isStored() {
+            return true;
+        }
+
+        @Override
+        public void release() {
+            store.release(this);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.tcpviewer.capture;
+
+/**
+ * What the capture pipeline does with captured data when its queue is full.
+ * Connection-closed events are never dropped, whatever the policy.
+ */
+public enum OverflowPolicy {
+    /**
+     * Discard the data, count it in the capture.dropped metric and report it to the consumer,
+     * which shows it per connection. Forwarding is never slowed down, but capture is lost, so
+     * this policy has to be chosen explicitly.
+     */
+    DROP,
+
+    /**
+     * Wait until the capture worker makes room. Slows forwarding down to the capture rate. The default.
+     */
+    BLOCK,
+
+    /**
+     * Write the data to a temporary spill file, which the capture worker replays in order.
+     */
+    SPILL
+}
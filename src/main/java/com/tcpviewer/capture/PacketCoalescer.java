@@ -0,0 +1,76 @@
+package com.tcpviewer.capture;
+
+import com.tcpviewer.buffer.BufferPool;
+import com.tcpviewer.model.Direction;
+import com.tcpviewer.proxy.DataCaptureListener;
+import com.tcpviewer.util.TimerWheel;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Groups forwarded chunks into captured packets.
+ * A packet ends when its direction has been idle for the configured gap or
+ * when it reaches the maximum packet size. Idle detection runs on the shared
+ * timer wheel, so forwarding threads never wait for packet boundaries.
+ */
+public class PacketCoalescer {
+
+    private final TimerWheel timerWheel;
+    private final BufferPool bufferPool;
+    private final long idleGapNanos;
+    private final int maxPacketSize;
+
+    /**
+     * @param timerWheel    timer wheel driving idle detection and packet delivery
+     * @param idleGapMillis idle time after which the pending packet is emitted
+     * @param maxPacketSize maximum size of a single captured packet in bytes
+     */
+    public PacketCoalescer(TimerWheel timerWheel, long idleGapMillis, int maxPacketSize) {
+        this(timerWheel, null, idleGapMillis, maxPacketSize);
+    }
+
+    /**
+     * @param timerWheel    timer wheel driving idle detection and packet delivery
+     * @param bufferPool    pool for the packet slabs, or null to allocate them
+     * @param idleGapMillis idle time after which the pending packet is emitted
+     * @param maxPacketSize maximum size of a single captured packet in bytes
+     */
+    public PacketCoalescer(TimerWheel timerWheel, BufferPool bufferPool, long idleGapMillis, int maxPacketSize) {
+        if (maxPacketSize <= 0) {
+            throw new IllegalArgumentException("Max packet size must be positive: " + maxPacketSize);
+        }
+        this.timerWheel = timerWheel;
+        this.bufferPool = bufferPool;
+        this.idleGapNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(idleGapMillis, 0));
+        this.maxPacketSize = maxPacketSize;
+    }
+
+    /**
+     * Opens a capture stream for one direction of a connection.
+     *
+     * @param connectionId the connection the data belongs to
+     * @param direction    the direction of data flow
+     * @param listener     receiver of the coalesced packets
+     * @return a new capture stream, or null if the listener is null
+     */
+    public CaptureStream openStream(UUID connectionId, Direction direction, DataCaptureListener listener) {
+        if (listener == null) {
+            return null;
+        }
+        return new CaptureStream(connectionId, direction, listener, timerWheel, bufferPool,
+                idleGapNanos, maxPacketSize);
+    }
+
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    public long getIdleGapMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(idleGapNanos);
+    }
+
+    public int getMaxPacketSize() {
+        return maxPacketSize;
+    }
+}
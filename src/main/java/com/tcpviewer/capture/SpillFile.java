@@ -0,0 +1,141 @@
+package com.tcpviewer.capture;
+
+import com.tcpviewer.buffer.PooledBuffer;
+import com.tcpviewer.model.Direction;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+
+/**
+ * Temporary file holding capture events that did not fit into the capture queue.
+ * Events are read back in the order they were written. The file is created on first
+ * write, truncated whenever it has been read completely, and deleted on close.
+ * Not thread-safe; the capture pipeline serializes access.
+ */
+class SpillFile implements Closeable {
+
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES * 2 + 1 + Integer.BYTES;
+
+    private final Path directory;
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    private Path path;
+    private FileChannel channel;
+    private long writePosition;
+    private long readPosition;
+
+    /**
+     * @param directory directory for the spill file, or null for the system temp directory
+     */
+    SpillFile(Path directory) {
+        this.directory = directory;
+    }
+
+    void write(CaptureEvent event) throws IOException {
+        if (channel == null) {
+            open();
+        }
+        int length = event.isClosed() ? -1 : event.data.length();
+        header.clear();
+        header.putInt(event.consumerId)
+                .putLong(event.connectionId.getMostSignificantBits())
+                .putLong(event.connectionId.getLeastSignificantBits())
+                .put((byte) (event.direction == null ? -1 : event.direction.ordinal()))
+                .putInt(length)
+                .flip();
+        writePosition += writeFully(header, writePosition);
+        if (length > 0) {
+            writePosition += writeFully(ByteBuffer.wrap(event.data.array(), 0, length), writePosition);
+        }
+    }
+
+    /**
+     * Reads the next event. Once all events are read the file is truncated.
+     *
+     * @return the next event, or null if the file holds no more events
+     */
+    CaptureEvent read() throws IOException {
+        if (isEmpty()) {
+            return null;
+        }
+        header.clear();
+        readPosition += readFully(header, readPosition);
+        header.flip();
+        int consumerId = header.getInt();
+        UUID connectionId = new UUID(header.getLong(), header.getLong());
+        byte direction = header.get();
+        int length = header.getInt();
+
+        CaptureEvent event;
+        if (length < 0) {
+            event = CaptureEvent.closed(consumerId, connectionId);
+        } else {
+            ByteBuffer data = ByteBuffer.allocate(length);
+            readPosition += readFully(data, readPosition);
+            event = CaptureEvent.data(consumerId, connectionId, PooledBuffer.wrap(data.array()),
+                    Direction.values()[direction]);
+        }
+
+        if (isEmpty()) {
+            channel.truncate(0);
+            writePosition = 0;
+            readPosition = 0;
+        }
+        return event;
+    }
+
+    boolean isEmpty() {
+        return readPosition >= writePosition;
+    }
+
+    /**
+     * @return number of bytes written but not yet read
+     */
+    long pendingBytes() {
+        return writePosition - readPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            Files.deleteIfExists(path);
+            channel = null;
+        }
+        writePosition = 0;
+        readPosition = 0;
+    }
+
+    private void open() throws IOException {
+        path = directory != null
+                ? Files.createTempFile(directory, "tcpviewer-capture-", ".spill")
+                : Files.createTempFile("tcpviewer-capture-", ".spill");
+        path.toFile().deleteOnExit();
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private int writeFully(ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            total += channel.write(buffer, position + total);
+        }
+        return total;
+    }
+
+    private int readFully(ByteBuffer buffer, long position) throws IOException {
+        int total = 0;
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + total);
+            if (n < 0) {
+                throw new IOException("Spill file truncated at " + (position + total));
+            }
+            total += n;
+        }
+        return total;
+    }
+}
@@ -1,21 +1,47 @@
 package com.tcpviewer.config;
 
+import com.tcpviewer.buffer.BufferPool;
+import com.tcpviewer.buffer.ReadBufferAllocator;
+import com.tcpviewer.capture.CapturePipeline;
+import com.tcpviewer.capture.CaptureStore;
+import com.tcpviewer.capture.HeapCaptureStore;
+import com.tcpviewer.capture.MappedCaptureStore;
+import com.tcpviewer.capture.OverflowPolicy;
+import com.tcpviewer.capture.PacketCoalescer;
+import com.tcpviewer.io.resolver.CachingHostResolver;
+import com.tcpviewer.io.resolver.HostResolver;
 import com.tcpviewer.io.wrapper.factory.DefaultServerSocketFactory;
 import com.tcpviewer.io.wrapper.factory.DefaultSocketFactory;
 import com.tcpviewer.io.wrapper.factory.ServerSocketFactory;
 import com.tcpviewer.io.wrapper.factory.SocketFactory;
 import com.tcpviewer.javafx.wrapper.PlatformWrapper;
+import com.tcpviewer.javafx.wrapper.impl.BatchingPlatformWrapper;
 import com.tcpviewer.javafx.wrapper.impl.DefaultPlatformWrapper;
 import com.tcpviewer.lang.wrapper.factory.DefaultExecutorServiceFactory;
 import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
 import com.tcpviewer.lang.wrapper.factory.ExecutorServiceFactory;
 import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
+import com.tcpviewer.lang.wrapper.factory.ThreadMode;
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.proxy.AcceptorSettings;
+import com.tcpviewer.proxy.ConnectionReaper;
+import com.tcpviewer.proxy.PacketRetention;
+import com.tcpviewer.proxy.UpstreamConnectionPool;
+import com.tcpviewer.proxy.nio.NioEventLoopGroup;
+import com.tcpviewer.ssl.CertificateCache;
+import com.tcpviewer.ssl.KeyAlgorithm;
+import com.tcpviewer.ssl.KeyPairPool;
+import com.tcpviewer.util.DisplayTextCache;
+import com.tcpviewer.util.TimerWheel;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
+import java.nio.file.Path;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Application configuration for Spring beans.
@@ -33,6 +59,126 @@ public class AppConfig {
     @Value("${app.proxy.thread-pool.queue-capacity:50}")
     private int queueCapacity;
 
+    @Value("${app.proxy.thread-mode:platform}")
+    private ThreadMode threadMode;
+
+    @Value("${app.proxy.nio.event-loops:0}")
+    private int nioEventLoops;
+
+    @Value("${app.proxy.timer.tick-ms:5}")
+    private long timerTickMillis;
+
+    @Value("${app.proxy.capture.idle-gap-ms:10}")
+    private long captureIdleGapMillis;
+
+    @Value("${app.proxy.capture.max-packet-size:65536}")
+    private int captureMaxPacketSize;
+
+    @Value("${app.proxy.buffer-pool.max-buffer-size:65536}")
+    private int bufferPoolMaxBufferSize;
+
+    @Value("${app.proxy.buffer-pool.max-pooled-bytes:33554432}")
+    private long bufferPoolMaxPooledBytes;
+
+    @Value("${app.proxy.buffer-size:8192}")
+    private int readBufferSize;
+
+    @Value("${app.proxy.read-buffer.adaptive:false}")
+    private boolean readBufferAdaptive;
+
+    @Value("${app.proxy.read-buffer.min-size:1024}")
+    private int readBufferMinSize;
+
+    @Value("${app.proxy.read-buffer.max-size:65536}")
+    private int readBufferMaxSize;
+
+    @Value("${app.proxy.max-packets-per-connection:10000}")
+    private int maxPacketsPerConnection;
+
+    @Value("${app.proxy.retention.max-bytes-per-connection:67108864}")
+    private long retentionMaxBytesPerConnection;
+
+    @Value("${app.proxy.retention.max-packets:1000000}")
+    private long retentionMaxPackets;
+
+    @Value("${app.proxy.retention.max-bytes:536870912}")
+    private long retentionMaxBytes;
+
+    @Value("${app.proxy.retention.max-stored-bytes:4294967296}")
+    private long retentionMaxStoredBytes;
+
+    @Value("${app.proxy.connections.max-closed:1000}")
+    private int maxClosedConnections;
+
+    @Value("${app.proxy.connections.closed-max-age-seconds:3600}")
+    private long closedConnectionMaxAgeSeconds;
+
+    @Value("${app.proxy.capture.store.enabled:false}")
+    private boolean captureStoreEnabled;
+
+    @Value("${app.proxy.capture.store.directory:}")
+    private String captureStoreDirectory;
+
+    @Value("${app.proxy.capture.store.segment-size:67108864}")
+    private int captureStoreSegmentSize;
+
+    @Value("${app.proxy.capture.queue-capacity:65536}")
+    private int captureQueueCapacity;
+
+    @Value("${app.proxy.capture.overflow-policy:block}")
+    private OverflowPolicy captureOverflowPolicy;
+
+    @Value("${app.proxy.capture.spill-directory:}")
+    private String captureSpillDirectory;
+
+    @Value("${app.proxy.upstream-pool.size:0}")
+    private int upstreamPoolSize;
+
+    @Value("${app.proxy.upstream-pool.max-idle-seconds:30}")
+    private long upstreamPoolMaxIdleSeconds;
+
+    @Value("${app.proxy.acceptors:1}")
+    private int acceptors;
+
+    @Value("${app.proxy.accept-backlog:0}")
+    private int acceptBacklog;
+
+    @Value("${app.proxy.dns.ttl-seconds:60}")
+    private long dnsTtlSeconds;
+
+    @Value("${app.proxy.dns.negative-ttl-seconds:10}")
+    private long dnsNegativeTtlSeconds;
+
+    @Value("${app.proxy.dns.lookup-timeout-ms:2000}")
+    private long dnsLookupTimeoutMillis;
+
+    @Value("${app.ssl.certificate-cache.max-entries:256}")
+    private int certificateCacheMaxEntries;
+
+    @Value("${app.ssl.certificate-cache.ttl-hours:24}")
+    private long certificateCacheTtlHours;
+
+    @Value("${app.ssl.certificate-cache.file:}")
+    private String certificateCacheFile;
+
+    @Value("${app.ssl.key-algorithm:rsa}")
+    private KeyAlgorithm keyAlgorithm;
+
+    @Value("${app.ssl.key-pool.size:4}")
+    private int keyPoolSize;
+
+    @Value("${app.ssl.session-cache.size:20480}")
+    private int sslSessionCacheSize;
+
+    @Value("${app.ssl.session-cache.timeout-seconds:86400}")
+    private int sslSessionTimeoutSeconds;
+
+    @Value("${app.ui.display-text-cache.size:512}")
+    private int displayTextCacheSize;
+
+    @Value("${app.ui.max-frame-rate:30}")
+    private int uiMaxFrameRate;
+
     /**
      * Thread pool executor for handling TCP proxy connections.
      * Each connection handler runs in this pool.
@@ -53,19 +199,42 @@ public class AppConfig {
     /**
      * Socket factory for creating and wrapping sockets.
      * Provides mockable abstraction over JDK Socket classes for testability.
+     * Caches TLS sessions to target servers, so reconnects resume them.
+     */
+    @Bean
+    @Primary
+    public SocketFactory socketFactory(HostResolver hostResolver) {
+        return new DefaultSocketFactory(sslSessionCacheSize, sslSessionTimeoutSeconds, hostResolver);
+    }
+
+    /**
+     * Number of acceptor threads and accept backlog of proxy listeners.
      */
     @Bean
-    public SocketFactory socketFactory() {
-        return new DefaultSocketFactory();
+    public AcceptorSettings acceptorSettings() {
+        return new AcceptorSettings(acceptors, acceptBacklog);
+    }
+
+    /**
+     * Resolver caching the addresses of target hosts, with lookups bounded by a timeout.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public CachingHostResolver hostResolver(ExecutorServiceFactory executorServiceFactory,
+                                            ThreadFactory threadFactory, MetricsRegistry metricsRegistry) {
+        return new CachingHostResolver(HostResolver.SYSTEM,
+                TimeUnit.SECONDS.toMillis(dnsTtlSeconds), TimeUnit.SECONDS.toMillis(dnsNegativeTtlSeconds),
+                dnsLookupTimeoutMillis, TimeUnit.MILLISECONDS,
+                executorServiceFactory.createCachedThreadPool(threadFactory), metricsRegistry);
     }
 
     /**
      * Thread factory for creating and managing thread wrappers.
      * Provides mockable abstraction over JDK Thread for testability.
+     * Creates virtual threads for connection handlers and forwarders if configured.
      */
     @Bean
     public ThreadFactory threadFactory() {
-        return new DefaultThreadFactory();
+        return new DefaultThreadFactory(threadMode);
     }
 
     /**
@@ -82,16 +251,161 @@ public class AppConfig {
      * Provides mockable abstraction over JavaFX Platform for testability.
      */
     @Bean
+    @Primary
     public PlatformWrapper platformWrapper() {
         return new DefaultPlatformWrapper();
     }
 
+    /**
+     * Platform wrapper batching high-frequency updates, such as captured packets,
+     * into frames applied at most app.ui.max-frame-rate times per second.
+     */
+    @Bean
+    public PlatformWrapper batchingPlatformWrapper(PlatformWrapper platformWrapper, TimerWheel timerWheel,
+                                                   MetricsRegistry metricsRegistry) {
+        return new BatchingPlatformWrapper(platformWrapper, timerWheel, uiMaxFrameRate, metricsRegistry);
+    }
+
+    /**
+     * Connections to the target server of the running session, opened ahead of time if a pool size is set.
+     * Also records the setup time of target connections, pooled or not.
+     */
+    @Bean(destroyMethod = "stop")
+    public UpstreamConnectionPool upstreamConnectionPool(SocketFactory socketFactory, ThreadFactory threadFactory,
+                                                         MetricsRegistry metricsRegistry) {
+        return new UpstreamConnectionPool(socketFactory, upstreamPoolSize, upstreamPoolMaxIdleSeconds,
+                TimeUnit.SECONDS, threadFactory, metricsRegistry);
+    }
+
     /**
      * Server socket factory for creating and wrapping server sockets.
      * Provides mockable abstraction over JDK ServerSocket for testability.
+     * Caches TLS sessions of clients, so reconnecting clients resume them.
      */
     @Bean
     public ServerSocketFactory serverSocketFactory(SocketFactory socketFactory) {
-        return new DefaultServerSocketFactory(socketFactory);
+        return new DefaultServerSocketFactory(socketFactory, sslSessionCacheSize, sslSessionTimeoutSeconds);
+    }
+
+    /**
+     * Selector event loops shared by all proxy sessions using NIO forwarding.
+     * Sized to the number of available cores unless configured otherwise.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public NioEventLoopGroup nioEventLoopGroup(ThreadFactory threadFactory) {
+        return new NioEventLoopGroup(nioEventLoops, threadFactory);
+    }
+
+    /**
+     * Timer wheel shared by all short-lived timeouts, such as packet idle detection.
+     */
+    @Bean(destroyMethod = "stop")
+    public TimerWheel timerWheel(ThreadFactory threadFactory) {
+        return new TimerWheel(timerTickMillis, TimeUnit.MILLISECONDS, 512, threadFactory);
+    }
+
+    /**
+     * Groups forwarded chunks into captured packets by idle gap and maximum size.
+     */
+    @Bean
+    public PacketCoalescer packetCoalescer(TimerWheel timerWheel, BufferPool bufferPool) {
+        return new PacketCoalescer(timerWheel, bufferPool, captureIdleGapMillis, captureMaxPacketSize);
+    }
+
+    /**
+     * Pool of read buffers and capture slabs shared by all forwarders.
+     */
+    @Bean
+    public BufferPool bufferPool(MetricsRegistry metricsRegistry) {
+        return new BufferPool(bufferPoolMaxBufferSize, bufferPoolMaxPooledBytes, metricsRegistry);
+    }
+
+    /**
+     * Sizes the buffers forwarders read into, fixed or adapted per connection direction.
+     */
+    @Bean
+    public ReadBufferAllocator readBufferAllocator(BufferPool bufferPool, MetricsRegistry metricsRegistry) {
+        return new ReadBufferAllocator(bufferPool, readBufferSize, readBufferMinSize, readBufferMaxSize,
+                readBufferAdaptive, metricsRegistry);
+    }
+
+    /**
+     * Limits for the captured packets kept in memory, per connection and over all connections,
+     * and for the payloads kept in the capture store.
+     */
+    @Bean
+    public PacketRetention packetRetention(MetricsRegistry metricsRegistry) {
+        return new PacketRetention(maxPacketsPerConnection, retentionMaxBytesPerConnection,
+                retentionMaxPackets, retentionMaxBytes, retentionMaxStoredBytes, metricsRegistry);
+    }
+
+    /**
+     * Removes closed connections beyond a maximum count or age from the connection list.
+     */
+    @Bean
+    public ConnectionReaper connectionReaper(MetricsRegistry metricsRegistry) {
+        return new ConnectionReaper(maxClosedConnections, closedConnectionMaxAgeSeconds, TimeUnit.SECONDS,
+                metricsRegistry);
+    }
+
+    /**
+     * Store for captured payloads: memory-mapped segment files if enabled, the heap otherwise.
+     */
+    @Bean(destroyMethod = "close")
+    public CaptureStore captureStore(MetricsRegistry metricsRegistry) {
+        if (!captureStoreEnabled) {
+            return new HeapCaptureStore();
+        }
+        Path directory = captureStoreDirectory.isBlank()
+                ? Path.of(System.getProperty("java.io.tmpdir"), "tcp-proxy-viewer")
+                : Path.of(captureStoreDirectory);
+        return new MappedCaptureStore(directory, captureStoreSegmentSize, metricsRegistry);
+    }
+
+    /**
+     * Display texts of the packets rendered most recently; texts are rendered when packets are displayed.
+     */
+    @Bean
+    public DisplayTextCache displayTextCache(MetricsRegistry metricsRegistry) {
+        return new DisplayTextCache(displayTextCacheSize, metricsRegistry);
+    }
+
+    /**
+     * Cache of generated server certificates by host name, persisted to a key store file if one is configured.
+     * The file is written in the background, so handshakes do not wait for it.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public CertificateCache certificateCache(ExecutorServiceFactory executorServiceFactory,
+                                             ThreadFactory threadFactory, MetricsRegistry metricsRegistry) {
+        Path file = certificateCacheFile.isBlank() ? null : Path.of(certificateCacheFile);
+        return new CertificateCache(certificateCacheMaxEntries, certificateCacheTtlHours, TimeUnit.HOURS, file,
+                file != null ? executorServiceFactory.createCachedThreadPool(threadFactory) : null, metricsRegistry);
+    }
+
+    /**
+     * Key pairs for generated server certificates, generated ahead of time on a background thread.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public KeyPairPool keyPairPool(ThreadFactory threadFactory, MetricsRegistry metricsRegistry) {
+        return new KeyPairPool(keyAlgorithm, keyPoolSize, threadFactory, metricsRegistry);
+    }
+
+    /**
+     * Registry for application metrics, shown in Help -> Metrics.
+     */
+    @Bean
+    public MetricsRegistry metricsRegistry() {
+        return new MetricsRegistry();
+    }
+
+    /**
+     * Queue and worker thread between the forwarders and the capture consumers.
+     * Keeps slow capture processing from slowing down proxied traffic.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public CapturePipeline capturePipeline(ThreadFactory threadFactory, MetricsRegistry metricsRegistry) {
+        Path spillDirectory = captureSpillDirectory.isBlank() ? null : Path.of(captureSpillDirectory);
+        return new CapturePipeline(captureQueueCapacity, captureOverflowPolicy, spillDirectory,
+                threadFactory, metricsRegistry);
     }
 }
@@ -0,0 +1,251 @@
+package com.tcpviewer.io.resolver;
+
+import com.tcpviewer.lang.wrapper.ExecutorServiceWrapper;
+import com.tcpviewer.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Host resolver caching the lookups of a delegate resolver, so connection handlers do not
+ * wait for the blocking lookup of every connection.
+ * <ul>
+ *   <li>Addresses are cached for the time to live. Expired addresses are still returned for one
+ *       more time to live while a background lookup refreshes them.</li>
+ *   <li>Failed lookups are cached for the negative time to live, 0 to retry every time.</li>
+ *   <li>Lookups run on the executor; callers wait at most the lookup timeout, and concurrent
+ *       callers for the same host share one lookup. A timed-out lookup still fills the cache.</li>
+ *   <li>{@link #resolveAsync(String)} never waits: cached addresses complete the future right away,
+ *       otherwise it completes on the executor, or fails once the lookup timeout has passed.</li>
+ *   <li>{@link #resolve(String)} rotates over the addresses of a host, A and AAAA records alike.</li>
+ * </ul>
+ */
+public class CachingHostResolver implements HostResolver {
+
+    private static final Logger logger = LoggerFactory.getLogger(CachingHostResolver.class);
+
+    private final HostResolver delegate;
+    private final long ttlNanos;
+    private final long negativeTtlNanos;
+    private final long lookupTimeoutNanos;
+    private final ExecutorServiceWrapper executor;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Entry>> lookups = new ConcurrentHashMap<>();
+
+    private final MetricsRegistry.Counter hits;
+    private final MetricsRegistry.Counter staleHits;
+    private final MetricsRegistry.Counter misses;
+    private final MetricsRegistry.Counter failures;
+    private final MetricsRegistry.Counter timeouts;
+
+    /**
+     * @param delegate      does the actual lookups
+     * @param ttl           time addresses are cached
+     * @param negativeTtl   time failed lookups are cached, 0 to not cache them
+     * @param lookupTimeout time a caller waits for a lookup
+     * @param unit          time unit of the times to live and the timeout
+     * @param executor      runs the lookups
+     * @param metrics       registry receiving the resolver metrics
+     */
+    public CachingHostResolver(HostResolver delegate, long ttl, long negativeTtl, long lookupTimeout, TimeUnit unit,
+                               ExecutorServiceWrapper executor, MetricsRegistry metrics) {
+        this.delegate = delegate;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.negativeTtlNanos = unit.toNanos(negativeTtl);
+        this.lookupTimeoutNanos = unit.toNanos(lookupTimeout);
+        this.executor = executor;
+
+        this.hits = metrics.counter("dns.cache.hits");
+        this.staleHits = metrics.counter("dns.cache.stale.hits");
+        this.misses = metrics.counter("dns.cache.misses");
+        this.failures = metrics.counter("dns.lookup.failures");
+        this.timeouts = metrics.counter("dns.lookup.timeouts");
+        metrics.gauge("dns.cache.size", entries::size);
+    }
+
+    @Override
+    public InetAddress[] resolveAll(String host) throws UnknownHostException {
+        return entry(host).addresses.clone();
+    }
+
+    @Override
+    public InetAddress resolve(String host) throws UnknownHostException {
+        return entry(host).next();
+    }
+
+    @Override
+    public CompletableFuture<InetAddress> resolveAsync(String host) {
+        String key = host.toLowerCase(Locale.ROOT);
+        Entry entry = cached(key, host);
+        if (entry != null) {
+            try {
+                return CompletableFuture.completedFuture(entry.orThrow(host).next());
+            } catch (UnknownHostException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        misses.increment();
+        CompletableFuture<InetAddress> address = new CompletableFuture<>();
+        lookup(key, host).whenComplete((found, error) -> {
+            if (error != null) {
+                address.completeExceptionally(new UnknownHostException(host + ": " + error.getMessage()));
+                return;
+            }
+            try {
+                address.complete(found.orThrow(host).next());
+            } catch (UnknownHostException e) {
+                address.completeExceptionally(e);
+            }
+        });
+        CompletableFuture.delayedExecutor(lookupTimeoutNanos, TimeUnit.NANOSECONDS).execute(() -> {
+            if (address.completeExceptionally(timedOut(host))) {
+                timeouts.increment();
+            }
+        });
+        return address;
+    }
+
+    /**
+     * Removes all cached addresses and failures.
+     */
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Stops the lookup executor.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Entry entry(String host) throws UnknownHostException {
+        String key = host.toLowerCase(Locale.ROOT);
+        Entry entry = cached(key, host);
+        if (entry != null) {
+            return entry.orThrow(host);
+        }
+        misses.increment();
+        return await(host, lookup(key, host)).orThrow(host);
+    }
+
+    /**
+     * Returns the cached entry of a host, or null if the host has to be looked up.
+     */
+    private Entry cached(String key, String host) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            if (now < entry.expiresAtNanos) {
+                hits.increment();
+                return entry;
+            }
+            // Serve expired addresses for one more time to live while refreshing them
+            if (entry.addresses != null && now - entry.expiresAtNanos < ttlNanos) {
+                staleHits.increment();
+                lookup(key, host);
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Starts a lookup of the host unless one is running already.
+     */
+    private CompletableFuture<Entry> lookup(String key, String host) {
+        CompletableFuture<Entry> started = new CompletableFuture<>();
+        CompletableFuture<Entry> running = lookups.putIfAbsent(key, started);
+        if (running != null) {
+            return running;
+        }
+        try {
+            executor.submit(() -> runLookup(key, host, started));
+        } catch (RuntimeException e) {
+            lookups.remove(key, started);
+            started.completeExceptionally(e);
+        }
+        return started;
+    }
+
+    private void runLookup(String key, String host, CompletableFuture<Entry> future) {
+        Entry entry;
+        try {
+            InetAddress[] addresses = delegate.resolveAll(host);
+            entry = new Entry(addresses, null, System.nanoTime() + ttlNanos);
+            entries.put(key, entry);
+            logger.debug("Resolved {} to {} addresses", host, addresses.length);
+        } catch (UnknownHostException e) {
+            failures.increment();
+            entry = new Entry(null, e.getMessage(), System.nanoTime() + negativeTtlNanos);
+            if (negativeTtlNanos > 0) {
+                entries.put(key, entry);
+            } else {
+                entries.remove(key);
+            }
+            logger.debug("Cannot resolve {}: {}", host, e.getMessage());
+        } catch (RuntimeException e) {
+            failures.increment();
+            entry = new Entry(null, e.getMessage(), System.nanoTime());
+        } finally {
+            lookups.remove(key, future);
+        }
+        future.complete(entry);
+    }
+
+    private Entry await(String host, CompletableFuture<Entry> lookup) throws UnknownHostException {
+        try {
+            return lookup.get(lookupTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw timedOut(host);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnknownHostException(host + ": lookup interrupted");
+        } catch (ExecutionException e) {
+            throw new UnknownHostException(host + ": " + e.getCause().getMessage());
+        }
+    }
+
+    private UnknownHostException timedOut(String host) {
+        return new UnknownHostException(host + ": lookup timed out after "
+                + TimeUnit.NANOSECONDS.toMillis(lookupTimeoutNanos) + " ms");
+    }
+
+    /**
+     * Cached addresses of a host, or the cached failure to resolve it.
+     */
+    private static final class Entry {
+        private final InetAddress[] addresses;
+        private final String failure;
+        private final long expiresAtNanos;
+        private final AtomicInteger nextIndex = new AtomicInteger();
+
+        private Entry(InetAddress[] addresses, String failure, long expiresAtNanos) {
+            this.addresses = addresses;
+            this.failure = failure;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+
+        private Entry orThrow(String host) throws UnknownHostException {
+            if (addresses == null) {
+                throw new UnknownHostException(failure != null ? failure : host);
+            }
+            return this;
+        }
+
+        private InetAddress next() {
+            return addresses[Math.floorMod(nextIndex.getAndIncrement(), addresses.length)];
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.tcpviewer.io.resolver;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Resolves host names to addresses.
+ * Abstraction over InetAddress lookups, so that resolution can be cached and tested.
+ */
+@FunctionalInterface
+public interface HostResolver {
+
+    /**
+     * Resolver doing a blocking InetAddress lookup on every call.
+     */
+    HostResolver SYSTEM = InetAddress::getAllByName;
+
+    /**
+     * Resolves all addresses of a host.
+     *
+     * @param host the host name or IP address literal
+     * @return the addresses of the host, never empty
+     * @throws UnknownHostException if the host cannot be resolved
+     */
+    InetAddress[] resolveAll(String host) throws UnknownHostException;
+
+    /**
+     * Resolves the address to connect to. By default the first address of the host.
+     *
+     * @param host the host name or IP address literal
+     * @return the address to connect to
+     * @throws UnknownHostException if the host cannot be resolved
+     */
+    default InetAddress resolve(String host) throws UnknownHostException {
+        return resolveAll(host)[0];
+    }
+
+    /**
+     * Resolves the address to connect to without waiting for a lookup, for callers that must not block.
+     * By default the lookup runs on the calling thread; resolvers with a lookup executor of their own
+     * complete the future there.
+     *
+     * @param host the host name or IP address literal
+     * @return the address to connect to, or a future failed with an {@link UnknownHostException}
+     */
+    default CompletableFuture<InetAddress> resolveAsync(String host) {
+        try {
+            return CompletableFuture.completedFuture(resolve(host));
+        } catch (UnknownHostException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -18,6 +18,17 @@ public interface ServerSocketWrapper extends AutoCloseable {
      */
     void bind(SocketAddress endpoint) throws IOException;
 
+    /**
+     * Binds the ServerSocket to a specific address with the given accept backlog.
+     *
+     * @param endpoint the IP address and port number to bind to
+     * @param backlog  maximum number of pending connections, 0 or less for the platform default
+     * @throws IOException if the bind operation fails
+     */
+    default void bind(SocketAddress endpoint, int backlog) throws IOException {
+        bind(endpoint);
+    }
+
     /**
      * Listens for a connection to be made to this socket and accepts it.
      * The method blocks until a connection is made.
@@ -35,6 +46,18 @@ public interface ServerSocketWrapper extends AutoCloseable {
      */
     void setReuseAddress(boolean on) throws IOException;
 
+    /**
+     * Enable/disable the SO_REUSEPORT socket option, letting several sockets bind the same port
+     * while the kernel spreads incoming connections across them.
+     *
+     * @param on whether to enable or disable the socket option
+     * @return true if the option was set, false if the platform does not support it
+     * @throws IOException if there is an error in the underlying protocol
+     */
+    default boolean setReusePort(boolean on) throws IOException {
+        return false;
+    }
+
     /**
      * Returns the closed state of the ServerSocket.
      *
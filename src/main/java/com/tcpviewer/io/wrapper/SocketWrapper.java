@@ -1,7 +1,10 @@
 package com.tcpviewer.io.wrapper;
 
+import com.tcpviewer.model.TlsHandshake;
+
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.channels.SocketChannel;
 
 /**
  * Mockable wrapper interface for java.net.Socket.
@@ -47,6 +50,36 @@ public interface SocketWrapper extends AutoCloseable {
      */
     int getPort();
 
+    /**
+     * Returns the unique SocketChannel associated with this socket, if any.
+     * Only sockets accepted from a channel-backed server socket have a channel.
+     *
+     * @return the socket channel, or null if the socket was not created from a channel
+     */
+    SocketChannel getChannel();
+
+    /**
+     * Performs the TLS handshake of an SSL socket, unless it is already done, and returns its outcome.
+     * Repeated calls return the outcome of the first handshake.
+     *
+     * @return the handshake, or null for plain sockets
+     * @throws IOException if the handshake fails
+     */
+    default TlsHandshake startHandshake() throws IOException {
+        return null;
+    }
+
+    /**
+     * Completes the TLS handshake of an SSL socket and returns the host name the client
+     * requested via SNI (Server Name Indication).
+     *
+     * @return the requested host name, or null for plain sockets and clients not sending SNI
+     * @throws IOException if the handshake fails
+     */
+    default String getRequestedServerName() throws IOException {
+        return null;
+    }
+
     /**
      * Returns the closed state of the socket.
      *
@@ -3,21 +3,37 @@ package com.tcpviewer.io.wrapper.factory;
 import com.tcpviewer.io.wrapper.ServerSocketWrapper;
 import com.tcpviewer.io.wrapper.impl.DefaultServerSocketWrapper;
 
+import javax.net.ssl.KeyManager;
 import javax.net.ssl.KeyManagerFactory;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLServerSocketFactory;
+import javax.net.ssl.X509KeyManager;
 import java.io.IOException;
-import java.net.ServerSocket;
+import java.nio.channels.ServerSocketChannel;
 import java.security.KeyStore;
 import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * Default implementation of ServerSocketFactory.
  * Creates DefaultServerSocketWrapper instances that delegate to java.net.ServerSocket.
+ * SSL contexts are kept per key store, so a listener restarted with the same certificate
+ * still resumes the TLS sessions of its clients.
  */
 public class DefaultServerSocketFactory implements ServerSocketFactory {
 
+    private static final int MAX_CACHED_CONTEXTS = 16;
+
     private final SocketFactory socketFactory;
+    private final int sessionCacheSize;
+    private final int sessionTimeoutSeconds;
+    private final Map<KeyStore, SSLContext> sslContexts = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<KeyStore, SSLContext> eldest) {
+            return size() > MAX_CACHED_CONTEXTS;
+        }
+    };
 
     /**
      * Creates a new DefaultServerSocketFactory.
@@ -25,30 +41,80 @@ public class DefaultServerSocketFactory implements ServerSocketFactory {
      * @param socketFactory factory for wrapping accepted sockets
      */
     public DefaultServerSocketFactory(SocketFactory socketFactory) {
+        this(socketFactory, DefaultSocketFactory.DEFAULT_SESSION_CACHE_SIZE,
+                DefaultSocketFactory.DEFAULT_SESSION_TIMEOUT_SECONDS);
+    }
+
+    /**
+     * Creates a new DefaultServerSocketFactory.
+     *
+     * @param socketFactory         factory for wrapping accepted sockets
+     * @param sessionCacheSize      TLS sessions cached for resumption per SSL context, 0 for no limit
+     * @param sessionTimeoutSeconds time a cached TLS session can be resumed, 0 for no limit
+     */
+    public DefaultServerSocketFactory(SocketFactory socketFactory, int sessionCacheSize,
+                                      int sessionTimeoutSeconds) {
         this.socketFactory = socketFactory;
+        this.sessionCacheSize = sessionCacheSize;
+        this.sessionTimeoutSeconds = sessionTimeoutSeconds;
     }
 
     @Override
     public ServerSocketWrapper createServerSocket(KeyStore keyStore) throws IOException {
         if (keyStore == null) {
-            return new DefaultServerSocketWrapper(new ServerSocket(), socketFactory);
+            // Channel-backed so that accepted sockets expose a SocketChannel for the NIO engine
+            return new DefaultServerSocketWrapper(ServerSocketChannel.open().socket(), socketFactory);
         } else  {
             try {
-                // 3. Initialize KeyManagerFactory with the KeyStore
-                KeyManagerFactory kmf = KeyManagerFactory.getInstance(
-                        KeyManagerFactory.getDefaultAlgorithm()
-                );
-                kmf.init(keyStore, "changeit".toCharArray());
-                // 4. Initialize SSLContext
-                SSLContext sslContext = SSLContext.getInstance("TLS");
-                sslContext.init(kmf.getKeyManagers(), null, null);
-
-                // 5. Create SSLServerSocket
-                SSLServerSocketFactory sslServerSocketFactory = sslContext.getServerSocketFactory();
-                return new DefaultServerSocketWrapper(sslServerSocketFactory.createServerSocket(), socketFactory);
+                SSLContext sslContext;
+                synchronized (sslContexts) {
+                    sslContext = sslContexts.get(keyStore);
+                    if (sslContext == null) {
+                        // 3. Initialize KeyManagerFactory with the KeyStore
+                        KeyManagerFactory kmf = KeyManagerFactory.getInstance(
+                                KeyManagerFactory.getDefaultAlgorithm()
+                        );
+                        kmf.init(keyStore, "changeit".toCharArray());
+                        sslContext = createSslContext(kmf.getKeyManagers());
+                        sslContexts.put(keyStore, sslContext);
+                    }
+                }
+                return createSslServerSocket(sslContext);
             } catch (Exception e) {
                 throw  new RuntimeException("Error creating SSL Server Socker");
             }
         }
     }
+
+    @Override
+    public ServerSocketWrapper createSslServerSocket(X509KeyManager keyManager) throws IOException {
+        try {
+            return createSslServerSocket(createSslContext(new KeyManager[]{keyManager}));
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("Error creating SSL Server Socket", e);
+        }
+    }
+
+    private SSLContext createSslContext(KeyManager[] keyManagers) throws Exception {
+        // 4. Initialize SSLContext, with the session cache clients resume from
+        // Key managers are only asked for a certificate by full handshakes, which they mark
+        KeyManager[] markingKeyManagers = new KeyManager[keyManagers.length];
+        for (int i = 0; i < keyManagers.length; i++) {
+            markingKeyManagers[i] = keyManagers[i] instanceof X509KeyManager keyManager
+                    ? new FullHandshakeKeyManager(keyManager) : keyManagers[i];
+        }
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(markingKeyManagers, null, null);
+        sslContext.getServerSessionContext().setSessionCacheSize(sessionCacheSize);
+        sslContext.getServerSessionContext().setSessionTimeout(sessionTimeoutSeconds);
+        return sslContext;
+    }
+
+    private ServerSocketWrapper createSslServerSocket(SSLContext sslContext) throws IOException {
+        // 5. Create SSLServerSocket
+        SSLServerSocketFactory sslServerSocketFactory = sslContext.getServerSocketFactory();
+        return new DefaultServerSocketWrapper(sslServerSocketFactory.createServerSocket(), socketFactory);
+    }
 }
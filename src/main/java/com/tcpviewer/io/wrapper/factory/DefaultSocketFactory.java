@@ -1,10 +1,12 @@
 package com.tcpviewer.io.wrapper.factory;
 
+import com.tcpviewer.io.resolver.HostResolver;
 import com.tcpviewer.io.wrapper.SocketWrapper;
 import com.tcpviewer.io.wrapper.impl.DefaultSocketWrapper;
 
 import javax.net.ssl.*;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.Socket;
 import java.security.SecureRandom;
 import java.security.cert.X509Certificate;
@@ -13,15 +15,40 @@ import java.util.Collections;
 /**
  * Default implementation of SocketFactory.
  * Creates new sockets and wraps them with DefaultSocketWrapper.
+ * All SSL sockets share one SSL context, so reconnecting to the same target resumes
+ * the cached session instead of running a full handshake. The trust manager, only consulted
+ * when the server presents its certificate, marks full handshakes for the socket wrappers.
+ * Host names are resolved by the host resolver before connecting.
  */
 public class DefaultSocketFactory implements SocketFactory {
 
+    /**
+     * Default number of cached TLS sessions, as in the JDK.
+     */
+    public static final int DEFAULT_SESSION_CACHE_SIZE = 20480;
+
+    /**
+     * Default lifetime of cached TLS sessions in seconds, as in the JDK.
+     */
+    public static final int DEFAULT_SESSION_TIMEOUT_SECONDS = 86400;
+
     private SSLSocketFactory socketFactory;
+    private final HostResolver hostResolver;
+
+    public DefaultSocketFactory() {
+        this(DEFAULT_SESSION_CACHE_SIZE, DEFAULT_SESSION_TIMEOUT_SECONDS, HostResolver.SYSTEM);
+    }
 
-    public  DefaultSocketFactory() {
-        // Trust manager that trusts everything
+    /**
+     * @param sessionCacheSize      TLS sessions cached for resumption, 0 for no limit
+     * @param sessionTimeoutSeconds time a cached TLS session can be resumed, 0 for no limit
+     * @param hostResolver          resolves the host names to connect to
+     */
+    public DefaultSocketFactory(int sessionCacheSize, int sessionTimeoutSeconds, HostResolver hostResolver) {
+        this.hostResolver = hostResolver;
+        // Trust manager that trusts everything, only asked for full handshakes
         TrustManager[] trustAllCerts = new TrustManager[]{
-                new X509TrustManager() {
+                new X509ExtendedTrustManager() {
                     @Override
                     public X509Certificate[] getAcceptedIssuers() {
                         return new X509Certificate[0];
@@ -30,8 +57,24 @@ public class DefaultSocketFactory implements SocketFactory {
                     public void checkClientTrusted(X509Certificate[] certs, String authType) {
                     }
                     @Override
+                    public void checkClientTrusted(X509Certificate[] certs, String authType, Socket socket) {
+                    }
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] certs, String authType, SSLEngine engine) {
+                    }
+                    @Override
                     public void checkServerTrusted(X509Certificate[] certs, String authType) {
                     }
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] certs, String authType, Socket socket) {
+                        if (socket instanceof SSLSocket sslSocket) {
+                            DefaultSocketWrapper.markFullHandshake(sslSocket.getHandshakeSession());
+                        }
+                    }
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] certs, String authType, SSLEngine engine) {
+                        DefaultSocketWrapper.markFullHandshake(engine.getHandshakeSession());
+                    }
                 }
         };
 
@@ -39,6 +82,8 @@ public class DefaultSocketFactory implements SocketFactory {
         try {
             SSLContext sslContext = SSLContext.getInstance("TLS");
             sslContext.init(null, trustAllCerts, new SecureRandom());
+            sslContext.getClientSessionContext().setSessionCacheSize(sessionCacheSize);
+            sslContext.getClientSessionContext().setSessionTimeout(sessionTimeoutSeconds);
             socketFactory = sslContext.getSocketFactory();
         } catch (Exception e) {
             throw  new RuntimeException("Error creating SSL Socket factory");
@@ -47,20 +92,32 @@ public class DefaultSocketFactory implements SocketFactory {
 
     @Override
     public SocketWrapper createSocket(String host, int port, boolean ssl, String sniHostName) throws IOException {
+        InetAddress address = hostResolver.resolve(host);
         if  (ssl) {
-            SSLSocket socket = (SSLSocket) socketFactory.createSocket(host, port);
+            // Layered over the connected socket, so the host name still serves as default SNI
+            Socket plainSocket = new Socket(address, port);
+            SSLSocket socket;
+            try {
+                socket = (SSLSocket) socketFactory.createSocket(plainSocket, host, port, true);
+            } catch (IOException e) {
+                plainSocket.close();
+                throw e;
+            }
 
             // --- Enable SNI ---
-            SSLParameters sslParameters = socket.getSSLParameters();
-            sslParameters.setServerNames(
-                    Collections.singletonList(new SNIHostName(sniHostName))
-            );
-            socket.setSSLParameters(sslParameters);
-            // Start handshake explicitly
-            socket.startHandshake();
-            return new DefaultSocketWrapper(socket);
+            if (sniHostName != null) {
+                SSLParameters sslParameters = socket.getSSLParameters();
+                sslParameters.setServerNames(
+                        Collections.singletonList(new SNIHostName(sniHostName))
+                );
+                socket.setSSLParameters(sslParameters);
+            }
+            // Start handshake explicitly, the wrapper keeps its outcome
+            SocketWrapper wrapper = new DefaultSocketWrapper(socket);
+            wrapper.startHandshake();
+            return wrapper;
         } else {
-            Socket socket = new Socket(host, port);
+            Socket socket = new Socket(address, port);
             return new DefaultSocketWrapper(socket);
         }
 
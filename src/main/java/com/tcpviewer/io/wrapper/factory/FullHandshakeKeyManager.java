@@ -0,0 +1,79 @@
+package com.tcpviewer.io.wrapper.factory;
+
+import com.tcpviewer.io.wrapper.impl.DefaultSocketWrapper;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedKeyManager;
+import javax.net.ssl.X509KeyManager;
+import java.net.Socket;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+
+/**
+ * Key manager delegating to another one, marking the handshakes that choose a server certificate
+ * as full handshakes. Resumed handshakes present no certificate and never ask for one.
+ * Marked sessions are not turned into stateless session tickets, so the server session cache
+ * keeps them for resumption instead.
+ */
+final class FullHandshakeKeyManager extends X509ExtendedKeyManager {
+
+    private final X509KeyManager delegate;
+
+    FullHandshakeKeyManager(X509KeyManager delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+        String alias = delegate.chooseServerAlias(keyType, issuers, socket);
+        if (alias != null && socket instanceof SSLSocket sslSocket) {
+            DefaultSocketWrapper.markFullHandshake(sslSocket.getHandshakeSession());
+        }
+        return alias;
+    }
+
+    @Override
+    public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+        if (!(delegate instanceof X509ExtendedKeyManager extendedDelegate)) {
+            return null;
+        }
+        String alias = extendedDelegate.chooseEngineServerAlias(keyType, issuers, engine);
+        if (alias != null && engine != null) {
+            DefaultSocketWrapper.markFullHandshake(engine.getHandshakeSession());
+        }
+        return alias;
+    }
+
+    @Override
+    public String chooseClientAlias(String[] keyTypes, Principal[] issuers, Socket socket) {
+        return delegate.chooseClientAlias(keyTypes, issuers, socket);
+    }
+
+    @Override
+    public String chooseEngineClientAlias(String[] keyTypes, Principal[] issuers, SSLEngine engine) {
+        return delegate instanceof X509ExtendedKeyManager extendedDelegate
+                ? extendedDelegate.chooseEngineClientAlias(keyTypes, issuers, engine) : null;
+    }
+
+    @Override
+    public String[] getServerAliases(String keyType, Principal[] issuers) {
+        return delegate.getServerAliases(keyType, issuers);
+    }
+
+    @Override
+    public String[] getClientAliases(String keyType, Principal[] issuers) {
+        return delegate.getClientAliases(keyType, issuers);
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain(String alias) {
+        return delegate.getCertificateChain(alias);
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(String alias) {
+        return delegate.getPrivateKey(alias);
+    }
+}
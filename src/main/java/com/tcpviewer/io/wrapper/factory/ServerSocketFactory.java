@@ -2,6 +2,7 @@ package com.tcpviewer.io.wrapper.factory;
 
 import com.tcpviewer.io.wrapper.ServerSocketWrapper;
 
+import javax.net.ssl.X509KeyManager;
 import java.io.IOException;
 import java.security.KeyStore;
 
@@ -20,4 +21,15 @@ public interface ServerSocketFactory {
      * @throws IOException if an I/O error occurs when opening the socket
      */
     ServerSocketWrapper createServerSocket(KeyStore keyStore) throws IOException;
+
+    /**
+     * Creates a new unbound SSL server socket choosing its certificates with the given key manager,
+     * for example per host name requested by the client.
+     *
+     * @param  keyManager supplies the certificate and key for each handshake
+     *
+     * @return a ServerSocketWrapper wrapping a new unbound SSL ServerSocket
+     * @throws IOException if an I/O error occurs when opening the socket
+     */
+    ServerSocketWrapper createSslServerSocket(X509KeyManager keyManager) throws IOException;
 }
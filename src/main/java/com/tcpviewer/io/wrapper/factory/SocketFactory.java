@@ -17,7 +17,7 @@ public interface SocketFactory {
      * @param  host the host name or ip adress to connect to
      * @param  port the port number to connect to
      * @param  ssl if true, am ssl socket will be created
-     * @param  sniHostName the host name to use as SNI parameter
+     * @param  sniHostName the host name to use as SNI parameter, or null to leave the default
      * @return a SocketWrapper wrapping the newly created socket
      * @throws IOException if an I/O error occurs when creating the socket
      */
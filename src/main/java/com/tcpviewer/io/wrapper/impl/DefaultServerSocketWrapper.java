@@ -7,6 +7,7 @@ import com.tcpviewer.io.wrapper.factory.SocketFactory;
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
 
 /**
  * Default implementation of ServerSocketWrapper that delegates to java.net.ServerSocket.
@@ -33,6 +34,11 @@ public class DefaultServerSocketWrapper implements ServerSocketWrapper {
         delegate.bind(endpoint);
     }
 
+    @Override
+    public void bind(SocketAddress endpoint, int backlog) throws IOException {
+        delegate.bind(endpoint, backlog);
+    }
+
     @Override
     public SocketWrapper accept() throws IOException {
         return socketFactory.wrapSocket(delegate.accept());
@@ -43,6 +49,15 @@ public class DefaultServerSocketWrapper implements ServerSocketWrapper {
         delegate.setReuseAddress(on);
     }
 
+    @Override
+    public boolean setReusePort(boolean on) throws IOException {
+        if (!delegate.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT)) {
+            return false;
+        }
+        delegate.setOption(StandardSocketOptions.SO_REUSEPORT, on);
+        return true;
+    }
+
     @Override
     public boolean isClosed() {
         return delegate.isClosed();
@@ -3,20 +3,35 @@ package com.tcpviewer.io.wrapper.impl;
 import com.tcpviewer.io.wrapper.InputStreamWrapper;
 import com.tcpviewer.io.wrapper.OutputStreamWrapper;
 import com.tcpviewer.io.wrapper.SocketWrapper;
+import com.tcpviewer.model.TlsHandshake;
 
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Default implementation of SocketWrapper that delegates to java.net.Socket.
  * Provides zero-overhead delegation to the underlying socket.
+ * <p>
+ * Whether a TLS handshake resumed a session is read from the session itself: the trust and
+ * key managers of the socket factories only take part when certificates are exchanged, which
+ * a resumed handshake skips, and mark the handshake session when they do.
  */
 public class DefaultSocketWrapper implements SocketWrapper {
 
+    private static final String FULL_HANDSHAKE = DefaultSocketWrapper.class.getName() + ".fullHandshake";
+
     private final Socket delegate;
     private InputStreamWrapper inputStreamWrapper;
     private OutputStreamWrapper outputStreamWrapper;
+    private volatile TlsHandshake handshake;
 
     /**
      * Creates a new DefaultSocketWrapper that wraps the given socket.
@@ -51,6 +66,53 @@ public class DefaultSocketWrapper implements SocketWrapper {
         delegate.setTcpNoDelay(on);
     }
 
+    @Override
+    public synchronized TlsHandshake startHandshake() throws IOException {
+        if (!(delegate instanceof SSLSocket sslSocket)) {
+            return null;
+        }
+        if (handshake == null) {
+            long start = System.nanoTime();
+            sslSocket.startHandshake();
+            long durationMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+            SSLSession session = sslSocket.getSession();
+            // Resumed sessions share their values with the session they resume, so drop the mark
+            boolean resumed = session.getValue(FULL_HANDSHAKE) == null;
+            session.removeValue(FULL_HANDSHAKE);
+            handshake = new TlsHandshake(session.getProtocol(), session.getCipherSuite(), resumed, durationMicros);
+        }
+        return handshake;
+    }
+
+    /**
+     * Marks a handshake session as negotiated by a full handshake.
+     * Called by trust and key managers while they check or choose a certificate.
+     *
+     * @param handshakeSession the session under negotiation, or null if unknown
+     */
+    public static void markFullHandshake(SSLSession handshakeSession) {
+        if (handshakeSession != null) {
+            handshakeSession.putValue(FULL_HANDSHAKE, Boolean.TRUE);
+        }
+    }
+
+    @Override
+    public String getRequestedServerName() throws IOException {
+        if (!(delegate instanceof SSLSocket sslSocket)) {
+            return null;
+        }
+        startHandshake();
+        SSLSession session = sslSocket.getSession();
+        if (session instanceof ExtendedSSLSession extendedSession) {
+            for (SNIServerName serverName : extendedSession.getRequestedServerNames()) {
+                if (serverName instanceof SNIHostName hostName) {
+                    return hostName.getAsciiName();
+                }
+            }
+        }
+        return null;
+    }
+
     @Override
     public InetAddress getInetAddress() {
         return delegate.getInetAddress();
@@ -61,6 +123,11 @@ public class DefaultSocketWrapper implements SocketWrapper {
         return delegate.getPort();
     }
 
+    @Override
+    public SocketChannel getChannel() {
+        return delegate.getChannel();
+    }
+
     @Override
     public boolean isClosed() {
         return delegate.isClosed();
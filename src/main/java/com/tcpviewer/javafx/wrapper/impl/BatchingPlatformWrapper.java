@@ -0,0 +1,116 @@
+package com.tcpviewer.javafx.wrapper.impl;
+
+import com.tcpviewer.javafx.wrapper.PlatformWrapper;
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.util.TimerWheel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * PlatformWrapper that applies updates in frames at a capped rate.
+ * Updates are queued off the JavaFX thread and run in submission order by a single
+ * delegate runLater per frame, so bursts of updates do not flood the JavaFX event queue.
+ * A frame starts at most once per frame interval; the delay is timed on the timer wheel.
+ */
+public class BatchingPlatformWrapper implements PlatformWrapper {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingPlatformWrapper.class);
+
+    private final PlatformWrapper delegate;
+    private final TimerWheel timerWheel;
+    private final long frameIntervalNanos;
+
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    private volatile long lastFrameStart;
+
+    private final MetricsRegistry.Counter frames;
+    private final MetricsRegistry.Counter updates;
+    private final AtomicLong lastApplyMicros = new AtomicLong();
+    private final AtomicLong maxApplyMicros = new AtomicLong();
+
+    /**
+     * @param delegate        runs the frames on the JavaFX thread
+     * @param timerWheel      times the delay until the next frame may start
+     * @param framesPerSecond maximum number of frames per second
+     * @param metrics         registry receiving the update metrics
+     */
+    public BatchingPlatformWrapper(PlatformWrapper delegate, TimerWheel timerWheel, int framesPerSecond,
+                                   MetricsRegistry metrics) {
+        if (framesPerSecond <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive: " + framesPerSecond);
+        }
+        this.delegate = delegate;
+        this.timerWheel = timerWheel;
+        this.frameIntervalNanos = TimeUnit.SECONDS.toNanos(1) / framesPerSecond;
+        this.lastFrameStart = System.nanoTime() - frameIntervalNanos;
+
+        this.frames = metrics.counter("ui.frames");
+        this.updates = metrics.counter("ui.updates");
+        metrics.gauge("ui.queue.depth", pendingCount::get);
+        metrics.gauge("ui.frame.apply.last.micros", lastApplyMicros::get);
+        metrics.gauge("ui.frame.apply.max.micros", maxApplyMicros::get);
+    }
+
+    @Override
+    public void runLater(Runnable runnable) {
+        pending.add(runnable);
+        pendingCount.incrementAndGet();
+        if (frameScheduled.compareAndSet(false, true)) {
+            scheduleFrame();
+        }
+    }
+
+    private void scheduleFrame() {
+        long delay = lastFrameStart + frameIntervalNanos - System.nanoTime();
+        if (delay <= 0) {
+            delegate.runLater(this::applyFrame);
+        } else {
+            timerWheel.schedule(() -> delegate.runLater(this::applyFrame), delay, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Runs the updates queued when the frame started. Updates queued meanwhile go to the next frame.
+     */
+    private void applyFrame() {
+        long start = System.nanoTime();
+        lastFrameStart = start;
+        frameScheduled.set(false);
+
+        int count = pendingCount.get();
+        int applied = 0;
+        while (applied < count) {
+            Runnable runnable = pending.poll();
+            if (runnable == null) {
+                break;
+            }
+            pendingCount.decrementAndGet();
+            applied++;
+            try {
+                runnable.run();
+            } catch (RuntimeException e) {
+                logger.error("UI update failed: {}", e.getMessage(), e);
+            }
+        }
+
+        // Updates queued while this frame ran need a frame of their own
+        if (pendingCount.get() > 0 && frameScheduled.compareAndSet(false, true)) {
+            scheduleFrame();
+        }
+
+        long applyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        frames.increment();
+        updates.add(applied);
+        lastApplyMicros.set(applyMicros);
+        maxApplyMicros.accumulateAndGet(applyMicros, Math::max);
+    }
+}
@@ -49,6 +49,7 @@ public interface ThreadWrapper extends Runnable {
 
     /**
      * Marks this thread as either a daemon thread or a user thread.
+     * Has no effect on virtual threads, which are always daemon threads.
      *
      * @param on if true, marks this thread as a daemon thread
      */
@@ -67,4 +68,11 @@ public interface ThreadWrapper extends Runnable {
      * @return true if this thread has been interrupted; false otherwise
      */
     boolean isInterrupted();
+
+    /**
+     * Tests whether this thread is a virtual thread.
+     *
+     * @return true if this thread is virtual; false for platform threads
+     */
+    boolean isVirtual();
 }
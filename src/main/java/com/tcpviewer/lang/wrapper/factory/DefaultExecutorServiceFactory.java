@@ -1,7 +1,10 @@
 package com.tcpviewer.lang.wrapper.factory;
 
 import com.tcpviewer.lang.wrapper.ExecutorServiceWrapper;
+import com.tcpviewer.lang.wrapper.ThreadWrapper;
 import com.tcpviewer.lang.wrapper.impl.DefaultExecutorServiceWrapper;
+import com.tcpviewer.lang.wrapper.impl.DefaultThreadWrapper;
+import com.tcpviewer.lang.wrapper.impl.VirtualThreads;
 
 import java.util.concurrent.Executors;
 
@@ -13,17 +16,33 @@ public class DefaultExecutorServiceFactory implements ExecutorServiceFactory {
 
     @Override
     public ExecutorServiceWrapper createCachedThreadPool(ThreadFactory threadFactory) {
-        // Convert our ThreadFactory wrapper to JDK's ThreadFactory
-        java.util.concurrent.ThreadFactory jdkThreadFactory = runnable -> {
-            com.tcpviewer.lang.wrapper.ThreadWrapper wrapper = threadFactory.createThread(runnable);
-            // Return the underlying thread for JDK compatibility
-            // We need to extract the Thread object, so we'll use a workaround
-            // by starting and immediately getting the thread that would be created
-            return new Thread(runnable);
-        };
+        return new DefaultExecutorServiceWrapper(
+            Executors.newCachedThreadPool(toJdkThreadFactory(threadFactory))
+        );
+    }
 
+    @Override
+    public ExecutorServiceWrapper createThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        if (!VirtualThreads.isSupported()) {
+            // Pre-21 runtimes lack thread-per-task executors; a cached pool is the closest match
+            return createCachedThreadPool(threadFactory);
+        }
         return new DefaultExecutorServiceWrapper(
-            Executors.newCachedThreadPool(jdkThreadFactory)
+            VirtualThreads.newThreadPerTaskExecutor(toJdkThreadFactory(threadFactory))
         );
     }
+
+    /**
+     * Converts our ThreadFactory wrapper to JDK's ThreadFactory, using the threads it creates.
+     */
+    private java.util.concurrent.ThreadFactory toJdkThreadFactory(ThreadFactory threadFactory) {
+        return runnable -> {
+            ThreadWrapper wrapper = threadFactory.createThread(runnable);
+            if (wrapper instanceof DefaultThreadWrapper defaultWrapper) {
+                return defaultWrapper.unwrap();
+            }
+            // Foreign wrappers are Runnables themselves; run them on a plain thread
+            return new Thread(wrapper);
+        };
+    }
 }
@@ -2,20 +2,46 @@ package com.tcpviewer.lang.wrapper.factory;
 
 import com.tcpviewer.lang.wrapper.ThreadWrapper;
 import com.tcpviewer.lang.wrapper.impl.DefaultThreadWrapper;
+import com.tcpviewer.lang.wrapper.impl.VirtualThreads;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Default implementation of ThreadFactory.
  * Creates DefaultThreadWrapper instances that delegate to java.lang.Thread.
+ * In {@link ThreadMode#VIRTUAL} mode, createThread returns virtual threads when the runtime supports them.
  */
 public class DefaultThreadFactory implements ThreadFactory {
 
+    private static final Logger logger = LoggerFactory.getLogger(DefaultThreadFactory.class);
+
+    private final boolean virtual;
+
+    public DefaultThreadFactory() {
+        this(ThreadMode.PLATFORM);
+    }
+
+    public DefaultThreadFactory(ThreadMode mode) {
+        if (mode == ThreadMode.VIRTUAL && !VirtualThreads.isSupported()) {
+            logger.warn("Virtual threads are not supported by Java {}, using platform threads",
+                    Runtime.version().feature());
+        }
+        this.virtual = mode == ThreadMode.VIRTUAL && VirtualThreads.isSupported();
+    }
+
     @Override
     public ThreadWrapper createThread(Runnable target) {
+        if (virtual) {
+            return new DefaultThreadWrapper(VirtualThreads.unstarted(target, null));
+        }
         return new DefaultThreadWrapper(target);
     }
 
     @Override
     public ThreadWrapper createThread(Runnable target, String name) {
+        if (virtual) {
+            return new DefaultThreadWrapper(VirtualThreads.unstarted(target, name));
+        }
         return new DefaultThreadWrapper(target, name);
     }
 
@@ -30,4 +56,9 @@ public class DefaultThreadFactory implements ThreadFactory {
     public ThreadWrapper currentThread() {
         return new DefaultThreadWrapper(Thread.currentThread());
     }
+
+    @Override
+    public boolean isVirtual() {
+        return virtual;
+    }
 }
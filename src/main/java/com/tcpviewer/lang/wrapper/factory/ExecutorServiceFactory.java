@@ -17,4 +17,13 @@ public interface ExecutorServiceFactory {
      * @return an ExecutorServiceWrapper wrapping a cached thread pool
      */
     ExecutorServiceWrapper createCachedThreadPool(ThreadFactory threadFactory);
+
+    /**
+     * Creates an executor service that starts a new thread for every task.
+     * Intended for virtual threads, which are cheap to create and should not be pooled.
+     *
+     * @param threadFactory the thread factory to use for creating task threads
+     * @return an ExecutorServiceWrapper starting one thread per task
+     */
+    ExecutorServiceWrapper createThreadPerTaskExecutor(ThreadFactory threadFactory);
 }
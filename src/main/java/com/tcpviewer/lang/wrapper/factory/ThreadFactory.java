@@ -42,4 +42,12 @@ public interface ThreadFactory {
      * @return a ThreadWrapper wrapping the current thread
      */
     ThreadWrapper currentThread();
+
+    /**
+     * Tells whether createThread produces virtual threads.
+     * Daemon threads are always platform threads, as they serve long-running infrastructure.
+     *
+     * @return true if created threads are virtual
+     */
+    boolean isVirtual();
 }
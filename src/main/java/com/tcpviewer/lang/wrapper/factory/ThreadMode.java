@@ -0,0 +1,17 @@
+package com.tcpviewer.lang.wrapper.factory;
+
+/**
+ * Kind of threads used for connection handlers and forwarders.
+ */
+public enum ThreadMode {
+    /**
+     * Classic platform threads, one OS thread per Java thread.
+     */
+    PLATFORM,
+
+    /**
+     * Virtual threads scheduled by the JVM onto a small carrier pool.
+     * Requires a Java 21+ runtime; older runtimes fall back to platform threads.
+     */
+    VIRTUAL
+}
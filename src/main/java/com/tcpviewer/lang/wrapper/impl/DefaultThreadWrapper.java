@@ -69,8 +69,15 @@ public class DefaultThreadWrapper implements ThreadWrapper {
         return delegate.getName();
     }
 
+    /**
+     * Marks the thread as daemon or user thread. Virtual threads are always daemon threads,
+     * so the call has no effect on them instead of failing.
+     */
     @Override
     public void setDaemon(boolean on) {
+        if (isVirtual()) {
+            return;
+        }
         delegate.setDaemon(on);
     }
 
@@ -84,6 +91,20 @@ public class DefaultThreadWrapper implements ThreadWrapper {
         return delegate.isInterrupted();
     }
 
+    @Override
+    public boolean isVirtual() {
+        return VirtualThreads.isVirtual(delegate);
+    }
+
+    /**
+     * Returns the wrapped thread, for handing it to JDK APIs that require a Thread.
+     *
+     * @return the underlying thread
+     */
+    public Thread unwrap() {
+        return delegate;
+    }
+
     @Override
     public void run() {
         delegate.run();
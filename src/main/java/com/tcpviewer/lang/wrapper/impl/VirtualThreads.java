@@ -0,0 +1,113 @@
+package com.tcpviewer.lang.wrapper.impl;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Access to the virtual thread API of Java 21+ while compiling for Java 17.
+ * The API is looked up reflectively once; on older runtimes {@link #isSupported()}
+ * returns false and the other methods throw UnsupportedOperationException.
+ */
+public final class VirtualThreads {
+
+    private static final MethodHandle OF_VIRTUAL;
+    private static final MethodHandle NAME;
+    private static final MethodHandle UNSTARTED;
+    private static final MethodHandle IS_VIRTUAL;
+    private static final MethodHandle NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        MethodHandle ofVirtual = null;
+        MethodHandle name = null;
+        MethodHandle unstarted = null;
+        MethodHandle isVirtual = null;
+        MethodHandle newThreadPerTaskExecutor = null;
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Class<?> ofVirtualClass = Class.forName("java.lang.Thread$Builder$OfVirtual");
+            ofVirtual = lookup.findStatic(Thread.class, "ofVirtual", MethodType.methodType(ofVirtualClass));
+            name = lookup.findVirtual(builderClass, "name", MethodType.methodType(builderClass, String.class));
+            unstarted = lookup.findVirtual(builderClass, "unstarted", MethodType.methodType(Thread.class, Runnable.class));
+            isVirtual = lookup.findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+            newThreadPerTaskExecutor = lookup.findStatic(java.util.concurrent.Executors.class,
+                    "newThreadPerTaskExecutor", MethodType.methodType(ExecutorService.class, ThreadFactory.class));
+        } catch (ReflectiveOperationException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+        IS_VIRTUAL = isVirtual;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if the running JVM supports virtual threads
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates an unstarted virtual thread.
+     *
+     * @param target the Runnable to execute
+     * @param name   the thread name, or null for an unnamed thread
+     * @return the new virtual thread
+     */
+    public static Thread unstarted(Runnable target, String name) {
+        requireSupported();
+        try {
+            Object builder = OF_VIRTUAL.invoke();
+            if (name != null) {
+                builder = NAME.invoke(builder, name);
+            }
+            return (Thread) UNSTARTED.invoke(builder, target);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot create virtual thread", e);
+        }
+    }
+
+    /**
+     * Creates an executor that starts a new thread from the factory for each task.
+     *
+     * @param threadFactory factory for the task threads
+     * @return the executor service
+     */
+    public static ExecutorService newThreadPerTaskExecutor(ThreadFactory threadFactory) {
+        requireSupported();
+        try {
+            return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(threadFactory);
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot create thread-per-task executor", e);
+        }
+    }
+
+    /**
+     * @param thread the thread to check
+     * @return true if the thread is a virtual thread
+     */
+    public static boolean isVirtual(Thread thread) {
+        if (!isSupported()) {
+            return false;
+        }
+        try {
+            return (boolean) IS_VIRTUAL.invoke(thread);
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+
+    private static void requireSupported() {
+        if (!isSupported()) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+        }
+    }
+}
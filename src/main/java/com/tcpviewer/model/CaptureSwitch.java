@@ -0,0 +1,59 @@
+package com.tcpviewer.model;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides whether the payloads of one connection are captured.
+ * Forwarders check the switch for every chunk they forward, so capture can be turned on
+ * and off while the connection runs. Chunks forwarded while capture is off never become
+ * packets; only their bytes are counted here, and an optional callback is notified so the
+ * counts can be published like captured packets. Thread-safe.
+ */
+public class CaptureSwitch {
+    private volatile boolean enabled;
+    private final AtomicLong clientToServerBytes = new AtomicLong();
+    private final AtomicLong serverToClientBytes = new AtomicLong();
+    private volatile Runnable onPassedThrough;
+
+    public CaptureSwitch(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Counts bytes forwarded without capturing them.
+     */
+    public void addPassedThrough(Direction direction, long bytes) {
+        counter(direction).addAndGet(bytes);
+        Runnable callback = onPassedThrough;
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    /**
+     * Sets the callback run on the forwarding thread after bytes were counted, or null for none.
+     * It runs for every forwarded chunk, so it should only schedule the publishing of the counts.
+     */
+    public void setOnPassedThrough(Runnable onPassedThrough) {
+        this.onPassedThrough = onPassedThrough;
+    }
+
+    /**
+     * @return bytes forwarded in the given direction while capture was off
+     */
+    public long getPassedThroughBytes(Direction direction) {
+        return counter(direction).get();
+    }
+
+    private AtomicLong counter(Direction direction) {
+        return direction == Direction.CLIENT_TO_SERVER ? clientToServerBytes : serverToClientBytes;
+    }
+}
@@ -1,33 +1,73 @@
 package com.tcpviewer.model;
 
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.ReadOnlyLongProperty;
+import javafx.beans.property.ReadOnlyLongWrapper;
+import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleBooleanProperty;
-import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 
 import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Represents metadata and data for a single TCP connection.
  * Uses JavaFX ObservableList for automatic UI updates.
+ * Packets are retained in arrival order in a columnar packet index; the oldest may be evicted to bound memory,
+ * and byte totals are kept as running counters so they never rescan the packets.
+ * Totals per direction include evicted packets; the connection totals are also
+ * exposed as properties, so the UI can observe them without touching the packets.
+ * SSL connections also expose the TLS handshakes on the client and the server side.
+ * Connections are tagged with the name of the listener that accepted them.
+ * Capture can be switched off per connection; bytes forwarded meanwhile are counted
+ * in the byte totals but never become packets, and so are chunks the capture pipeline dropped.
  */
 public class ConnectionInfo {
     private final UUID connectionId;
     private final String clientAddress;
     private final int clientPort;
+    private final String listenerName;
     private final LocalDateTime connectedAt;
     private LocalDateTime disconnectedAt;
     private final SimpleBooleanProperty active;
-    private final ObservableList<DataPacket> dataPackets;
+    private final PacketIndex dataPackets;
+    private long retainedBytes;
+    private long retainedStoredBytes;
+    private long evictedPackets;
+    private long evictedBytes;
+    private final AtomicLong droppedPackets = new AtomicLong();
+    private final AtomicLong droppedBytes = new AtomicLong();
+    private final Map<Direction, DirectionStats> directionStats = new EnumMap<>(Direction.class);
+    private final ReadOnlyLongWrapper totalPackets = new ReadOnlyLongWrapper();
+    private final ReadOnlyLongWrapper totalBytes = new ReadOnlyLongWrapper();
+    private final ReadOnlyObjectWrapper<LocalDateTime> lastActivity = new ReadOnlyObjectWrapper<>();
+    private final ReadOnlyObjectWrapper<TlsHandshake> clientHandshake = new ReadOnlyObjectWrapper<>();
+    private final ReadOnlyObjectWrapper<TlsHandshake> serverHandshake = new ReadOnlyObjectWrapper<>();
+    private final CaptureSwitch captureSwitch = new CaptureSwitch(true);
 
     public ConnectionInfo(UUID connectionId, String clientAddress, int clientPort) {
+        this(connectionId, clientAddress, clientPort, null);
+    }
+
+    /**
+     * @param listenerName name of the listener that accepted the connection, or null if unknown
+     */
+    public ConnectionInfo(UUID connectionId, String clientAddress, int clientPort, String listenerName) {
         this.connectionId = connectionId;
         this.clientAddress = clientAddress;
         this.clientPort = clientPort;
+        this.listenerName = listenerName;
         this.connectedAt = LocalDateTime.now();
         this.active = new SimpleBooleanProperty(true);
-        this.dataPackets = FXCollections.observableArrayList();
+        this.dataPackets = new PacketIndex();
+        for (Direction direction : Direction.values()) {
+            directionStats.put(direction, new DirectionStats());
+        }
     }
 
     public UUID getConnectionId() {
@@ -42,6 +82,13 @@ public class ConnectionInfo {
         return clientPort;
     }
 
+    /**
+     * @return name of the listener that accepted the connection, or null if unknown
+     */
+    public String getListenerName() {
+        return listenerName;
+    }
+
     public LocalDateTime getConnectedAt() {
         return connectedAt;
     }
@@ -58,6 +105,7 @@ public class ConnectionInfo {
         this.active.set(active);
         if (!active) {
             this.disconnectedAt = LocalDateTime.now();
+            updatePassedThrough();
         }
     }
 
@@ -71,16 +119,253 @@ public class ConnectionInfo {
 
     public void addDataPacket(DataPacket packet) {
         dataPackets.add(packet);
+        record(packet);
+        updateTotals();
+    }
+
+    /**
+     * Adds packets in one list change.
+     */
+    public void addDataPackets(List<DataPacket> packets) {
+        dataPackets.addAll(packets);
+        for (DataPacket packet : packets) {
+            record(packet);
+        }
+        updateTotals();
+    }
+
+    /**
+     * Removes the given number of oldest packets in one list change and counts them as evicted.
+     *
+     * @return the bytes evicted
+     */
+    public long evictOldestPackets(int count) {
+        long bytes = 0;
+        long storedBytes = 0;
+        for (int i = 0; i < count; i++) {
+            int size = dataPackets.getSize(i);
+            bytes += size;
+            if (dataPackets.isStored(i)) {
+                storedBytes += size;
+            }
+        }
+        dataPackets.removeFirst(count);
+        retainedBytes -= bytes;
+        retainedStoredBytes -= storedBytes;
+        evictedPackets += count;
+        evictedBytes += bytes;
+        return bytes;
+    }
+
+    /**
+     * Discards all retained packets of a connection that is removed, so a capture store can
+     * reclaim their payloads. The packets are not counted as evicted.
+     */
+    public void discardPackets() {
+        dataPackets.clear();
+        retainedBytes = 0;
+        retainedStoredBytes = 0;
+    }
+
+    /**
+     * Returns the payload size of a retained packet without materializing the packet.
+     */
+    public int getPacketSize(int index) {
+        return dataPackets.getSize(index);
+    }
+
+    /**
+     * Tells whether the payload of a retained packet is kept in a capture store rather than on the heap.
+     */
+    public boolean isPacketStored(int index) {
+        return dataPackets.isStored(index);
+    }
+
+    public int getRetainedPacketCount() {
+        return dataPackets.size();
+    }
+
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * @return the retained payload bytes kept in a capture store, included in the retained bytes
+     */
+    public long getRetainedStoredBytes() {
+        return retainedStoredBytes;
+    }
+
+    public long getEvictedPacketCount() {
+        return evictedPackets;
+    }
+
+    public long getEvictedBytes() {
+        return evictedBytes;
+    }
+
+    /**
+     * Counts a chunk that was forwarded but dropped by a full capture pipeline.
+     * Thread-safe; the total bytes include it from the next {@link #updatePassedThrough()}.
+     */
+    public void addDropped(long bytes) {
+        droppedPackets.incrementAndGet();
+        droppedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * @return chunks forwarded but dropped by a full capture pipeline
+     */
+    public long getDroppedPacketCount() {
+        return droppedPackets.get();
+    }
+
+    public long getDroppedBytes() {
+        return droppedBytes.get();
     }
 
     public String getDisplayName() {
         return String.format("%s:%d", clientAddress, clientPort);
     }
 
+    /**
+     * @return all bytes forwarded on this connection: captured bytes including evicted packets,
+     *         bytes forwarded while capture was off and bytes dropped by the capture pipeline
+     */
     public long getTotalBytes() {
-        return dataPackets.stream()
-                .mapToLong(DataPacket::getSize)
-                .sum();
+        return getStats(Direction.CLIENT_TO_SERVER).getBytes()
+                + getStats(Direction.SERVER_TO_CLIENT).getBytes()
+                + captureSwitch.getPassedThroughBytes(Direction.CLIENT_TO_SERVER)
+                + captureSwitch.getPassedThroughBytes(Direction.SERVER_TO_CLIENT)
+                + droppedBytes.get();
+    }
+
+    /**
+     * @return bytes forwarded in the given direction while capture was off
+     */
+    public long getPassedThroughBytes(Direction direction) {
+        return captureSwitch.getPassedThroughBytes(direction);
+    }
+
+    /**
+     * Publishes the bytes forwarded while capture was off to the direction stats and the total bytes,
+     * which also take in the bytes dropped so far.
+     * Called on the JavaFX thread, batched with the packet updates.
+     */
+    public void updatePassedThrough() {
+        for (Direction direction : Direction.values()) {
+            directionStats.get(direction).setPassedThroughBytes(captureSwitch.getPassedThroughBytes(direction));
+        }
+        totalBytes.set(getTotalBytes());
+    }
+
+    /**
+     * @return the switch the forwarders of this connection check before capturing a chunk
+     */
+    public CaptureSwitch getCaptureSwitch() {
+        return captureSwitch;
+    }
+
+    public boolean isCaptureEnabled() {
+        return captureSwitch.isEnabled();
+    }
+
+    /**
+     * Switches capture of this connection's payloads on or off, effective from the next forwarded chunk.
+     */
+    public void setCaptureEnabled(boolean enabled) {
+        captureSwitch.setEnabled(enabled);
+    }
+
+    /**
+     * @return all packets captured on this connection, including evicted packets
+     */
+    public long getTotalPacketCount() {
+        return getStats(Direction.CLIENT_TO_SERVER).getPacketCount()
+                + getStats(Direction.SERVER_TO_CLIENT).getPacketCount();
+    }
+
+    /**
+     * @return running totals of the packets captured in the given direction
+     */
+    public DirectionStats getStats(Direction direction) {
+        return directionStats.get(direction);
+    }
+
+    public ReadOnlyLongProperty totalBytesProperty() {
+        return totalBytes.getReadOnlyProperty();
+    }
+
+    public ReadOnlyLongProperty totalPacketsProperty() {
+        return totalPackets.getReadOnlyProperty();
+    }
+
+    /**
+     * @return capture time of the latest packet in either direction, null until a packet is captured
+     */
+    public ReadOnlyObjectProperty<LocalDateTime> lastActivityProperty() {
+        return lastActivity.getReadOnlyProperty();
+    }
+
+    /**
+     * Sets the TLS handshakes of this connection. Called on the JavaFX thread.
+     *
+     * @param client handshake between the client and the proxy, or null for plain TCP
+     * @param server handshake between the proxy and the target server, or null for plain TCP
+     */
+    public void setTlsHandshakes(TlsHandshake client, TlsHandshake server) {
+        clientHandshake.set(client);
+        serverHandshake.set(server);
+    }
+
+    public TlsHandshake getClientHandshake() {
+        return clientHandshake.get();
+    }
+
+    public TlsHandshake getServerHandshake() {
+        return serverHandshake.get();
+    }
+
+    /**
+     * @return the handshake between the client and the proxy, null until completed or for plain TCP
+     */
+    public ReadOnlyObjectProperty<TlsHandshake> clientHandshakeProperty() {
+        return clientHandshake.getReadOnlyProperty();
+    }
+
+    /**
+     * @return the handshake between the proxy and the target server, null until completed or for plain TCP
+     */
+    public ReadOnlyObjectProperty<TlsHandshake> serverHandshakeProperty() {
+        return serverHandshake.getReadOnlyProperty();
+    }
+
+    private void record(DataPacket packet) {
+        retainedBytes += packet.getSize();
+        if (packet.getPacketPayload().isStored()) {
+            retainedStoredBytes += packet.getSize();
+        }
+        directionStats.get(packet.getDirection()).record(packet);
+    }
+
+    /**
+     * Publishes the totals once per insert, so a batch of packets fires a single change.
+     */
+    private void updateTotals() {
+        totalPackets.set(getTotalPacketCount());
+        updatePassedThrough();
+        lastActivity.set(latest(getStats(Direction.CLIENT_TO_SERVER).getLastActivity(),
+                getStats(Direction.SERVER_TO_CLIENT).getLastActivity()));
+    }
+
+    private static LocalDateTime latest(LocalDateTime first, LocalDateTime second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        return first.isAfter(second) ? first : second;
     }
 
     @Override
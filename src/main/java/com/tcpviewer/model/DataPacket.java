@@ -1,25 +1,74 @@
 package com.tcpviewer.model;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
-import java.util.Arrays;
+import java.util.function.Function;
 
 /**
  * Represents a single data packet captured from a TCP connection.
+ * The payload is held as a read-only buffer, so it can be shared without copying,
+ * or in a capture store, in which case it is only loaded when it is displayed.
+ * The display text is either given up front or rendered from the payload on request.
  */
 public class DataPacket {
     private final LocalDateTime timestamp;
     private final Direction direction;
-    private final byte[] rawData;
+    private final PacketPayload payload;
     private final DataType dataType;
     private final String displayText;
+    private final Function<PacketPayload, String> textRenderer;
+    // Index and sequence number of the packet a view shows, null and -1 for other packets
+    private final PacketIndex index;
+    private final long sequence;
 
+    /**
+     * Creates a packet holding a copy of the given bytes.
+     */
     public DataPacket(LocalDateTime timestamp, Direction direction, byte[] rawData,
                       DataType dataType, String displayText) {
+        this(timestamp, direction, ByteBuffer.wrap(rawData.clone()), dataType, displayText);
+    }
+
+    /**
+     * Creates a packet over the remaining bytes of the given buffer without copying them.
+     * The packet takes ownership: the caller must not modify the bytes afterwards.
+     */
+    public DataPacket(LocalDateTime timestamp, Direction direction, ByteBuffer payload,
+                      DataType dataType, String displayText) {
+        this(timestamp, direction, PacketPayload.of(payload), dataType, displayText, null);
+    }
+
+    /**
+     * Creates a packet whose display text is rendered from the payload whenever it is requested,
+     * so the packet does not hold a text next to its bytes. The renderer may cache texts by payload.
+     */
+    public DataPacket(LocalDateTime timestamp, Direction direction, PacketPayload payload,
+                      DataType dataType, Function<PacketPayload, String> textRenderer) {
+        this(timestamp, direction, payload, dataType, null, textRenderer);
+    }
+
+    /**
+     * Creates a packet with either a given display text or a renderer.
+     */
+    DataPacket(LocalDateTime timestamp, Direction direction, PacketPayload payload,
+               DataType dataType, String displayText, Function<PacketPayload, String> textRenderer) {
+        this(null, -1, timestamp, direction, payload, dataType, displayText, textRenderer);
+    }
+
+    /**
+     * Creates a view of the packet with the given sequence number in a packet index.
+     */
+    DataPacket(PacketIndex index, long sequence, LocalDateTime timestamp, Direction direction,
+               PacketPayload payload, DataType dataType, String displayText,
+               Function<PacketPayload, String> textRenderer) {
+        this.index = index;
+        this.sequence = sequence;
         this.timestamp = timestamp;
         this.direction = direction;
-        this.rawData = Arrays.copyOf(rawData, rawData.length);
+        this.payload = payload;
         this.dataType = dataType;
         this.displayText = displayText;
+        this.textRenderer = textRenderer;
     }
 
     public LocalDateTime getTimestamp() {
@@ -30,8 +79,26 @@ public class DataPacket {
         return direction;
     }
 
+    /**
+     * Returns a read-only view of the payload, positioned at its start.
+     * Each call returns an independent view; the bytes themselves are not copied.
+     *
+     * @return read-only buffer over the payload
+     */
+    public ByteBuffer getPayload() {
+        return payload.read();
+    }
+
+    /**
+     * Returns a copy of the payload. Prefer {@link #getPayload()}, which does not copy.
+     *
+     * @return a new array holding the payload
+     */
     public byte[] getRawData() {
-        return Arrays.copyOf(rawData, rawData.length);
+        ByteBuffer view = payload.read();
+        byte[] copy = new byte[view.remaining()];
+        view.get(copy);
+        return copy;
     }
 
     public DataType getDataType() {
@@ -39,16 +106,50 @@ public class DataPacket {
     }
 
     public String getDisplayText() {
-        return displayText;
+        return displayText != null ? displayText : textRenderer.apply(payload);
     }
 
     public int getSize() {
-        return rawData.length;
+        return payload.size();
+    }
+
+    PacketPayload getPacketPayload() {
+        return payload;
+    }
+
+    /**
+     * @return the display text given when the packet was created, or null if it is rendered on demand
+     */
+    String getGivenDisplayText() {
+        return displayText;
+    }
+
+    Function<PacketPayload, String> getTextRenderer() {
+        return textRenderer;
+    }
+
+    /**
+     * Views of a packet index are equal if they show the same packet of the same index, so a view
+     * materialized again equals the one handed out before. Other packets are only equal to themselves.
+     * Payloads are never compared, as they may have to be loaded from a capture store.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass() || index == null) return false;
+        DataPacket that = (DataPacket) o;
+        return index == that.index && sequence == that.sequence;
+    }
+
+    @Override
+    public int hashCode() {
+        return index != null ? 31 * System.identityHashCode(index) + Long.hashCode(sequence)
+                : System.identityHashCode(this);
     }
 
     @Override
     public String toString() {
         return String.format("%s [%s] %s - %d bytes",
-                timestamp, direction, dataType, rawData.length);
+                timestamp, direction, dataType, payload.size());
     }
 }
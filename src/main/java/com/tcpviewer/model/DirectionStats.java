@@ -0,0 +1,60 @@
+package com.tcpviewer.model;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Running totals of the packets captured in one direction of a connection,
+ * and of the bytes forwarded without capture as last published.
+ * Totals include evicted packets. They are updated on the JavaFX thread and
+ * may be read from any thread.
+ */
+public class DirectionStats {
+    private final AtomicLong packets = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private volatile long passedThroughBytes;
+    private volatile LocalDateTime firstActivity;
+    private volatile LocalDateTime lastActivity;
+
+    void record(DataPacket packet) {
+        packets.incrementAndGet();
+        bytes.addAndGet(packet.getSize());
+        if (firstActivity == null) {
+            firstActivity = packet.getTimestamp();
+        }
+        lastActivity = packet.getTimestamp();
+    }
+
+    void setPassedThroughBytes(long passedThroughBytes) {
+        this.passedThroughBytes = passedThroughBytes;
+    }
+
+    public long getPacketCount() {
+        return packets.get();
+    }
+
+    public long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return bytes forwarded while capture was off, as of the latest published update
+     */
+    public long getPassedThroughBytes() {
+        return passedThroughBytes;
+    }
+
+    /**
+     * @return capture time of the first packet, or null if none was captured
+     */
+    public LocalDateTime getFirstActivity() {
+        return firstActivity;
+    }
+
+    /**
+     * @return capture time of the latest packet, or null if none was captured
+     */
+    public LocalDateTime getLastActivity() {
+        return lastActivity;
+    }
+}
@@ -0,0 +1,36 @@
+package com.tcpviewer.model;
+
+/**
+ * Enum representing the engine used to forward bytes between client and target.
+ */
+public enum ForwardingMode {
+    /**
+     * One connection handler thread plus two blocking forwarder threads per connection
+     */
+    BLOCKING("Blocking threads"),
+
+    /**
+     * Non-blocking channels multiplexed over a small set of selector event loops
+     */
+    NIO("NIO selector");
+
+    private final String displayName;
+
+    ForwardingMode(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Gets the user-friendly display name for this forwarding mode.
+     *
+     * @return the display name
+     */
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}
@@ -0,0 +1,63 @@
+package com.tcpviewer.model;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Payload held in a read-only heap buffer.
+ * Payloads over the same range of the same array are equal, so a packet index view materialized
+ * again has a payload equal to the earlier one; other payloads are only equal to themselves.
+ */
+final class HeapPayload implements PacketPayload {
+
+    private final ByteBuffer buffer;
+    // Backing array of the payload, null if the buffer given has no accessible array
+    private final byte[] array;
+    private final int offset;
+
+    HeapPayload(ByteBuffer source) {
+        this.buffer = source.asReadOnlyBuffer();
+        this.array = source.hasArray() ? source.array() : null;
+        this.offset = source.hasArray() ? source.arrayOffset() + source.position() : 0;
+    }
+
+    @Override
+    public int size() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public ByteBuffer read() {
+        return buffer.duplicate();
+    }
+
+    @Override
+    public <T> T applyToBytes(ByteRangeFunction<T> function) {
+        return array != null ? function.apply(array, offset, size()) : PacketPayload.super.applyToBytes(function);
+    }
+
+    /**
+     * @return true if the payload lies in one of the given arrays
+     */
+    boolean isOverAny(List<byte[]> arrays) {
+        for (byte[] candidate : arrays) {
+            if (array == candidate) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof HeapPayload that) || array == null) return false;
+        return array == that.array && offset == that.offset && size() == that.size();
+    }
+
+    @Override
+    public int hashCode() {
+        return array != null ? (31 * System.identityHashCode(array) + offset) * 31 + size()
+                : System.identityHashCode(this);
+    }
+}
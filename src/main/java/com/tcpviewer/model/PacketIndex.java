@@ -0,0 +1,406 @@
+package com.tcpviewer.model;
+
+import javafx.collections.ObservableListBase;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Observable list of the packets of one connection, stored in columns instead of packet objects.
+ * Each packet takes a timestamp in nanoseconds, a direction bit, and an offset and a length into
+ * a payload arena shared by the connection's packets, in circular arrays like a ring buffer.
+ * The arena is a list of chunks that are filled in order and dropped once all their packets are
+ * removed; chunks are never written twice, so nothing is moved when the arena grows.
+ * Small payloads are copied to the arena, where the per-packet overhead matters. Larger payloads,
+ * and payloads kept by a capture store, are referenced instead.
+ * <p>
+ * A {@link DataPacket} view is only materialized when an element is requested, typically for the
+ * visible cells of a list view; the views requested most recently are kept, so repeated requests
+ * return the same view. A view materialized again equals the earlier view of the same packet,
+ * and so does its payload, so texts cached by payload are found again.
+ * Views stay valid after their packet is removed.
+ * <p>
+ * Appending and removing the oldest packets are supported; other modifications are not.
+ * Not thread-safe; like any observable list bound to the UI it is modified on the JavaFX thread.
+ */
+public class PacketIndex extends ObservableListBase<DataPacket> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int MIN_CHUNK_SIZE = 1024;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024;
+    private static final int MAX_ARENA_PAYLOAD = 4096;
+    // An arena offset holds the chunk number in the upper and the position in the lower 16 bits
+    private static final int CHUNK_NUMBER_MASK = 0x7FFF;
+    private static final int POSITION_BITS = 16;
+    private static final int VIEW_CACHE_SIZE = 256;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // Own text of a packet created with neither a display text nor a renderer
+    private static final Object NO_TEXT = new Object();
+
+    private long[] timestamps = new long[INITIAL_CAPACITY];
+    private long[] serverToClient = new long[bitWords(INITIAL_CAPACITY)];
+    private long[] binary = new long[bitWords(INITIAL_CAPACITY)];
+    private int[] offsets = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    // Payloads referenced instead of copied to the arena, allocated once the first one is added
+    private PacketPayload[] payloads;
+    private int head;
+    private int size;
+    // Sequence number of the oldest retained packet, which is the number of packets removed so far
+    private long firstSequence;
+
+    private final List<byte[]> chunks = new ArrayList<>();
+    // Number of the first chunk in the list; chunk numbers are counted modulo the mask
+    private int firstChunkNumber;
+    private int writePosition;
+
+    // Text renderer shared by the packets; packets with their own text or renderer are the exception
+    private Function<PacketPayload, String> textRenderer;
+    // Own display text or renderer per slot, null for the shared renderer; allocated once the first one is added
+    private Object[] texts;
+
+    // Access order: the eldest view is the least recently requested
+    private final Map<Long, DataPacket> views = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, DataPacket> eldest) {
+            return size() > VIEW_CACHE_SIZE;
+        }
+    };
+
+    @Override
+    public DataPacket get(int index) {
+        Objects.checkIndex(index, size);
+        long sequence = firstSequence + index;
+        DataPacket view = views.get(sequence);
+        if (view == null) {
+            view = materialize(slot(index), sequence);
+            views.put(sequence, view);
+        }
+        return view;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the payload size of a packet without materializing it.
+     */
+    public int getSize(int index) {
+        Objects.checkIndex(index, size);
+        return lengths[slot(index)];
+    }
+
+    /**
+     * Tells whether the payload of a packet is kept in a capture store, without materializing it.
+     */
+    public boolean isStored(int index) {
+        Objects.checkIndex(index, size);
+        int slot = slot(index);
+        return offsets[slot] < 0 && payloads[slot].isStored();
+    }
+
+    @Override
+    public boolean add(DataPacket packet) {
+        store(packet);
+
+        beginChange();
+        nextAdd(size - 1, size);
+        endChange();
+        return true;
+    }
+
+    /**
+     * Appends all packets, reported as a single change.
+     */
+    @Override
+    public boolean addAll(Collection<? extends DataPacket> added) {
+        if (added.isEmpty()) {
+            return false;
+        }
+        int from = size;
+        for (DataPacket packet : added) {
+            store(packet);
+        }
+
+        beginChange();
+        nextAdd(from, size);
+        endChange();
+        return true;
+    }
+
+    /**
+     * Appends the packet; inserting anywhere but at the end is not supported.
+     */
+    @Override
+    public void add(int index, DataPacket packet) {
+        if (index != size) {
+            throw new UnsupportedOperationException("Packets can only be appended");
+        }
+        add(packet);
+    }
+
+    /**
+     * Removes the given number of oldest packets, reported as a single change.
+     * The removed packets are only materialized if a listener requests them; their payloads
+     * and arena chunks are released once the change has been reported.
+     *
+     * @param count the number of packets to remove
+     * @throws IndexOutOfBoundsException if the index holds fewer packets
+     */
+    public void removeFirst(int count) {
+        Objects.checkFromIndexSize(0, count, size);
+        if (count == 0) {
+            return;
+        }
+        int removedHead = head;
+        long removedSequence = firstSequence;
+        head = (head + count) & (timestamps.length - 1);
+        size -= count;
+        firstSequence += count;
+
+        beginChange();
+        nextRemove(0, new RemovedPackets(removedHead, removedSequence, count));
+        endChange();
+
+        release(removedHead, count);
+    }
+
+    @Override
+    public void clear() {
+        removeFirst(size);
+    }
+
+    /**
+     * Releases the payloads, texts, views and arena chunks of removed packets,
+     * and tells a caching text renderer which payloads are gone.
+     */
+    private void release(int removedHead, int count) {
+        boolean notify = textRenderer instanceof TextRenderer;
+        Set<PacketPayload> released = notify ? Collections.newSetFromMap(new IdentityHashMap<>()) : null;
+        int lastRemovedChunk = -1;
+        for (int i = 0; i < count; i++) {
+            int slot = (removedHead + i) & (timestamps.length - 1);
+            if (offsets[slot] >= 0) {
+                lastRemovedChunk = chunkIndex(offsets[slot]);
+            } else {
+                payloads[slot].release();
+                if (notify) {
+                    released.add(payloads[slot]);
+                }
+                payloads[slot] = null;
+            }
+            if (texts != null) {
+                texts[slot] = null;
+            }
+        }
+        views.keySet().removeIf(sequence -> sequence < firstSequence);
+
+        // Packets are appended in order, so the chunks before the last removed payload's chunk are unused,
+        // and all chunks are once no packet is left
+        int unusedChunks = size == 0 ? chunks.size() : Math.max(lastRemovedChunk, 0);
+        List<byte[]> droppedChunks = notify && unusedChunks > 0
+                ? List.copyOf(chunks.subList(0, unusedChunks)) : List.of();
+        if (unusedChunks > 0) {
+            chunks.subList(0, unusedChunks).clear();
+            firstChunkNumber = (firstChunkNumber + unusedChunks) & CHUNK_NUMBER_MASK;
+        }
+
+        if (notify && (!released.isEmpty() || !droppedChunks.isEmpty())) {
+            ((TextRenderer) textRenderer).discarded(payload -> released.contains(payload)
+                    || payload instanceof HeapPayload heapPayload && heapPayload.isOverAny(droppedChunks));
+        }
+    }
+
+    private void store(DataPacket packet) {
+        if (size == timestamps.length) {
+            grow();
+        }
+        int slot = slot(size);
+        timestamps[slot] = toNanos(packet.getTimestamp());
+        setBit(serverToClient, slot, packet.getDirection() == Direction.SERVER_TO_CLIENT);
+        setBit(binary, slot, packet.getDataType() == DataType.BINARY);
+
+        PacketPayload payload = packet.getPacketPayload();
+        int length = payload.size();
+        lengths[slot] = length;
+        if (payload instanceof HeapPayload && length <= MAX_ARENA_PAYLOAD) {
+            offsets[slot] = appendToArena(payload.read(), length);
+            if (payloads != null) {
+                payloads[slot] = null;
+            }
+        } else {
+            offsets[slot] = -1;
+            if (payloads == null) {
+                payloads = new PacketPayload[timestamps.length];
+            }
+            payloads[slot] = payload;
+        }
+
+        Function<PacketPayload, String> renderer = packet.getTextRenderer();
+        if (textRenderer == null && renderer != null) {
+            textRenderer = renderer;
+        }
+        Object ownText = null;
+        if (renderer == null) {
+            String displayText = packet.getGivenDisplayText();
+            ownText = displayText != null ? displayText : NO_TEXT;
+        } else if (renderer != textRenderer) {
+            ownText = renderer;
+        }
+        if (ownText != null && texts == null) {
+            texts = new Object[timestamps.length];
+        }
+        if (texts != null) {
+            texts[slot] = ownText;
+        }
+        size++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private DataPacket materialize(int slot, long sequence) {
+        long nanos = timestamps[slot];
+        LocalDateTime timestamp = LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, NANOS_PER_SECOND),
+                (int) Math.floorMod(nanos, NANOS_PER_SECOND), ZoneOffset.UTC);
+        Direction direction = getBit(serverToClient, slot) ? Direction.SERVER_TO_CLIENT : Direction.CLIENT_TO_SERVER;
+        DataType dataType = getBit(binary, slot) ? DataType.BINARY : DataType.TEXT;
+        int offset = offsets[slot];
+        PacketPayload payload = offset >= 0
+                ? PacketPayload.of(ByteBuffer.wrap(chunks.get(chunkIndex(offset)), offset & ((1 << POSITION_BITS) - 1), lengths[slot]))
+                : payloads[slot];
+
+        Object text = texts != null ? texts[slot] : null;
+        if (text == null) {
+            return new DataPacket(this, sequence, timestamp, direction, payload, dataType, null, textRenderer);
+        }
+        return text instanceof Function<?, ?> renderer
+                ? new DataPacket(this, sequence, timestamp, direction, payload, dataType, null,
+                (Function<PacketPayload, String>) renderer)
+                : new DataPacket(this, sequence, timestamp, direction, payload, dataType,
+                text != NO_TEXT ? (String) text : null, null);
+    }
+
+    /**
+     * Copies a payload to the end of the arena, starting a new chunk if it does not fit the last one.
+     *
+     * @return the arena offset of the payload
+     */
+    private int appendToArena(ByteBuffer payload, int length) {
+        byte[] chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (chunk == null || length > chunk.length - writePosition) {
+            // Chunks grow with the connection, so connections with few packets stay small
+            int chunkSize = chunk == null ? MIN_CHUNK_SIZE : Math.min(MAX_CHUNK_SIZE, chunk.length * 2);
+            chunk = new byte[Math.max(chunkSize, length)];
+            chunks.add(chunk);
+            writePosition = 0;
+        }
+        payload.get(chunk, writePosition, length);
+        int chunkNumber = (firstChunkNumber + chunks.size() - 1) & CHUNK_NUMBER_MASK;
+        int offset = chunkNumber << POSITION_BITS | writePosition;
+        writePosition += length;
+        return offset;
+    }
+
+    private int chunkIndex(int offset) {
+        return ((offset >>> POSITION_BITS) - firstChunkNumber) & CHUNK_NUMBER_MASK;
+    }
+
+    private void grow() {
+        int capacity = timestamps.length << 1;
+        long[] grownTimestamps = new long[capacity];
+        long[] grownServerToClient = new long[bitWords(capacity)];
+        long[] grownBinary = new long[bitWords(capacity)];
+        int[] grownOffsets = new int[capacity];
+        int[] grownLengths = new int[capacity];
+        PacketPayload[] grownPayloads = payloads != null ? new PacketPayload[capacity] : null;
+        Object[] grownTexts = texts != null ? new Object[capacity] : null;
+        for (int i = 0; i < size; i++) {
+            int slot = slot(i);
+            grownTimestamps[i] = timestamps[slot];
+            setBit(grownServerToClient, i, getBit(serverToClient, slot));
+            setBit(grownBinary, i, getBit(binary, slot));
+            grownOffsets[i] = offsets[slot];
+            grownLengths[i] = lengths[slot];
+            if (grownPayloads != null) {
+                grownPayloads[i] = payloads[slot];
+            }
+            if (grownTexts != null) {
+                grownTexts[i] = texts[slot];
+            }
+        }
+        timestamps = grownTimestamps;
+        serverToClient = grownServerToClient;
+        binary = grownBinary;
+        offsets = grownOffsets;
+        lengths = grownLengths;
+        payloads = grownPayloads;
+        texts = grownTexts;
+        head = 0;
+    }
+
+    /**
+     * Packets reported as removed, materialized when a listener requests them.
+     * Like the change reporting them, only valid until the listeners have returned.
+     */
+    private final class RemovedPackets extends AbstractList<DataPacket> {
+        private final int head;
+        private final long firstSequence;
+        private final int size;
+
+        RemovedPackets(int head, long firstSequence, int size) {
+            this.head = head;
+            this.firstSequence = firstSequence;
+            this.size = size;
+        }
+
+        @Override
+        public DataPacket get(int index) {
+            Objects.checkIndex(index, size);
+            long sequence = firstSequence + index;
+            DataPacket view = views.get(sequence);
+            return view != null ? view : materialize((head + index) & (timestamps.length - 1), sequence);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+
+    private int slot(int index) {
+        return (head + index) & (timestamps.length - 1);
+    }
+
+    private static long toNanos(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * NANOS_PER_SECOND + timestamp.getNano();
+    }
+
+    private static int bitWords(int capacity) {
+        return (capacity + 63) >>> 6;
+    }
+
+    private static boolean getBit(long[] bits, int index) {
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private static void setBit(long[] bits, int index, boolean value) {
+        if (value) {
+            bits[index >>> 6] |= 1L << index;
+        } else {
+            bits[index >>> 6] &= ~(1L << index);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.tcpviewer.model;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The bytes of a captured packet, held on the heap or in a capture store.
+ */
+public interface PacketPayload {
+
+    /**
+     * Wraps the remaining bytes of a buffer without copying them.
+     * The payload takes ownership: the caller must not modify the bytes afterwards.
+     * Payloads wrapping the same range of the same array are equal.
+     */
+    static PacketPayload of(ByteBuffer buffer) {
+        return new HeapPayload(buffer.slice());
+    }
+
+    /**
+     * @return the payload length in bytes
+     */
+    int size();
+
+    /**
+     * Returns a read-only view of the payload, positioned at its start.
+     * Stored payloads are loaded when this is called; the view must not be kept longer than needed.
+     *
+     * @return read-only buffer over the payload
+     */
+    ByteBuffer read();
+
+    /**
+     * Applies a function to the payload bytes as a range of an array. Heap payloads pass their
+     * backing array without copying it; other payloads are copied to a new array first.
+     * The function must neither modify the bytes nor keep the array.
+     *
+     * @param function receives the array, the offset of the payload in it and its length
+     * @return the result of the function
+     */
+    default <T> T applyToBytes(ByteRangeFunction<T> function) {
+        ByteBuffer view = read();
+        byte[] data = new byte[view.remaining()];
+        view.get(data);
+        return function.apply(data, 0, data.length);
+    }
+
+    /**
+     * @return true if the bytes are kept in a capture store rather than on the heap
+     */
+    default boolean isStored() {
+        return false;
+    }
+
+    /**
+     * Called once the packet holding the payload has been discarded, so a capture store can
+     * reclaim its space. Buffers read before stay valid.
+     */
+    default void release() {
+    }
+
+    /**
+     * Function of a range of a byte array.
+     */
+    @FunctionalInterface
+    interface ByteRangeFunction<T> {
+        T apply(byte[] data, int offset, int length);
+    }
+}
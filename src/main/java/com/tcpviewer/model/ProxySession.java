@@ -14,9 +14,35 @@ public class ProxySession {
     private final LocalDateTime startTime;
     private final boolean ssl;
     private final String sslHostName;
+    private final ForwardingMode forwardingMode;
+    private final boolean sni;
+    private final boolean capture;
     private boolean active;
 
     public ProxySession(String localIp, int localPort, String targetHost, int targetPort, boolean ssl, String sslHostName) {
+        this(localIp, localPort, targetHost, targetPort, ssl, sslHostName, ForwardingMode.BLOCKING);
+    }
+
+    public ProxySession(String localIp, int localPort, String targetHost, int targetPort, boolean ssl, String sslHostName,
+                        ForwardingMode forwardingMode) {
+        this(localIp, localPort, targetHost, targetPort, ssl, sslHostName, forwardingMode, false);
+    }
+
+    /**
+     * @param sni if true, an SSL session presents a certificate for the host name each client requests
+     *            via SNI, and sslHostName is only used for clients not sending SNI
+     */
+    public ProxySession(String localIp, int localPort, String targetHost, int targetPort, boolean ssl, String sslHostName,
+                        ForwardingMode forwardingMode, boolean sni) {
+        this(localIp, localPort, targetHost, targetPort, ssl, sslHostName, forwardingMode, sni, true);
+    }
+
+    /**
+     * @param capture if false, connections of the session are forwarded without capturing their payloads;
+     *                capture can still be turned on for single connections
+     */
+    public ProxySession(String localIp, int localPort, String targetHost, int targetPort, boolean ssl, String sslHostName,
+                        ForwardingMode forwardingMode, boolean sni, boolean capture) {
         this.localIp = localIp;
         this.localPort = localPort;
         this.targetHost = targetHost;
@@ -24,6 +50,9 @@ public class ProxySession {
         this.startTime = LocalDateTime.now();
         this.ssl = ssl;
         this.sslHostName = sslHostName;
+        this.forwardingMode = forwardingMode != null ? forwardingMode : ForwardingMode.BLOCKING;
+        this.sni = ssl && sni;
+        this.capture = capture;
         this.active = false;
     }
 
@@ -55,6 +84,18 @@ public class ProxySession {
         return sslHostName;
     }
 
+    public ForwardingMode getForwardingMode() {
+        return forwardingMode;
+    }
+
+    public boolean isSni() {
+        return sni;
+    }
+
+    public boolean isCapture() {
+        return capture;
+    }
+
     public boolean isActive() {
         return active;
     }
@@ -63,14 +104,29 @@ public class ProxySession {
         this.active = active;
     }
 
+    /**
+     * @return the local address the session listens on, which names its listener
+     */
+    public String getListenerName() {
+        return localIp + ":" + localPort;
+    }
+
     public String getDisplayInfo() {
+        String info;
         if (!ssl) {
-            return String.format("Plain %s:%d → %s:%d",
+            info = String.format("Plain %s:%d → %s:%d",
                     localIp, localPort, targetHost, targetPort);
         } else {
-            return String.format("SSL %s:%d → %s(%s):%d",
-                    localIp, localPort, sslHostName, targetHost, targetPort);
+            info = String.format("SSL %s:%d → %s(%s):%d",
+                    localIp, localPort, sni ? "SNI" : sslHostName, targetHost, targetPort);
+        }
+        if (forwardingMode != ForwardingMode.BLOCKING) {
+            info += " [" + forwardingMode.getDisplayName() + "]";
+        }
+        if (!capture) {
+            info += " [passthrough]";
         }
+        return info;
     }
 
     @Override
@@ -84,11 +140,11 @@ public class ProxySession {
     public boolean equals(Object o) {
         if (o == null || getClass() != o.getClass()) return false;
         ProxySession that = (ProxySession) o;
-        return localPort == that.localPort && targetPort == that.targetPort && ssl == that.ssl && active == that.active && Objects.equals(localIp, that.localIp) && Objects.equals(targetHost, that.targetHost) && Objects.equals(startTime, that.startTime) && Objects.equals(sslHostName, that.sslHostName);
+        return localPort == that.localPort && targetPort == that.targetPort && ssl == that.ssl && active == that.active && Objects.equals(localIp, that.localIp) && Objects.equals(targetHost, that.targetHost) && Objects.equals(startTime, that.startTime) && Objects.equals(sslHostName, that.sslHostName) && forwardingMode == that.forwardingMode && sni == that.sni && capture == that.capture;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(localIp, localPort, targetHost, targetPort, startTime, ssl, sslHostName, active);
+        return Objects.hash(localIp, localPort, targetHost, targetPort, startTime, ssl, sslHostName, forwardingMode, sni, capture, active);
     }
 }
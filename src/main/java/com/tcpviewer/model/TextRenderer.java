@@ -0,0 +1,20 @@
+package com.tcpviewer.model;
+
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Renders the display text of packet payloads when it is requested.
+ * A renderer caching texts by payload is told when packets are discarded, so its cache does not
+ * keep the payloads, and the arena chunks behind them, of packets that are gone.
+ */
+public interface TextRenderer extends Function<PacketPayload, String> {
+
+    /**
+     * Called on the JavaFX thread after a packet index has discarded packets. By default nothing is cached.
+     *
+     * @param discarded matches the payloads of discarded packets whose bytes are no longer retained
+     */
+    default void discarded(Predicate<PacketPayload> discarded) {
+    }
+}
@@ -0,0 +1,17 @@
+package com.tcpviewer.model;
+
+/**
+ * Outcome of the TLS handshake on one side of a proxied connection.
+ *
+ * @param protocol       negotiated protocol, for example TLSv1.3
+ * @param cipherSuite    negotiated cipher suite
+ * @param resumed        true if a cached session was resumed, false for a full handshake
+ * @param durationMicros time the handshake took in microseconds
+ */
+public record TlsHandshake(String protocol, String cipherSuite, boolean resumed, long durationMicros) {
+
+    public String getDisplayText() {
+        return String.format("%s %s, %s in %.1f ms", protocol, cipherSuite,
+                resumed ? "resumed" : "full handshake", durationMicros / 1000.0);
+    }
+}
@@ -0,0 +1,21 @@
+package com.tcpviewer.proxy;
+
+/**
+ * How a proxy listener accepts connections.
+ *
+ * @param acceptors number of threads accepting connections, at least 1
+ * @param backlog   maximum number of pending connections per server socket, 0 for the platform default
+ */
+public record AcceptorSettings(int acceptors, int backlog) {
+
+    /**
+     * One acceptor with the platform's default backlog.
+     */
+    public static final AcceptorSettings DEFAULT = new AcceptorSettings(1, 0);
+
+    public AcceptorSettings {
+        if (acceptors < 1) {
+            throw new IllegalArgumentException("Acceptor count must be positive: " + acceptors);
+        }
+    }
+}
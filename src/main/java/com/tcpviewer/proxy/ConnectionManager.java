@@ -4,19 +4,33 @@ import com.tcpviewer.io.wrapper.SocketWrapper;
 import com.tcpviewer.javafx.wrapper.PlatformWrapper;
 import com.tcpviewer.model.ConnectionInfo;
 import com.tcpviewer.model.DataPacket;
+import com.tcpviewer.model.TlsHandshake;
+import com.tcpviewer.util.TimerWheel;
 import javafx.beans.Observable;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Manages active TCP connections and their data.
  * Thread-safe registry with JavaFX UI integration.
+ * Active and closed connections are counted on register and close, so the counts never
+ * scan the registry; closed connections are removed by the optional reaper.
  */
 @Service
 public class ConnectionManager {
@@ -24,13 +38,38 @@ public class ConnectionManager {
     private static final Logger logger = LoggerFactory.getLogger(ConnectionManager.class);
 
     private final PlatformWrapper platformWrapper;
+    private final PacketRetention packetRetention;
+    private final ConnectionReaper connectionReaper;
+    private final TimerWheel timerWheel;
     private final ConcurrentHashMap<UUID, ConnectionInfo> connections = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UUID, PendingPackets> pendingPackets = new ConcurrentHashMap<>();
+    private final Set<UUID> closedConnectionIds = ConcurrentHashMap.newKeySet();
+    private final LongAdder activeConnections = new LongAdder();
+    private final LongAdder closedConnections = new LongAdder();
+    private final LongAdder fullHandshakes = new LongAdder();
+    private final LongAdder resumedHandshakes = new LongAdder();
     private final ObservableList<ConnectionInfo> connectionList = FXCollections.observableArrayList(
-            connection -> new Observable[] { connection.activeProperty(), connection.getDataPackets() }
+            connection -> new Observable[] { connection.activeProperty(), connection.totalBytesProperty(),
+                    connection.clientHandshakeProperty() }
     );
 
-    public ConnectionManager(PlatformWrapper platformWrapper) {
+    // Single pending age check for the oldest closed connection; accessed on the JavaFX thread
+    private TimerWheel.Timeout reapTimeout;
+    private int reapGeneration;
+
+    /**
+     * @param platformWrapper applies the updates on the JavaFX thread, batched into frames
+     * @param packetRetention  bounds the packets kept in memory, or null to keep all packets
+     * @param connectionReaper removes closed connections, or null to keep all connections
+     * @param timerWheel       times the removal of closed connections by age, or null to check age on close only
+     */
+    public ConnectionManager(@Qualifier("batchingPlatformWrapper") PlatformWrapper platformWrapper,
+                             PacketRetention packetRetention, ConnectionReaper connectionReaper,
+                             TimerWheel timerWheel) {
         this.platformWrapper = platformWrapper;
+        this.packetRetention = packetRetention;
+        this.connectionReaper = connectionReaper;
+        this.timerWheel = timerWheel;
     }
 
     /**
@@ -41,11 +80,26 @@ public class ConnectionManager {
      * @return The created ConnectionInfo object
      */
     public ConnectionInfo registerConnection(UUID connectionId, SocketWrapper clientSocket) {
+        return registerConnection(connectionId, clientSocket, null);
+    }
+
+    /**
+     * Registers a new connection accepted by a listener.
+     *
+     * @param connectionId   The unique connection identifier
+     * @param clientSocket   The client socket
+     * @param listenerName   Name of the listener that accepted the connection, or null if unknown
+     * @return The created ConnectionInfo object
+     */
+    public ConnectionInfo registerConnection(UUID connectionId, SocketWrapper clientSocket, String listenerName) {
         String clientAddress = clientSocket.getInetAddress().getHostAddress();
         int clientPort = clientSocket.getPort();
 
-        ConnectionInfo connectionInfo = new ConnectionInfo(connectionId, clientAddress, clientPort);
-        connections.put(connectionId, connectionInfo);
+        ConnectionInfo connectionInfo = new ConnectionInfo(connectionId, clientAddress, clientPort, listenerName);
+        if (connections.put(connectionId, connectionInfo) == null) {
+            activeConnections.increment();
+        }
+        publishPassedThrough(connectionInfo);
 
         // Update UI on JavaFX thread
         platformWrapper.runLater(() -> connectionList.add(connectionInfo));
@@ -59,7 +113,10 @@ public class ConnectionManager {
      */
     public ConnectionInfo registerConnection(UUID connectionId, String clientAddress, int clientPort) {
         ConnectionInfo connectionInfo = new ConnectionInfo(connectionId, clientAddress, clientPort);
-        connections.put(connectionId, connectionInfo);
+        if (connections.put(connectionId, connectionInfo) == null) {
+            activeConnections.increment();
+        }
+        publishPassedThrough(connectionInfo);
 
         // Update UI on JavaFX thread
         platformWrapper.runLater(() -> connectionList.add(connectionInfo));
@@ -69,7 +126,9 @@ public class ConnectionManager {
     }
 
     /**
-     * Adds a data packet to a connection.
+     * Adds a data packet to a connection, evicting old packets if retention limits are exceeded.
+     * Packets arriving before the connection's previous update ran are added together with it,
+     * so a burst of packets changes the packet list once.
      *
      * @param connectionId The connection identifier
      * @param packet       The data packet to add
@@ -77,22 +136,65 @@ public class ConnectionManager {
     public void addDataPacket(UUID connectionId, DataPacket packet) {
         ConnectionInfo connection = connections.get(connectionId);
         if (connection != null) {
-            // Update UI on JavaFX thread
-            platformWrapper.runLater(() -> connection.addDataPacket(packet));
+            PendingPackets pending = pendingPackets.computeIfAbsent(connectionId, id -> new PendingPackets());
+            pending.packets.add(packet);
+            scheduleUpdate(connection, pending);
         } else {
             logger.warn("Attempted to add data to unknown connection: {}", connectionId);
         }
     }
 
     /**
-     * Marks a connection as closed.
+     * Counts data a connection forwarded but the capture pipeline dropped, and publishes it
+     * with the connection's next packet update. Called on the forwarding thread.
      *
      * @param connectionId The connection identifier
+     * @param bytes        The number of bytes dropped
      */
-    public void closeConnection(UUID connectionId) {
+    public void addDroppedData(UUID connectionId, int bytes) {
         ConnectionInfo connection = connections.get(connectionId);
         if (connection != null) {
-            platformWrapper.runLater(() -> connection.setActive(false));
+            connection.addDropped(bytes);
+            scheduleUpdate(connection, pendingPackets.computeIfAbsent(connectionId, id -> new PendingPackets()));
+        }
+    }
+
+    /**
+     * Records the TLS handshakes of an SSL connection and counts them as full or resumed.
+     *
+     * @param connectionId The connection identifier
+     * @param client       handshake between the client and the proxy, or null if none took place
+     * @param server       handshake between the proxy and the target server, or null if none took place
+     */
+    public void setTlsHandshakes(UUID connectionId, TlsHandshake client, TlsHandshake server) {
+        ConnectionInfo connection = connections.get(connectionId);
+        if (connection != null) {
+            countHandshake(client);
+            countHandshake(server);
+            platformWrapper.runLater(() -> connection.setTlsHandshakes(client, server));
+        } else {
+            logger.warn("Attempted to set TLS handshakes of unknown connection: {}", connectionId);
+        }
+    }
+
+    /**
+     * Marks a connection as closed and removes closed connections exceeding the reaper limits.
+     *
+     * @param connectionId The connection identifier
+     */
+    public void closeConnection(UUID connectionId) {
+        ConnectionInfo connection = connections.get(connectionId);
+        if (connection != null && closedConnectionIds.add(connectionId)) {
+            activeConnections.decrement();
+            closedConnections.increment();
+            platformWrapper.runLater(() -> {
+                connection.setActive(false);
+                if (connectionReaper != null) {
+                    connectionReaper.closed(connection);
+                    reapClosedConnections();
+                    scheduleReap();
+                }
+            });
             logger.info("Connection closed: {}", connection.getDisplayName());
         }
     }
@@ -122,9 +224,16 @@ public class ConnectionManager {
      * @return Number of active connections
      */
     public int getActiveConnectionCount() {
-        return (int) connections.values().stream()
-                .filter(ConnectionInfo::isActive)
-                .count();
+        return activeConnections.intValue();
+    }
+
+    /**
+     * Gets the count of closed connections that have not been removed yet.
+     *
+     * @return Number of closed connections
+     */
+    public int getClosedConnectionCount() {
+        return closedConnections.intValue();
     }
 
     /**
@@ -133,7 +242,26 @@ public class ConnectionManager {
      * @return Total number of connections
      */
     public int getTotalConnectionCount() {
-        return connections.size();
+        return getActiveConnectionCount() + getClosedConnectionCount();
+    }
+
+    /**
+     * Gets the count of full TLS handshakes, on the client and the server side, since the last clear.
+     *
+     * @return Number of full handshakes
+     */
+    public long getFullHandshakeCount() {
+        return fullHandshakes.sum();
+    }
+
+    /**
+     * Gets the count of TLS handshakes that resumed a cached session, on the client and the server side,
+     * since the last clear.
+     *
+     * @return Number of resumed handshakes
+     */
+    public long getResumedHandshakeCount() {
+        return resumedHandshakes.sum();
     }
 
     /**
@@ -141,7 +269,128 @@ public class ConnectionManager {
      */
     public void clear() {
         connections.clear();
-        platformWrapper.runLater(connectionList::clear);
+        pendingPackets.clear();
+        closedConnectionIds.clear();
+        activeConnections.reset();
+        closedConnections.reset();
+        fullHandshakes.reset();
+        resumedHandshakes.reset();
+        platformWrapper.runLater(() -> {
+            connectionList.forEach(ConnectionInfo::discardPackets);
+            connectionList.clear();
+            if (packetRetention != null) {
+                packetRetention.clear();
+            }
+            if (connectionReaper != null) {
+                connectionReaper.clear();
+            }
+            if (reapTimeout != null) {
+                reapTimeout.cancel();
+                reapTimeout = null;
+            }
+            // An age check already handed to the JavaFX thread finds itself outdated
+            reapGeneration++;
+        });
         logger.info("All connections cleared");
     }
+
+    private void countHandshake(TlsHandshake handshake) {
+        if (handshake != null) {
+            (handshake.resumed() ? resumedHandshakes : fullHandshakes).increment();
+        }
+    }
+
+    /**
+     * Removes the closed connections exceeding the reaper limits, with their packets.
+     */
+    private void reapClosedConnections() {
+        List<ConnectionInfo> reaped = connectionReaper.reap();
+        if (reaped.isEmpty()) {
+            return;
+        }
+        Set<ConnectionInfo> removed = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (ConnectionInfo connection : reaped) {
+            UUID connectionId = connection.getConnectionId();
+            // A connection cleared meanwhile is no longer counted
+            if (connections.remove(connectionId, connection) && closedConnectionIds.remove(connectionId)) {
+                closedConnections.decrement();
+            }
+            pendingPackets.remove(connectionId);
+            if (packetRetention != null) {
+                packetRetention.remove(connection);
+            }
+            connection.discardPackets();
+            removed.add(connection);
+        }
+        connectionList.removeAll(removed);
+        logger.debug("Removed {} closed connections", reaped.size());
+    }
+
+    /**
+     * Schedules the age check for the oldest closed connection, unless one is pending.
+     * Connections closed later age out later, so one pending check covers them all;
+     * each check schedules the next one.
+     */
+    private void scheduleReap() {
+        if (timerWheel == null || reapTimeout != null) {
+            return;
+        }
+        long delay = connectionReaper.getNanosUntilNextExpiry();
+        if (delay < 0) {
+            return;
+        }
+        int generation = reapGeneration;
+        reapTimeout = timerWheel.schedule(() -> platformWrapper.runLater(() -> {
+            if (generation == reapGeneration) {
+                reapTimeout = null;
+                reapClosedConnections();
+                scheduleReap();
+            }
+        }), delay, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Publishes the bytes a connection forwards while capture is off with the connection's
+     * next packet update, so passthrough traffic refreshes the UI at most once per update as well.
+     */
+    private void publishPassedThrough(ConnectionInfo connection) {
+        UUID connectionId = connection.getConnectionId();
+        connection.getCaptureSwitch().setOnPassedThrough(() -> {
+            if (connections.get(connectionId) == connection) {
+                scheduleUpdate(connection, pendingPackets.computeIfAbsent(connectionId, id -> new PendingPackets()));
+            }
+        });
+    }
+
+    private void scheduleUpdate(ConnectionInfo connection, PendingPackets pending) {
+        if (pending.scheduled.compareAndSet(false, true)) {
+            // Update UI on JavaFX thread
+            platformWrapper.runLater(() -> addPendingPackets(connection, pending));
+        }
+    }
+
+    private void addPendingPackets(ConnectionInfo connection, PendingPackets pending) {
+        pending.scheduled.set(false);
+        List<DataPacket> packets = new ArrayList<>();
+        DataPacket packet;
+        while ((packet = pending.packets.poll()) != null) {
+            packets.add(packet);
+        }
+        if (packets.isEmpty()) {
+            // Only bytes forwarded without capture or dropped to publish
+            connection.updatePassedThrough();
+        } else if (packetRetention != null) {
+            packetRetention.addAll(connection, packets);
+        } else {
+            connection.addDataPackets(packets);
+        }
+    }
+
+    /**
+     * Packets captured for a connection but not yet added to its packet list.
+     */
+    private static final class PendingPackets {
+        private final ConcurrentLinkedQueue<DataPacket> packets = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+    }
 }
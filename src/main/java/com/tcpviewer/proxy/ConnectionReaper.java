@@ -0,0 +1,90 @@
+package com.tcpviewer.proxy;
+
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.model.ConnectionInfo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides when closed connections are removed, so a long-running proxy does not keep
+ * every connection it ever served. Closed connections are kept in closing order and
+ * removed oldest first, once more than the maximum number are closed or once they have
+ * been closed longer than the maximum age. Limits of 0 disable a check.
+ * Not thread-safe; used on the JavaFX thread together with the connection list.
+ */
+public class ConnectionReaper {
+
+    private final int maxClosedConnections;
+    private final long maxAgeNanos;
+    private final ArrayDeque<ClosedConnection> closedConnections = new ArrayDeque<>();
+    private final MetricsRegistry.Counter reaped;
+
+    /**
+     * @param maxClosedConnections closed connections kept, 0 for no limit
+     * @param maxAge               time a closed connection is kept, 0 for no limit
+     * @param unit                 time unit of the maximum age
+     * @param metrics              registry receiving the reaper metrics
+     */
+    public ConnectionReaper(int maxClosedConnections, long maxAge, TimeUnit unit, MetricsRegistry metrics) {
+        this.maxClosedConnections = maxClosedConnections;
+        this.maxAgeNanos = unit.toNanos(maxAge);
+        this.reaped = metrics.counter("connections.reaped");
+    }
+
+    /**
+     * Records that a connection was closed now.
+     */
+    public void closed(ConnectionInfo connection) {
+        closedConnections.add(new ClosedConnection(connection, System.nanoTime()));
+    }
+
+    /**
+     * Removes and returns the closed connections exceeding the limits, oldest first.
+     */
+    public List<ConnectionInfo> reap() {
+        List<ConnectionInfo> expired = new ArrayList<>();
+        long now = System.nanoTime();
+        while (!closedConnections.isEmpty() && isExpired(closedConnections.peek(), now)) {
+            expired.add(closedConnections.poll().connection);
+        }
+        reaped.add(expired.size());
+        return expired;
+    }
+
+    /**
+     * Forgets all closed connections, for example when the connection list is cleared.
+     */
+    public void clear() {
+        closedConnections.clear();
+    }
+
+    /**
+     * @return the maximum age in nanoseconds, or 0 if closed connections do not age out
+     */
+    public long getMaxAgeNanos() {
+        return maxAgeNanos;
+    }
+
+    /**
+     * @return nanoseconds until the oldest closed connection exceeds the maximum age,
+     *         or -1 if no closed connection is waiting to age out
+     */
+    public long getNanosUntilNextExpiry() {
+        ClosedConnection oldest = closedConnections.peek();
+        if (oldest == null || maxAgeNanos <= 0) {
+            return -1;
+        }
+        return Math.max(0, oldest.closedAtNanos + maxAgeNanos - System.nanoTime());
+    }
+
+    private boolean isExpired(ClosedConnection oldest, long now) {
+        return (maxClosedConnections > 0 && closedConnections.size() > maxClosedConnections)
+                || (maxAgeNanos > 0 && now - oldest.closedAtNanos >= maxAgeNanos);
+    }
+
+    private record ClosedConnection(ConnectionInfo connection, long closedAtNanos) {
+    }
+}
@@ -1,6 +1,9 @@
 package com.tcpviewer.proxy;
 
+import com.tcpviewer.buffer.PooledBuffer;
+import com.tcpviewer.model.CaptureSwitch;
 import com.tcpviewer.model.Direction;
+import com.tcpviewer.model.TlsHandshake;
 
 import java.util.UUID;
 
@@ -12,6 +15,8 @@ public interface DataCaptureListener {
 
     /**
      * Called when data is captured from a TCP connection.
+     * The array is handed over to the listener: the caller never touches it again,
+     * so listeners may keep it without copying.
      *
      * @param connectionId The unique identifier of the connection
      * @param data         The captured byte array
@@ -19,6 +24,61 @@ public interface DataCaptureListener {
      */
     void onDataCaptured(UUID connectionId, byte[] data, Direction direction);
 
+    /**
+     * Called when data is captured into a pooled buffer.
+     * The listener owns one reference and must release it once the data is consumed.
+     * By default the valid bytes are copied to an exact array, the buffer is released,
+     * and the array is passed to {@link #onDataCaptured(UUID, byte[], Direction)}.
+     *
+     * @param connectionId The unique identifier of the connection
+     * @param data         The buffer holding the captured bytes
+     * @param direction    The direction of data flow (CLIENT_TO_SERVER or SERVER_TO_CLIENT)
+     */
+    default void onBufferCaptured(UUID connectionId, PooledBuffer data, Direction direction) {
+        byte[] bytes;
+        try {
+            bytes = data.toByteArray();
+        } finally {
+            data.release();
+        }
+        onDataCaptured(connectionId, bytes, direction);
+    }
+
+    /**
+     * Called when the TLS handshakes of an SSL connection have completed, before any data is forwarded.
+     * Plain TCP connections never report handshakes.
+     *
+     * @param connectionId The unique identifier of the connection
+     * @param client       The handshake between the client and the proxy, or null if none took place
+     * @param server       The handshake between the proxy and the target server, or null if none took place
+     */
+    default void onTlsHandshake(UUID connectionId, TlsHandshake client, TlsHandshake server) {
+    }
+
+    /**
+     * Called when captured data was forwarded but never reached the listener, because the
+     * capture pipeline was full under the drop policy. Called on the forwarding thread, so
+     * implementations must only count the loss and return quickly.
+     *
+     * @param connectionId The unique identifier of the connection
+     * @param direction    The direction of data flow (CLIENT_TO_SERVER or SERVER_TO_CLIENT)
+     * @param bytes        The number of bytes dropped
+     */
+    default void onDataDropped(UUID connectionId, Direction direction, int bytes) {
+    }
+
+    /**
+     * Returns the capture switch of a connection. Called once when forwarding starts;
+     * the forwarders then check the switch for every chunk and only count the bytes
+     * of chunks forwarded while it is off.
+     *
+     * @param connectionId The unique identifier of the connection
+     * @return the switch, or null to capture every chunk
+     */
+    default CaptureSwitch getCaptureSwitch(UUID connectionId) {
+        return null;
+    }
+
     /**
      * Called when a TCP connection is closed.
      * This is invoked after both forwarder threads complete and sockets are closed.
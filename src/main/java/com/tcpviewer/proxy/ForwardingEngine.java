@@ -0,0 +1,24 @@
+package com.tcpviewer.proxy;
+
+import com.tcpviewer.io.wrapper.SocketWrapper;
+
+import java.util.UUID;
+
+/**
+ * Strategy for forwarding traffic between an accepted client connection and the target server.
+ * Implementations decide how connections are scheduled onto threads.
+ */
+public interface ForwardingEngine {
+
+    /**
+     * Starts forwarding an accepted client connection to the target server.
+     * Must return without waiting for the connection to finish, as it is called from the accept loop.
+     * The engine owns the client socket from this point on and reports the end of the
+     * connection through {@link DataCaptureListener#onConnectionClosed(UUID)}.
+     *
+     * @param connectionId The unique connection identifier
+     * @param clientSocket The accepted client socket
+     * @param listener     Listener for captured data and connection closure
+     */
+    void forward(UUID connectionId, SocketWrapper clientSocket, DataCaptureListener listener);
+}
@@ -0,0 +1,238 @@
+package com.tcpviewer.proxy;
+
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.model.ConnectionInfo;
+import com.tcpviewer.model.DataPacket;
+
+import java.util.ArrayDeque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounds the captured packets kept in memory.
+ * Each connection is limited by packet count and bytes, and all connections together
+ * by a global packet count and byte budget. When a limit is exceeded the oldest packets
+ * are evicted: per connection from that connection, globally from whichever connection
+ * captured the oldest packet. The newest packet is always kept. Limits of 0 disable a check.
+ * <p>
+ * The byte limits bound the heap. Payloads kept in a capture store are exempt from them and
+ * bounded by a global limit of their own, as they take disk space and page cache instead.
+ * <p>
+ * Eviction takes amortized constant time per packet: the global arrival order is a queue
+ * of connections, one entry per packet, and entries of packets that were already evicted
+ * by a per-connection limit are skipped when they reach the head of the queue.
+ * Packets added together are appended, and evicted, with one list change per connection.
+ * Not thread-safe; used on the JavaFX thread together with the packet lists.
+ */
+public class PacketRetention {
+
+    private final int maxPacketsPerConnection;
+    private final long maxBytesPerConnection;
+    private final long maxPackets;
+    private final long maxBytes;
+    private final long maxStoredBytes;
+
+    private final ArrayDeque<ConnectionInfo> arrivalOrder = new ArrayDeque<>();
+    private final Map<ConnectionInfo, Integer> staleEntries = new IdentityHashMap<>();
+    private long retainedPackets;
+    private long retainedBytes;
+    private long retainedStoredBytes;
+
+    private final MetricsRegistry.Counter evictedPackets;
+    private final MetricsRegistry.Counter evictedBytes;
+
+    /**
+     * @param maxPacketsPerConnection packets kept per connection, 0 for no limit
+     * @param maxBytesPerConnection   heap payload bytes kept per connection, 0 for no limit
+     * @param maxPackets              packets kept over all connections, 0 for no limit
+     * @param maxBytes                heap payload bytes kept over all connections, 0 for no limit
+     * @param metrics                 registry receiving the retention metrics
+     */
+    public PacketRetention(int maxPacketsPerConnection, long maxBytesPerConnection,
+                           long maxPackets, long maxBytes, MetricsRegistry metrics) {
+        this(maxPacketsPerConnection, maxBytesPerConnection, maxPackets, maxBytes, 0, metrics);
+    }
+
+    /**
+     * @param maxPacketsPerConnection packets kept per connection, 0 for no limit
+     * @param maxBytesPerConnection   heap payload bytes kept per connection, 0 for no limit
+     * @param maxPackets              packets kept over all connections, 0 for no limit
+     * @param maxBytes                heap payload bytes kept over all connections, 0 for no limit
+     * @param maxStoredBytes          payload bytes kept in a capture store over all connections, 0 for no limit
+     * @param metrics                 registry receiving the retention metrics
+     */
+    public PacketRetention(int maxPacketsPerConnection, long maxBytesPerConnection,
+                           long maxPackets, long maxBytes, long maxStoredBytes, MetricsRegistry metrics) {
+        this.maxPacketsPerConnection = maxPacketsPerConnection;
+        this.maxBytesPerConnection = maxBytesPerConnection;
+        this.maxPackets = maxPackets;
+        this.maxBytes = maxBytes;
+        this.maxStoredBytes = maxStoredBytes;
+
+        this.evictedPackets = metrics.counter("retention.evicted.packets");
+        this.evictedBytes = metrics.counter("retention.evicted.bytes");
+        metrics.gauge("retention.packets", () -> retainedPackets);
+        metrics.gauge("retention.bytes", () -> retainedBytes);
+        metrics.gauge("retention.stored.bytes", () -> retainedStoredBytes);
+    }
+
+    /**
+     * Adds a packet to the connection and evicts old packets until all limits hold again.
+     */
+    public void add(ConnectionInfo connection, DataPacket packet) {
+        addAll(connection, List.of(packet));
+    }
+
+    /**
+     * Adds packets to the connection and evicts old packets until all limits hold again.
+     */
+    public void addAll(ConnectionInfo connection, List<DataPacket> packets) {
+        if (packets.isEmpty()) {
+            return;
+        }
+        long storedBefore = connection.getRetainedStoredBytes();
+        long bytesBefore = connection.getRetainedBytes();
+        connection.addDataPackets(packets);
+        long stored = connection.getRetainedStoredBytes() - storedBefore;
+        retainedPackets += packets.size();
+        retainedStoredBytes += stored;
+        retainedBytes += connection.getRetainedBytes() - bytesBefore - stored;
+        if (hasGlobalLimit()) {
+            for (int i = 0; i < packets.size(); i++) {
+                arrivalOrder.add(connection);
+            }
+        }
+
+        int connectionEvictions = countConnectionEvictions(connection);
+        if (connectionEvictions > 0) {
+            evict(connection, connectionEvictions);
+            if (hasGlobalLimit()) {
+                // Its oldest entries in the arrival order now refer to evicted packets
+                staleEntries.merge(connection, connectionEvictions, Integer::sum);
+            }
+        }
+
+        // Collect the global evictions first, so each connection changes only once
+        Map<ConnectionInfo, Integer> globalEvictions = new IdentityHashMap<>();
+        while (exceedsGlobalLimit()) {
+            ConnectionInfo oldest = arrivalOrder.poll();
+            if (!skipStaleEntry(oldest)) {
+                int index = globalEvictions.getOrDefault(oldest, 0);
+                retainedPackets--;
+                if (oldest.isPacketStored(index)) {
+                    retainedStoredBytes -= oldest.getPacketSize(index);
+                } else {
+                    retainedBytes -= oldest.getPacketSize(index);
+                }
+                globalEvictions.put(oldest, index + 1);
+            }
+        }
+        globalEvictions.forEach((oldest, count) -> {
+            long bytes = oldest.evictOldestPackets(count);
+            evictedPackets.add(count);
+            evictedBytes.add(bytes);
+        });
+    }
+
+    /**
+     * Stops counting the packets of a connection that is removed.
+     * Its remaining entries in the arrival order are skipped when they reach the head.
+     */
+    public void remove(ConnectionInfo connection) {
+        int packets = connection.getRetainedPacketCount();
+        if (packets == 0) {
+            return;
+        }
+        retainedPackets -= packets;
+        retainedBytes -= connection.getRetainedBytes() - connection.getRetainedStoredBytes();
+        retainedStoredBytes -= connection.getRetainedStoredBytes();
+        if (hasGlobalLimit()) {
+            staleEntries.merge(connection, packets, Integer::sum);
+        }
+    }
+
+    /**
+     * Forgets all connections, for example when their list is cleared.
+     */
+    public void clear() {
+        arrivalOrder.clear();
+        staleEntries.clear();
+        retainedPackets = 0;
+        retainedBytes = 0;
+        retainedStoredBytes = 0;
+    }
+
+    public long getRetainedPackets() {
+        return retainedPackets;
+    }
+
+    /**
+     * @return the retained payload bytes on the heap
+     */
+    public long getRetainedBytes() {
+        return retainedBytes;
+    }
+
+    /**
+     * @return the retained payload bytes kept in a capture store
+     */
+    public long getRetainedStoredBytes() {
+        return retainedStoredBytes;
+    }
+
+    private boolean hasGlobalLimit() {
+        return maxPackets > 0 || maxBytes > 0 || maxStoredBytes > 0;
+    }
+
+    /**
+     * Counts the oldest packets to evict for the connection's own limits.
+     */
+    private int countConnectionEvictions(ConnectionInfo connection) {
+        int packets = connection.getRetainedPacketCount();
+        long bytes = connection.getRetainedBytes() - connection.getRetainedStoredBytes();
+        int evictions = 0;
+        while (packets - evictions > 1
+                && ((maxPacketsPerConnection > 0 && packets - evictions > maxPacketsPerConnection)
+                || (maxBytesPerConnection > 0 && bytes > maxBytesPerConnection))) {
+            if (!connection.isPacketStored(evictions)) {
+                bytes -= connection.getPacketSize(evictions);
+            }
+            evictions++;
+        }
+        return evictions;
+    }
+
+    private boolean exceedsGlobalLimit() {
+        if (retainedPackets <= 1) {
+            return false;
+        }
+        return (maxPackets > 0 && retainedPackets > maxPackets)
+                || (maxBytes > 0 && retainedBytes > maxBytes)
+                || (maxStoredBytes > 0 && retainedStoredBytes > maxStoredBytes);
+    }
+
+    private boolean skipStaleEntry(ConnectionInfo connection) {
+        Integer stale = staleEntries.get(connection);
+        if (stale == null) {
+            return false;
+        }
+        if (stale == 1) {
+            staleEntries.remove(connection);
+        } else {
+            staleEntries.put(connection, stale - 1);
+        }
+        return true;
+    }
+
+    private void evict(ConnectionInfo connection, int count) {
+        long storedBefore = connection.getRetainedStoredBytes();
+        long bytes = connection.evictOldestPackets(count);
+        long stored = storedBefore - connection.getRetainedStoredBytes();
+        retainedPackets -= count;
+        retainedBytes -= bytes - stored;
+        retainedStoredBytes -= stored;
+        evictedPackets.add(count);
+        evictedBytes.add(bytes);
+    }
+}
@@ -1,10 +1,15 @@
 package com.tcpviewer.proxy;
 
+import com.tcpviewer.buffer.ReadBufferAllocator;
+import com.tcpviewer.capture.CaptureStream;
+import com.tcpviewer.capture.PacketCoalescer;
 import com.tcpviewer.io.wrapper.SocketWrapper;
 import com.tcpviewer.io.wrapper.factory.SocketFactory;
 import com.tcpviewer.lang.wrapper.ThreadWrapper;
 import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
+import com.tcpviewer.model.CaptureSwitch;
 import com.tcpviewer.model.Direction;
+import com.tcpviewer.model.TlsHandshake;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,12 +31,23 @@ public class ProxyConnectionHandler implements Runnable {
     private final UUID connectionId;
     private final SocketFactory socketFactory;
     private final ThreadFactory threadFactory;
+    private final PacketCoalescer coalescer;
+    private final ReadBufferAllocator readBuffers;
     private  boolean ssl;
     private String sslHostName;
 
     public ProxyConnectionHandler(SocketWrapper clientSocket, String targetHost, int targetPort,
                                    DataCaptureListener listener, UUID connectionId,
                                    SocketFactory socketFactory, ThreadFactory threadFactory, boolean ssl, String sslHostName) {
+        this(clientSocket, targetHost, targetPort, listener, connectionId, socketFactory, threadFactory,
+                null, null, ssl, sslHostName);
+    }
+
+    public ProxyConnectionHandler(SocketWrapper clientSocket, String targetHost, int targetPort,
+                                   DataCaptureListener listener, UUID connectionId,
+                                   SocketFactory socketFactory, ThreadFactory threadFactory,
+                                   PacketCoalescer coalescer, ReadBufferAllocator readBuffers,
+                                   boolean ssl, String sslHostName) {
         this.clientSocket = clientSocket;
         this.targetHost = targetHost;
         this.targetPort = targetPort;
@@ -39,6 +55,8 @@ public class ProxyConnectionHandler implements Runnable {
         this.connectionId = connectionId;
         this.socketFactory = socketFactory;
         this.threadFactory = threadFactory;
+        this.coalescer = coalescer;
+        this.readBuffers = readBuffers;
         this.ssl = ssl;
         this.sslHostName  = sslHostName;
     }
@@ -50,18 +68,32 @@ public class ProxyConnectionHandler implements Runnable {
             logger.info("Connecting to target {}:{} for connection {}",
                        targetHost, targetPort, connectionId);
 
-            // Connect to target server
-            targetSocket = socketFactory.createSocket(targetHost, targetPort, ssl, sslHostName);
+            // Complete the client handshake here, so it never blocks the accept loop
+            TlsHandshake clientHandshake = ssl ? clientSocket.startHandshake() : null;
+
+            // Connect to target server, with the SNI host name of the client if none is configured
+            String sniHostName = sslHostName;
+            if (ssl && sniHostName == null) {
+                sniHostName = clientSocket.getRequestedServerName();
+                logger.debug("Client requested {} for connection {}", sniHostName, connectionId);
+            }
+            targetSocket = socketFactory.createSocket(targetHost, targetPort, ssl, sniHostName);
             targetSocket.setTcpNoDelay(true);
 
+            if (ssl && listener != null) {
+                listener.onTlsHandshake(connectionId, clientHandshake, targetSocket.startHandshake());
+            }
+
             logger.info("Connected to target for connection {}", connectionId);
+            CaptureSwitch captureSwitch = listener != null ? listener.getCaptureSwitch(connectionId) : null;
 
             // Create bidirectional forwarders
             TcpForwarder clientToTarget = new TcpForwarder(
                     clientSocket.getInputStream(),
                     targetSocket.getOutputStream(),
-                    listener,
-                    connectionId,
+                    openCaptureStream(Direction.CLIENT_TO_SERVER),
+                    readBuffers,
+                    captureSwitch,
                     Direction.CLIENT_TO_SERVER,
                     "Client→Target"
             );
@@ -69,8 +101,9 @@ public class ProxyConnectionHandler implements Runnable {
             TcpForwarder targetToClient = new TcpForwarder(
                     targetSocket.getInputStream(),
                     clientSocket.getOutputStream(),
-                    listener,
-                    connectionId,
+                    openCaptureStream(Direction.SERVER_TO_CLIENT),
+                    readBuffers,
+                    captureSwitch,
                     Direction.SERVER_TO_CLIENT,
                     "Target→Client"
             );
@@ -110,6 +143,16 @@ public class ProxyConnectionHandler implements Runnable {
         }
     }
 
+    /**
+     * Opens the capture stream for one direction, coalescing reads into packets if a coalescer is set.
+     */
+    private CaptureStream openCaptureStream(Direction direction) {
+        return coalescer != null
+                ? coalescer.openStream(connectionId, direction, listener)
+                : CaptureStream.perChunk(connectionId, direction, listener,
+                        readBuffers != null ? readBuffers.getBufferPool() : null);
+    }
+
     /**
      * Closes a socket without throwing exceptions.
      */
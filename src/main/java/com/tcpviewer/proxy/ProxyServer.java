@@ -9,18 +9,28 @@ import com.tcpviewer.io.wrapper.factory.SocketFactory;
 import com.tcpviewer.lang.wrapper.ExecutorServiceWrapper;
 import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
 import com.tcpviewer.ssl.ServerCertificateGeneratorService;
+import com.tcpviewer.ssl.SniKeyManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketException;
+import java.security.KeyStore;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * TCP proxy server that accepts client connections and forwards them to a target.
  * Runs in a dedicated thread and notifies listeners of new connections.
+ * <p>
+ * With more than one acceptor, additional daemon threads accept connections too, so bursts
+ * of connections are not serialized behind one accept loop. Where SO_REUSEPORT is supported
+ * each acceptor binds its own socket and the kernel spreads connections across them;
+ * otherwise all acceptors share one server socket.
  */
 public class ProxyServer implements Runnable {
 
@@ -31,18 +41,25 @@ public class ProxyServer implements Runnable {
     private final int localPort;
     private final String targetHost;
     private final String sslHostName;
+    private final boolean sni;
     private final int targetPort;
     private final DataCaptureListener dataCaptureListener;
     private final ConnectionAcceptedCallback connectionAcceptedCallback;
-    private final ExecutorServiceWrapper executorService;
-    private final SocketFactory socketFactory;
+    private final ForwardingEngine forwardingEngine;
     private final ServerSocketFactory serverSocketFactory;
     private final ThreadFactory threadFactory;
     private final ErrorHandlerService errorHandlerService;
 
+    private final int acceptors;
+    private final int backlog;
+
     private ServerSocketWrapper serverSocket;
+    private final List<ServerSocketWrapper> acceptorSockets = new CopyOnWriteArrayList<>();
+    private KeyStore keyStore;
+    private SniKeyManager sniKeyManager;
     private ServerCertificateGeneratorService serverCertificateGeneratorService;
     private final AtomicBoolean running = new AtomicBoolean(false);
+    private final LongAdder acceptedConnections = new LongAdder();
 
     public ProxyServer(boolean ssl, String localIp, int localPort, String targetHost ,String sssHostName, int targetPort,
                        DataCaptureListener dataCaptureListener,
@@ -53,20 +70,77 @@ public class ProxyServer implements Runnable {
                        ThreadFactory threadFactory,
                        ErrorHandlerService errorHandlerService,
                        ServerCertificateGeneratorService serverCertificateGeneratorService) {
+        this(ssl, localIp, localPort, targetHost, sssHostName, targetPort,
+                dataCaptureListener, connectionAcceptedCallback,
+                new ThreadedForwardingEngine(executorService, socketFactory, threadFactory,
+                        targetHost, targetPort, ssl, sssHostName),
+                serverSocketFactory, threadFactory, errorHandlerService, serverCertificateGeneratorService);
+    }
+
+    public ProxyServer(boolean ssl, String localIp, int localPort, String targetHost, String sslHostName, int targetPort,
+                       DataCaptureListener dataCaptureListener,
+                       ConnectionAcceptedCallback connectionAcceptedCallback,
+                       ForwardingEngine forwardingEngine,
+                       ServerSocketFactory serverSocketFactory,
+                       ThreadFactory threadFactory,
+                       ErrorHandlerService errorHandlerService,
+                       ServerCertificateGeneratorService serverCertificateGeneratorService) {
+        this(ssl, false, localIp, localPort, targetHost, sslHostName, targetPort,
+                dataCaptureListener, connectionAcceptedCallback, forwardingEngine,
+                serverSocketFactory, threadFactory, errorHandlerService, serverCertificateGeneratorService);
+    }
+
+    /**
+     * @param sni if true, each SSL client gets a certificate for the host name it requests via SNI,
+     *            and sslHostName is only used for clients not sending SNI
+     */
+    public ProxyServer(boolean ssl, boolean sni, String localIp, int localPort, String targetHost, String sslHostName,
+                       int targetPort,
+                       DataCaptureListener dataCaptureListener,
+                       ConnectionAcceptedCallback connectionAcceptedCallback,
+                       ForwardingEngine forwardingEngine,
+                       ServerSocketFactory serverSocketFactory,
+                       ThreadFactory threadFactory,
+                       ErrorHandlerService errorHandlerService,
+                       ServerCertificateGeneratorService serverCertificateGeneratorService) {
+        this(ssl, sni, localIp, localPort, targetHost, sslHostName, targetPort,
+                dataCaptureListener, connectionAcceptedCallback, forwardingEngine,
+                serverSocketFactory, threadFactory, errorHandlerService, serverCertificateGeneratorService, 1, 0);
+    }
+
+    /**
+     * @param acceptors number of threads accepting connections, at least 1
+     * @param backlog   maximum number of pending connections per server socket, 0 for the platform default
+     */
+    public ProxyServer(boolean ssl, boolean sni, String localIp, int localPort, String targetHost, String sslHostName,
+                       int targetPort,
+                       DataCaptureListener dataCaptureListener,
+                       ConnectionAcceptedCallback connectionAcceptedCallback,
+                       ForwardingEngine forwardingEngine,
+                       ServerSocketFactory serverSocketFactory,
+                       ThreadFactory threadFactory,
+                       ErrorHandlerService errorHandlerService,
+                       ServerCertificateGeneratorService serverCertificateGeneratorService,
+                       int acceptors, int backlog) {
+        if (acceptors < 1) {
+            throw new IllegalArgumentException("Acceptor count must be positive: " + acceptors);
+        }
         this.ssl = ssl;
+        this.sni = ssl && sni;
         this.localIp = localIp;
         this.localPort = localPort;
         this.targetHost = targetHost;
-        this.sslHostName = sssHostName;
+        this.sslHostName = sslHostName;
         this.targetPort = targetPort;
         this.dataCaptureListener = dataCaptureListener;
         this.connectionAcceptedCallback = connectionAcceptedCallback;
-        this.executorService = executorService;
-        this.socketFactory = socketFactory;
+        this.forwardingEngine = forwardingEngine;
         this.serverSocketFactory = serverSocketFactory;
         this.threadFactory = threadFactory;
         this.errorHandlerService = errorHandlerService;
         this.serverCertificateGeneratorService = serverCertificateGeneratorService;
+        this.acceptors = acceptors;
+        this.backlog = backlog;
     }
 
     @Override
@@ -74,40 +148,34 @@ public class ProxyServer implements Runnable {
         try {
             if (ssl) {
                 try {
-                    ServerCertificateGeneratorService.GeneratedCertificate certificate = serverCertificateGeneratorService.generateServerCertificate(sslHostName, 365);
-                    serverSocket = serverSocketFactory.createServerSocket(certificate.keyStore());
+                    if (sni) {
+                        // Certificates are chosen per handshake, on the connection's thread
+                        sniKeyManager = new SniKeyManager(serverCertificateGeneratorService, sslHostName, 365);
+                    } else {
+                        ServerCertificateGeneratorService.GeneratedCertificate certificate = serverCertificateGeneratorService.getServerCertificate(sslHostName, 365);
+                        keyStore = certificate.keyStore();
+                    }
                 } catch (Exception e) {
                     throw new RuntimeException("Error creating ssl server socket", e);
                 }
-            } else {
-                serverSocket = serverSocketFactory.createServerSocket(null);
             }
-            serverSocket.setReuseAddress(true);
-            serverSocket.bind(new InetSocketAddress(localIp, localPort));
+            InetSocketAddress endpoint = new InetSocketAddress(localIp, localPort);
+            serverSocket = createServerSocket();
+            // An ephemeral port differs per socket, so only a fixed port can be shared
+            boolean reusePort = acceptors > 1 && localPort != 0 && serverSocket.setReusePort(true);
+            serverSocket.bind(endpoint, backlog);
             running.set(true);
+            startAcceptors(endpoint, reusePort);
 
             if (!ssl) {
                 logger.info("Plain Proxy server started on {}:{}, forwarding to {}:{}",
                         localIp, localPort, targetHost, targetPort);
             } else {
-                logger.info("SSL Proxy server started on {}:{}, forwarding to {}:{}, ssl  host name is {}",
-                        localIp, localPort, targetHost, targetPort, sslHostName);
+                logger.info("SSL Proxy server started on {}:{}, forwarding to {}:{}, ssl  host name is {}{}",
+                        localIp, localPort, targetHost, targetPort, sslHostName, sni ? " (default for SNI)" : "");
             }
 
-            while (running.get() && !threadFactory.currentThread().isInterrupted()) {
-                try {
-                    SocketWrapper clientSocket = serverSocket.accept();
-                    handleClientConnection(clientSocket);
-                } catch (SocketException e) {
-                    if (running.get()) {
-                        logger.error("Socket error in accept loop: {}", e.getMessage());
-                    }
-                    // If not running, this is expected during shutdown
-                    break;
-                } catch (IOException e) {
-                    logger.error("Error accepting connection: {}", e.getMessage());
-                }
-            }
+            acceptLoop(serverSocket);
 
         } catch (IOException e) {
             logger.error("Failed to start proxy server: {}", e.getMessage(), e);
@@ -123,6 +191,60 @@ public class ProxyServer implements Runnable {
         }
     }
 
+    /**
+     * Creates an unbound server socket presenting the listener's certificates.
+     */
+    private ServerSocketWrapper createServerSocket() throws IOException {
+        ServerSocketWrapper socket = sniKeyManager != null
+                ? serverSocketFactory.createSslServerSocket(sniKeyManager)
+                : serverSocketFactory.createServerSocket(keyStore);
+        socket.setReuseAddress(true);
+        return socket;
+    }
+
+    /**
+     * Starts the acceptor threads beyond the first, which is the server thread itself.
+     * Each binds its own socket if SO_REUSEPORT is set, otherwise it shares the server socket.
+     */
+    private void startAcceptors(InetSocketAddress endpoint, boolean reusePort) throws IOException {
+        for (int i = 1; i < acceptors; i++) {
+            ServerSocketWrapper acceptorSocket = serverSocket;
+            if (reusePort) {
+                acceptorSocket = createServerSocket();
+                acceptorSockets.add(acceptorSocket);
+                acceptorSocket.setReusePort(true);
+                acceptorSocket.bind(endpoint, backlog);
+            }
+            ServerSocketWrapper socket = acceptorSocket;
+            threadFactory.createDaemonThread(() -> acceptLoop(socket), "ProxyAcceptor-" + i).start();
+        }
+        if (acceptors > 1) {
+            logger.info("Accepting with {} threads on {}", acceptors,
+                    reusePort ? "SO_REUSEPORT sockets" : "a shared server socket");
+        }
+    }
+
+    /**
+     * Accepts connections on the socket until the server stops.
+     */
+    private void acceptLoop(ServerSocketWrapper socket) {
+        while (running.get() && !threadFactory.currentThread().isInterrupted()) {
+            try {
+                SocketWrapper clientSocket = socket.accept();
+                acceptedConnections.increment();
+                handleClientConnection(clientSocket);
+            } catch (SocketException e) {
+                if (running.get()) {
+                    logger.error("Socket error in accept loop: {}", e.getMessage());
+                }
+                // If not running, this is expected during shutdown
+                break;
+            } catch (IOException e) {
+                logger.error("Error accepting connection: {}", e.getMessage());
+            }
+        }
+    }
+
     /**
      * Handles a new client connection.
      */
@@ -140,13 +262,8 @@ public class ProxyServer implements Runnable {
                 connectionAcceptedCallback.onConnectionAccepted(connectionId, clientSocket);
             }
 
-            // Create and submit connection handler
-            ProxyConnectionHandler handler = new ProxyConnectionHandler(
-                    clientSocket, targetHost,targetPort,
-                    dataCaptureListener, connectionId, socketFactory, threadFactory, ssl, sslHostName
-            );
-
-            executorService.submit(handler);
+            // Hand the connection over to the forwarding engine
+            forwardingEngine.forward(connectionId, clientSocket, dataCaptureListener);
 
         } catch (Exception e) {
             logger.error("Error handling client connection: {}", e.getMessage());
@@ -164,12 +281,19 @@ public class ProxyServer implements Runnable {
     }
 
     /**
-     * Closes the server socket.
+     * Closes the server socket and the sockets of the other acceptors.
      */
     private void closeServerSocket() {
-        if (serverSocket != null && !serverSocket.isClosed()) {
+        closeServerSocket(serverSocket);
+        for (ServerSocketWrapper socket : acceptorSockets) {
+            closeServerSocket(socket);
+        }
+    }
+
+    private void closeServerSocket(ServerSocketWrapper socket) {
+        if (socket != null && !socket.isClosed()) {
             try {
-                serverSocket.close();
+                socket.close();
             } catch (IOException e) {
                 logger.warn("Error closing server socket: {}", e.getMessage());
             }
@@ -193,6 +317,17 @@ public class ProxyServer implements Runnable {
         return running.get();
     }
 
+    /**
+     * @return number of connections accepted by all acceptors
+     */
+    public long getAcceptedCount() {
+        return acceptedConnections.sum();
+    }
+
+    public int getAcceptors() {
+        return acceptors;
+    }
+
     public boolean isSsl() {
         return ssl;
     }
@@ -204,4 +339,8 @@ public class ProxyServer implements Runnable {
     public ServerCertificateGeneratorService getServerCertificateGeneratorService() {
         return serverCertificateGeneratorService;
     }
+
+    public ForwardingEngine getForwardingEngine() {
+        return forwardingEngine;
+    }
 }
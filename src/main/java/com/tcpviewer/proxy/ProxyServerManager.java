@@ -1,13 +1,19 @@
 package com.tcpviewer.proxy;
 
+import com.tcpviewer.buffer.ReadBufferAllocator;
+import com.tcpviewer.capture.PacketCoalescer;
 import com.tcpviewer.error.ErrorHandlerService;
+import com.tcpviewer.io.resolver.HostResolver;
 import com.tcpviewer.io.wrapper.factory.ServerSocketFactory;
 import com.tcpviewer.io.wrapper.factory.SocketFactory;
 import com.tcpviewer.lang.wrapper.ExecutorServiceWrapper;
 import com.tcpviewer.lang.wrapper.ThreadWrapper;
 import com.tcpviewer.lang.wrapper.factory.ExecutorServiceFactory;
 import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
+import com.tcpviewer.model.ForwardingMode;
 import com.tcpviewer.model.ProxySession;
+import com.tcpviewer.proxy.nio.NioEventLoopGroup;
+import com.tcpviewer.proxy.nio.NioForwardingEngine;
 import com.tcpviewer.ssl.ServerCertificateGeneratorService;
 import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
@@ -15,12 +21,16 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 /**
- * Manages the lifecycle of the ProxyServer.
- * Handles starting, stopping, and cleanup of proxy server instances.
+ * Manages the lifecycle of the proxy listeners.
+ * Each started session gets a listener of its own: a ProxyServer with its own port, target,
+ * SSL settings, server thread and connection executor, started and stopped independently.
+ * All listeners share the capture, buffer pool, event loop and metrics infrastructure.
  */
 @Service
 public class ProxyServerManager {
@@ -34,10 +44,15 @@ public class ProxyServerManager {
     private final ExecutorServiceFactory executorServiceFactory;
     private final ErrorHandlerService errorHandlerService;
     private final ServerCertificateGeneratorService serverCertificateGeneratorService;
+    private final NioEventLoopGroup nioEventLoopGroup;
+    private final PacketCoalescer packetCoalescer;
+    private final ReadBufferAllocator readBufferAllocator;
+    private final UpstreamConnectionPool upstreamConnectionPool;
+    private final HostResolver hostResolver;
+    private final AcceptorSettings acceptorSettings;
 
-    private ProxyServer currentServer;
-    private ThreadWrapper serverThread;
-    private ExecutorServiceWrapper connectionExecutor;
+    private final List<Listener> listeners = new ArrayList<>();
+    private Listener upstreamPoolOwner;
 
     public ProxyServerManager(@Qualifier("proxyExecutor") Executor proxyExecutor,
                               SocketFactory socketFactory,
@@ -45,7 +60,13 @@ public class ProxyServerManager {
                               ThreadFactory threadFactory,
                               ExecutorServiceFactory executorServiceFactory,
                               ErrorHandlerService errorHandlerService,
-                              ServerCertificateGeneratorService serverCertificateGeneratorService) {
+                              ServerCertificateGeneratorService serverCertificateGeneratorService,
+                              NioEventLoopGroup nioEventLoopGroup,
+                              PacketCoalescer packetCoalescer,
+                              ReadBufferAllocator readBufferAllocator,
+                              UpstreamConnectionPool upstreamConnectionPool,
+                              HostResolver hostResolver,
+                              AcceptorSettings acceptorSettings) {
         this.proxyExecutor = proxyExecutor;
         this.socketFactory = socketFactory;
         this.serverSocketFactory = serverSocketFactory;
@@ -53,29 +74,44 @@ public class ProxyServerManager {
         this.executorServiceFactory = executorServiceFactory;
         this.errorHandlerService = errorHandlerService;
         this.serverCertificateGeneratorService = serverCertificateGeneratorService;
+        this.nioEventLoopGroup = nioEventLoopGroup;
+        this.packetCoalescer = packetCoalescer;
+        this.readBufferAllocator = readBufferAllocator;
+        this.upstreamConnectionPool = upstreamConnectionPool;
+        this.hostResolver = hostResolver != null ? hostResolver : HostResolver.SYSTEM;
+        this.acceptorSettings = acceptorSettings != null ? acceptorSettings : AcceptorSettings.DEFAULT;
     }
 
     /**
-     * Starts a new proxy server with the given session configuration.
+     * Starts a new proxy listener with the given session configuration.
+     * Listeners of other sessions keep running.
      *
      * @param session                     The proxy session configuration
      * @param dataCaptureListener         Listener for captured data
      * @param connectionAcceptedCallback  Callback when a connection is accepted
-     * @throws IllegalStateException if a server is already running
+     * @throws IllegalStateException if a listener is already running on the session's local address
      */
-    public void startServer(ProxySession session,
+    public synchronized void startServer(ProxySession session,
                            DataCaptureListener dataCaptureListener,
                            ConnectionAcceptedCallback connectionAcceptedCallback) {
-        if (currentServer != null && currentServer.isRunning()) {
-            throw new IllegalStateException("Proxy server is already running");
+        for (Listener listener : new ArrayList<>(listeners)) {
+            if (listener.session.getListenerName().equals(session.getListenerName())) {
+                if (listener.server.isRunning()) {
+                    throw new IllegalStateException("A proxy listener is already running on "
+                            + session.getListenerName());
+                }
+                // The previous listener on this address has ended, e.g. because it failed to bind
+                stopListener(listener);
+            }
         }
 
-        // Create dedicated executor for connection handlers
-        connectionExecutor = executorServiceFactory.createCachedThreadPool(threadFactory);
+        Listener listener = new Listener(session);
+        ForwardingEngine forwardingEngine = createForwardingEngine(listener);
 
         // Create and start proxy server
-        currentServer = new ProxyServer(
+        listener.server = new ProxyServer(
                 session.isSsl(),
+                session.isSni(),
                 session.getLocalIp(),
                 session.getLocalPort(),
                 session.getTargetHost(),
@@ -83,59 +119,170 @@ public class ProxyServerManager {
                 session.getTargetPort(),
                 dataCaptureListener,
                 connectionAcceptedCallback,
-                connectionExecutor,
-                socketFactory,
+                forwardingEngine,
                 serverSocketFactory,
                 threadFactory,
                 errorHandlerService,
-                serverCertificateGeneratorService
+                serverCertificateGeneratorService,
+                acceptorSettings.acceptors(),
+                acceptorSettings.backlog()
         );
 
-        serverThread = threadFactory.createThread(currentServer, "ProxyServer");
-        serverThread.setDaemon(false);
-        serverThread.start();
+        listener.serverThread = threadFactory.createThread(listener.server, "ProxyServer");
+        // Virtual threads are always daemon threads and reject setDaemon(false)
+        if (!listener.serverThread.isVirtual()) {
+            listener.serverThread.setDaemon(false);
+        }
+        listener.serverThread.start();
+        listeners.add(listener);
 
         session.setActive(true);
         logger.info("Proxy server started: {}", session.getDisplayInfo());
     }
 
     /**
-     * Stops the currently running proxy server.
+     * Stops the listener of a session. Other listeners keep running.
+     *
+     * @param session The session whose listener is stopped
      */
-    public void stopServer() {
-        if (currentServer != null) {
-            logger.info("Stopping proxy server...");
-            currentServer.stop();
-
-            // Interrupt server thread if still running
-            if (serverThread != null && serverThread.isAlive()) {
-                serverThread.interrupt();
-            }
+    public synchronized void stopServer(ProxySession session) {
+        Listener listener = find(session);
+        if (listener != null) {
+            stopListener(listener);
+        }
+    }
 
-            // Shutdown connection executor
-            if (connectionExecutor != null) {
-                shutdownExecutor(connectionExecutor);
-            }
+    /**
+     * Stops all running listeners.
+     */
+    public synchronized void stopServer() {
+        for (Listener listener : new ArrayList<>(listeners)) {
+            stopListener(listener);
+        }
+    }
+
+    private void stopListener(Listener listener) {
+        logger.info("Stopping proxy server {}...", listener.session.getListenerName());
+        listeners.remove(listener);
+        listener.server.stop();
+
+        // Interrupt server thread if still running
+        if (listener.serverThread != null && listener.serverThread.isAlive()) {
+            listener.serverThread.interrupt();
+        }
+
+        // Close the listener's NIO connections; the shared event loops keep serving other listeners
+        if (listener.nioEngine != null) {
+            listener.nioEngine.closeAll();
+        }
+
+        // Shutdown connection executor
+        if (listener.connectionExecutor != null) {
+            shutdownExecutor(listener.connectionExecutor);
+        }
+
+        if (upstreamConnectionPool != null && upstreamPoolOwner == listener) {
+            upstreamConnectionPool.stop();
+            upstreamPoolOwner = null;
+        }
+        listener.session.setActive(false);
 
-            currentServer = null;
-            serverThread = null;
-            connectionExecutor = null;
+        logger.info("Proxy server stopped");
+    }
 
-            logger.info("Proxy server stopped");
+    /**
+     * Creates the forwarding engine selected by the listener's session.
+     * SSL sessions always use blocking forwarding, as the NIO engine works on plain channels only.
+     */
+    private ForwardingEngine createForwardingEngine(Listener listener) {
+        ProxySession session = listener.session;
+        if (session.getForwardingMode() == ForwardingMode.NIO) {
+            if (!session.isSsl()) {
+                listener.nioEngine = new NioForwardingEngine(nioEventLoopGroup, packetCoalescer, readBufferAllocator,
+                        session.getTargetHost(), session.getTargetPort(), hostResolver);
+                return listener.nioEngine;
+            }
+            logger.warn("NIO forwarding is not available for SSL sessions, using blocking forwarding");
         }
+
+        // Create dedicated executor for connection handlers; virtual threads are never pooled
+        ExecutorServiceWrapper connectionExecutor = threadFactory.isVirtual()
+                ? executorServiceFactory.createThreadPerTaskExecutor(threadFactory)
+                : executorServiceFactory.createCachedThreadPool(threadFactory);
+        listener.connectionExecutor = connectionExecutor;
+        SocketFactory targetSocketFactory = socketFactory;
+        // The pool keeps connections to one target, so it serves the first listener that can use it.
+        // With SNI the target host name depends on the client, so only fixed targets are kept ready
+        if (upstreamConnectionPool != null && upstreamPoolOwner == null && !session.isSni()) {
+            upstreamConnectionPool.start(session.getTargetHost(), session.getTargetPort(), session.isSsl(),
+                    session.getSslHostName());
+            upstreamPoolOwner = listener;
+            targetSocketFactory = upstreamConnectionPool;
+        }
+        return new ThreadedForwardingEngine(connectionExecutor, targetSocketFactory, threadFactory, packetCoalescer, readBufferAllocator,
+                session.getTargetHost(), session.getTargetPort(), session.isSsl(),
+                // With SNI the upstream connection requests the same host name as the client
+                session.isSni() ? null : session.getSslHostName());
+    }
+
+    /**
+     * @return the server of the most recently started listener, or null if no listener is started
+     */
+    public synchronized ProxyServer getCurrentServer() {
+        return listeners.isEmpty() ? null : listeners.get(listeners.size() - 1).server;
+    }
+
+    /**
+     * @return the server of the session's listener, or null if it is not started
+     */
+    public synchronized ProxyServer getServer(ProxySession session) {
+        Listener listener = find(session);
+        return listener != null ? listener.server : null;
     }
 
-    public ProxyServer getCurrentServer() {
-        return currentServer;
+    /**
+     * @return the sessions of the started listeners, in start order
+     */
+    public synchronized List<ProxySession> getSessions() {
+        List<ProxySession> sessions = new ArrayList<>(listeners.size());
+        for (Listener listener : listeners) {
+            sessions.add(listener.session);
+        }
+        return sessions;
     }
 
     /**
-     * Checks if a proxy server is currently running.
+     * Checks if any proxy listener is currently running.
      *
-     * @return true if server is running, false otherwise
+     * @return true if a server is running, false otherwise
+     */
+    public synchronized boolean isRunning() {
+        for (Listener listener : listeners) {
+            if (listener.server.isRunning()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if the listener of a session is currently running.
      */
-    public boolean isRunning() {
-        return currentServer != null && currentServer.isRunning();
+    public synchronized boolean isRunning(ProxySession session) {
+        Listener listener = find(session);
+        return listener != null && listener.server.isRunning();
+    }
+
+    /**
+     * Finds the listener of a session; sessions are compared by identity, as they are mutable.
+     */
+    private Listener find(ProxySession session) {
+        for (Listener listener : listeners) {
+            if (listener.session == session) {
+                return listener;
+            }
+        }
+        return null;
     }
 
     /**
@@ -166,4 +313,19 @@ public class ProxyServerManager {
         logger.info("Cleaning up ProxyServerManager");
         stopServer();
     }
+
+    /**
+     * A started session with its server, server thread and connection executor or NIO engine.
+     */
+    private static final class Listener {
+        private final ProxySession session;
+        private ProxyServer server;
+        private ThreadWrapper serverThread;
+        private ExecutorServiceWrapper connectionExecutor;
+        private NioForwardingEngine nioEngine;
+
+        private Listener(ProxySession session) {
+            this.session = session;
+        }
+    }
 }
@@ -1,22 +1,30 @@
 package com.tcpviewer.proxy;
 
+import com.tcpviewer.capture.CapturePipeline;
 import com.tcpviewer.error.ErrorHandlerService;
 import com.tcpviewer.io.wrapper.SocketWrapper;
+import com.tcpviewer.model.CaptureSwitch;
 import com.tcpviewer.model.ConnectionInfo;
 import com.tcpviewer.model.DataPacket;
 import com.tcpviewer.model.Direction;
 import com.tcpviewer.model.ProxySession;
+import com.tcpviewer.model.TlsHandshake;
 import com.tcpviewer.util.DataProcessor;
 import javafx.collections.ObservableList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Main service for TCP proxy operations.
  * Orchestrates ProxyServerManager, ConnectionManager, and DataProcessor.
+ * Several sessions can be active at once, each on a listener of its own; their connections
+ * share one connection list, tagged with the listener that accepted them.
  */
 @Service
 public class ProxyService implements DataCaptureListener {
@@ -27,73 +35,125 @@ public class ProxyService implements DataCaptureListener {
     private final ConnectionManager connectionManager;
     private final DataProcessor dataProcessor;
     private final ErrorHandlerService errorHandlerService;
+    private final DataCaptureListener captureListener;
 
-    private ProxySession currentSession;
+    private final List<ProxySession> sessions = new CopyOnWriteArrayList<>();
+    private volatile ProxySession currentSession;
 
+    /**
+     * @param capturePipeline delivers capture events on its worker thread, or null to
+     *                        process them directly on the forwarding threads
+     */
     public ProxyService(ProxyServerManager serverManager,
                        ConnectionManager connectionManager,
                        DataProcessor dataProcessor,
-                       ErrorHandlerService errorHandlerService) {
+                       ErrorHandlerService errorHandlerService,
+                       CapturePipeline capturePipeline) {
         this.serverManager = serverManager;
         this.connectionManager = connectionManager;
         this.dataProcessor = dataProcessor;
         this.errorHandlerService = errorHandlerService;
+        this.captureListener = capturePipeline != null ? capturePipeline.attach(this) : this;
     }
 
     /**
-     * Starts a new proxy session.
+     * Starts a new proxy session on a listener of its own.
+     * Starting the first session of a capture clears the connections of the previous capture;
+     * sessions started while others are active add to their connections.
      *
      * @param session The proxy session configuration
-     * @throws IllegalStateException if a session is already active
+     * @throws IllegalStateException if an active session already listens on the same local address
      */
     public void startProxySession(ProxySession session) {
-        if (currentSession != null && currentSession.isActive()) {
-            throw new IllegalStateException("A proxy session is already active");
+        for (ProxySession active : getActiveSessions()) {
+            if (active.getListenerName().equals(session.getListenerName())) {
+                throw new IllegalStateException("A proxy session is already active on " + session.getListenerName());
+            }
         }
 
-        // Clear previous connections
-        connectionManager.clear();
+        if (getActiveSessions().isEmpty()) {
+            // Clear previous connections and their stored payloads
+            sessions.clear();
+            connectionManager.clear();
+            dataProcessor.reset();
+        }
 
         // Start proxy server
         serverManager.startServer(
                 session,
-                this, // ProxyService implements DataCaptureListener
-                (connectionId, clientSocket) -> onConnectionAccepted(connectionId, clientSocket)
+                captureListener, // Queues events for this service's DataCaptureListener methods
+                (connectionId, clientSocket) -> onConnectionAccepted(connectionId, clientSocket, session)
         );
 
+        sessions.add(session);
         currentSession = session;
         logger.info("Proxy session started: {}", session.getDisplayInfo());
     }
 
     /**
-     * Stops the current proxy session.
+     * Stops one proxy session. The other sessions keep running.
+     *
+     * @param session The session to stop
+     */
+    public void stopProxySession(ProxySession session) {
+        if (sessions.stream().anyMatch(started -> started == session)) {
+            serverManager.stopServer(session);
+            session.setActive(false);
+            logger.info("Proxy session stopped: {}", session.getDisplayInfo());
+        }
+    }
+
+    /**
+     * Stops all proxy sessions.
      */
     public void stopProxySession() {
-        if (currentSession != null) {
+        if (!sessions.isEmpty()) {
             serverManager.stopServer();
-            currentSession.setActive(false);
-            logger.info("Proxy session stopped");
+            for (ProxySession session : sessions) {
+                session.setActive(false);
+            }
+            logger.info("Proxy sessions stopped");
         }
     }
 
     /**
-     * Checks if a proxy session is currently active.
+     * Checks if any proxy session is currently active.
      *
-     * @return true if session is active, false otherwise
+     * @return true if a session is active, false otherwise
      */
     public boolean isSessionActive() {
-        return currentSession != null && currentSession.isActive() && serverManager.isRunning();
+        for (ProxySession session : sessions) {
+            if (session.isActive() && serverManager.isRunning(session)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Gets the current proxy session.
+     * Gets the most recently started proxy session.
      *
-     * @return The current ProxySession or null if none active
+     * @return The most recently started ProxySession or null if none was started
      */
     public ProxySession getCurrentSession() {
         return currentSession;
     }
 
+    /**
+     * Gets the active proxy sessions.
+     *
+     * @return the active sessions, in start order
+     */
+    public List<ProxySession> getActiveSessions() {
+        List<ProxySession> active = new ArrayList<>();
+        for (ProxySession session : sessions) {
+            if (session.isActive()) {
+                active.add(session);
+            }
+        }
+        return active;
+    }
+
     /**
      * Gets the observable list of active connections.
      *
@@ -122,18 +182,36 @@ public class ProxyService implements DataCaptureListener {
         return connectionManager.getActiveConnectionCount();
     }
 
+    /**
+     * Gets the count of full TLS handshakes in the current session, on both sides of the proxy.
+     */
+    public long getFullHandshakeCount() {
+        return connectionManager.getFullHandshakeCount();
+    }
+
+    /**
+     * Gets the count of resumed TLS handshakes in the current session, on both sides of the proxy.
+     */
+    public long getResumedHandshakeCount() {
+        return connectionManager.getResumedHandshakeCount();
+    }
+
     /**
      * Callback when a new connection is accepted.
      */
-    private void onConnectionAccepted(UUID connectionId, SocketWrapper clientSocket) {
+    private void onConnectionAccepted(UUID connectionId, SocketWrapper clientSocket, ProxySession session) {
         // Register connection with full socket information
-        connectionManager.registerConnection(connectionId, clientSocket);
+        ConnectionInfo connection = connectionManager.registerConnection(connectionId, clientSocket,
+                session.getListenerName());
+        if (connection != null && !session.isCapture()) {
+            connection.setCaptureEnabled(false);
+        }
         logger.debug("Connection accepted and registered: {}", connectionId);
     }
 
     /**
      * Implementation of DataCaptureListener.onDataCaptured
-     * Called by TcpForwarder when data is captured.
+     * Called on the capture worker when a forwarder has captured data.
      */
     @Override
     public void onDataCaptured(UUID connectionId, byte[] data, Direction direction) {
@@ -156,9 +234,39 @@ public class ProxyService implements DataCaptureListener {
 
     }
 
+    /**
+     * Implementation of DataCaptureListener.onTlsHandshake
+     * Called on the connection handler thread once both handshakes of an SSL connection completed.
+     */
+    @Override
+    public void onTlsHandshake(UUID connectionId, TlsHandshake client, TlsHandshake server) {
+        connectionManager.setTlsHandshakes(connectionId, client, server);
+        logger.debug("TLS handshakes for connection {}: client {}, server {}", connectionId,
+                client != null ? client.getDisplayText() : "none", server != null ? server.getDisplayText() : "none");
+    }
+
+    /**
+     * Implementation of DataCaptureListener.onDataDropped
+     * Called on the forwarding thread when the capture pipeline was full under the drop policy.
+     */
+    @Override
+    public void onDataDropped(UUID connectionId, Direction direction, int bytes) {
+        connectionManager.addDroppedData(connectionId, bytes);
+    }
+
+    /**
+     * Implementation of DataCaptureListener.getCaptureSwitch
+     * Called on the connection's forwarding thread before forwarding starts.
+     */
+    @Override
+    public CaptureSwitch getCaptureSwitch(UUID connectionId) {
+        ConnectionInfo connection = connectionManager.getConnection(connectionId);
+        return connection != null ? connection.getCaptureSwitch() : null;
+    }
+
     /**
      * Implementation of DataCaptureListener.onConnectionClosed
-     * Called by ProxyConnectionHandler when a connection is fully closed.
+     * Called on the capture worker after the forwarding engine reported the connection closed.
      */
     @Override
     public void onConnectionClosed(UUID connectionId) {
@@ -172,8 +280,10 @@ public class ProxyService implements DataCaptureListener {
         // Mark connection as closed
         connectionManager.closeConnection(connectionId);
 
-        logger.info("Connection closed: {} - Total bytes: {}",
-                connection.getDisplayName(), connection.getTotalBytes());
+        logger.info("Connection closed: {} - Total bytes: {} (client to server: {}, server to client: {})",
+                connection.getDisplayName(), connection.getTotalBytes(),
+                connection.getStats(Direction.CLIENT_TO_SERVER).getBytes(),
+                connection.getStats(Direction.SERVER_TO_CLIENT).getBytes());
 
     }
 }
@@ -0,0 +1,70 @@
+package com.tcpviewer.proxy;
+
+import com.tcpviewer.buffer.ReadBufferAllocator;
+import com.tcpviewer.capture.PacketCoalescer;
+import com.tcpviewer.io.wrapper.SocketWrapper;
+import com.tcpviewer.io.wrapper.factory.SocketFactory;
+import com.tcpviewer.lang.wrapper.ExecutorServiceWrapper;
+import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
+
+import java.util.UUID;
+
+/**
+ * Forwarding engine using blocking I/O.
+ * Every connection gets a ProxyConnectionHandler on the executor, which in turn
+ * starts one TcpForwarder thread per direction.
+ */
+public class ThreadedForwardingEngine implements ForwardingEngine {
+
+    private final ExecutorServiceWrapper executorService;
+    private final SocketFactory socketFactory;
+    private final ThreadFactory threadFactory;
+    private final PacketCoalescer coalescer;
+    private final ReadBufferAllocator readBuffers;
+    private final String targetHost;
+    private final int targetPort;
+    private final boolean ssl;
+    private final String sslHostName;
+
+    public ThreadedForwardingEngine(ExecutorServiceWrapper executorService,
+                                    SocketFactory socketFactory,
+                                    ThreadFactory threadFactory,
+                                    String targetHost, int targetPort,
+                                    boolean ssl, String sslHostName) {
+        this(executorService, socketFactory, threadFactory, null, null, targetHost, targetPort, ssl, sslHostName);
+    }
+
+    /**
+     * @param coalescer   groups captured data into packets, or null to capture every read separately
+     * @param readBuffers sizes and lends the read buffers, or null for fixed unpooled buffers
+     * @param sslHostName SNI host name for SSL target connections, or null to request the host name
+     *                    the client requested
+     */
+    public ThreadedForwardingEngine(ExecutorServiceWrapper executorService,
+                                    SocketFactory socketFactory,
+                                    ThreadFactory threadFactory,
+                                    PacketCoalescer coalescer,
+                                    ReadBufferAllocator readBuffers,
+                                    String targetHost, int targetPort,
+                                    boolean ssl, String sslHostName) {
+        this.executorService = executorService;
+        this.socketFactory = socketFactory;
+        this.threadFactory = threadFactory;
+        this.coalescer = coalescer;
+        this.readBuffers = readBuffers;
+        this.targetHost = targetHost;
+        this.targetPort = targetPort;
+        this.ssl = ssl;
+        this.sslHostName = sslHostName;
+    }
+
+    @Override
+    public void forward(UUID connectionId, SocketWrapper clientSocket, DataCaptureListener listener) {
+        ProxyConnectionHandler handler = new ProxyConnectionHandler(
+                clientSocket, targetHost, targetPort,
+                listener, connectionId, socketFactory, threadFactory, coalescer, readBuffers, ssl, sslHostName
+        );
+
+        executorService.submit(handler);
+    }
+}
@@ -0,0 +1,267 @@
+package com.tcpviewer.proxy;
+
+import com.tcpviewer.io.wrapper.SocketWrapper;
+import com.tcpviewer.io.wrapper.factory.SocketFactory;
+import com.tcpviewer.lang.wrapper.ThreadWrapper;
+import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
+import com.tcpviewer.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Socket factory keeping connections to the target server ready, so a client connection
+ * does not wait for the TCP connect and, for SSL, the handshake to the target.
+ * A background thread keeps up to the pool size idle connections to the started target;
+ * requests for that target take the most recently opened idle connection, all other
+ * requests go to the delegate factory.
+ * <p>
+ * Idle connections are checked before they are handed out and while the pool is idle;
+ * they expire after the maximum idle time and are dropped once closed.
+ * Blocking sockets cannot see a close by the target without reading, so the maximum
+ * idle time should stay below the target's own idle timeout.
+ * <p>
+ * The setup time of every connection handed out is recorded, pooled or not, so a pool of
+ * size 0 measures the unpooled setup time for comparison.
+ */
+public class UpstreamConnectionPool implements SocketFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamConnectionPool.class);
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final SocketFactory delegate;
+    private final int size;
+    private final long maxIdleNanos;
+    private final ThreadFactory threadFactory;
+    private final ConcurrentLinkedDeque<IdleConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Object fillLock = new Object();
+    private volatile Target target;
+    private ThreadWrapper fillerThread;
+
+    private final MetricsRegistry.Counter hits;
+    private final MetricsRegistry.Counter misses;
+    private final MetricsRegistry.Counter discarded;
+    private final MetricsRegistry.Counter setups;
+    private final MetricsRegistry.Counter setupMicros;
+    private final AtomicLong lastSetupMicros = new AtomicLong();
+
+    /**
+     * @param delegate      opens the connections
+     * @param size          idle connections kept ready, 0 to open every connection on demand
+     * @param maxIdle       time an idle connection is kept
+     * @param unit          time unit of the maximum idle time
+     * @param threadFactory factory for the thread opening the idle connections
+     * @param metrics       registry receiving the pool and setup time metrics
+     */
+    public UpstreamConnectionPool(SocketFactory delegate, int size, long maxIdle, TimeUnit unit,
+                                  ThreadFactory threadFactory, MetricsRegistry metrics) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Pool size must not be negative: " + size);
+        }
+        this.delegate = delegate;
+        this.size = size;
+        this.maxIdleNanos = unit.toNanos(maxIdle);
+        this.threadFactory = threadFactory;
+
+        this.hits = metrics.counter("upstream.pool.hits");
+        this.misses = metrics.counter("upstream.pool.misses");
+        this.discarded = metrics.counter("upstream.pool.discarded");
+        this.setups = metrics.counter("upstream.setup.count");
+        this.setupMicros = metrics.counter("upstream.setup.total.micros");
+        metrics.gauge("upstream.setup.last.micros", lastSetupMicros::get);
+        metrics.gauge("upstream.pool.idle", idle::size);
+    }
+
+    /**
+     * Starts keeping idle connections to a target, replacing the previous target.
+     * Does nothing but stop the previous target if the pool size is 0.
+     *
+     * @param host        target host
+     * @param port        target port
+     * @param ssl         if true, connections are SSL and handshaken ahead of time
+     * @param sniHostName SNI host name of SSL connections, or null to leave the default
+     */
+    public synchronized void start(String host, int port, boolean ssl, String sniHostName) {
+        stop();
+        if (size == 0) {
+            return;
+        }
+        Target started = new Target(host, port, ssl, sniHostName);
+        target = started;
+        fillerThread = threadFactory.createDaemonThread(() -> fill(started), "UpstreamPool");
+        fillerThread.start();
+        logger.info("Keeping {} idle connections to {}:{}", size, host, port);
+    }
+
+    /**
+     * Stops keeping idle connections and closes the idle ones.
+     */
+    public synchronized void stop() {
+        target = null;
+        if (fillerThread != null) {
+            fillerThread.interrupt();
+            fillerThread = null;
+        }
+        IdleConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            close(connection.socket);
+        }
+    }
+
+    @Override
+    public SocketWrapper createSocket(String host, int port, boolean ssl, String sniHostName) throws IOException {
+        long start = System.nanoTime();
+        SocketWrapper socket = null;
+        if (new Target(host, port, ssl, sniHostName).equals(target)) {
+            socket = takeIdle();
+            if (socket != null) {
+                hits.increment();
+            } else {
+                misses.increment();
+            }
+        }
+        if (socket == null) {
+            socket = delegate.createSocket(host, port, ssl, sniHostName);
+        }
+
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        setups.increment();
+        setupMicros.add(micros);
+        lastSetupMicros.set(micros);
+        return socket;
+    }
+
+    @Override
+    public SocketWrapper wrapSocket(Socket socket) {
+        return delegate.wrapSocket(socket);
+    }
+
+    /**
+     * @return the number of idle connections
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Takes the most recently opened idle connection that is still usable.
+     */
+    private SocketWrapper takeIdle() {
+        IdleConnection connection;
+        while ((connection = idle.pollLast()) != null) {
+            if (isUsable(connection, System.nanoTime())) {
+                wakeFiller();
+                return connection.socket;
+            }
+            discard(connection);
+        }
+        wakeFiller();
+        return null;
+    }
+
+    private void fill(Target started) {
+        long checkIntervalMillis = Math.max(TimeUnit.NANOSECONDS.toMillis(maxIdleNanos) / 2, 10);
+        while (target == started) {
+            evictUnusable();
+            if (idle.size() < size) {
+                try {
+                    SocketWrapper socket = delegate.createSocket(started.host, started.port, started.ssl,
+                            started.sniHostName);
+                    IdleConnection connection = new IdleConnection(socket, started, System.nanoTime());
+                    idle.addLast(connection);
+                    // The interrupt cannot break a blocking connect or handshake, so the pool may have been
+                    // stopped or restarted meanwhile; close the connection unless stop() drained it already
+                    if (target != started) {
+                        if (idle.removeFirstOccurrence(connection)) {
+                            close(socket);
+                        }
+                        break;
+                    }
+                    continue;
+                } catch (IOException e) {
+                    logger.warn("Cannot open idle connection to {}:{}: {}", started.host, started.port,
+                            e.getMessage());
+                    if (!sleep(RETRY_DELAY_MILLIS)) {
+                        break;
+                    }
+                    continue;
+                }
+            }
+            if (!sleep(checkIntervalMillis)) {
+                break;
+            }
+        }
+        logger.debug("Stopped keeping idle connections to {}:{}", started.host, started.port);
+    }
+
+    /**
+     * Closes the idle connections that are no longer usable.
+     */
+    private void evictUnusable() {
+        long now = System.nanoTime();
+        Iterator<IdleConnection> iterator = idle.iterator();
+        while (iterator.hasNext()) {
+            IdleConnection connection = iterator.next();
+            if (!isUsable(connection, now) && idle.removeFirstOccurrence(connection)) {
+                discard(connection);
+            }
+        }
+    }
+
+    /**
+     * Tells whether an idle connection is open, not expired and still to the current target.
+     * A connection opened while the target was replaced is never handed out.
+     */
+    private boolean isUsable(IdleConnection connection, long now) {
+        return connection.target == target && !connection.socket.isClosed()
+                && (maxIdleNanos <= 0 || now - connection.openedAtNanos < maxIdleNanos);
+    }
+
+    private void discard(IdleConnection connection) {
+        discarded.increment();
+        close(connection.socket);
+    }
+
+    /**
+     * Waits until the interval passed or a connection was taken.
+     *
+     * @return false if the filler was interrupted
+     */
+    private boolean sleep(long millis) {
+        synchronized (fillLock) {
+            try {
+                fillLock.wait(millis);
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    private void wakeFiller() {
+        synchronized (fillLock) {
+            fillLock.notifyAll();
+        }
+    }
+
+    private static void close(SocketWrapper socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.trace("Error closing idle connection: {}", e.getMessage());
+        }
+    }
+
+    private record Target(String host, int port, boolean ssl, String sniHostName) {
+    }
+
+    private record IdleConnection(SocketWrapper socket, Target target, long openedAtNanos) {
+    }
+}
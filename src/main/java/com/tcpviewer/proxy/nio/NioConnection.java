@@ -0,0 +1,291 @@
+package com.tcpviewer.proxy.nio;
+
+import com.tcpviewer.buffer.BufferPool;
+import com.tcpviewer.buffer.ReadBufferAllocator;
+import com.tcpviewer.capture.CaptureStream;
+import com.tcpviewer.capture.PacketCoalescer;
+import com.tcpviewer.model.CaptureSwitch;
+import com.tcpviewer.model.Direction;
+import com.tcpviewer.proxy.DataCaptureListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * A proxied connection served by a {@link NioEventLoop}.
+ * Forwards bytes between the client and target channels in both directions,
+ * applying back-pressure by pausing reads while the opposite channel cannot accept more data.
+ * Forwarded bytes are handed to a capture stream per direction, which groups them into packets.
+ * While the connection's capture switch is off, a direction forwards through a direct buffer
+ * instead, so the bytes are neither copied between heap and native memory nor captured; they
+ * are only counted. The switch is followed whenever the direction's buffer is empty.
+ * All methods except the constructor run on the event loop thread.
+ */
+class NioConnection {
+
+    private static final Logger logger = LoggerFactory.getLogger(NioConnection.class);
+
+    private final UUID connectionId;
+    private final DataCaptureListener listener;
+    private final CaptureSwitch captureSwitch;
+    private final Endpoint client;
+    private final Endpoint target;
+    private final Consumer<NioConnection> onClosed;
+    private boolean closed;
+
+    NioConnection(UUID connectionId, SocketChannel clientChannel, SocketChannel targetChannel,
+                  DataCaptureListener listener, PacketCoalescer coalescer, ReadBufferAllocator readBuffers) {
+        this(connectionId, clientChannel, targetChannel, listener, coalescer, readBuffers, null);
+    }
+
+    /**
+     * @param onClosed receives the connection once it is closed, or null
+     */
+    NioConnection(UUID connectionId, SocketChannel clientChannel, SocketChannel targetChannel,
+                  DataCaptureListener listener, PacketCoalescer coalescer, ReadBufferAllocator readBuffers,
+                  Consumer<NioConnection> onClosed) {
+        this.connectionId = connectionId;
+        this.listener = listener;
+        this.onClosed = onClosed;
+        this.captureSwitch = listener != null ? listener.getCaptureSwitch(connectionId) : null;
+        this.client = new Endpoint(clientChannel, "Client→Target", Direction.CLIENT_TO_SERVER,
+                openCaptureStream(coalescer, readBuffers.getBufferPool(), Direction.CLIENT_TO_SERVER),
+                readBuffers.newHandle());
+        this.target = new Endpoint(targetChannel, "Target→Client", Direction.SERVER_TO_CLIENT,
+                openCaptureStream(coalescer, readBuffers.getBufferPool(), Direction.SERVER_TO_CLIENT),
+                readBuffers.newHandle());
+        this.client.peer = target;
+        this.target.peer = client;
+    }
+
+    private CaptureStream openCaptureStream(PacketCoalescer coalescer, BufferPool bufferPool, Direction direction) {
+        return coalescer != null
+                ? coalescer.openStream(connectionId, direction, listener)
+                : CaptureStream.perChunk(connectionId, direction, listener, bufferPool);
+    }
+
+    /**
+     * Registers both channels with the selector. Reading starts once the target is connected.
+     */
+    void register(Selector selector) {
+        try {
+            client.key = client.channel.register(selector, 0, client);
+            target.key = target.channel.register(selector, 0, target);
+            if (target.channel.isConnected()) {
+                onConnected();
+            } else {
+                target.key.interestOps(SelectionKey.OP_CONNECT);
+            }
+        } catch (IOException e) {
+            logger.error("Error registering connection {}: {}", connectionId, e.getMessage());
+            close();
+        }
+    }
+
+    private void onConnected() {
+        logger.info("Connected to target for connection {}", connectionId);
+        client.key.interestOps(SelectionKey.OP_READ);
+        target.key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Closes both channels and notifies the listener once.
+     */
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        client.closeCapture();
+        target.closeCapture();
+        client.closeChannel();
+        target.closeChannel();
+        logger.info("Connection {} closed", connectionId);
+        if (onClosed != null) {
+            onClosed.accept(this);
+        }
+
+        if (listener != null) {
+            try {
+                listener.onConnectionClosed(connectionId);
+            } catch (Exception e) {
+                // Log but don't rethrow - connection is already closed
+                logger.error("Error in connection closed callback for {}: {}",
+                        connectionId, e.getMessage());
+            }
+        }
+    }
+
+    private void closeIfDone() {
+        if (client.inputClosed && target.inputClosed
+                && client.inbound.position() == 0 && target.inbound.position() == 0) {
+            close();
+        }
+    }
+
+    /**
+     * One side of the connection. Bytes read from this channel are buffered in
+     * {@code inbound} until they have been written to the peer channel.
+     */
+    private class Endpoint implements NioSelectionHandler {
+        private final SocketChannel channel;
+        private final String name;
+        private final Direction direction;
+        private final CaptureStream captureStream;
+        private final ReadBufferAllocator.Handle readBuffer;
+        private ByteBuffer inbound;
+        private ByteBuffer passthroughBuffer;
+        private Endpoint peer;
+        private SelectionKey key;
+        private boolean inputClosed;
+
+        Endpoint(SocketChannel channel, String name, Direction direction, CaptureStream captureStream,
+                 ReadBufferAllocator.Handle readBuffer) {
+            this.channel = channel;
+            this.name = name;
+            this.direction = direction;
+            this.captureStream = captureStream;
+            this.readBuffer = readBuffer;
+            this.inbound = ByteBuffer.wrap(readBuffer.buffer().array());
+        }
+
+        @Override
+        public void onSelected(SelectionKey selectedKey) {
+            try {
+                if (selectedKey.isConnectable()) {
+                    channel.finishConnect();
+                    onConnected();
+                    return;
+                }
+                if (selectedKey.isReadable()) {
+                    read();
+                }
+                if (selectedKey.isValid() && selectedKey.isWritable()) {
+                    peer.writeToPeer();
+                }
+            } catch (IOException e) {
+                logger.debug("{} connection {} closed: {}", name, connectionId, e.getMessage());
+                NioConnection.this.close();
+            }
+        }
+
+        @Override
+        public void close() {
+            NioConnection.this.close();
+        }
+
+        /**
+         * Reads until the channel is drained, the peer stops accepting data or the stream ends.
+         */
+        private void read() throws IOException {
+            int bytesRead;
+            while ((bytesRead = channel.read(resizeInbound())) > 0) {
+                if (inbound.isDirect()) {
+                    captureSwitch.addPassedThrough(direction, bytesRead);
+                } else {
+                    if (captureStream != null) {
+                        captureStream.append(inbound.array(), inbound.arrayOffset() + inbound.position() - bytesRead, bytesRead);
+                    }
+                    readBuffer.record(bytesRead);
+                }
+                logger.trace("{} read {} bytes", name, bytesRead);
+                if (!writeToPeer()) {
+                    break;
+                }
+            }
+
+            if (bytesRead == -1) {
+                logger.debug("{} reached end of stream", name);
+                inputClosed = true;
+                setInterest(key, SelectionKey.OP_READ, false);
+                if (inbound.position() == 0) {
+                    peer.shutdownOutput();
+                }
+                closeIfDone();
+            }
+        }
+
+        /**
+         * Switches to a buffer of the size picked by the allocator, or to the direct passthrough
+         * buffer while capture is off. Only an empty buffer is replaced; reads resume on an empty
+         * buffer, as they pause while the peer is congested.
+         */
+        private ByteBuffer resizeInbound() {
+            if (inbound.position() == 0) {
+                if (captureSwitch != null && !captureSwitch.isEnabled()) {
+                    if (passthroughBuffer == null) {
+                        // Allocated once the direction first forwards without capture
+                        passthroughBuffer = ByteBuffer.allocateDirect(readBuffer.size());
+                    }
+                    inbound = passthroughBuffer;
+                } else {
+                    byte[] array = readBuffer.buffer().array();
+                    if (inbound.isDirect() || array != inbound.array()) {
+                        inbound = ByteBuffer.wrap(array);
+                    }
+                }
+            }
+            return inbound;
+        }
+
+        /**
+         * Writes buffered inbound bytes to the peer channel.
+         *
+         * @return true if everything was written, false if the peer is not ready for more
+         */
+        private boolean writeToPeer() throws IOException {
+            inbound.flip();
+            peer.channel.write(inbound);
+            boolean complete = !inbound.hasRemaining();
+            inbound.compact();
+
+            // Pause reading while the peer is congested, resume once it drained
+            setInterest(peer.key, SelectionKey.OP_WRITE, !complete);
+            setInterest(key, SelectionKey.OP_READ, complete && !inputClosed);
+
+            if (complete && inputClosed) {
+                peer.shutdownOutput();
+                closeIfDone();
+            }
+            return complete;
+        }
+
+        private void shutdownOutput() throws IOException {
+            if (channel.isOpen() && channel.isConnected()) {
+                channel.shutdownOutput();
+            }
+        }
+
+        private void closeCapture() {
+            if (captureStream != null) {
+                captureStream.close();
+            }
+        }
+
+        private void closeChannel() {
+            if (key != null) {
+                key.cancel();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.trace("Error closing channel: {}", e.getMessage());
+            }
+            readBuffer.release();
+        }
+    }
+
+    private static void setInterest(SelectionKey key, int operation, boolean enabled) {
+        if (key != null && key.isValid()) {
+            int ops = key.interestOps();
+            key.interestOps(enabled ? ops | operation : ops & ~operation);
+        }
+    }
+}
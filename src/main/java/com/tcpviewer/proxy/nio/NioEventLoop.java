@@ -0,0 +1,133 @@
+package com.tcpviewer.proxy.nio;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Single-threaded selector loop multiplexing many non-blocking channels.
+ * Channel registration and all channel I/O happen on the loop thread; other threads
+ * hand work over through {@link #execute(Runnable)}.
+ */
+public class NioEventLoop implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(NioEventLoop.class);
+
+    private final String name;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private volatile boolean running = true;
+
+    public NioEventLoop(String name) throws IOException {
+        this.name = name;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Schedules a task to run on the loop thread and wakes the selector up.
+     *
+     * @param task the task to run
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Returns the selector owned by this loop. Only to be used from the loop thread.
+     *
+     * @return the selector
+     */
+    Selector selector() {
+        return selector;
+    }
+
+    /**
+     * Returns the number of channels currently registered with this loop.
+     *
+     * @return the registered channel count
+     */
+    public int getChannelCount() {
+        try {
+            return selector.keys().size();
+        } catch (ClosedSelectorException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void run() {
+        logger.debug("{} started", name);
+        try {
+            while (running) {
+                selector.select();
+                runTasks();
+                processSelectedKeys();
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running) {
+                logger.error("{} selector failed: {}", name, e.getMessage(), e);
+            }
+        } finally {
+            closeAll();
+            logger.debug("{} stopped", name);
+        }
+    }
+
+    /**
+     * Stops the loop. Channels still registered are closed by the loop thread.
+     */
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("{} task failed: {}", name, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void processSelectedKeys() {
+        Iterator<SelectionKey> iterator = selector.selectedKeys().iterator();
+        while (iterator.hasNext()) {
+            SelectionKey key = iterator.next();
+            iterator.remove();
+            if (key.isValid()) {
+                ((NioSelectionHandler) key.attachment()).onSelected(key);
+            }
+        }
+    }
+
+    private void closeAll() {
+        runTasks();
+        List<NioSelectionHandler> handlers = new ArrayList<>();
+        try {
+            for (SelectionKey key : selector.keys()) {
+                handlers.add((NioSelectionHandler) key.attachment());
+            }
+        } catch (ClosedSelectorException e) {
+            return;
+        }
+        handlers.forEach(NioSelectionHandler::close);
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.trace("Error closing selector: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.tcpviewer.proxy.nio;
+
+import com.tcpviewer.lang.wrapper.ThreadWrapper;
+import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed set of selector event loops shared by all NIO proxy sessions.
+ * Loops are started lazily on first use and connections are spread over them round-robin.
+ */
+public class NioEventLoopGroup {
+
+    private static final Logger logger = LoggerFactory.getLogger(NioEventLoopGroup.class);
+
+    private final int size;
+    private final ThreadFactory threadFactory;
+    private final List<NioEventLoop> loops = new ArrayList<>();
+    private final List<ThreadWrapper> threads = new ArrayList<>();
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    /**
+     * Creates a new event loop group.
+     *
+     * @param size          number of event loops, or a value below 1 to use one loop per available core
+     * @param threadFactory factory for the event loop threads
+     */
+    public NioEventLoopGroup(int size, ThreadFactory threadFactory) {
+        this.size = size > 0 ? size : Runtime.getRuntime().availableProcessors();
+        this.threadFactory = threadFactory;
+    }
+
+    /**
+     * Returns the next event loop in round-robin order, starting the loops if necessary.
+     *
+     * @return an event loop
+     */
+    public NioEventLoop next() {
+        List<NioEventLoop> started = start();
+        return started.get(Math.floorMod(nextIndex.getAndIncrement(), started.size()));
+    }
+
+    /**
+     * Returns the number of event loops in this group.
+     *
+     * @return the group size
+     */
+    public int getSize() {
+        return size;
+    }
+
+    private synchronized List<NioEventLoop> start() {
+        if (loops.isEmpty()) {
+            try {
+                for (int i = 0; i < size; i++) {
+                    NioEventLoop loop = new NioEventLoop("NioEventLoop-" + i);
+                    ThreadWrapper thread = threadFactory.createDaemonThread(loop, "NioEventLoop-" + i);
+                    loops.add(loop);
+                    threads.add(thread);
+                    thread.start();
+                }
+            } catch (IOException e) {
+                loops.forEach(NioEventLoop::shutdown);
+                loops.clear();
+                threads.clear();
+                throw new UncheckedIOException("Failed to open selector", e);
+            }
+            logger.info("Started {} NIO event loops", size);
+        }
+        return loops;
+    }
+
+    /**
+     * Stops all event loops and closes the channels still registered with them.
+     */
+    public synchronized void shutdown() {
+        loops.forEach(NioEventLoop::shutdown);
+        for (ThreadWrapper thread : threads) {
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                threadFactory.currentThread().interrupt();
+                break;
+            }
+        }
+        loops.clear();
+        threads.clear();
+    }
+}
@@ -0,0 +1,170 @@
+package com.tcpviewer.proxy.nio;
+
+import com.tcpviewer.buffer.ReadBufferAllocator;
+import com.tcpviewer.capture.PacketCoalescer;
+import com.tcpviewer.io.resolver.HostResolver;
+import com.tcpviewer.io.wrapper.SocketWrapper;
+import com.tcpviewer.proxy.DataCaptureListener;
+import com.tcpviewer.proxy.ForwardingEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Forwarding engine built on non-blocking channels.
+ * Connections are spread over the loops of a shared {@link NioEventLoopGroup}, so no thread
+ * is dedicated to a single connection. Requires a channel-backed plain client socket.
+ * The engine keeps track of its open connections, so they can be closed together with the
+ * listener that accepted them while the shared loops keep serving other listeners.
+ */
+public class NioForwardingEngine implements ForwardingEngine {
+
+    private static final Logger logger = LoggerFactory.getLogger(NioForwardingEngine.class);
+
+    private final NioEventLoopGroup eventLoopGroup;
+    private final PacketCoalescer coalescer;
+    private final ReadBufferAllocator readBuffers;
+    private final String targetHost;
+    private final int targetPort;
+    private final HostResolver hostResolver;
+    private final Map<NioConnection, NioEventLoop> connections = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public NioForwardingEngine(NioEventLoopGroup eventLoopGroup, String targetHost, int targetPort) {
+        this(eventLoopGroup, null, null, targetHost, targetPort);
+    }
+
+    public NioForwardingEngine(NioEventLoopGroup eventLoopGroup, PacketCoalescer coalescer, ReadBufferAllocator readBuffers,
+                               String targetHost, int targetPort) {
+        this(eventLoopGroup, coalescer, readBuffers, targetHost, targetPort, HostResolver.SYSTEM);
+    }
+
+    /**
+     * @param coalescer    groups captured data into packets, or null to capture every read separately
+     * @param readBuffers  sizes and lends the channel buffers, or null for fixed unpooled buffers
+     * @param hostResolver resolves the target host; connections are only connected once it has resolved
+     */
+    public NioForwardingEngine(NioEventLoopGroup eventLoopGroup, PacketCoalescer coalescer, ReadBufferAllocator readBuffers,
+                               String targetHost, int targetPort, HostResolver hostResolver) {
+        this.eventLoopGroup = eventLoopGroup;
+        this.coalescer = coalescer;
+        this.readBuffers = readBuffers != null
+                ? readBuffers
+                : ReadBufferAllocator.unpooled(ReadBufferAllocator.DEFAULT_SIZE);
+        this.targetHost = targetHost;
+        this.targetPort = targetPort;
+        this.hostResolver = Objects.requireNonNull(hostResolver, "hostResolver");
+    }
+
+    @Override
+    public void forward(UUID connectionId, SocketWrapper clientSocket, DataCaptureListener listener) {
+        SocketChannel clientChannel = clientSocket.getChannel();
+        if (clientChannel == null) {
+            throw new IllegalStateException("NIO forwarding requires a channel-backed client socket");
+        }
+
+        try {
+            clientChannel.configureBlocking(false);
+            clientChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException e) {
+            fail(connectionId, clientChannel, null, listener, e);
+            return;
+        }
+
+        // A resolver with its own lookup executor keeps the accept thread from waiting for the lookup;
+        // the connection is handed to an event loop once the target has resolved
+        hostResolver.resolveAsync(targetHost).whenComplete((address, error) -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                fail(connectionId, clientChannel, null, listener, cause);
+            } else {
+                connect(connectionId, clientChannel, new InetSocketAddress(address, targetPort), listener);
+            }
+        });
+    }
+
+    /**
+     * Starts connecting to the resolved target and hands both channels to an event loop.
+     */
+    private void connect(UUID connectionId, SocketChannel clientChannel, InetSocketAddress targetAddress,
+                         DataCaptureListener listener) {
+        SocketChannel targetChannel = null;
+        try {
+            logger.info("Connecting to target {}:{} for connection {}",
+                    targetHost, targetPort, connectionId);
+
+            targetChannel = SocketChannel.open();
+            targetChannel.configureBlocking(false);
+            targetChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            targetChannel.connect(targetAddress);
+        } catch (IOException e) {
+            fail(connectionId, clientChannel, targetChannel, listener, e);
+            return;
+        }
+
+        NioEventLoop loop = eventLoopGroup.next();
+        NioConnection connection = new NioConnection(connectionId, clientChannel, targetChannel,
+                listener, coalescer, readBuffers, connections::remove);
+        connections.put(connection, loop);
+        loop.execute(() -> connection.register(loop.selector()));
+        if (closed) {
+            // Accepted while the engine was closed; closeAll may have missed it
+            loop.execute(connection::close);
+        }
+    }
+
+    /**
+     * Closes all open connections of this engine on their event loops and closes connections
+     * forwarded later right away. The event loops keep running for other engines.
+     */
+    public void closeAll() {
+        closed = true;
+        connections.forEach((connection, loop) -> loop.execute(connection::close));
+    }
+
+    /**
+     * @return the number of open connections of this engine
+     */
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    private void fail(UUID connectionId, SocketChannel clientChannel, SocketChannel targetChannel,
+                      DataCaptureListener listener, Throwable error) {
+        logger.error("Error handling connection {}: {}", connectionId, error.getMessage());
+        closeQuietly(clientChannel);
+        closeQuietly(targetChannel);
+        notifyClosed(connectionId, listener);
+    }
+
+    private void notifyClosed(UUID connectionId, DataCaptureListener listener) {
+        if (listener != null) {
+            try {
+                listener.onConnectionClosed(connectionId);
+            } catch (Exception e) {
+                logger.error("Error in connection closed callback for {}: {}",
+                        connectionId, e.getMessage());
+            }
+        }
+    }
+
+    private void closeQuietly(SocketChannel channel) {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.trace("Error closing channel: {}", e.getMessage());
+            }
+        }
+    }
+}
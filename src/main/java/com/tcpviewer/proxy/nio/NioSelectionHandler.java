@@ -0,0 +1,23 @@
+package com.tcpviewer.proxy.nio;
+
+import java.nio.channels.SelectionKey;
+
+/**
+ * Attachment of a selection key registered with a {@link NioEventLoop}.
+ * All methods are invoked on the event loop thread.
+ */
+interface NioSelectionHandler {
+
+    /**
+     * Called when the key is selected for one or more of its interest operations.
+     *
+     * @param key the selected key
+     */
+    void onSelected(SelectionKey key);
+
+    /**
+     * Closes the channel behind the key and releases its resources.
+     * Called when the event loop shuts down.
+     */
+    void close();
+}
@@ -0,0 +1,323 @@
+package com.tcpviewer.ssl;
+
+import com.tcpviewer.lang.wrapper.ExecutorServiceWrapper;
+import com.tcpviewer.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Cache of generated server certificates keyed by host name.
+ * Entries expire a time to live after the certificate's validity started, or when it ends,
+ * and the least recently used entry is evicted once the cache is full.
+ * Concurrent requests for a host without a cached certificate wait for a single generation.
+ * <p>
+ * If a key store file is given, the cache is also kept there as a PKCS12 key store, so
+ * repeated sessions and restarts reuse the certificates. The file is written outside the
+ * cache lock, on the persist executor if one is given; certificates added while a write is
+ * pending are written with it. Persisting is best effort: if the file cannot be read or
+ * written, the cache keeps working in memory.
+ */
+public class CertificateCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(CertificateCache.class);
+    private static final String KEY_STORE_TYPE = "PKCS12";
+
+    private final int maxEntries;
+    private final long timeToLiveMillis;
+    private final Path keyStoreFile;
+    private final ExecutorServiceWrapper persistExecutor;
+    private final Map<String, ServerCertificateGeneratorService.GeneratedCertificate> entries;
+    private final Map<String, CompletableFuture<ServerCertificateGeneratorService.GeneratedCertificate>> generating =
+            new ConcurrentHashMap<>();
+
+    // Serializes writes, so a later snapshot is never overwritten by an earlier one
+    private final Object saveLock = new Object();
+    // Guarded by this
+    private boolean saveScheduled;
+
+    private final MetricsRegistry.Counter hits;
+    private final MetricsRegistry.Counter misses;
+    private final MetricsRegistry.Counter evictions;
+
+    /**
+     * @param maxEntries   certificates kept at most
+     * @param timeToLive   time a certificate is reused after its validity started
+     * @param unit         time unit of the time to live
+     * @param keyStoreFile file the cache is persisted to, or null to keep it in memory only
+     * @param metrics      registry receiving the cache metrics
+     */
+    public CertificateCache(int maxEntries, long timeToLive, TimeUnit unit, Path keyStoreFile,
+                            MetricsRegistry metrics) {
+        this(maxEntries, timeToLive, unit, keyStoreFile, null, metrics);
+    }
+
+    /**
+     * @param maxEntries      certificates kept at most
+     * @param timeToLive      time a certificate is reused after its validity started
+     * @param unit            time unit of the time to live
+     * @param keyStoreFile    file the cache is persisted to, or null to keep it in memory only
+     * @param persistExecutor writes the key store file, or null to write it on the thread adding a certificate
+     * @param metrics         registry receiving the cache metrics
+     */
+    public CertificateCache(int maxEntries, long timeToLive, TimeUnit unit, Path keyStoreFile,
+                            ExecutorServiceWrapper persistExecutor, MetricsRegistry metrics) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLiveMillis = unit.toMillis(timeToLive);
+        this.keyStoreFile = keyStoreFile;
+        this.persistExecutor = persistExecutor;
+        this.hits = metrics.counter("ssl.certificate.cache.hits");
+        this.misses = metrics.counter("ssl.certificate.cache.misses");
+        this.evictions = metrics.counter("ssl.certificate.cache.evictions");
+        metrics.gauge("ssl.certificate.cache.size", this::size);
+
+        // Access order: the eldest entry is the least recently used
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, ServerCertificateGeneratorService.GeneratedCertificate> eldest) {
+                if (size() > CertificateCache.this.maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached certificate for the host name.
+     *
+     * @return the certificate, or null if none is cached or it has expired
+     */
+    public synchronized ServerCertificateGeneratorService.GeneratedCertificate get(String hostName) {
+        String key = normalize(hostName);
+        ServerCertificateGeneratorService.GeneratedCertificate certificate = entries.get(key);
+        if (certificate != null && isExpired(certificate, Instant.now())) {
+            entries.remove(key);
+            certificate = null;
+        }
+        if (certificate == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return certificate;
+    }
+
+    /**
+     * Returns the cached certificate for the host name if it is usable, otherwise generates and caches one.
+     * A thread requesting a host that is being generated for waits for that certificate.
+     *
+     * @param usable    tells whether a cached certificate may be used
+     * @param generator generates a certificate for the host name
+     * @return the cached or generated certificate
+     * @throws Exception if the generator failed
+     */
+    public ServerCertificateGeneratorService.GeneratedCertificate getOrGenerate(
+            String hostName, Predicate<ServerCertificateGeneratorService.GeneratedCertificate> usable,
+            Callable<ServerCertificateGeneratorService.GeneratedCertificate> generator) throws Exception {
+        ServerCertificateGeneratorService.GeneratedCertificate certificate = get(hostName);
+        if (certificate != null && usable.test(certificate)) {
+            return certificate;
+        }
+
+        String key = normalize(hostName);
+        CompletableFuture<ServerCertificateGeneratorService.GeneratedCertificate> started = new CompletableFuture<>();
+        CompletableFuture<ServerCertificateGeneratorService.GeneratedCertificate> running =
+                generating.putIfAbsent(key, started);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            // Another thread may have finished generating since the lookup above
+            synchronized (this) {
+                certificate = entries.get(key);
+            }
+            if (certificate == null || isExpired(certificate, Instant.now()) || !usable.test(certificate)) {
+                certificate = generator.call();
+                put(hostName, certificate);
+            }
+            started.complete(certificate);
+            return certificate;
+        } catch (Exception | Error e) {
+            started.completeExceptionally(e);
+            throw e;
+        } finally {
+            generating.remove(key, started);
+        }
+    }
+
+    /**
+     * Caches a certificate for the host name.
+     */
+    public void put(String hostName, ServerCertificateGeneratorService.GeneratedCertificate certificate) {
+        synchronized (this) {
+            entries.put(normalize(hostName), certificate);
+            if (keyStoreFile == null || saveScheduled) {
+                return;
+            }
+            saveScheduled = true;
+        }
+        if (persistExecutor == null) {
+            save();
+            return;
+        }
+        try {
+            persistExecutor.submit(this::save);
+        } catch (RuntimeException e) {
+            // Rejected after shutdown
+            save();
+        }
+    }
+
+    /**
+     * Loads the certificates persisted in the key store file.
+     * Certificates not signed by the given issuer, for example after the CA was replaced,
+     * and expired certificates are skipped.
+     *
+     * @param issuerKey public key of the CA issuing the server certificates
+     */
+    public synchronized void load(PublicKey issuerKey) {
+        if (keyStoreFile == null || !Files.exists(keyStoreFile)) {
+            return;
+        }
+        Instant now = Instant.now();
+        try (InputStream in = Files.newInputStream(keyStoreFile)) {
+            KeyStore keyStore = KeyStore.getInstance(KEY_STORE_TYPE);
+            keyStore.load(in, ServerCertificateGeneratorService.KEY_PASSWORD);
+            for (String alias : Collections.list(keyStore.aliases())) {
+                Key key = keyStore.getKey(alias, ServerCertificateGeneratorService.KEY_PASSWORD);
+                Certificate certificate = keyStore.getCertificate(alias);
+                if (!(key instanceof PrivateKey privateKey) || !(certificate instanceof X509Certificate x509)) {
+                    continue;
+                }
+                try {
+                    x509.verify(issuerKey);
+                } catch (GeneralSecurityException e) {
+                    logger.debug("Skipping cached certificate for {}: not issued by the current CA", alias);
+                    continue;
+                }
+                if (!isExpired(x509, now)) {
+                    entries.put(alias, ServerCertificateGeneratorService.toGeneratedCertificate(x509, privateKey));
+                }
+            }
+            logger.info("Loaded {} cached server certificates from {}", entries.size(), keyStoreFile);
+        } catch (IOException | GeneralSecurityException e) {
+            logger.warn("Cannot load cached server certificates from {}: {}", keyStoreFile, e.getMessage());
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Stops the persist executor once the pending write is done.
+     */
+    public void shutdown() {
+        if (persistExecutor == null) {
+            return;
+        }
+        persistExecutor.shutdown();
+        try {
+            if (!persistExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warn("Timed out persisting server certificates to {}", keyStoreFile);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static ServerCertificateGeneratorService.GeneratedCertificate await(
+            CompletableFuture<ServerCertificateGeneratorService.GeneratedCertificate> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private boolean isExpired(ServerCertificateGeneratorService.GeneratedCertificate certificate, Instant now) {
+        return isExpired(certificate.certificate(), now);
+    }
+
+    private boolean isExpired(X509Certificate certificate, Instant now) {
+        return !now.isBefore(certificate.getNotBefore().toInstant().plusMillis(timeToLiveMillis))
+                || !now.isBefore(certificate.getNotAfter().toInstant());
+    }
+
+    /**
+     * Writes a snapshot of the cache to the key store file, replacing the previous file atomically.
+     * Only copying the entries holds the cache lock.
+     */
+    private void save() {
+        synchronized (saveLock) {
+            Map<String, ServerCertificateGeneratorService.GeneratedCertificate> snapshot;
+            synchronized (this) {
+                saveScheduled = false;
+                snapshot = new HashMap<>(entries);
+            }
+            write(snapshot);
+        }
+    }
+
+    private void write(Map<String, ServerCertificateGeneratorService.GeneratedCertificate> snapshot) {
+        try {
+            KeyStore keyStore = KeyStore.getInstance(KEY_STORE_TYPE);
+            keyStore.load(null, null);
+            for (Map.Entry<String, ServerCertificateGeneratorService.GeneratedCertificate> entry
+                    : snapshot.entrySet()) {
+                ServerCertificateGeneratorService.GeneratedCertificate certificate = entry.getValue();
+                keyStore.setKeyEntry(entry.getKey(), certificate.privateKey(),
+                        ServerCertificateGeneratorService.KEY_PASSWORD,
+                        new Certificate[]{certificate.certificate()});
+            }
+
+            Path directory = keyStoreFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, keyStoreFile.getFileName().toString(), ".tmp");
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                keyStore.store(out, ServerCertificateGeneratorService.KEY_PASSWORD);
+            }
+            Files.move(temp, keyStoreFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | GeneralSecurityException e) {
+            logger.warn("Cannot persist server certificates to {}: {}", keyStoreFile, e.getMessage());
+        }
+    }
+
+    private static String normalize(String hostName) {
+        return hostName.toLowerCase(Locale.ROOT);
+    }
+}
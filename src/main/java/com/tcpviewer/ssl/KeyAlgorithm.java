@@ -0,0 +1,70 @@
+package com.tcpviewer.ssl;
+
+import org.bouncycastle.asn1.x509.KeyUsage;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+
+/**
+ * Key algorithm of generated server certificates.
+ * EC keys on the P-256 curve take about a millisecond to generate, RSA-2048 keys a hundred times
+ * longer, and EC also keeps handshakes cheaper. RSA remains the default for old clients.
+ */
+public enum KeyAlgorithm {
+
+    /**
+     * RSA with 2048-bit keys.
+     */
+    RSA("RSA", KeyUsage.digitalSignature | KeyUsage.keyEncipherment),
+
+    /**
+     * ECDSA on the NIST P-256 curve (secp256r1).
+     */
+    EC("EC", KeyUsage.digitalSignature);
+
+    private final String keyType;
+    private final int keyUsage;
+
+    KeyAlgorithm(String keyType, int keyUsage) {
+        this.keyType = keyType;
+        this.keyUsage = keyUsage;
+    }
+
+    /**
+     * @return the JCA algorithm name, which is also the key type TLS key managers are asked for
+     */
+    public String getKeyType() {
+        return keyType;
+    }
+
+    /**
+     * @return the key usage bits of a server certificate with a key of this algorithm
+     */
+    int getKeyUsage() {
+        return keyUsage;
+    }
+
+    /**
+     * Tells whether the key was generated with this algorithm.
+     */
+    public boolean matches(PublicKey key) {
+        String algorithm = key.getAlgorithm();
+        return keyType.equals(algorithm) || (this == EC && "ECDSA".equals(algorithm));
+    }
+
+    /**
+     * Generates a new key pair. Called for every certificate not served from a pool or cache.
+     */
+    public KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance(keyType);
+        if (this == EC) {
+            generator.initialize(new ECGenParameterSpec("secp256r1"));
+        } else {
+            generator.initialize(2048);
+        }
+        return generator.generateKeyPair();
+    }
+}
@@ -0,0 +1,131 @@
+package com.tcpviewer.ssl;
+
+import com.tcpviewer.lang.wrapper.ThreadWrapper;
+import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
+import com.tcpviewer.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of key pairs generated ahead of time on a background thread, so minting a
+ * server certificate only has to sign it. The pool is refilled as soon as a key pair
+ * is taken; when it is empty, the caller generates the key pair itself.
+ * A pool of size 0 starts no thread and always generates on the calling thread.
+ */
+public class KeyPairPool implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(KeyPairPool.class);
+    private static final long RETRY_DELAY_MILLIS = 1000;
+
+    private final KeyAlgorithm algorithm;
+    private final BlockingQueue<KeyPair> keyPairs;
+    private final ThreadWrapper workerThread;
+    private volatile boolean running = true;
+
+    private final MetricsRegistry.Counter hits;
+    private final MetricsRegistry.Counter misses;
+    private final AtomicLong lastGenerateMicros = new AtomicLong();
+    private final AtomicLong maxGenerateMicros = new AtomicLong();
+
+    /**
+     * Creates the pool and, unless its size is 0, starts filling it.
+     *
+     * @param algorithm     algorithm of the pooled key pairs
+     * @param size          key pairs kept ready, 0 to generate on demand only
+     * @param threadFactory factory for the generator thread
+     * @param metrics       registry receiving the pool metrics
+     */
+    public KeyPairPool(KeyAlgorithm algorithm, int size, ThreadFactory threadFactory, MetricsRegistry metrics) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Pool size must not be negative: " + size);
+        }
+        this.algorithm = algorithm;
+        this.keyPairs = new LinkedBlockingQueue<>(Math.max(size, 1));
+
+        this.hits = metrics.counter("ssl.keypair.pool.hits");
+        this.misses = metrics.counter("ssl.keypair.pool.misses");
+        metrics.gauge("ssl.keypair.pool.depth", keyPairs::size);
+        metrics.gauge("ssl.keypair.generate.last.micros", lastGenerateMicros::get);
+        metrics.gauge("ssl.keypair.generate.max.micros", maxGenerateMicros::get);
+
+        if (size > 0) {
+            this.workerThread = threadFactory.createDaemonThread(this, "KeyPairPool");
+            this.workerThread.start();
+        } else {
+            this.workerThread = null;
+        }
+    }
+
+    public KeyAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Takes a pooled key pair, or generates one if the pool is empty.
+     */
+    public KeyPair take() throws GeneralSecurityException {
+        KeyPair keyPair = keyPairs.poll();
+        if (keyPair != null) {
+            hits.increment();
+            return keyPair;
+        }
+        misses.increment();
+        return generate();
+    }
+
+    /**
+     * @return the number of key pairs ready to be taken
+     */
+    public int size() {
+        return keyPairs.size();
+    }
+
+    /**
+     * Stops the generator thread. Key pairs still pooled can be taken.
+     */
+    public void shutdown() {
+        running = false;
+        if (workerThread != null) {
+            workerThread.interrupt();
+        }
+    }
+
+    @Override
+    public void run() {
+        logger.debug("Key pair pool started for {} keys", algorithm);
+        while (running) {
+            try {
+                // Blocks while the pool is full
+                keyPairs.put(generate());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (GeneralSecurityException | RuntimeException e) {
+                logger.error("Key pair generation failed: {}", e.getMessage(), e);
+                try {
+                    TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MILLIS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        logger.debug("Key pair pool stopped");
+    }
+
+    private KeyPair generate() throws GeneralSecurityException {
+        long start = System.nanoTime();
+        KeyPair keyPair = algorithm.generateKeyPair();
+        long generateMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+        lastGenerateMicros.set(generateMicros);
+        maxGenerateMicros.accumulateAndGet(generateMicros, Math::max);
+        return keyPair;
+    }
+}
@@ -9,6 +9,8 @@ import org.bouncycastle.openssl.PEMParser;
 import org.bouncycastle.openssl.jcajce.JcaPEMKeyConverter;
 import org.bouncycastle.operator.*;
 import org.bouncycastle.operator.jcajce.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.io.ByteArrayInputStream;
@@ -29,25 +31,63 @@ public class ServerCertificateGeneratorService {
         Security.addProvider(new BouncyCastleProvider());
     }
 
+    private static final Logger logger = LoggerFactory.getLogger(ServerCertificateGeneratorService.class);
+
+    private static final int SERIAL_BITS = 64;
+    private static final SecureRandom SERIAL_RANDOM = new SecureRandom();
+
+    static final char[] KEY_PASSWORD = "changeit".toCharArray(); // required, even for in-memory keystore
+
     private final X509Certificate caCertificate;
     private final PrivateKey caPrivateKey;
-
-    public ServerCertificateGeneratorService() {
+    private final CertificateCache certificateCache;
+    private final KeyPairPool keyPairPool;
+
+    /**
+     * @param certificateCache reuses certificates per host name, or null to generate one per session
+     * @param keyPairPool      provides the server key pairs, or null to generate RSA keys on demand
+     */
+    public ServerCertificateGeneratorService(CertificateCache certificateCache, KeyPairPool keyPairPool) {
         try {
             this.caCertificate = loadCertificate();
             this.caPrivateKey = loadPrivateKey();
         } catch (Exception e) {
             throw new IllegalArgumentException("Failed to initialize CA material", e);
         }
+        this.certificateCache = certificateCache;
+        this.keyPairPool = keyPairPool;
+        if (certificateCache != null) {
+            certificateCache.load(caCertificate.getPublicKey());
+        }
+    }
+
+    /**
+     * Returns a server certificate for the host name, from the cache if one is cached.
+     * Generating a certificate with an RSA key takes hundreds of milliseconds, mostly for the key pair,
+     * unless the key pair comes from the pool.
+     */
+    public GeneratedCertificate getServerCertificate(String serverName, int validityDays) throws Exception {
+        if (certificateCache == null) {
+            return generateServerCertificate(serverName, validityDays);
+        }
+        // A persisted certificate may still have a key of the algorithm configured before
+        return certificateCache.getOrGenerate(serverName,
+                certificate -> getKeyAlgorithm().matches(certificate.certificate().getPublicKey()),
+                () -> {
+                    long start = System.nanoTime();
+                    GeneratedCertificate certificate = generateServerCertificate(serverName, validityDays);
+                    logger.debug("Generated server certificate for {} in {} ms",
+                            serverName, (System.nanoTime() - start) / 1_000_000);
+                    return certificate;
+                });
     }
 
     public GeneratedCertificate generateServerCertificate(String serverName, int validityDays)
             throws Exception {
 
-        // Generate server keypair
-        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
-        kpg.initialize(2048);
-        KeyPair serverKeyPair = kpg.generateKeyPair();
+        // Take server keypair from the pool, or generate it
+        KeyAlgorithm keyAlgorithm = getKeyAlgorithm();
+        KeyPair serverKeyPair = keyPairPool != null ? keyPairPool.take() : keyAlgorithm.generateKeyPair();
 
         X500Name subject = new X500Name("CN=" + serverName);
         X500Name issuer = X500Name.getInstance(caCertificate.getSubjectX500Principal().getEncoded());
@@ -56,7 +96,8 @@ public class ServerCertificateGeneratorService {
         Date notBefore = Date.from(now.minusSeconds(60));
         Date notAfter = Date.from(now.plusSeconds(validityDays * 86400L));
 
-        BigInteger serial = BigInteger.valueOf(System.currentTimeMillis());
+        // Random positive serial; certificates issued in the same millisecond must still differ
+        BigInteger serial = new BigInteger(SERIAL_BITS, SERIAL_RANDOM).setBit(SERIAL_BITS - 1);
 
         JcaX509ExtensionUtils extUtils = new JcaX509ExtensionUtils();
 
@@ -80,7 +121,7 @@ public class ServerCertificateGeneratorService {
         certBuilder.addExtension(
                 Extension.keyUsage,
                 true,
-                new KeyUsage(KeyUsage.digitalSignature | KeyUsage.keyEncipherment)
+                new KeyUsage(keyAlgorithm.getKeyUsage())
         );
 
         certBuilder.addExtension(
@@ -120,16 +161,29 @@ public class ServerCertificateGeneratorService {
 
         serverCert.verify(caCertificate.getPublicKey());
 
+        return toGeneratedCertificate(serverCert, serverKeyPair.getPrivate());
+    }
+
+    /**
+     * Wraps a server certificate and its key into an in-memory key store for the server socket.
+     */
+    static GeneratedCertificate toGeneratedCertificate(X509Certificate serverCert, PrivateKey privateKey)
+            throws GeneralSecurityException, IOException {
         // 1. Create an in-memory KeyStore
         KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
         keyStore.load(null, null);
         // 2. Store private key and certificate
-        char[] keyPassword = "changeit".toCharArray(); // required, even for in-memory keystore
         Certificate[] chain = new Certificate[]{serverCert};
-        keyStore.setKeyEntry("server", serverKeyPair.getPrivate(), keyPassword, chain);
+        keyStore.setKeyEntry("server", privateKey, KEY_PASSWORD, chain);
 
+        return new GeneratedCertificate(serverCert, privateKey, keyStore);
+    }
 
-        return new GeneratedCertificate(serverCert, serverKeyPair.getPrivate(), keyStore);
+    /**
+     * @return the key algorithm of generated server certificates
+     */
+    public KeyAlgorithm getKeyAlgorithm() {
+        return keyPairPool != null ? keyPairPool.getAlgorithm() : KeyAlgorithm.RSA;
     }
 
     public X509Certificate getCaCertificate() {
@@ -0,0 +1,147 @@
+package com.tcpviewer.ssl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ssl.ExtendedSSLSession;
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SNIServerName;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509ExtendedKeyManager;
+import java.net.Socket;
+import java.security.Principal;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Key manager presenting a certificate for the host name each client requests via SNI,
+ * so one SSL listener can intercept many virtual hosts.
+ * Certificates are fetched from the generator service, and so from its certificate cache,
+ * when a handshake chooses its alias; the alias is the host name. Clients not sending SNI
+ * get the certificate of the default host name. The certificates handed out most recently
+ * are kept until the handshake asks for their chain and key; the cache holds them for reuse.
+ * <p>
+ * Certificates are generated during the handshake, which runs on the connection's own
+ * thread, never on the accept loop.
+ */
+public class SniKeyManager extends X509ExtendedKeyManager {
+
+    private static final Logger logger = LoggerFactory.getLogger(SniKeyManager.class);
+    private static final int DEFAULT_MAX_SERVED = 256;
+
+    private final ServerCertificateGeneratorService certificateService;
+    private final String defaultHostName;
+    private final int validityDays;
+    private final String keyType;
+    private final Map<String, ServerCertificateGeneratorService.GeneratedCertificate> served;
+
+    /**
+     * @param certificateService generates or fetches the certificate of each host name
+     * @param defaultHostName    host name presented to clients not sending SNI
+     * @param validityDays       validity of generated certificates in days
+     */
+    public SniKeyManager(ServerCertificateGeneratorService certificateService, String defaultHostName,
+                         int validityDays) {
+        this(certificateService, defaultHostName, validityDays, DEFAULT_MAX_SERVED);
+    }
+
+    /**
+     * @param maxServed certificates handed out that are kept for their handshakes
+     */
+    SniKeyManager(ServerCertificateGeneratorService certificateService, String defaultHostName,
+                  int validityDays, int maxServed) {
+        this.certificateService = certificateService;
+        this.defaultHostName = defaultHostName;
+        this.validityDays = validityDays;
+        this.keyType = certificateService.getKeyAlgorithm().getKeyType();
+        // Access order: the eldest entry is the host served least recently
+        this.served = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, ServerCertificateGeneratorService.GeneratedCertificate> eldest) {
+                return size() > maxServed;
+            }
+        });
+    }
+
+    @Override
+    public String chooseServerAlias(String keyType, Principal[] issuers, Socket socket) {
+        SSLSession session = socket instanceof SSLSocket sslSocket ? sslSocket.getHandshakeSession() : null;
+        return chooseAlias(keyType, session);
+    }
+
+    @Override
+    public String chooseEngineServerAlias(String keyType, Principal[] issuers, SSLEngine engine) {
+        return chooseAlias(keyType, engine != null ? engine.getHandshakeSession() : null);
+    }
+
+    @Override
+    public X509Certificate[] getCertificateChain(String alias) {
+        ServerCertificateGeneratorService.GeneratedCertificate certificate = served.get(alias);
+        return certificate != null ? new X509Certificate[]{certificate.certificate()} : null;
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(String alias) {
+        ServerCertificateGeneratorService.GeneratedCertificate certificate = served.get(alias);
+        return certificate != null ? certificate.privateKey() : null;
+    }
+
+    @Override
+    public String[] getServerAliases(String keyType, Principal[] issuers) {
+        if (!this.keyType.equals(keyType)) {
+            return null;
+        }
+        synchronized (served) {
+            return served.keySet().toArray(new String[0]);
+        }
+    }
+
+    @Override
+    public String[] getClientAliases(String keyType, Principal[] issuers) {
+        return null;
+    }
+
+    @Override
+    public String chooseClientAlias(String[] keyTypes, Principal[] issuers, Socket socket) {
+        return null;
+    }
+
+    /**
+     * Returns the host name requested via SNI in the handshake, or null if none was sent.
+     */
+    static String requestedHostName(SSLSession session) {
+        if (session instanceof ExtendedSSLSession extendedSession) {
+            for (SNIServerName serverName : extendedSession.getRequestedServerNames()) {
+                if (serverName instanceof SNIHostName hostName) {
+                    return hostName.getAsciiName().toLowerCase(Locale.ROOT);
+                }
+            }
+        }
+        return null;
+    }
+
+    private String chooseAlias(String keyType, SSLSession session) {
+        if (!this.keyType.equals(keyType)) {
+            return null;
+        }
+        String hostName = requestedHostName(session);
+        if (hostName == null) {
+            hostName = defaultHostName;
+        }
+        try {
+            // Keep the certificate handed out last, so chain and key of the alias belong together
+            served.put(hostName, certificateService.getServerCertificate(hostName, validityDays));
+            return hostName;
+        } catch (Exception e) {
+            logger.error("Cannot create server certificate for {}: {}", hostName, e.getMessage(), e);
+            return null;
+        }
+    }
+}
@@ -3,11 +3,16 @@ package com.tcpviewer.ui.controller;
 import com.tcpviewer.config.JavaFxConfig;
 import com.tcpviewer.error.ErrorCategory;
 import com.tcpviewer.error.ErrorHandlerService;
+import com.tcpviewer.metrics.MetricsRegistry;
 import com.tcpviewer.model.ConnectionInfo;
 import com.tcpviewer.model.DataPacket;
 import com.tcpviewer.model.ProxySession;
+import com.tcpviewer.model.TlsHandshake;
 import com.tcpviewer.proxy.ProxyService;
 import com.tcpviewer.ui.error.ErrorDialogService;
+import com.tcpviewer.ui.viewer.PayloadViewer;
+import com.tcpviewer.util.TextFormatter;
+import javafx.beans.InvalidationListener;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -20,6 +25,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Controller for the main application window.
@@ -29,10 +37,15 @@ import java.io.IOException;
 public class MainController {
 
     private static final Logger logger = LoggerFactory.getLogger(MainController.class);
+    private static final int PREVIEW_BYTES = 4096;
 
     private final ProxyService proxyService;
     private final JavaFxConfig javaFxConfig;
     private final ErrorHandlerService errorHandlerService;
+    private final MetricsRegistry metricsRegistry;
+    private final TextFormatter textFormatter;
+    private final InvalidationListener tlsListener = observable -> updateTlsLabel();
+    private ConnectionInfo selectedConnection;
 
     @FXML
     private MenuItem startMenuItem;
@@ -40,12 +53,21 @@ public class MainController {
     @FXML
     private MenuItem stopMenuItem;
 
+    @FXML
+    private MenuItem stopListenerMenuItem;
+
     @FXML
     private ListView<ConnectionInfo> connectionListView;
 
     @FXML
     private ListView<DataPacket> dataPacketListView;
 
+    @FXML
+    private PayloadViewer payloadViewer;
+
+    @FXML
+    private Label tlsLabel;
+
     @FXML
     private Label statusLabel;
 
@@ -55,10 +77,13 @@ public class MainController {
     @FXML
     private SplitPane splitPane;
 
-    public MainController(ProxyService proxyService, JavaFxConfig javaFxConfig, ErrorHandlerService errorHandlerService) {
+    public MainController(ProxyService proxyService, JavaFxConfig javaFxConfig, ErrorHandlerService errorHandlerService,
+                          MetricsRegistry metricsRegistry, TextFormatter textFormatter) {
         this.proxyService = proxyService;
         this.javaFxConfig = javaFxConfig;
         this.errorHandlerService = errorHandlerService;
+        this.metricsRegistry = metricsRegistry;
+        this.textFormatter = textFormatter;
     }
 
     /**
@@ -80,15 +105,42 @@ public class MainController {
                 if (empty || item == null) {
                     setText(null);
                 } else {
-                    setText(String.format("%s - %s (%d bytes)",
+                    String text = String.format("%s%s - %s (%d bytes)",
+                            item.getListenerName() != null ? "[" + item.getListenerName() + "] " : "",
                             item.getDisplayName(),
                             item.isActive() ? "ACTIVE" : "CLOSED",
-                            item.getTotalBytes()));
+                            item.getTotalBytes());
+                    if (item.getClientHandshake() != null) {
+                        text += item.getClientHandshake().resumed() ? " - TLS resumed" : " - TLS";
+                    }
+                    if (!item.isCaptureEnabled()) {
+                        text += " - passthrough";
+                    }
+                    if (item.getEvictedPacketCount() > 0) {
+                        text += String.format(" - %d packets / %d bytes evicted",
+                                item.getEvictedPacketCount(), item.getEvictedBytes());
+                    }
+                    if (item.getDroppedPacketCount() > 0) {
+                        text += String.format(" - %d packets / %d bytes dropped",
+                                item.getDroppedPacketCount(), item.getDroppedBytes());
+                    }
+                    setText(text);
                     setStyle(item.isActive() ? "-fx-text-fill: green;" : "-fx-text-fill: gray;");
                 }
             }
         });
 
+        // Capture can be turned on and off for single connections while they run
+        CheckMenuItem captureMenuItem = new CheckMenuItem("Capture payloads");
+        captureMenuItem.setOnAction(event -> onCaptureToggled(captureMenuItem.isSelected()));
+        ContextMenu connectionMenu = new ContextMenu(captureMenuItem);
+        connectionMenu.setOnShowing(event -> {
+            ConnectionInfo connection = connectionListView.getSelectionModel().getSelectedItem();
+            captureMenuItem.setDisable(connection == null);
+            captureMenuItem.setSelected(connection == null || connection.isCaptureEnabled());
+        });
+        connectionListView.setContextMenu(connectionMenu);
+
         // Set up data packet list cell factory
         dataPacketListView.setCellFactory(lv -> new ListCell<DataPacket>() {
             @Override
@@ -102,7 +154,7 @@ public class MainController {
                     setText(String.format("[%s] %s:\n%s",
                             item.getTimestamp().toLocalTime(),
                             direction,
-                            item.getDisplayText()));
+                            getPreviewText(item)));
                 }
             }
         });
@@ -118,12 +170,57 @@ public class MainController {
         connectionListView.getSelectionModel().selectedItemProperty().addListener(
                 (observable, oldValue, newValue) -> onConnectionSelected(newValue)
         );
+
+        // The selected packet is shown in the payload viewer
+        dataPacketListView.getSelectionModel().selectedItemProperty().addListener(
+                (observable, oldValue, newValue) -> payloadViewer.setPayload(
+                        newValue != null ? newValue.getPayload() : null)
+        );
+    }
+
+    /**
+     * Returns the text shown for a packet in the packet list. Large packets only show their
+     * first bytes, as laying out megabytes of text would block the JavaFX thread; the payload
+     * viewer shows all of it.
+     */
+    private String getPreviewText(DataPacket packet) {
+        if (packet.getSize() <= PREVIEW_BYTES) {
+            return packet.getDisplayText();
+        }
+        byte[] preview = new byte[PREVIEW_BYTES];
+        packet.getPayload().get(preview);
+        return textFormatter.convertToDisplayText(preview)
+                + String.format("… (%,d bytes, select to view all)", packet.getSize());
+    }
+
+    /**
+     * Turns capture of the selected connection on or off. While capture is off, the
+     * connection's data is forwarded without becoming packets; only its bytes are counted.
+     */
+    private void onCaptureToggled(boolean capture) {
+        ConnectionInfo connection = connectionListView.getSelectionModel().getSelectedItem();
+        if (connection != null) {
+            connection.setCaptureEnabled(capture);
+            connectionListView.refresh();
+            logger.info("Capture {} for connection {}", capture ? "enabled" : "disabled", connection.getDisplayName());
+        }
     }
 
     /**
      * Handles connection selection in the list view.
      */
     private void onConnectionSelected(ConnectionInfo connection) {
+        if (selectedConnection != null) {
+            selectedConnection.clientHandshakeProperty().removeListener(tlsListener);
+            selectedConnection.serverHandshakeProperty().removeListener(tlsListener);
+        }
+        selectedConnection = connection;
+        if (connection != null) {
+            connection.clientHandshakeProperty().addListener(tlsListener);
+            connection.serverHandshakeProperty().addListener(tlsListener);
+        }
+        updateTlsLabel();
+
         if (connection != null) {
             dataPacketListView.setItems(connection.getDataPackets());
             logger.debug("Connection selected: {}", connection.getDisplayName());
@@ -132,6 +229,22 @@ public class MainController {
         }
     }
 
+    /**
+     * Shows the TLS handshakes of the selected connection, or hides the label for plain TCP.
+     */
+    private void updateTlsLabel() {
+        TlsHandshake client = selectedConnection != null ? selectedConnection.getClientHandshake() : null;
+        TlsHandshake server = selectedConnection != null ? selectedConnection.getServerHandshake() : null;
+        boolean tls = client != null || server != null;
+        tlsLabel.setVisible(tls);
+        tlsLabel.setManaged(tls);
+        if (tls) {
+            tlsLabel.setText(String.format("Client TLS: %s%nServer TLS: %s",
+                    client != null ? client.getDisplayText() : "-",
+                    server != null ? server.getDisplayText() : "-"));
+        }
+    }
+
     /**
      * Handles File -> Start menu action.
      */
@@ -161,32 +274,69 @@ public class MainController {
                         dialogController.getLocalIp(),
                         dialogController.getLocalPort(),
                         dialogController.getTargetHost(),
-                        dialogController.getTargetPort(), dialogController.isSSLEnabled(), dialogController.getSSLHost()
+                        dialogController.getTargetPort(), dialogController.isSSLEnabled(), dialogController.getSSLHost(),
+                        dialogController.getForwardingMode(), dialogController.isSniEnabled(),
+                        dialogController.isCaptureEnabled()
                 );
 
                 proxyService.startProxySession(session);
-                setStatus(String.format("Listening on %s:%d",
-                        session.getLocalIp(), session.getLocalPort()));
-                setProxyRunning(true);
+                updateListenerStatus();
 
                 logger.info("Proxy session started successfully");
             }
         } catch (IOException e) {
             logger.error("Failed to open start dialog", e);
             errorHandlerService.handleExpectedException(e, ErrorCategory.UI_OPERATION);
+        } catch (IllegalStateException e) {
+            // Another listener already uses the local address
+            errorHandlerService.handleExpectedException(e, ErrorCategory.PROXY_SERVER);
         }
     }
 
     /**
-     * Handles File -> Stop menu action.
+     * Handles File -> Stop Listener menu action, stopping one of the running listeners.
+     */
+    @FXML
+    private void onStopListenerMenuClicked() {
+        List<ProxySession> sessions = proxyService.getActiveSessions();
+        if (sessions.isEmpty()) {
+            updateListenerStatus();
+            return;
+        }
+        ChoiceDialog<ProxySession> dialog = new ChoiceDialog<>(sessions.get(sessions.size() - 1), sessions);
+        dialog.setTitle("Stop Listener");
+        dialog.setHeaderText("Choose the listener to stop");
+        dialog.showAndWait().ifPresent(session -> {
+            proxyService.stopProxySession(session);
+            logger.info("Proxy listener {} stopped", session.getListenerName());
+        });
+        updateListenerStatus();
+    }
+
+    /**
+     * Handles File -> Stop All menu action.
      */
     @FXML
     private void onStopMenuClicked() {
         logger.info("Stop menu clicked");
         proxyService.stopProxySession();
-        setStatus("Idle");
-        setProxyRunning(false);
-        logger.info("Proxy session stopped");
+        updateListenerStatus();
+        logger.info("Proxy sessions stopped");
+    }
+
+    /**
+     * Shows the addresses of the running listeners and enables the stop actions while there are any.
+     */
+    private void updateListenerStatus() {
+        List<ProxySession> sessions = proxyService.getActiveSessions();
+        if (sessions.isEmpty()) {
+            setStatus("Idle");
+        } else {
+            setStatus("Listening on " + sessions.stream()
+                    .map(ProxySession::getListenerName)
+                    .collect(Collectors.joining(", ")));
+        }
+        setProxyRunning(!sessions.isEmpty());
     }
 
     /**
@@ -216,6 +366,30 @@ public class MainController {
         alert.showAndWait();
     }
 
+    /**
+     * Handles Help -> Metrics menu action.
+     */
+    @FXML
+    private void onMetricsMenuClicked() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Long> metric : metricsRegistry.snapshot().entrySet()) {
+            text.append(String.format("%-28s %,d%n", metric.getKey(), metric.getValue()));
+        }
+        text.append(String.format("%-28s %,d%n", "tls.handshakes.full", proxyService.getFullHandshakeCount()));
+        text.append(String.format("%-28s %,d%n", "tls.handshakes.resumed", proxyService.getResumedHandshakeCount()));
+
+        TextArea metricsArea = new TextArea(text.toString());
+        metricsArea.setEditable(false);
+        metricsArea.setStyle("-fx-font-family: monospace;");
+        metricsArea.setPrefColumnCount(44);
+
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("Metrics");
+        alert.setHeaderText("Capture and proxy metrics");
+        alert.getDialogPane().setContent(metricsArea);
+        alert.showAndWait();
+    }
+
     /**
      * Updates the status label.
      */
@@ -232,9 +406,10 @@ public class MainController {
 
     /**
      * Enables/disables menu items based on proxy state.
+     * Further listeners can be started while others are running.
      */
     public void setProxyRunning(boolean running) {
-        startMenuItem.setDisable(running);
         stopMenuItem.setDisable(!running);
+        stopListenerMenuItem.setDisable(!running);
     }
 }
@@ -1,8 +1,10 @@
 package com.tcpviewer.ui.controller;
 
+import com.tcpviewer.model.ForwardingMode;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.CheckBox;
+import javafx.scene.control.ChoiceBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextField;
 import javafx.stage.Stage;
@@ -31,6 +33,12 @@ public class StartDialogController {
     @FXML
     private TextField targetPortField;
 
+    @FXML
+    private ChoiceBox<ForwardingMode> forwardingModeChoice;
+
+    @FXML
+    private CheckBox captureEnabled;
+
     @FXML
     private CheckBox sslEnabled;
 
@@ -40,6 +48,12 @@ public class StartDialogController {
     @FXML
     private  TextField sslHost;
 
+    @FXML
+    private Label sniLabel;
+
+    @FXML
+    private CheckBox sniEnabled;
+
     @FXML
     private Label validationLabel;
 
@@ -54,6 +68,10 @@ public class StartDialogController {
         validationLabel.managedProperty().bind(validationLabel.visibleProperty());
         sslHost.managedProperty().bind(sslHost.visibleProperty());
         sslHostLabel.managedProperty().bind(sslHostLabel.visibleProperty());
+        sniLabel.managedProperty().bind(sniLabel.visibleProperty());
+        sniEnabled.managedProperty().bind(sniEnabled.visibleProperty());
+        forwardingModeChoice.getItems().setAll(ForwardingMode.values());
+        forwardingModeChoice.setValue(ForwardingMode.BLOCKING);
         logger.info("StartDialogController initialized");
     }
 
@@ -61,6 +79,8 @@ public class StartDialogController {
     private void onSSLCheckBoxClicked() {
         sslHostLabel.setVisible(sslEnabled.isSelected());
         sslHost.setVisible(sslEnabled.isSelected());
+        sniLabel.setVisible(sslEnabled.isSelected());
+        sniEnabled.setVisible(sslEnabled.isSelected());
         resizeDialog();
     }
 
@@ -209,6 +229,21 @@ public class StartDialogController {
         return Integer.parseInt(targetPortField.getText().trim());
     }
 
+    /**
+     * Returns the selected forwarding engine.
+     */
+    public ForwardingMode getForwardingMode() {
+        return forwardingModeChoice.getValue();
+    }
+
+    /**
+     * Returns true, if payloads of the session's connections are captured.
+     * Otherwise connections are forwarded without capture and only their bytes are counted.
+     */
+    public boolean isCaptureEnabled() {
+        return captureEnabled.isSelected();
+    }
+
     /**
      * Returns true, if SSL ist to used
      */
@@ -227,5 +262,13 @@ public class StartDialogController {
         }
     }
 
+    /**
+     * Returns true, if SSL clients get a certificate for the host name they request via SNI.
+     * The SSL host name is then used for clients not sending SNI.
+     */
+    public boolean isSniEnabled() {
+        return isSSLEnabled() && sniEnabled.isSelected();
+    }
+
 
 }
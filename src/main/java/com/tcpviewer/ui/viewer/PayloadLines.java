@@ -0,0 +1,196 @@
+package com.tcpviewer.ui.viewer;
+
+import com.tcpviewer.util.TextFormatter;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Splits a payload into the lines of a hex dump or a text view, rendering each line only when
+ * it is requested, so a viewer can show a window of a large payload without building its full text.
+ * Hex lines show {@value #HEX_BYTES_PER_LINE} bytes each. Text lines end after a line feed or after
+ * {@value #TEXT_BYTES_PER_LINE} bytes; their starts are found in one scan when the lines are created.
+ */
+public class PayloadLines {
+
+    public static final int HEX_BYTES_PER_LINE = 16;
+    public static final int TEXT_BYTES_PER_LINE = 128;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * How a payload is displayed.
+     */
+    public enum Mode {
+        HEX("Hex"),
+        TEXT("Text");
+
+        private final String displayName;
+
+        Mode(String displayName) {
+            this.displayName = displayName;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private final ByteBuffer payload;
+    private final Mode mode;
+    private final TextFormatter textFormatter;
+    // Start offset of every text line, null in hex mode
+    private final int[] lineStarts;
+    private final int lineCount;
+
+    /**
+     * @param payload       the payload, read from its position to its limit; the buffer is not modified
+     * @param mode          how the payload is displayed
+     * @param textFormatter converts bytes to display text
+     */
+    public PayloadLines(ByteBuffer payload, Mode mode, TextFormatter textFormatter) {
+        this.payload = payload.slice();
+        this.mode = mode;
+        this.textFormatter = textFormatter;
+        if (mode == Mode.HEX) {
+            this.lineStarts = null;
+            this.lineCount = (this.payload.remaining() + HEX_BYTES_PER_LINE - 1) / HEX_BYTES_PER_LINE;
+        } else {
+            this.lineStarts = findTextLineStarts(this.payload);
+            this.lineCount = lineStarts.length;
+        }
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    public int getSize() {
+        return payload.remaining();
+    }
+
+    /**
+     * @return offset of the first byte of the line
+     */
+    public int getLineStart(int line) {
+        checkLine(line);
+        return mode == Mode.HEX ? line * HEX_BYTES_PER_LINE : lineStarts[line];
+    }
+
+    /**
+     * @return the line showing the byte at the given offset
+     * @throws IndexOutOfBoundsException if the offset is outside the payload
+     */
+    public int getLineOf(int offset) {
+        if (offset < 0 || offset >= payload.remaining()) {
+            throw new IndexOutOfBoundsException("Offset " + offset + " outside payload of "
+                    + payload.remaining() + " bytes");
+        }
+        if (mode == Mode.HEX) {
+            return offset / HEX_BYTES_PER_LINE;
+        }
+        int found = Arrays.binarySearch(lineStarts, offset);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    /**
+     * Renders one line.
+     */
+    public String getLine(int line) {
+        checkLine(line);
+        int start = getLineStart(line);
+        int end = line + 1 < lineCount ? getLineStart(line + 1) : payload.remaining();
+        byte[] bytes = new byte[end - start];
+        payload.get(start, bytes);
+        return mode == Mode.HEX ? hexLine(start, bytes) : textLine(bytes);
+    }
+
+    private String hexLine(int start, byte[] bytes) {
+        StringBuilder line = new StringBuilder(10 + HEX_BYTES_PER_LINE * 4 + 3);
+        appendHex(line, start, 8);
+        line.append("  ");
+        for (int i = 0; i < HEX_BYTES_PER_LINE; i++) {
+            if (i < bytes.length) {
+                appendHex(line, bytes[i] & 0xFF, 2);
+                line.append(' ');
+            } else {
+                line.append("   ");
+            }
+            if (i == HEX_BYTES_PER_LINE / 2 - 1) {
+                line.append(' ');
+            }
+        }
+        line.append(" |");
+        for (byte b : bytes) {
+            // Only printable ASCII, so the columns stay aligned
+            line.append(b >= 0x20 && b < 0x7F ? (char) b : '.');
+        }
+        return line.append('|').toString();
+    }
+
+    private String textLine(byte[] bytes) {
+        int length = bytes.length;
+        // The line break ends the line, it is not shown
+        if (length > 0 && bytes[length - 1] == '\n') {
+            length--;
+            if (length > 0 && bytes[length - 1] == '\r') {
+                length--;
+            }
+        }
+        return textFormatter.convertToDisplayText(bytes, 0, length);
+    }
+
+    /**
+     * Parses an offset entered by the user: hexadecimal with a 0x prefix, decimal otherwise.
+     *
+     * @return the offset, or -1 if the text is not a valid offset
+     */
+    public static int parseOffset(String text) {
+        String trimmed = text == null ? "" : text.trim().replace("_", "");
+        try {
+            int offset = trimmed.startsWith("0x") || trimmed.startsWith("0X")
+                    ? Integer.parseInt(trimmed.substring(2), 16)
+                    : Integer.parseInt(trimmed);
+            return offset >= 0 ? offset : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void checkLine(int line) {
+        if (line < 0 || line >= lineCount) {
+            throw new IndexOutOfBoundsException("Line " + line + " of " + lineCount);
+        }
+    }
+
+    private static int[] findTextLineStarts(ByteBuffer payload) {
+        int size = payload.remaining();
+        int[] starts = new int[Math.max(1, Math.min(size / 32, 1024))];
+        int count = 0;
+        int start = 0;
+        while (start < size) {
+            if (count == starts.length) {
+                starts = Arrays.copyOf(starts, count * 2);
+            }
+            starts[count++] = start;
+            int end = Math.min(size, start + TEXT_BYTES_PER_LINE);
+            int next = start;
+            while (next < end && payload.get(next++) != '\n') {
+                // Scan to the end of the line
+            }
+            start = next;
+        }
+        return Arrays.copyOf(starts, count);
+    }
+
+    private static void appendHex(StringBuilder builder, int value, int digits) {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            builder.append(HEX_DIGITS[(value >>> shift) & 0xF]);
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.tcpviewer.ui.viewer;
+
+import com.tcpviewer.util.TextFormatter;
+import javafx.collections.ObservableListBase;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.ChoiceBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Shows one payload as a hex dump or as text. The lines are shown in a list view, which only
+ * creates cells for the visible lines, and each cell renders its line when it is shown; so even
+ * a payload of many megabytes scrolls smoothly and never becomes a single String.
+ * An offset can be entered to jump to the line showing it.
+ */
+public class PayloadViewer extends VBox {
+
+    private static final String ERROR_STYLE = "-fx-text-fill: red;";
+
+    private final TextFormatter textFormatter;
+    private final ChoiceBox<PayloadLines.Mode> modeChoice = new ChoiceBox<>();
+    private final TextField offsetField = new TextField();
+    private final Label sizeLabel = new Label();
+    private final ListView<Integer> lineListView = new ListView<>();
+    private ByteBuffer payload;
+    private PayloadLines lines;
+
+    public PayloadViewer() {
+        this(new TextFormatter());
+    }
+
+    public PayloadViewer(TextFormatter textFormatter) {
+        this.textFormatter = textFormatter;
+        setSpacing(5);
+
+        modeChoice.getItems().setAll(PayloadLines.Mode.values());
+        modeChoice.setValue(PayloadLines.Mode.HEX);
+        modeChoice.setOnAction(event -> onModeChanged());
+
+        offsetField.setPromptText("Offset, e.g. 0x1f40");
+        offsetField.setPrefColumnCount(12);
+        offsetField.setOnAction(event -> onGoToOffset());
+        offsetField.textProperty().addListener((observable, oldValue, newValue) -> offsetField.setStyle(null));
+        Button goButton = new Button("Go");
+        goButton.setOnAction(event -> onGoToOffset());
+
+        Region spacer = new Region();
+        HBox.setHgrow(spacer, Priority.ALWAYS);
+        HBox toolbar = new HBox(5, modeChoice, new Label("Go to:"), offsetField, goButton, spacer, sizeLabel);
+        toolbar.setAlignment(Pos.CENTER_LEFT);
+        toolbar.setPadding(new Insets(5, 0, 0, 0));
+
+        lineListView.setStyle("-fx-font-family: monospace;");
+        lineListView.setPlaceholder(new Label("Select a packet to view its payload"));
+        lineListView.setCellFactory(lv -> new ListCell<>() {
+            @Override
+            protected void updateItem(Integer line, boolean empty) {
+                super.updateItem(line, empty);
+                setText(empty || line == null || lines == null || line >= lines.getLineCount()
+                        ? null : lines.getLine(line));
+            }
+        });
+        VBox.setVgrow(lineListView, Priority.ALWAYS);
+
+        getChildren().addAll(toolbar, lineListView);
+        showPayload(null, 0);
+    }
+
+    /**
+     * Shows a payload, or nothing if it is null. The buffer is read from its position to its limit
+     * and is not modified.
+     */
+    public void setPayload(ByteBuffer payload) {
+        this.payload = payload;
+        showPayload(payload, 0);
+    }
+
+    /**
+     * Scrolls to the line showing the byte at the given offset and selects it.
+     *
+     * @return false if the offset is outside the payload
+     */
+    public boolean goToOffset(int offset) {
+        if (lines == null || offset < 0 || offset >= lines.getSize()) {
+            return false;
+        }
+        int line = lines.getLineOf(offset);
+        lineListView.getSelectionModel().select(line);
+        lineListView.scrollTo(line);
+        return true;
+    }
+
+    private void onGoToOffset() {
+        if (!goToOffset(PayloadLines.parseOffset(offsetField.getText()))) {
+            offsetField.setStyle(ERROR_STYLE);
+        }
+    }
+
+    /**
+     * Switches between hex and text, keeping the selected byte in view.
+     */
+    private void onModeChanged() {
+        int selected = lineListView.getSelectionModel().getSelectedIndex();
+        int offset = lines != null && selected >= 0 ? lines.getLineStart(selected) : 0;
+        showPayload(payload, offset);
+    }
+
+    private void showPayload(ByteBuffer payload, int offset) {
+        if (payload == null) {
+            lines = null;
+            lineListView.setItems(null);
+            sizeLabel.setText(null);
+            return;
+        }
+        lines = new PayloadLines(payload, modeChoice.getValue(), textFormatter);
+        lineListView.setItems(new LineIndexList(lines.getLineCount()));
+        sizeLabel.setText(String.format("%,d bytes, %,d lines", lines.getSize(), lines.getLineCount()));
+        if (offset > 0) {
+            goToOffset(offset);
+        } else {
+            lineListView.scrollTo(0);
+        }
+    }
+
+    /**
+     * The line numbers 0 to size - 1, without holding them.
+     */
+    private static class LineIndexList extends ObservableListBase<Integer> {
+        private final int size;
+
+        LineIndexList(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public Integer get(int index) {
+            Objects.checkIndex(index, size);
+            return index;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
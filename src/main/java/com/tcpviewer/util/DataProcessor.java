@@ -1,28 +1,56 @@
 package com.tcpviewer.util;
 
+import com.tcpviewer.capture.CaptureStore;
 import com.tcpviewer.model.DataPacket;
 import com.tcpviewer.model.DataType;
 import com.tcpviewer.model.Direction;
+import com.tcpviewer.model.PacketPayload;
+import com.tcpviewer.model.TextRenderer;
 import org.springframework.stereotype.Component;
 
+import java.nio.ByteBuffer;
 import java.time.LocalDateTime;
+import java.util.function.Predicate;
 
 /**
  * Processes raw byte data and creates formatted DataPacket objects.
  * All data is converted to text using ISO-8859-1 encoding with control character replacement.
+ * Texts are rendered when a packet is displayed, not when it is captured, and the texts
+ * rendered most recently are cached.
  */
 @Component
 public class DataProcessor {
 
     private final TextFormatter textFormatter;
+    private final CaptureStore captureStore;
+    private final DisplayTextCache displayTextCache;
+    // One renderer for all packets, so packet indexes can share it and report discarded packets to it
+    private final TextRenderer displayTextRenderer = new TextRenderer() {
+        @Override
+        public String apply(PacketPayload payload) {
+            return getDisplayText(payload);
+        }
 
-    public DataProcessor(TextFormatter textFormatter) {
+        @Override
+        public void discarded(Predicate<PacketPayload> discarded) {
+            if (displayTextCache != null) {
+                displayTextCache.discard(discarded);
+            }
+        }
+    };
+
+    public DataProcessor(TextFormatter textFormatter, CaptureStore captureStore, DisplayTextCache displayTextCache) {
         this.textFormatter = textFormatter;
+        this.captureStore = captureStore;
+        this.displayTextCache = displayTextCache;
     }
 
     /**
      * Processes raw data and creates a DataPacket with ISO-8859-1 text formatting.
      * All data is displayed as text with control characters replaced.
+     * The payload is kept by the capture store without copying; the caller must not modify it afterwards.
+     * The display text is rendered on demand, so packets nobody looks at hold only their bytes,
+     * and stored payloads are not pinned on the heap by their text.
      *
      * @param data      The raw byte array
      * @param direction The direction of data flow
@@ -30,8 +58,37 @@ public class DataProcessor {
      */
     public DataPacket process(byte[] data, Direction direction) {
         LocalDateTime timestamp = LocalDateTime.now();
-        String displayText = textFormatter.convertToDisplayText(data);
-        return new DataPacket(timestamp, direction, data, DataType.TEXT, displayText);
+        PacketPayload payload = captureStore.isOnHeap()
+                ? PacketPayload.of(ByteBuffer.wrap(data))
+                : captureStore.store(timestamp, direction, data);
+        return new DataPacket(timestamp, direction, payload, DataType.TEXT, displayTextRenderer);
+    }
+
+    /**
+     * Returns the display text of a payload, rendering it if it is not cached.
+     */
+    private String getDisplayText(PacketPayload payload) {
+        return displayTextCache != null
+                ? displayTextCache.get(payload, this::renderDisplayText)
+                : renderDisplayText(payload);
+    }
+
+    /**
+     * Renders the display text of a payload when it is requested.
+     * Heap payloads are formatted straight from their backing array.
+     */
+    private String renderDisplayText(PacketPayload payload) {
+        return payload.applyToBytes(textFormatter::convertToDisplayText);
+    }
+
+    /**
+     * Discards the stored payloads and cached texts of all packets processed so far, when a new session starts.
+     */
+    public void reset() {
+        captureStore.reset();
+        if (displayTextCache != null) {
+            displayTextCache.clear();
+        }
     }
 
     /**
@@ -0,0 +1,95 @@
+package com.tcpviewer.util;
+
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.model.PacketPayload;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Cache of the display texts rendered most recently, keyed by payload; payloads wrapped again over the
+ * same bytes find the text cached before.
+ * Packets render their display text when it is requested; the cache keeps the texts
+ * of the packets the UI is currently showing, so scrolling and repainting do not render
+ * them again, while packets nobody looks at hold their bytes only.
+ * The least recently used text is evicted once the cache is full, and texts of discarded packets are
+ * dropped when their packets are. Thread-safe.
+ */
+public class DisplayTextCache {
+
+    private final int maxEntries;
+    private final Map<PacketPayload, String> entries;
+
+    private final MetricsRegistry.Counter hits;
+    private final MetricsRegistry.Counter misses;
+
+    /**
+     * @param maxEntries display texts kept at most, 0 to render on every request
+     * @param metrics    registry receiving the cache metrics
+     */
+    public DisplayTextCache(int maxEntries, MetricsRegistry metrics) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.hits = metrics.counter("display.text.cache.hits");
+        this.misses = metrics.counter("display.text.cache.misses");
+        metrics.gauge("display.text.cache.size", this::size);
+
+        // Access order: the eldest entry is the least recently used
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<PacketPayload, String> eldest) {
+                return size() > DisplayTextCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached display text of the payload, rendering and caching it if it is not cached.
+     * Rendering runs outside the cache lock, so a large payload does not block other lookups.
+     *
+     * @param payload  the payload to display
+     * @param renderer renders the display text of the payload
+     * @return the display text
+     */
+    public String get(PacketPayload payload, Function<PacketPayload, String> renderer) {
+        synchronized (this) {
+            String text = entries.get(payload);
+            if (text != null) {
+                hits.increment();
+                return text;
+            }
+        }
+        misses.increment();
+        String text = renderer.apply(payload);
+        if (maxEntries > 0) {
+            synchronized (this) {
+                entries.put(payload, text);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * Forgets the texts of payloads that are no longer retained, so the cache does not keep them reachable.
+     *
+     * @param discarded matches the payloads whose texts are dropped
+     */
+    public synchronized void discard(Predicate<PacketPayload> discarded) {
+        entries.keySet().removeIf(discarded);
+    }
+
+    /**
+     * Forgets all cached texts, for example when a new capture starts.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
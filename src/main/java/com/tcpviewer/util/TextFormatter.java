@@ -6,10 +6,24 @@ import java.nio.charset.StandardCharsets;
 
 /**
  * Utility class for formatting byte data as text using ISO-8859-1 encoding.
+ * Bytes are mapped to display characters through a lookup table in a single pass;
+ * the result is built in a Latin-1 byte array, which becomes the String's backing
+ * array without decoding.
  */
 @Component
 public class TextFormatter {
 
+    /**
+     * Display character of every byte value: the byte itself, or '?' for control characters.
+     */
+    private static final byte[] DISPLAY_BYTES = new byte[256];
+
+    static {
+        for (int value = 0; value < DISPLAY_BYTES.length; value++) {
+            DISPLAY_BYTES[value] = shouldReplaceWithQuestionMark(value) ? (byte) '?' : (byte) value;
+        }
+    }
+
     /**
      * Converts byte array to display text using ISO-8859-1 encoding.
      * Replaces control characters with '?' except for TAB, LF, and CR.
@@ -18,33 +32,48 @@ public class TextFormatter {
      * @return Display text with control characters replaced
      */
     public String convertToDisplayText(byte[] data) {
-        if (data == null || data.length == 0) {
+        if (data == null) {
             return "";
         }
+        return convertToDisplayText(data, 0, data.length);
+    }
 
-        // Decode using ISO-8859-1 (preserves all byte values 0x00-0xFF)
-        String decoded = new String(data, StandardCharsets.ISO_8859_1);
+    /**
+     * Converts a range of a byte array to display text, like {@link #convertToDisplayText(byte[])}.
+     *
+     * @param data   The byte array to convert
+     * @param offset Index of the first byte to convert
+     * @param length Number of bytes to convert
+     * @return Display text with control characters replaced
+     */
+    public String convertToDisplayText(byte[] data, int offset, int length) {
+        if (data == null || length == 0) {
+            return "";
+        }
 
-        // Replace control characters with '?'
-        StringBuilder result = new StringBuilder(decoded.length());
-        for (char c : decoded.toCharArray()) {
-            if (shouldReplaceWithQuestionMark(c)) {
-                result.append('?');
-            } else {
-                result.append(c);
-            }
+        // Only copy once a byte has to be replaced; printable data is decoded as is
+        int i = offset;
+        int end = offset + length;
+        while (i < end && DISPLAY_BYTES[data[i] & 0xFF] == data[i]) {
+            i++;
+        }
+        if (i == end) {
+            return new String(data, offset, length, StandardCharsets.ISO_8859_1);
         }
 
-        return result.toString();
+        byte[] display = new byte[length];
+        System.arraycopy(data, offset, display, 0, i - offset);
+        for (; i < end; i++) {
+            display[i - offset] = DISPLAY_BYTES[data[i] & 0xFF];
+        }
+        return new String(display, StandardCharsets.ISO_8859_1);
     }
 
     /**
-     * Determines if a character should be replaced with '?'.
+     * Determines if a byte value should be replaced with '?'.
      * Control characters except TAB (0x09), LF (0x0A), and CR (0x0D) are replaced.
      */
-    private boolean shouldReplaceWithQuestionMark(char c) {
-        int value = (int) c;
-
+    private static boolean shouldReplaceWithQuestionMark(int value) {
         // C0 controls (0x00-0x1F) except TAB, LF, CR
         if (value <= 0x1F) {
             return value != 0x09 && value != 0x0A && value != 0x0D;
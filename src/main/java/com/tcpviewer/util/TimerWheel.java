@@ -0,0 +1,183 @@
+package com.tcpviewer.util;
+
+import com.tcpviewer.lang.wrapper.ThreadWrapper;
+import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashed timer wheel running many short timeouts on a single thread.
+ * Scheduling is lock-free and costs O(1); expiry precision is one tick.
+ * Tasks run on the wheel thread and must therefore be short and non-blocking.
+ */
+public class TimerWheel implements Runnable {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimerWheel.class);
+    // Set on wheel threads, so code called from a task can tell it must not block
+    private static final ThreadLocal<Boolean> WHEEL_THREAD = new ThreadLocal<>();
+
+    private final long tickNanos;
+    private final Bucket[] buckets;
+    private final int mask;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final ThreadWrapper thread;
+    private final long startNanos;
+    private volatile boolean running = true;
+    private long tick;
+
+    /**
+     * Creates and starts a timer wheel.
+     *
+     * @param tickDuration  duration of one tick
+     * @param unit          time unit of the tick duration
+     * @param wheelSize     number of buckets, rounded up to a power of two
+     * @param threadFactory factory for the wheel thread
+     */
+    public TimerWheel(long tickDuration, TimeUnit unit, int wheelSize, ThreadFactory threadFactory) {
+        this.tickNanos = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+        int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+        this.buckets = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.startNanos = System.nanoTime();
+        this.thread = threadFactory.createDaemonThread(this, "TimerWheel");
+        this.thread.start();
+    }
+
+    /**
+     * Schedules a task to run once after the given delay.
+     *
+     * @param task  the task to run on the wheel thread
+     * @param delay the delay, zero to run on the next tick
+     * @param unit  time unit of the delay
+     * @return a handle that can cancel the task
+     */
+    public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - startNanos + Math.max(unit.toNanos(delay), 0);
+        Timeout timeout = new Timeout(task, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Returns the tick duration of this wheel.
+     *
+     * @return the tick duration in nanoseconds
+     */
+    public long getTickNanos() {
+        return tickNanos;
+    }
+
+    /**
+     * Tells whether the calling thread is the thread of a timer wheel, i.e. whether it runs a task.
+     *
+     * @return true on a wheel thread
+     */
+    public static boolean isWheelThread() {
+        return WHEEL_THREAD.get() != null;
+    }
+
+    @Override
+    public void run() {
+        WHEEL_THREAD.set(Boolean.TRUE);
+        while (running) {
+            long deadline = (tick + 1) * tickNanos;
+            long sleepNanos = deadline - (System.nanoTime() - startNanos);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        break;
+                    }
+                    continue;
+                }
+            }
+            transferPending();
+            expire(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+        logger.debug("TimerWheel stopped");
+    }
+
+    /**
+     * Stops the wheel. Timeouts that have not expired yet are dropped.
+     */
+    public void stop() {
+        running = false;
+        thread.interrupt();
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.cancelled) {
+                continue;
+            }
+            long expiryTick = Math.max(timeout.deadlineNanos / tickNanos, tick);
+            timeout.remainingRounds = (expiryTick - tick) / buckets.length;
+            buckets[(int) (expiryTick & mask)].timeouts.add(timeout);
+        }
+    }
+
+    private void expire(Bucket bucket) {
+        Iterator<Timeout> iterator = bucket.timeouts.iterator();
+        while (iterator.hasNext()) {
+            Timeout timeout = iterator.next();
+            if (timeout.cancelled) {
+                iterator.remove();
+            } else if (timeout.remainingRounds <= 0) {
+                iterator.remove();
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    logger.error("Timer task failed: {}", e.getMessage(), e);
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+    /**
+     * Timeouts expiring in one slot of the wheel. A class of its own, as arrays of a generic
+     * type can only be created unchecked. Only used on the wheel thread.
+     */
+    private static final class Bucket {
+        private final ArrayDeque<Timeout> timeouts = new ArrayDeque<>();
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static final class Timeout {
+        private final Runnable task;
+        private final long deadlineNanos;
+        private long remainingRounds;
+        private volatile boolean cancelled;
+
+        private Timeout(Runnable task, long deadlineNanos) {
+            this.task = task;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        /**
+         * Cancels the task if it has not run yet.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+}
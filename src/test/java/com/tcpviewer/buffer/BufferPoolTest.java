@@ -0,0 +1,121 @@
+package com.tcpviewer.buffer;
+
+import com.tcpviewer.metrics.MetricsRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BufferPool and PooledBuffer.
+ */
+class BufferPoolTest {
+
+    private MetricsRegistry metrics;
+    private BufferPool pool;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new MetricsRegistry();
+        pool = new BufferPool(16384, 1024 * 1024, metrics);
+    }
+
+    @Test
+    void testRequestsRoundedUpToSizeClass() {
+        assertEquals(1024, pool.acquire(1).capacity());
+        assertEquals(1024, pool.acquire(1024).capacity());
+        assertEquals(2048, pool.acquire(1025).capacity());
+        assertEquals(16384, pool.acquire(9000).capacity());
+    }
+
+    @Test
+    void testReleasedBufferIsReused() {
+        PooledBuffer first = pool.acquire(4096);
+        first.write(new byte[]{1, 2, 3}, 0, 3);
+        assertTrue(first.release());
+
+        PooledBuffer second = pool.acquire(4000);
+
+        assertSame(first, second);
+        assertEquals(0, second.length());
+        assertEquals(1, second.referenceCount());
+
+        Map<String, Long> snapshot = metrics.snapshot();
+        assertEquals(1L, snapshot.get("buffer.pool.hits"));
+        assertEquals(1L, snapshot.get("buffer.pool.misses"));
+        assertEquals(1L, snapshot.get("buffer.pool.in-use"));
+    }
+
+    @Test
+    void testBufferReturnsToPoolOnlyAfterLastRelease() {
+        PooledBuffer buffer = pool.acquire(1024);
+        buffer.retain();
+
+        assertFalse(buffer.release());
+        assertEquals(1, pool.getInUseCount());
+        assertEquals(0, pool.getIdleCount());
+
+        assertTrue(buffer.release());
+        assertEquals(0, pool.getInUseCount());
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(1024, pool.getIdleBytes());
+    }
+
+    @Test
+    void testOverReleaseThrows() {
+        PooledBuffer buffer = pool.acquire(1024);
+        buffer.release();
+
+        assertThrows(IllegalStateException.class, buffer::release);
+        assertThrows(IllegalStateException.class, buffer::retain);
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    @Test
+    void testOversizeRequestIsNotPooled() {
+        PooledBuffer buffer = pool.acquire(100_000);
+
+        assertEquals(100_000, buffer.capacity());
+        assertFalse(buffer.isPooled());
+        assertEquals(0, pool.getInUseCount());
+
+        buffer.release();
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(1L, metrics.snapshot().get("buffer.pool.misses"));
+    }
+
+    @Test
+    void testIdleSlabsBoundedByByteBudget() {
+        // 5 classes share 20 KB, so each class keeps at most one 4 KB slab
+        BufferPool small = new BufferPool(16384, 20 * 1024, new MetricsRegistry());
+
+        PooledBuffer a = small.acquire(4096);
+        PooledBuffer b = small.acquire(4096);
+        a.release();
+        b.release();
+
+        assertEquals(1, small.getIdleCount());
+        assertEquals(4096, small.getIdleBytes());
+    }
+
+    @Test
+    void testWriteAndCopy() {
+        PooledBuffer buffer = pool.acquire(1024);
+        buffer.write(new byte[]{9, 8, 7, 6}, 1, 2);
+
+        assertEquals(2, buffer.length());
+        assertEquals(1022, buffer.writableBytes());
+        assertArrayEquals(new byte[]{8, 7}, buffer.toByteArray());
+    }
+
+    @Test
+    void testWrapIsUnpooled() {
+        PooledBuffer buffer = PooledBuffer.wrap(new byte[]{1, 2});
+
+        assertFalse(buffer.isPooled());
+        assertEquals(2, buffer.length());
+        assertTrue(buffer.release());
+    }
+}
@@ -0,0 +1,125 @@
+package com.tcpviewer.buffer;
+
+import com.tcpviewer.metrics.MetricsRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ReadBufferAllocator.
+ */
+class ReadBufferAllocatorTest {
+
+    private MetricsRegistry metrics;
+    private BufferPool pool;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new MetricsRegistry();
+        pool = new BufferPool(65536, 1024 * 1024, metrics);
+    }
+
+    @Test
+    void testSizesNormalizedToPowersOfTwo() {
+        ReadBufferAllocator allocator = new ReadBufferAllocator(pool, 5000, 100, 40000, true, metrics);
+
+        assertEquals(8192, allocator.getInitialSize());
+        assertEquals(1024, allocator.getMinSize());
+        assertEquals(65536, allocator.getMaxSize());
+    }
+
+    @Test
+    void testInvalidSizesRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new ReadBufferAllocator(pool, 0, metrics));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ReadBufferAllocator(pool, 8192, 16384, 4096, true, metrics));
+    }
+
+    @Test
+    void testFixedSizeNeverChanges() {
+        ReadBufferAllocator.Handle handle = new ReadBufferAllocator(pool, 8192, metrics).newHandle();
+
+        handle.record(8192);
+        handle.record(8192);
+        handle.record(10);
+        handle.record(10);
+
+        assertEquals(8192, handle.size());
+        assertEquals(8192, handle.buffer().capacity());
+        assertEquals(4L, metrics.snapshot().get("buffer.read.size.8192"));
+    }
+
+    @Test
+    void testAdaptiveGrowsOnFullReadsUpToMax() {
+        ReadBufferAllocator.Handle handle =
+                new ReadBufferAllocator(pool, 8192, 1024, 32768, true, metrics).newHandle();
+
+        handle.record(8192);
+        assertEquals(16384, handle.size());
+        handle.record(16384);
+        assertEquals(32768, handle.size());
+        handle.record(32768);
+        assertEquals(32768, handle.size());
+
+        assertEquals(2L, metrics.snapshot().get("buffer.read.grown"));
+        assertEquals(1L, metrics.snapshot().get("buffer.read.size.32768"));
+    }
+
+    @Test
+    void testAdaptiveShrinksAfterConsecutiveSmallReadsDownToMin() {
+        ReadBufferAllocator.Handle handle =
+                new ReadBufferAllocator(pool, 4096, 2048, 65536, true, metrics).newHandle();
+
+        handle.record(100);
+        assertEquals(4096, handle.size());
+        handle.record(100);
+        assertEquals(2048, handle.size());
+        handle.record(100);
+        handle.record(100);
+        assertEquals(2048, handle.size());
+
+        assertEquals(1L, metrics.snapshot().get("buffer.read.shrunk"));
+    }
+
+    @Test
+    void testMediumReadResetsShrinkCount() {
+        ReadBufferAllocator.Handle handle =
+                new ReadBufferAllocator(pool, 4096, 1024, 65536, true, metrics).newHandle();
+
+        handle.record(100);
+        handle.record(3000);
+        handle.record(100);
+
+        assertEquals(4096, handle.size());
+    }
+
+    @Test
+    void testBufferReplacedAfterResizeAndOldOneReturned() {
+        ReadBufferAllocator.Handle handle =
+                new ReadBufferAllocator(pool, 4096, 1024, 65536, true, metrics).newHandle();
+
+        PooledBuffer first = handle.buffer();
+        assertSame(first, handle.buffer());
+
+        handle.record(4096);
+        PooledBuffer second = handle.buffer();
+
+        assertNotSame(first, second);
+        assertEquals(8192, second.capacity());
+        assertEquals(0, first.referenceCount());
+        assertEquals(1, pool.getInUseCount());
+
+        handle.release();
+        assertEquals(0, pool.getInUseCount());
+    }
+
+    @Test
+    void testUnpooledAllocatorAllocatesExactSize() {
+        ReadBufferAllocator.Handle handle = ReadBufferAllocator.unpooled(8192).newHandle();
+
+        assertEquals(8192, handle.buffer().capacity());
+        assertNull(ReadBufferAllocator.unpooled(8192).getBufferPool());
+    }
+}
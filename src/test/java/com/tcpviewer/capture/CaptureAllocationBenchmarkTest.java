@@ -0,0 +1,122 @@
+package com.tcpviewer.capture;
+
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
+import com.tcpviewer.model.DataPacket;
+import com.tcpviewer.model.DataType;
+import com.tcpviewer.model.Direction;
+import com.tcpviewer.proxy.DataCaptureListener;
+import com.tcpviewer.util.TimerWheel;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures heap bytes allocated per forwarded megabyte on the capture path,
+ * from the forwarder's read buffer to a DataPacket whose payload has been read once.
+ * Compares the former copy chain (chunk copy, merge, DataPacket copy, getRawData copy)
+ * with the current CaptureStream and read-only payload path.
+ * Text formatting is left out, as it is the same in both paths.
+ * Disabled by default; run with:
+ * <pre>
+ * mvn test -Dtest=CaptureAllocationBenchmarkTest -Dtcpviewer.benchmark=true
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "tcpviewer.benchmark", matches = "true")
+class CaptureAllocationBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CaptureAllocationBenchmarkTest.class);
+    private static final int CHUNK_SIZE = 1024;
+    private static final int CHUNKS_PER_PACKET = 8;
+    private static final int MEGABYTES = 64;
+    private static final int PACKETS = MEGABYTES * 1024 * 1024 / (CHUNK_SIZE * CHUNKS_PER_PACKET);
+
+    private final com.sun.management.ThreadMXBean threadBean =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private long checksum;
+
+    @Test
+    void testAllocatedBytesPerForwardedMegabyte() {
+        byte[] readBuffer = new byte[8192];
+        Arrays.fill(readBuffer, (byte) 'x');
+        TimerWheel timerWheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, new DefaultThreadFactory());
+        try {
+            PacketCoalescer coalescer = new PacketCoalescer(timerWheel, TimeUnit.MINUTES.toMillis(1), 1 << 20);
+            // Warm up both paths before measuring
+            legacyPath(readBuffer);
+            currentPath(readBuffer, coalescer);
+
+            long legacy = measure(() -> legacyPath(readBuffer));
+            long current = measure(() -> currentPath(readBuffer, coalescer));
+
+            logger.info("Bytes allocated per forwarded MB: before {}, after {} (checksum {})",
+                    legacy / MEGABYTES, current / MEGABYTES, checksum);
+            assertTrue(current < legacy, "Current capture path should allocate less");
+        } finally {
+            timerWheel.stop();
+        }
+    }
+
+    private long measure(Runnable path) {
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        path.run();
+        return threadBean.getThreadAllocatedBytes(threadId) - before;
+    }
+
+    /**
+     * The capture path as it was before packets held read-only payloads.
+     */
+    private void legacyPath(byte[] readBuffer) {
+        for (int p = 0; p < PACKETS; p++) {
+            List<byte[]> chunks = new ArrayList<>();
+            for (int c = 0; c < CHUNKS_PER_PACKET; c++) {
+                chunks.add(Arrays.copyOf(readBuffer, CHUNK_SIZE));
+            }
+            byte[] combined = new byte[CHUNK_SIZE * CHUNKS_PER_PACKET];
+            int offset = 0;
+            for (byte[] chunk : chunks) {
+                System.arraycopy(chunk, 0, combined, offset, chunk.length);
+                offset += chunk.length;
+            }
+            DataPacket packet = new DataPacket(LocalDateTime.MIN, Direction.CLIENT_TO_SERVER,
+                    combined, DataType.TEXT, null);
+            checksum += packet.getRawData()[0];
+        }
+    }
+
+    private void currentPath(byte[] readBuffer, PacketCoalescer coalescer) {
+        DataCaptureListener listener = new DataCaptureListener() {
+            @Override
+            public void onDataCaptured(UUID connectionId, byte[] data, Direction direction) {
+                DataPacket packet = new DataPacket(LocalDateTime.MIN, direction,
+                        ByteBuffer.wrap(data), DataType.TEXT, null);
+                checksum += packet.getPayload().get(0);
+            }
+
+            @Override
+            public void onConnectionClosed(UUID connectionId) {
+            }
+        };
+        UUID connectionId = UUID.randomUUID();
+        for (int p = 0; p < PACKETS; p++) {
+            CaptureStream stream = coalescer.openStream(connectionId, Direction.CLIENT_TO_SERVER, listener);
+            for (int c = 0; c < CHUNKS_PER_PACKET; c++) {
+                stream.append(readBuffer, 0, CHUNK_SIZE);
+            }
+            // Closing delivers on this thread, so all allocations are measured here
+            stream.close();
+        }
+    }
+}
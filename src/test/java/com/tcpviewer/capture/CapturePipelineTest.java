@@ -0,0 +1,271 @@
+package com.tcpviewer.capture;
+
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.model.Direction;
+import com.tcpviewer.proxy.DataCaptureListener;
+import com.tcpviewer.util.TimerWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CapturePipeline.
+ * A consumer that can be held back fills the queue to exercise the overflow policies.
+ */
+class CapturePipelineTest {
+
+    /**
+     * Consumer recording events; blocks on the gate until released.
+     */
+    private static class GatedConsumer implements DataCaptureListener {
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final List<Thread> threads = new CopyOnWriteArrayList<>();
+        final List<Integer> droppedSizes = new CopyOnWriteArrayList<>();
+        final List<Thread> droppedThreads = new CopyOnWriteArrayList<>();
+        final CountDownLatch gate = new CountDownLatch(1);
+        final CountDownLatch firstEvent = new CountDownLatch(1);
+
+        @Override
+        public void onDataCaptured(UUID connectionId, byte[] data, Direction direction) {
+            record(new String(data));
+        }
+
+        @Override
+        public void onDataDropped(UUID connectionId, Direction direction, int bytes) {
+            droppedSizes.add(bytes);
+            droppedThreads.add(Thread.currentThread());
+        }
+
+        @Override
+        public void onConnectionClosed(UUID connectionId) {
+            record("closed");
+        }
+
+        private void record(String event) {
+            firstEvent.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+            threads.add(Thread.currentThread());
+        }
+
+        void awaitEvents(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+        }
+    }
+
+    @TempDir
+    Path spillDirectory;
+
+    private MetricsRegistry metrics;
+    private GatedConsumer consumer;
+    private CapturePipeline pipeline;
+    private UUID connectionId;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new MetricsRegistry();
+        consumer = new GatedConsumer();
+        connectionId = UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        consumer.gate.countDown();
+        if (pipeline != null) {
+            pipeline.shutdown();
+        }
+    }
+
+    private DataCaptureListener start(OverflowPolicy policy) throws InterruptedException {
+        pipeline = new CapturePipeline(4, policy, spillDirectory, new DefaultThreadFactory(), metrics);
+        DataCaptureListener listener = pipeline.attach(consumer);
+        // Occupy the worker so the queue fills up
+        listener.onDataCaptured(connectionId, "first".getBytes(), Direction.CLIENT_TO_SERVER);
+        assertTrue(consumer.firstEvent.await(5, TimeUnit.SECONDS));
+        return listener;
+    }
+
+    @Test
+    void testEventsDeliveredOnWorkerThread() throws Exception {
+        DataCaptureListener listener = start(OverflowPolicy.DROP);
+        consumer.gate.countDown();
+
+        listener.onDataCaptured(connectionId, "second".getBytes(), Direction.SERVER_TO_CLIENT);
+        listener.onConnectionClosed(connectionId);
+
+        consumer.awaitEvents(3);
+        assertEquals(List.of("first", "second", "closed"), consumer.events);
+        assertNotSame(Thread.currentThread(), consumer.threads.get(0));
+        assertEquals(3, metrics.snapshot().get("capture.delivered"));
+    }
+
+    @Test
+    void testDropPolicyCountsDroppedData() throws Exception {
+        DataCaptureListener listener = start(OverflowPolicy.DROP);
+
+        for (int i = 0; i < 10; i++) {
+            listener.onDataCaptured(connectionId, ("d" + i).getBytes(), Direction.CLIENT_TO_SERVER);
+        }
+        consumer.gate.countDown();
+
+        consumer.awaitEvents(5);
+        Thread.sleep(50);
+        assertEquals(List.of("first", "d0", "d1", "d2", "d3"), consumer.events);
+        assertEquals(6, metrics.snapshot().get("capture.dropped"));
+    }
+
+    @Test
+    void testDropPolicyReportsDroppedDataToConsumer() throws Exception {
+        DataCaptureListener listener = start(OverflowPolicy.DROP);
+
+        for (int i = 0; i < 6; i++) {
+            listener.onDataCaptured(connectionId, ("d" + i).getBytes(), Direction.CLIENT_TO_SERVER);
+        }
+        listener.onDataCaptured(connectionId, "large".getBytes(), Direction.SERVER_TO_CLIENT);
+
+        // Reported right away on the submitting thread, without waiting for the worker
+        assertEquals(List.of(2, 2, 5), consumer.droppedSizes);
+        assertTrue(consumer.droppedThreads.stream().allMatch(thread -> thread == Thread.currentThread()));
+        assertEquals(3, metrics.snapshot().get("capture.dropped"));
+    }
+
+    @Test
+    void testDropPolicyNeverDropsCloseEvents() throws Exception {
+        DataCaptureListener listener = start(OverflowPolicy.DROP);
+        for (int i = 0; i < 4; i++) {
+            listener.onDataCaptured(connectionId, ("d" + i).getBytes(), Direction.CLIENT_TO_SERVER);
+        }
+
+        Thread closer = new Thread(() -> listener.onConnectionClosed(connectionId));
+        closer.start();
+        Thread.sleep(50);
+        assertTrue(closer.isAlive(), "Close event should wait for room instead of being dropped");
+
+        consumer.gate.countDown();
+        closer.join(5000);
+
+        consumer.awaitEvents(6);
+        assertEquals("closed", consumer.events.get(5));
+        assertEquals(0, metrics.snapshot().get("capture.dropped"));
+    }
+
+    @Test
+    void testBlockPolicyWaitsForRoom() throws Exception {
+        DataCaptureListener listener = start(OverflowPolicy.BLOCK);
+        for (int i = 0; i < 4; i++) {
+            listener.onDataCaptured(connectionId, ("d" + i).getBytes(), Direction.CLIENT_TO_SERVER);
+        }
+
+        Thread producer = new Thread(() ->
+                listener.onDataCaptured(connectionId, "late".getBytes(), Direction.CLIENT_TO_SERVER));
+        producer.start();
+        Thread.sleep(50);
+        assertTrue(producer.isAlive());
+
+        consumer.gate.countDown();
+        producer.join(5000);
+
+        consumer.awaitEvents(6);
+        assertEquals(List.of("first", "d0", "d1", "d2", "d3", "late"), consumer.events);
+        assertEquals(1, metrics.snapshot().get("capture.blocked"));
+    }
+
+    @Test
+    void testSpillPolicyPreservesOrder() throws Exception {
+        DataCaptureListener listener = start(OverflowPolicy.SPILL);
+
+        for (int i = 0; i < 20; i++) {
+            listener.onDataCaptured(connectionId, ("d" + i).getBytes(), Direction.CLIENT_TO_SERVER);
+        }
+        listener.onConnectionClosed(connectionId);
+        assertTrue(metrics.snapshot().get("capture.spill.bytes") > 0);
+
+        consumer.gate.countDown();
+        consumer.awaitEvents(22);
+
+        assertEquals(22, consumer.events.size());
+        assertEquals("first", consumer.events.get(0));
+        for (int i = 0; i < 20; i++) {
+            assertEquals("d" + i, consumer.events.get(i + 1));
+        }
+        assertEquals("closed", consumer.events.get(21));
+        assertEquals(17, metrics.snapshot().get("capture.spilled")); // d4..d19 and the close event
+        assertEquals(0, metrics.snapshot().get("capture.spill.bytes"));
+    }
+
+    @Test
+    void testConsumerExceptionDoesNotStopWorker() throws Exception {
+        pipeline = new CapturePipeline(4, OverflowPolicy.DROP, spillDirectory, new DefaultThreadFactory(), metrics);
+        CountDownLatch closed = new CountDownLatch(1);
+        DataCaptureListener listener = pipeline.attach(new DataCaptureListener() {
+            @Override
+            public void onDataCaptured(UUID id, byte[] data, Direction direction) {
+                throw new RuntimeException("Consumer failed");
+            }
+
+            @Override
+            public void onConnectionClosed(UUID id) {
+                closed.countDown();
+            }
+        });
+
+        listener.onDataCaptured(connectionId, "data".getBytes(), Direction.CLIENT_TO_SERVER);
+        listener.onConnectionClosed(connectionId);
+
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testBlockPolicyDoesNotBlockTimerWheel() throws Exception {
+        DataCaptureListener listener = start(OverflowPolicy.BLOCK);
+        TimerWheel timerWheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, new DefaultThreadFactory());
+        try {
+            // Packets of the maximum size are complete at once and delivered by the wheel
+            CaptureStream stream = new PacketCoalescer(timerWheel, 10_000, 2)
+                    .openStream(connectionId, Direction.CLIENT_TO_SERVER, listener);
+            for (int i = 0; i < 10; i++) {
+                stream.append(("d" + i).getBytes(), 0, 2);
+                Thread.sleep(2);
+            }
+
+            // The queue is full, yet the wheel still runs its timeouts
+            CountDownLatch ticked = new CountDownLatch(1);
+            timerWheel.schedule(ticked::countDown, 0, TimeUnit.MILLISECONDS);
+            assertTrue(ticked.await(5, TimeUnit.SECONDS), "Timer wheel should not be blocked by the full queue");
+            assertTrue(metrics.snapshot().get("capture.spilled") > 0);
+
+            // Events submitted by the forwarders meanwhile keep their order
+            listener.onConnectionClosed(connectionId);
+            consumer.gate.countDown();
+            consumer.awaitEvents(12);
+
+            assertEquals(12, consumer.events.size());
+            assertEquals("first", consumer.events.get(0));
+            for (int i = 0; i < 10; i++) {
+                assertEquals("d" + i, consumer.events.get(i + 1));
+            }
+            assertEquals("closed", consumer.events.get(11));
+            assertEquals(0, metrics.snapshot().get("capture.dropped"));
+        } finally {
+            timerWheel.stop();
+        }
+    }
+}
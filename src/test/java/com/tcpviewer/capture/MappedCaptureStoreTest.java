@@ -0,0 +1,163 @@
+package com.tcpviewer.capture;
+
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.model.Direction;
+import com.tcpviewer.model.PacketPayload;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for MappedCaptureStore.
+ */
+class MappedCaptureStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private MetricsRegistry metrics;
+    private MappedCaptureStore store;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new MetricsRegistry();
+        store = new MappedCaptureStore(tempDir, 64, metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    private static byte[] bytes(PacketPayload payload) {
+        ByteBuffer view = payload.read();
+        byte[] data = new byte[view.remaining()];
+        view.get(data);
+        return data;
+    }
+
+    @Test
+    void testPayloadReadBackFromSegment() {
+        PacketPayload payload = store.store(LocalDateTime.now(), Direction.CLIENT_TO_SERVER, "Hello".getBytes());
+
+        assertEquals(5, payload.size());
+        assertArrayEquals("Hello".getBytes(), bytes(payload));
+        assertFalse(store.isOnHeap());
+        assertEquals(1, store.getSegmentCount());
+    }
+
+    @Test
+    void testPayloadViewIsReadOnly() {
+        PacketPayload payload = store.store(LocalDateTime.now(), Direction.CLIENT_TO_SERVER, "abc".getBytes());
+
+        assertThrows(ReadOnlyBufferException.class, () -> payload.read().put(0, (byte) 'x'));
+    }
+
+    @Test
+    void testRecordHeaderWrittenBeforePayload() throws IOException {
+        store.store(LocalDateTime.now(), Direction.SERVER_TO_CLIENT, "abc".getBytes());
+
+        Path segment = findSegments().findFirst().orElseThrow();
+        ByteBuffer file = ByteBuffer.wrap(Files.readAllBytes(segment));
+        assertEquals(3, file.getInt());
+        assertEquals(Direction.SERVER_TO_CLIENT.ordinal(), file.get());
+        assertTrue(file.getLong() > 0);
+        assertEquals('a', file.get());
+    }
+
+    @Test
+    void testRollsOverToNewSegmentWhenFull() {
+        // 13 header bytes + 30 payload bytes: only one record fits into a 64 byte segment
+        PacketPayload first = store.store(LocalDateTime.now(), Direction.CLIENT_TO_SERVER, new byte[30]);
+        PacketPayload second = store.store(LocalDateTime.now(), Direction.CLIENT_TO_SERVER, filled(30, (byte) 7));
+
+        assertEquals(2, store.getSegmentCount());
+        assertEquals(30, first.size());
+        assertArrayEquals(filled(30, (byte) 7), bytes(second));
+        assertEquals(86L, metrics.snapshot().get("capture.store.bytes"));
+    }
+
+    @Test
+    void testPayloadLargerThanSegmentGetsOwnSegment() {
+        PacketPayload payload = store.store(LocalDateTime.now(), Direction.CLIENT_TO_SERVER, filled(1000, (byte) 1));
+
+        assertArrayEquals(filled(1000, (byte) 1), bytes(payload));
+        assertEquals(1, store.getSegmentCount());
+    }
+
+    @Test
+    void testResetDeletesSegmentFiles() throws IOException {
+        PacketPayload payload = store.store(LocalDateTime.now(), Direction.CLIENT_TO_SERVER, "kept".getBytes());
+        assertEquals(1, findSegments().count());
+
+        store.reset();
+
+        assertEquals(0, findSegments().count());
+        assertEquals(0, store.getSegmentCount());
+        assertEquals(0L, metrics.snapshot().get("capture.store.bytes"));
+        // Payloads handed out before stay readable through their mapping
+        assertArrayEquals("kept".getBytes(), bytes(payload));
+    }
+
+    @Test
+    void testFallsBackToHeapWhenSegmentCannotBeCreated() throws IOException {
+        Path notADirectory = Files.createFile(tempDir.resolve("file"));
+        MappedCaptureStore broken = new MappedCaptureStore(notADirectory, 64, metrics);
+
+        PacketPayload payload = broken.store(LocalDateTime.now(), Direction.CLIENT_TO_SERVER, "data".getBytes());
+
+        assertArrayEquals("data".getBytes(), bytes(payload));
+        assertEquals(1L, metrics.snapshot().get("capture.store.failures"));
+    }
+
+    private Stream<Path> findSegments() throws IOException {
+        return Files.walk(tempDir).filter(path -> path.getFileName().toString().startsWith("segment-"));
+    }
+
+    private static byte[] filled(int length, byte value) {
+        byte[] data = new byte[length];
+        Arrays.fill(data, value);
+        return data;
+    }
+
+    @Test
+    void testSegmentReclaimedOnceAllPayloadsReleased() throws IOException {
+        byte[] data = new byte[40];
+        PacketPayload first = store.store(LocalDateTime.now(), Direction.CLIENT_TO_SERVER, data);
+        PacketPayload second = store.store(LocalDateTime.now(), Direction.CLIENT_TO_SERVER, data);
+        PacketPayload third = store.store(LocalDateTime.now(), Direction.CLIENT_TO_SERVER, data);
+        assertEquals(3, store.getSegmentCount());
+        assertTrue(first.isStored());
+
+        first.release();
+        first.release();
+
+        assertEquals(2, store.getSegmentCount());
+        assertEquals(2L * (data.length + 13), metrics.snapshot().get("capture.store.bytes"));
+        // Views of released payloads stay readable while their mapping is referenced
+        assertEquals(40, bytes(first).length);
+
+        // The segment being written is reclaimed once the next one is started
+        third.release();
+        assertEquals(2, store.getSegmentCount());
+        store.store(LocalDateTime.now(), Direction.CLIENT_TO_SERVER, data);
+        assertEquals(2, store.getSegmentCount());
+
+        second.release();
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            assertEquals(1, files.filter(Files::isRegularFile).count());
+        }
+    }
+}
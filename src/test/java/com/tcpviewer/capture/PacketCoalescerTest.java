@@ -0,0 +1,198 @@
+package com.tcpviewer.capture;
+
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
+import com.tcpviewer.model.Direction;
+import com.tcpviewer.proxy.DataCaptureListener;
+import com.tcpviewer.util.TimerWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PacketCoalescer and CaptureStream.
+ * Tests idle gap detection, size limits, ordering and delivery threads.
+ */
+class PacketCoalescerTest {
+
+    /**
+     * Records captured packets and the threads delivering them.
+     */
+    private static class RecordingListener implements DataCaptureListener {
+        final List<byte[]> packets = new CopyOnWriteArrayList<>();
+        final List<Thread> threads = new CopyOnWriteArrayList<>();
+        volatile CountDownLatch latch = new CountDownLatch(1);
+
+        @Override
+        public void onDataCaptured(UUID connectionId, byte[] data, Direction direction) {
+            packets.add(data);
+            threads.add(Thread.currentThread());
+            latch.countDown();
+        }
+
+        @Override
+        public void onConnectionClosed(UUID connectionId) {
+        }
+    }
+
+    private TimerWheel timerWheel;
+    private RecordingListener listener;
+    private UUID connectionId;
+
+    @BeforeEach
+    void setUp() {
+        timerWheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, new DefaultThreadFactory());
+        listener = new RecordingListener();
+        connectionId = UUID.randomUUID();
+    }
+
+    @AfterEach
+    void tearDown() {
+        timerWheel.stop();
+    }
+
+    @Test
+    void testIdleGapEmitsPacketOnTimerThread() throws Exception {
+        PacketCoalescer coalescer = new PacketCoalescer(timerWheel, 20, 65536);
+        CaptureStream stream = coalescer.openStream(connectionId, Direction.CLIENT_TO_SERVER, listener);
+
+        stream.append("Hello ".getBytes(), 0, 6);
+        stream.append("World".getBytes(), 0, 5);
+
+        assertTrue(listener.latch.await(2, TimeUnit.SECONDS), "Packet not emitted after idle gap");
+        assertEquals(1, listener.packets.size());
+        assertArrayEquals("Hello World".getBytes(), listener.packets.get(0));
+        assertNotSame(Thread.currentThread(), listener.threads.get(0));
+    }
+
+    @Test
+    void testSeparateBurstsBecomeSeparatePackets() throws Exception {
+        PacketCoalescer coalescer = new PacketCoalescer(timerWheel, 10, 65536);
+        CaptureStream stream = coalescer.openStream(connectionId, Direction.CLIENT_TO_SERVER, listener);
+
+        stream.append("first".getBytes(), 0, 5);
+        assertTrue(listener.latch.await(2, TimeUnit.SECONDS));
+
+        listener.latch = new CountDownLatch(1);
+        stream.append("second".getBytes(), 0, 6);
+        assertTrue(listener.latch.await(2, TimeUnit.SECONDS));
+
+        assertEquals(2, listener.packets.size());
+        assertArrayEquals("first".getBytes(), listener.packets.get(0));
+        assertArrayEquals("second".getBytes(), listener.packets.get(1));
+    }
+
+    @Test
+    void testAppendCopiesData() {
+        PacketCoalescer coalescer = new PacketCoalescer(timerWheel, 10_000, 65536);
+        CaptureStream stream = coalescer.openStream(connectionId, Direction.CLIENT_TO_SERVER, listener);
+        byte[] buffer = "abc".getBytes();
+
+        stream.append(buffer, 0, 3);
+        buffer[0] = 'x';
+        stream.close();
+
+        assertArrayEquals("abc".getBytes(), listener.packets.get(0));
+    }
+
+    @Test
+    void testCloseFlushesSynchronously() {
+        PacketCoalescer coalescer = new PacketCoalescer(timerWheel, 10_000, 65536);
+        CaptureStream stream = coalescer.openStream(connectionId, Direction.SERVER_TO_CLIENT, listener);
+
+        stream.append("pending".getBytes(), 0, 7);
+        assertTrue(listener.packets.isEmpty());
+
+        stream.close();
+
+        assertEquals(1, listener.packets.size());
+        assertArrayEquals("pending".getBytes(), listener.packets.get(0));
+    }
+
+    @Test
+    void testAppendAfterCloseIgnored() {
+        PacketCoalescer coalescer = new PacketCoalescer(timerWheel, 10_000, 65536);
+        CaptureStream stream = coalescer.openStream(connectionId, Direction.CLIENT_TO_SERVER, listener);
+
+        stream.close();
+        stream.append("late".getBytes(), 0, 4);
+        stream.close();
+
+        assertTrue(listener.packets.isEmpty());
+    }
+
+    @Test
+    void testMaxPacketSizePreservesOrderAndContent() {
+        PacketCoalescer coalescer = new PacketCoalescer(timerWheel, 10_000, 1000);
+        CaptureStream stream = coalescer.openStream(connectionId, Direction.CLIENT_TO_SERVER, listener);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+
+        for (int i = 0; i < 100; i++) {
+            byte[] chunk = new byte[137];
+            Arrays.fill(chunk, (byte) i);
+            expected.write(chunk, 0, chunk.length);
+            stream.append(chunk, 0, chunk.length);
+        }
+        stream.close();
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        for (byte[] packet : listener.packets) {
+            assertTrue(packet.length <= 1000, "Packet exceeds max size: " + packet.length);
+            actual.write(packet, 0, packet.length);
+        }
+        assertEquals(14, listener.packets.size());
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+    }
+
+    @Test
+    void testListenerExceptionDoesNotPropagate() {
+        DataCaptureListener failing = new DataCaptureListener() {
+            @Override
+            public void onDataCaptured(UUID id, byte[] data, Direction direction) {
+                throw new RuntimeException("Listener failed");
+            }
+
+            @Override
+            public void onConnectionClosed(UUID id) {
+            }
+        };
+        CaptureStream stream = new PacketCoalescer(timerWheel, 10_000, 65536)
+                .openStream(connectionId, Direction.CLIENT_TO_SERVER, failing);
+
+        stream.append("data".getBytes(), 0, 4);
+        assertDoesNotThrow(stream::close);
+    }
+
+    @Test
+    void testPerChunkStreamDeliversEachAppendImmediately() {
+        CaptureStream stream = CaptureStream.perChunk(connectionId, Direction.CLIENT_TO_SERVER, listener);
+
+        stream.append("one".getBytes(), 0, 3);
+        stream.append("two".getBytes(), 0, 3);
+
+        assertEquals(2, listener.packets.size());
+        assertSame(Thread.currentThread(), listener.threads.get(0));
+    }
+
+    @Test
+    void testNullListenerOpensNoStream() {
+        PacketCoalescer coalescer = new PacketCoalescer(timerWheel, 10, 65536);
+
+        assertNull(coalescer.openStream(connectionId, Direction.CLIENT_TO_SERVER, null));
+        assertNull(CaptureStream.perChunk(connectionId, Direction.CLIENT_TO_SERVER, null));
+    }
+
+    @Test
+    void testInvalidMaxPacketSizeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new PacketCoalescer(timerWheel, 10, 0));
+    }
+}
@@ -0,0 +1,243 @@
+package com.tcpviewer.io.resolver;
+
+import com.tcpviewer.lang.wrapper.factory.DefaultExecutorServiceFactory;
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
+import com.tcpviewer.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CachingHostResolver.
+ */
+class CachingHostResolverTest {
+
+    /**
+     * Test stub for HostResolver counting its lookups and optionally blocking them.
+     */
+    private static class TestHostResolver implements HostResolver {
+        private final AtomicInteger lookups = new AtomicInteger();
+        private volatile InetAddress[] addresses;
+        private volatile CountDownLatch gate;
+
+        TestHostResolver(InetAddress... addresses) {
+            this.addresses = addresses;
+        }
+
+        @Override
+        public InetAddress[] resolveAll(String host) throws UnknownHostException {
+            lookups.incrementAndGet();
+            CountDownLatch currentGate = gate;
+            if (currentGate != null) {
+                try {
+                    currentGate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (addresses == null) {
+                throw new UnknownHostException(host);
+            }
+            return addresses;
+        }
+    }
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private CachingHostResolver resolver;
+
+    @AfterEach
+    void tearDown() {
+        if (resolver != null) {
+            resolver.shutdown();
+        }
+    }
+
+    private CachingHostResolver createResolver(HostResolver delegate, long ttlMillis, long negativeTtlMillis,
+                                               long timeoutMillis) {
+        resolver = new CachingHostResolver(delegate, ttlMillis, negativeTtlMillis, timeoutMillis,
+                TimeUnit.MILLISECONDS,
+                new DefaultExecutorServiceFactory().createCachedThreadPool(new DefaultThreadFactory()), metrics);
+        return resolver;
+    }
+
+    private static InetAddress address(int lastByte) throws UnknownHostException {
+        return InetAddress.getByAddress(new byte[]{10, 0, 0, (byte) lastByte});
+    }
+
+    @Test
+    void testResolvesOnceWithinTtl() throws Exception {
+        TestHostResolver delegate = new TestHostResolver(address(1));
+        createResolver(delegate, 60_000, 0, 2_000);
+
+        assertEquals(address(1), resolver.resolve("target.example"));
+        assertEquals(address(1), resolver.resolve("TARGET.example"));
+
+        assertEquals(1, delegate.lookups.get());
+        assertEquals(1L, metrics.snapshot().get("dns.cache.misses"));
+        assertEquals(1L, metrics.snapshot().get("dns.cache.hits"));
+        assertEquals(1L, metrics.snapshot().get("dns.cache.size"));
+    }
+
+    @Test
+    void testResolveRotatesOverAddresses() throws Exception {
+        createResolver(new TestHostResolver(address(1), address(2)), 60_000, 0, 2_000);
+
+        assertEquals(address(1), resolver.resolve("target.example"));
+        assertEquals(address(2), resolver.resolve("target.example"));
+        assertEquals(address(1), resolver.resolve("target.example"));
+        assertEquals(2, resolver.resolveAll("target.example").length);
+    }
+
+    @Test
+    void testFailedLookupIsCachedForNegativeTtl() {
+        TestHostResolver delegate = new TestHostResolver((InetAddress[]) null);
+        createResolver(delegate, 60_000, 60_000, 2_000);
+
+        assertThrows(UnknownHostException.class, () -> resolver.resolve("missing.example"));
+        assertThrows(UnknownHostException.class, () -> resolver.resolve("missing.example"));
+
+        assertEquals(1, delegate.lookups.get());
+        assertEquals(1L, metrics.snapshot().get("dns.lookup.failures"));
+    }
+
+    @Test
+    void testFailedLookupIsRetriedWithoutNegativeTtl() throws Exception {
+        TestHostResolver delegate = new TestHostResolver((InetAddress[]) null);
+        createResolver(delegate, 60_000, 0, 2_000);
+
+        assertThrows(UnknownHostException.class, () -> resolver.resolve("flaky.example"));
+        delegate.addresses = new InetAddress[]{address(3)};
+
+        assertEquals(address(3), resolver.resolve("flaky.example"));
+        assertEquals(2, delegate.lookups.get());
+    }
+
+    @Test
+    void testSlowLookupTimesOutAndStillFillsCache() throws Exception {
+        TestHostResolver delegate = new TestHostResolver(address(4));
+        delegate.gate = new CountDownLatch(1);
+        createResolver(delegate, 60_000, 0, 50);
+
+        UnknownHostException e = assertThrows(UnknownHostException.class,
+                () -> resolver.resolve("slow.example"));
+        assertTrue(e.getMessage().contains("timed out"));
+        assertEquals(1L, metrics.snapshot().get("dns.lookup.timeouts"));
+
+        delegate.gate.countDown();
+        awaitCacheSize(1);
+        assertEquals(address(4), resolver.resolve("slow.example"));
+        assertEquals(1, delegate.lookups.get());
+    }
+
+    @Test
+    void testConcurrentLookupsAreCoalesced() throws Exception {
+        TestHostResolver delegate = new TestHostResolver(address(5));
+        delegate.gate = new CountDownLatch(1);
+        createResolver(delegate, 60_000, 0, 5_000);
+
+        int callers = 8;
+        CountDownLatch done = new CountDownLatch(callers);
+        AtomicInteger resolved = new AtomicInteger();
+        for (int i = 0; i < callers; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    if (address(5).equals(resolver.resolve("busy.example"))) {
+                        resolved.incrementAndGet();
+                    }
+                } catch (UnknownHostException ignored) {
+                } finally {
+                    done.countDown();
+                }
+            });
+            thread.start();
+        }
+        Thread.sleep(100);
+        delegate.gate.countDown();
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(callers, resolved.get());
+        assertEquals(1, delegate.lookups.get());
+    }
+
+    @Test
+    void testExpiredAddressesAreServedWhileRefreshing() throws Exception {
+        TestHostResolver delegate = new TestHostResolver(address(6));
+        createResolver(delegate, 200, 0, 2_000);
+        assertEquals(address(6), resolver.resolve("moving.example"));
+
+        delegate.addresses = new InetAddress[]{address(7)};
+        delegate.gate = new CountDownLatch(1);
+        Thread.sleep(250);
+
+        // The refresh blocks, yet the expired address is returned at once
+        assertEquals(address(6), resolver.resolve("moving.example"));
+        assertEquals(1L, metrics.snapshot().get("dns.cache.stale.hits"));
+
+        delegate.gate.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!address(7).equals(resolver.resolve("moving.example")) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(address(7), resolver.resolve("moving.example"));
+    }
+
+    @Test
+    void testResolveAsyncDoesNotWaitForLookup() throws Exception {
+        TestHostResolver delegate = new TestHostResolver(address(8));
+        delegate.gate = new CountDownLatch(1);
+        createResolver(delegate, 60_000, 0, 5_000);
+
+        CompletableFuture<InetAddress> pending = resolver.resolveAsync("async.example");
+        assertFalse(pending.isDone());
+
+        delegate.gate.countDown();
+        assertEquals(address(8), pending.get(5, TimeUnit.SECONDS));
+        // Cached addresses complete the future right away
+        assertEquals(address(8), resolver.resolveAsync("async.example").getNow(null));
+        assertEquals(1, delegate.lookups.get());
+    }
+
+    @Test
+    void testResolveAsyncFailsAfterLookupTimeout() throws Exception {
+        TestHostResolver delegate = new TestHostResolver(address(9));
+        delegate.gate = new CountDownLatch(1);
+        createResolver(delegate, 60_000, 0, 50);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> resolver.resolveAsync("slow.example").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(UnknownHostException.class, e.getCause());
+        assertTrue(e.getCause().getMessage().contains("timed out"));
+        // Counted by the timeout task right after it failed the future
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (metrics.snapshot().get("dns.lookup.timeouts") < 1 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1L, metrics.snapshot().get("dns.lookup.timeouts"));
+        delegate.gate.countDown();
+    }
+
+    @Test
+    void testResolveAsyncFailsForUnknownHost() {
+        createResolver(new TestHostResolver((InetAddress[]) null), 60_000, 0, 2_000);
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> resolver.resolveAsync("missing.example").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(UnknownHostException.class, e.getCause());
+    }
+
+    private void awaitCacheSize(long size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (metrics.snapshot().get("dns.cache.size") < size && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.tcpviewer.io.wrapper.factory;
+
+import com.tcpviewer.io.wrapper.ServerSocketWrapper;
+import com.tcpviewer.io.wrapper.SocketWrapper;
+import com.tcpviewer.model.TlsHandshake;
+import com.tcpviewer.ssl.ServerCertificateGeneratorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests TLS session resumption between DefaultSocketFactory and DefaultServerSocketFactory,
+ * using handshakes over the loopback interface.
+ */
+class TlsSessionResumptionTest {
+
+    private static KeyStore keyStore;
+
+    private DefaultSocketFactory socketFactory;
+    private DefaultServerSocketFactory serverSocketFactory;
+    private ServerSocketWrapper serverSocket;
+    private int port;
+
+    @BeforeAll
+    static void generateCertificate() throws Exception {
+        keyStore = new ServerCertificateGeneratorService(null, null)
+                .generateServerCertificate("localhost", 365).keyStore();
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        socketFactory = new DefaultSocketFactory();
+        serverSocketFactory = new DefaultServerSocketFactory(socketFactory);
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        serverSocket = serverSocketFactory.createServerSocket(keyStore);
+        serverSocket.bind(new InetSocketAddress("127.0.0.1", port));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        serverSocket.close();
+    }
+
+    @Test
+    void testReconnectResumesSessionOnBothSides() throws Exception {
+        TlsHandshake[] first = exchange();
+        TlsHandshake[] second = exchange();
+
+        assertFalse(first[0].resumed());
+        assertFalse(first[1].resumed());
+        assertTrue(second[0].resumed());
+        assertTrue(second[1].resumed());
+        assertEquals(first[0].cipherSuite(), second[0].cipherSuite());
+        assertNotNull(second[1].protocol());
+        assertTrue(first[0].durationMicros() > 0);
+    }
+
+    @Test
+    void testLaterReconnectsResumeToo() throws Exception {
+        exchange();
+        exchange();
+
+        // The full handshake mark went with the first handshake, though the sessions share it
+        TlsHandshake[] third = exchange();
+
+        assertTrue(third[0].resumed());
+        assertTrue(third[1].resumed());
+    }
+
+    @Test
+    void testSessionsSurviveServerSocketRestart() throws Exception {
+        exchange();
+        serverSocket.close();
+        serverSocket = serverSocketFactory.createServerSocket(keyStore);
+        serverSocket.bind(new InetSocketAddress("127.0.0.1", port));
+
+        TlsHandshake[] handshakes = exchange();
+
+        assertTrue(handshakes[1].resumed());
+    }
+
+    @Test
+    void testPlainSocketHasNoHandshake() throws Exception {
+        try (SocketWrapper socket = socketFactory.wrapSocket(new Socket())) {
+            assertNull(socket.startHandshake());
+        }
+    }
+
+    /**
+     * Connects once and exchanges a byte each way, so TLS 1.3 session tickets reach the client.
+     *
+     * @return the handshake of the client socket at index 0 and of the accepted socket at index 1
+     */
+    private TlsHandshake[] exchange() throws Exception {
+        CompletableFuture<TlsHandshake> accepted = CompletableFuture.supplyAsync(() -> {
+            try (SocketWrapper socket = serverSocket.accept()) {
+                TlsHandshake handshake = socket.startHandshake();
+                socket.getInputStream().read(new byte[1]);
+                socket.getOutputStream().write(new byte[]{2}, 0, 1);
+                socket.getOutputStream().flush();
+                return handshake;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        try (SocketWrapper client = socketFactory.createSocket("127.0.0.1", port, true, "localhost")) {
+            byte[] reply = new byte[1];
+            client.getOutputStream().write(new byte[]{1}, 0, 1);
+            client.getOutputStream().flush();
+            assertEquals(1, client.getInputStream().read(reply));
+            assertEquals(2, reply[0]);
+            TlsHandshake handshake = client.startHandshake();
+            return new TlsHandshake[]{handshake, accepted.get(5, TimeUnit.SECONDS)};
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.tcpviewer.javafx.wrapper.impl;
+
+import com.tcpviewer.javafx.wrapper.PlatformWrapper;
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.util.TimerWheel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for BatchingPlatformWrapper.
+ */
+class BatchingPlatformWrapperTest {
+
+    /**
+     * Test stub recording the frames instead of running them on the JavaFX thread.
+     */
+    private static class CapturingPlatformWrapper implements PlatformWrapper {
+        private final List<Runnable> frames = new CopyOnWriteArrayList<>();
+        private final List<Long> frameTimes = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void runLater(Runnable runnable) {
+            frames.add(runnable);
+            frameTimes.add(System.nanoTime());
+        }
+
+        void runFrame(int index) {
+            frames.get(index).run();
+        }
+    }
+
+    private TimerWheel timerWheel;
+    private MetricsRegistry metrics;
+    private CapturingPlatformWrapper delegate;
+
+    @BeforeEach
+    void setUp() {
+        timerWheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, new DefaultThreadFactory());
+        metrics = new MetricsRegistry();
+        delegate = new CapturingPlatformWrapper();
+    }
+
+    @AfterEach
+    void tearDown() {
+        timerWheel.stop();
+    }
+
+    @Test
+    void testUpdatesAppliedInOrderByOneFrame() {
+        BatchingPlatformWrapper wrapper = new BatchingPlatformWrapper(delegate, timerWheel, 30, metrics);
+        List<Integer> applied = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            int update = i;
+            wrapper.runLater(() -> applied.add(update));
+        }
+
+        assertEquals(1, delegate.frames.size());
+        assertEquals(100L, metrics.snapshot().get("ui.queue.depth"));
+
+        delegate.runFrame(0);
+
+        assertEquals(100, applied.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, applied.get(i));
+        }
+        assertEquals(0L, metrics.snapshot().get("ui.queue.depth"));
+        assertEquals(1L, metrics.snapshot().get("ui.frames"));
+        assertEquals(100L, metrics.snapshot().get("ui.updates"));
+    }
+
+    @Test
+    void testNextFrameWaitsForFrameInterval() throws Exception {
+        // 10 frames per second: the second frame may start 100 ms after the first
+        BatchingPlatformWrapper wrapper = new BatchingPlatformWrapper(delegate, timerWheel, 10, metrics);
+        CountDownLatch applied = new CountDownLatch(2);
+
+        wrapper.runLater(applied::countDown);
+        delegate.runFrame(0);
+        wrapper.runLater(applied::countDown);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (delegate.frames.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(2, delegate.frames.size());
+        long gap = delegate.frameTimes.get(1) - delegate.frameTimes.get(0);
+        assertTrue(gap >= TimeUnit.MILLISECONDS.toNanos(90), "Frames only " + gap + " ns apart");
+
+        delegate.runFrame(1);
+        assertTrue(applied.await(0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testUpdatesQueuedDuringFrameGoToNextFrame() throws Exception {
+        BatchingPlatformWrapper wrapper = new BatchingPlatformWrapper(delegate, timerWheel, 100, metrics);
+        List<String> applied = new ArrayList<>();
+
+        wrapper.runLater(() -> {
+            applied.add("first");
+            wrapper.runLater(() -> applied.add("queued during frame"));
+        });
+        delegate.runFrame(0);
+
+        assertEquals(List.of("first"), applied);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (delegate.frames.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        delegate.runFrame(1);
+        assertEquals(List.of("first", "queued during frame"), applied);
+        assertEquals(2L, metrics.snapshot().get("ui.frames"));
+    }
+
+    @Test
+    void testFailingUpdateDoesNotStopFrame() {
+        BatchingPlatformWrapper wrapper = new BatchingPlatformWrapper(delegate, timerWheel, 30, metrics);
+        List<String> applied = new ArrayList<>();
+
+        wrapper.runLater(() -> {
+            throw new IllegalStateException("broken update");
+        });
+        wrapper.runLater(() -> applied.add("next"));
+        delegate.runFrame(0);
+
+        assertEquals(List.of("next"), applied);
+    }
+
+    @Test
+    void testRejectsNonPositiveFrameRate() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new BatchingPlatformWrapper(delegate, timerWheel, 0, metrics));
+    }
+}
@@ -0,0 +1,70 @@
+package com.tcpviewer.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures the heap retained per packet by a list of packet objects and by the columnar packet index,
+ * for 1 byte, 100 byte and 8 KB packets.
+ * Disabled by default; run with:
+ * <pre>
+ * mvn test -Dtest=PacketIndexMemoryBenchmarkTest -Dtcpviewer.benchmark=true
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "tcpviewer.benchmark", matches = "true")
+class PacketIndexMemoryBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(PacketIndexMemoryBenchmarkTest.class);
+    private static final long BYTES_PER_RUN = 128L * 1024 * 1024;
+    private static final Function<PacketPayload, String> RENDERER = payload -> "";
+
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+
+    @Test
+    void testRetainedBytesPerPacket() {
+        for (int packetSize : new int[]{1, 100, 8192}) {
+            int packets = (int) Math.min(1_000_000, BYTES_PER_RUN / packetSize);
+
+            double objects = retainedPerPacket(packets, packetSize, ArrayList::new);
+            double columns = retainedPerPacket(packets, packetSize, PacketIndex::new);
+
+            logger.info("{} byte packets: packet objects {} bytes per packet, packet index {} bytes per packet",
+                    packetSize, String.format("%.1f", objects), String.format("%.1f", columns));
+            assertTrue(columns < objects);
+        }
+    }
+
+    private double retainedPerPacket(int packets, int packetSize, Supplier<List<DataPacket>> listFactory) {
+        long before = usedHeap();
+        List<DataPacket> list = listFactory.get();
+        for (int i = 0; i < packets; i++) {
+            // Like DataProcessor: a payload wrapping the captured array, rendered on demand
+            list.add(new DataPacket(LocalDateTime.now(), i % 2 == 0 ? Direction.CLIENT_TO_SERVER
+                    : Direction.SERVER_TO_CLIENT, PacketPayload.of(ByteBuffer.wrap(new byte[packetSize])),
+                    DataType.TEXT, RENDERER));
+        }
+        long retained = usedHeap() - before;
+        assertEquals(packets, list.size());
+        return (double) retained / packets;
+    }
+
+    private long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memoryBean.getHeapMemoryUsage().getUsed();
+    }
+}
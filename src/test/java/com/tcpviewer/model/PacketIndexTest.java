@@ -0,0 +1,268 @@
+package com.tcpviewer.model;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PacketIndex.
+ */
+class PacketIndexTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 5, 17, 12, 30, 45, 123_456_789);
+
+    private static DataPacket packet(int i, Direction direction) {
+        byte[] data = ("packet" + i).getBytes(StandardCharsets.ISO_8859_1);
+        return new DataPacket(START.plusNanos(i * 1_001L), direction, data, DataType.TEXT, "text" + i);
+    }
+
+    private static String text(ByteBuffer payload) {
+        return StandardCharsets.ISO_8859_1.decode(payload).toString();
+    }
+
+    @Test
+    void testViewsMatchAddedPackets() {
+        PacketIndex index = new PacketIndex();
+        DataPacket first = packet(1, Direction.CLIENT_TO_SERVER);
+        DataPacket second = packet(2, Direction.SERVER_TO_CLIENT);
+
+        index.add(first);
+        index.add(second);
+
+        assertEquals(2, index.size());
+        assertEquals("packet1", text(index.get(0).getPayload()));
+        DataPacket view = index.get(1);
+        assertEquals(START.plusNanos(2_002), view.getTimestamp());
+        assertEquals(Direction.SERVER_TO_CLIENT, view.getDirection());
+        assertEquals(DataType.TEXT, view.getDataType());
+        assertEquals("packet2", text(view.getPayload()));
+        assertEquals("text2", view.getDisplayText());
+        assertEquals(7, index.getSize(1));
+        assertThrows(IndexOutOfBoundsException.class, () -> index.get(2));
+    }
+
+    @Test
+    void testRepeatedRequestsReturnTheSameView() {
+        PacketIndex index = new PacketIndex();
+        index.add(packet(1, Direction.CLIENT_TO_SERVER));
+
+        assertSame(index.get(0), index.get(0));
+    }
+
+    @Test
+    void testViewMaterializedAgainEqualsEarlierView() {
+        PacketIndex index = new PacketIndex();
+        DataPacket added = packet(0, Direction.CLIENT_TO_SERVER);
+        index.add(added);
+        for (int i = 1; i < 300; i++) {
+            index.add(packet(i, Direction.CLIENT_TO_SERVER));
+        }
+        DataPacket view = index.get(0);
+
+        // Requesting more views than are kept evicts the first one
+        for (int i = 1; i < 300; i++) {
+            index.get(i);
+        }
+        DataPacket again = index.get(0);
+
+        assertNotSame(view, again);
+        assertEquals(view, again);
+        assertEquals(view.hashCode(), again.hashCode());
+        // The payload is wrapped again over the same arena bytes
+        assertEquals(view.getPacketPayload(), again.getPacketPayload());
+        assertEquals(view.getPacketPayload().hashCode(), again.getPacketPayload().hashCode());
+        assertNotEquals(view.getPacketPayload(), index.get(1).getPacketPayload());
+        assertNotEquals(view, index.get(1));
+        assertNotEquals(added, view);
+
+        // The view of another index showing the same packet is another packet
+        PacketIndex other = new PacketIndex();
+        other.add(added);
+        assertNotEquals(view, other.get(0));
+    }
+
+    @Test
+    void testRemoveFirstKeepsOrderAcrossWrapAndGrowth() {
+        PacketIndex index = new PacketIndex();
+        List<DataPacket> expected = new ArrayList<>();
+
+        // Wrap the head around several times while the index grows and its arena is compacted
+        for (int i = 0; i < 500; i++) {
+            DataPacket packet = packet(i, i % 2 == 0 ? Direction.CLIENT_TO_SERVER : Direction.SERVER_TO_CLIENT);
+            index.add(packet);
+            expected.add(packet);
+            if (i % 3 == 2) {
+                index.removeFirst(2);
+                expected.subList(0, 2).clear();
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getTimestamp(), index.get(i).getTimestamp());
+            assertEquals(expected.get(i).getDirection(), index.get(i).getDirection());
+            assertEquals(expected.get(i).getPayload(), index.get(i).getPayload());
+            assertEquals(expected.get(i).getDisplayText(), index.get(i).getDisplayText());
+        }
+    }
+
+    @Test
+    void testEvictedViewsKeepTheirPayload() {
+        PacketIndex index = new PacketIndex();
+        index.add(packet(1, Direction.CLIENT_TO_SERVER));
+        DataPacket view = index.get(0);
+
+        index.removeFirst(1);
+        for (int i = 2; i < 2000; i++) {
+            index.add(packet(i, Direction.CLIENT_TO_SERVER));
+        }
+
+        assertEquals("packet1", text(view.getPayload()));
+    }
+
+    @Test
+    void testSharedRendererRendersViews() {
+        AtomicInteger renderings = new AtomicInteger();
+        Function<PacketPayload, String> renderer = payload -> {
+            renderings.incrementAndGet();
+            return text(payload.read()).toUpperCase();
+        };
+        PacketIndex index = new PacketIndex();
+
+        index.add(new DataPacket(START, Direction.CLIENT_TO_SERVER,
+                PacketPayload.of(ByteBuffer.wrap("abc".getBytes())), DataType.TEXT, renderer));
+        index.add(new DataPacket(START, Direction.CLIENT_TO_SERVER,
+                PacketPayload.of(ByteBuffer.wrap("def".getBytes())), DataType.TEXT, renderer));
+
+        assertEquals("ABC", index.get(0).getDisplayText());
+        assertEquals("DEF", index.get(1).getDisplayText());
+        assertEquals(2, renderings.get());
+    }
+
+    @Test
+    void testOwnTextsKeptAcrossWrapAndGrowth() {
+        Function<PacketPayload, String> shared = payload -> "shared";
+        Function<PacketPayload, String> own = payload -> "own";
+        PacketIndex index = new PacketIndex();
+        List<String> expected = new ArrayList<>();
+
+        for (int i = 0; i < 100; i++) {
+            PacketPayload payload = PacketPayload.of(ByteBuffer.wrap(("p" + i).getBytes()));
+            switch (i % 4) {
+                case 0, 1 -> {
+                    index.add(new DataPacket(START, Direction.CLIENT_TO_SERVER, payload, DataType.TEXT, shared));
+                    expected.add("shared");
+                }
+                case 2 -> {
+                    index.add(new DataPacket(START, Direction.CLIENT_TO_SERVER, payload, DataType.TEXT, own));
+                    expected.add("own");
+                }
+                default -> {
+                    index.add(new DataPacket(START, Direction.CLIENT_TO_SERVER, payload, DataType.TEXT, "given" + i, null));
+                    expected.add("given" + i);
+                }
+            }
+            if (i % 5 == 4) {
+                index.removeFirst(3);
+                expected.subList(0, 3).clear();
+            }
+        }
+
+        assertEquals(expected.size(), index.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i), index.get(i).getDisplayText());
+        }
+    }
+
+    @Test
+    void testPayloadsOutsideTheHeapAreReferenced() {
+        PacketPayload stored = new PacketPayload() {
+            @Override
+            public int size() {
+                return 6;
+            }
+
+            @Override
+            public ByteBuffer read() {
+                return ByteBuffer.wrap("stored".getBytes()).asReadOnlyBuffer();
+            }
+        };
+        PacketIndex index = new PacketIndex();
+
+        index.add(packet(1, Direction.CLIENT_TO_SERVER));
+        index.add(new DataPacket(START, Direction.SERVER_TO_CLIENT, stored, DataType.TEXT,
+                payload -> text(payload.read())));
+
+        assertEquals("packet1", text(index.get(0).getPayload()));
+        assertEquals("stored", index.get(1).getDisplayText());
+        assertEquals(6, index.getSize(1));
+    }
+
+    @Test
+    void testChangesAreReportedOncePerBatch() {
+        PacketIndex index = new PacketIndex();
+        List<String> changes = new ArrayList<>();
+        index.addListener((ListChangeListener<DataPacket>) change -> {
+            while (change.next()) {
+                changes.add((change.wasAdded() ? "add " + change.getAddedSize() : "")
+                        + (change.wasRemoved() ? "remove " + change.getRemovedSize() : ""));
+            }
+        });
+
+        index.addAll(List.of(packet(1, Direction.CLIENT_TO_SERVER), packet(2, Direction.CLIENT_TO_SERVER),
+                packet(3, Direction.CLIENT_TO_SERVER)));
+        index.removeFirst(2);
+        index.clear();
+
+        assertEquals(List.of("add 3", "remove 2", "remove 1"), changes);
+        assertTrue(index.isEmpty());
+    }
+
+    @Test
+    void testInsertingInTheMiddleIsNotSupported() {
+        PacketIndex index = new PacketIndex();
+        index.add(packet(1, Direction.CLIENT_TO_SERVER));
+
+        assertThrows(UnsupportedOperationException.class, () -> index.add(0, packet(2, Direction.CLIENT_TO_SERVER)));
+    }
+
+    @Test
+    void testRemovedPacketsReadableWhileChangeIsReported() {
+        PacketIndex index = new PacketIndex();
+        DataPacket[] added = new DataPacket[10];
+        for (int i = 0; i < added.length; i++) {
+            // 600 byte payloads fill several arena chunks, which are dropped on removal
+            byte[] data = new byte[600];
+            data[0] = (byte) i;
+            added[i] = new DataPacket(START.plusNanos(i), Direction.CLIENT_TO_SERVER, data, DataType.BINARY, "p" + i);
+            index.add(added[i]);
+        }
+        DataPacket cachedView = index.get(1);
+        List<DataPacket> removed = new ArrayList<>();
+        index.addListener((ListChangeListener<DataPacket>) change -> {
+            while (change.next()) {
+                removed.addAll(change.getRemoved());
+            }
+        });
+
+        index.removeFirst(6);
+
+        assertEquals(6, removed.size());
+        assertSame(cachedView, removed.get(1));
+        for (int i = 0; i < 6; i++) {
+            assertEquals("p" + i, removed.get(i).getDisplayText());
+            assertEquals(added[i].getPayload(), removed.get(i).getPayload());
+        }
+        assertEquals("p6", index.get(0).getDisplayText());
+        assertEquals(added[9].getPayload(), index.get(3).getPayload());
+    }
+}
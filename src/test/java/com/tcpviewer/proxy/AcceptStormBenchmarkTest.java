@@ -0,0 +1,104 @@
+package com.tcpviewer.proxy;
+
+import com.tcpviewer.io.wrapper.factory.DefaultServerSocketFactory;
+import com.tcpviewer.io.wrapper.factory.DefaultSocketFactory;
+import com.tcpviewer.lang.wrapper.ThreadWrapper;
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Benchmark of the accept rate of a plain listener under a connection storm from local clients,
+ * comparing one acceptor with several.
+ * Disabled by default; run with:
+ * <pre>
+ * mvn test -Dtest=AcceptStormBenchmarkTest -Dtcpviewer.benchmark=true
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "tcpviewer.benchmark", matches = "true")
+class AcceptStormBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(AcceptStormBenchmarkTest.class);
+
+    private static final int CLIENT_THREADS = 16;
+    private static final int CONNECTIONS_PER_CLIENT = 500;
+
+    @Test
+    void testAcceptRate() throws Exception {
+        int acceptors = Math.max(2, Runtime.getRuntime().availableProcessors());
+        double single = run(1);
+        double multiple = run(acceptors);
+
+        logger.info("Accept storm of {} connections: 1 acceptor {} conn/s, {} acceptors {} conn/s",
+                CLIENT_THREADS * CONNECTIONS_PER_CLIENT, Math.round(single), acceptors, Math.round(multiple));
+    }
+
+    private double run(int acceptors) throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        int total = CLIENT_THREADS * CONNECTIONS_PER_CLIENT;
+        CountDownLatch accepted = new CountDownLatch(total);
+        ForwardingEngine closingEngine = (connectionId, clientSocket, listener) -> {
+            try {
+                clientSocket.close();
+            } catch (IOException ignored) {
+            }
+            accepted.countDown();
+        };
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory();
+        ProxyServer server = new ProxyServer(false, false, "127.0.0.1", port, "localhost", null, 0,
+                null, null, closingEngine,
+                new DefaultServerSocketFactory(new DefaultSocketFactory()), threadFactory, null, null,
+                acceptors, 4096);
+        ThreadWrapper serverThread = threadFactory.createDaemonThread(server, "ProxyServer");
+        serverThread.start();
+        try {
+            while (!server.isRunning()) {
+                Thread.sleep(10);
+            }
+
+            AtomicInteger failures = new AtomicInteger();
+            List<Thread> clients = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < CLIENT_THREADS; i++) {
+                Thread client = new Thread(() -> {
+                    for (int j = 0; j < CONNECTIONS_PER_CLIENT; j++) {
+                        try {
+                            new Socket("127.0.0.1", port).close();
+                        } catch (IOException e) {
+                            failures.incrementAndGet();
+                            accepted.countDown();
+                        }
+                    }
+                });
+                client.start();
+                clients.add(client);
+            }
+            assertTrue(accepted.await(60, TimeUnit.SECONDS));
+            long elapsedNanos = System.nanoTime() - start;
+            for (Thread client : clients) {
+                client.join();
+            }
+            assertEquals(0, failures.get());
+            return total * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+        } finally {
+            server.stop();
+            serverThread.join(5000);
+        }
+    }
+}
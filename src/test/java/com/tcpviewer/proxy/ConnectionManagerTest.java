@@ -4,10 +4,16 @@ import com.tcpviewer.io.wrapper.InputStreamWrapper;
 import com.tcpviewer.io.wrapper.OutputStreamWrapper;
 import com.tcpviewer.io.wrapper.SocketWrapper;
 import com.tcpviewer.javafx.wrapper.PlatformWrapper;
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
+import com.tcpviewer.metrics.MetricsRegistry;
 import com.tcpviewer.model.ConnectionInfo;
 import com.tcpviewer.model.DataPacket;
 import com.tcpviewer.model.DataType;
 import com.tcpviewer.model.Direction;
+import com.tcpviewer.model.DirectionStats;
+import com.tcpviewer.model.TlsHandshake;
+import com.tcpviewer.util.TimerWheel;
+import javafx.collections.ListChangeListener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,8 +22,12 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.channels.SocketChannel;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -69,6 +79,11 @@ class ConnectionManagerTest {
             return port;
         }
 
+        @Override
+        public SocketChannel getChannel() {
+            return null;
+        }
+
         @Override
         public boolean isClosed() {
             return false;
@@ -94,7 +109,7 @@ class ConnectionManagerTest {
             return null;
         }).when(mockPlatformWrapper).runLater(any(Runnable.class));
 
-        connectionManager = new ConnectionManager(mockPlatformWrapper);
+        connectionManager = new ConnectionManager(mockPlatformWrapper, null, null, null);
     }
 
     @Test
@@ -203,10 +218,223 @@ class ConnectionManagerTest {
         // Assert
         ConnectionInfo connection = connectionManager.getConnection(connectionId);
         assertEquals(1, connection.getDataPackets().size());
-        assertTrue(connection.getDataPackets().contains(packet));
+        DataPacket added = connection.getDataPackets().get(0);
+        assertEquals(packet.getTimestamp(), added.getTimestamp());
+        assertEquals(packet.getPayload(), added.getPayload());
+        assertEquals("test data", added.getDisplayText());
         verify(mockPlatformWrapper, times(2)).runLater(any(Runnable.class)); // register + addPacket
     }
 
+    @Test
+    void testAddDataPacketAppliesRetentionLimits() {
+        // Arrange
+        connectionManager = new ConnectionManager(mockPlatformWrapper,
+                new PacketRetention(2, 0, 0, 0, new MetricsRegistry()), null, null);
+        UUID connectionId = UUID.randomUUID();
+        connectionManager.registerConnection(connectionId, "192.168.1.100", 50001);
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            connectionManager.addDataPacket(connectionId, new DataPacket(
+                    LocalDateTime.now(), Direction.CLIENT_TO_SERVER, "data".getBytes(), DataType.TEXT, "data"));
+        }
+
+        // Assert
+        ConnectionInfo connection = connectionManager.getConnection(connectionId);
+        assertEquals(2, connection.getDataPackets().size());
+        assertEquals(1, connection.getEvictedPacketCount());
+        assertEquals(12, connection.getTotalBytes());
+    }
+
+    @Test
+    void testPacketsArrivingBeforeUpdateRunsAreAddedTogether() {
+        // Arrange: hold back the updates instead of running them immediately
+        UUID connectionId = UUID.randomUUID();
+        connectionManager.registerConnection(connectionId, "192.168.1.100", 50001);
+        List<Runnable> updates = new ArrayList<>();
+        doAnswer(invocation -> updates.add(invocation.getArgument(0)))
+                .when(mockPlatformWrapper).runLater(any(Runnable.class));
+        ConnectionInfo connection = connectionManager.getConnection(connectionId);
+        List<Integer> addedSizes = new ArrayList<>();
+        connection.getDataPackets().addListener((ListChangeListener<DataPacket>) change -> {
+            while (change.next()) {
+                addedSizes.add(change.getAddedSize());
+            }
+        });
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            connectionManager.addDataPacket(connectionId, new DataPacket(
+                    LocalDateTime.now(), Direction.CLIENT_TO_SERVER, "data".getBytes(), DataType.TEXT, "data"));
+        }
+        updates.forEach(Runnable::run);
+
+        // Assert
+        assertEquals(1, updates.size());
+        assertEquals(List.of(3), addedSizes);
+        assertEquals(3, connection.getDataPackets().size());
+    }
+
+    @Test
+    void testPassedThroughBytesPublishedInOneUpdate() {
+        // Arrange: hold back the updates instead of running them immediately
+        UUID connectionId = UUID.randomUUID();
+        connectionManager.registerConnection(connectionId, "192.168.1.100", 50001);
+        List<Runnable> updates = new ArrayList<>();
+        doAnswer(invocation -> updates.add(invocation.getArgument(0)))
+                .when(mockPlatformWrapper).runLater(any(Runnable.class));
+        ConnectionInfo connection = connectionManager.getConnection(connectionId);
+        connection.setCaptureEnabled(false);
+
+        // Act
+        connection.getCaptureSwitch().addPassedThrough(Direction.CLIENT_TO_SERVER, 100);
+        connection.getCaptureSwitch().addPassedThrough(Direction.SERVER_TO_CLIENT, 40);
+        connection.getCaptureSwitch().addPassedThrough(Direction.CLIENT_TO_SERVER, 10);
+        assertEquals(0, connection.totalBytesProperty().get());
+        updates.forEach(Runnable::run);
+
+        // Assert
+        assertEquals(1, updates.size());
+        assertEquals(150, connection.totalBytesProperty().get());
+        assertEquals(110, connection.getStats(Direction.CLIENT_TO_SERVER).getPassedThroughBytes());
+        assertEquals(40, connection.getStats(Direction.SERVER_TO_CLIENT).getPassedThroughBytes());
+        assertEquals(0, connection.getDataPackets().size());
+    }
+
+    @Test
+    void testDroppedDataCountedAndPublishedInOneUpdate() {
+        // Arrange: hold back the updates instead of running them immediately
+        UUID connectionId = UUID.randomUUID();
+        connectionManager.registerConnection(connectionId, "192.168.1.100", 50001);
+        List<Runnable> updates = new ArrayList<>();
+        doAnswer(invocation -> updates.add(invocation.getArgument(0)))
+                .when(mockPlatformWrapper).runLater(any(Runnable.class));
+        ConnectionInfo connection = connectionManager.getConnection(connectionId);
+
+        // Act
+        connectionManager.addDroppedData(connectionId, 100);
+        connectionManager.addDroppedData(connectionId, 20);
+        connectionManager.addDroppedData(UUID.randomUUID(), 5);
+        assertEquals(0, connection.totalBytesProperty().get());
+        updates.forEach(Runnable::run);
+
+        // Assert
+        assertEquals(1, updates.size());
+        assertEquals(2, connection.getDroppedPacketCount());
+        assertEquals(120, connection.getDroppedBytes());
+        assertEquals(120, connection.totalBytesProperty().get());
+        assertEquals(0, connection.getDataPackets().size());
+    }
+
+    @Test
+    void testTotalsKeptPerDirection() {
+        // Arrange
+        UUID connectionId = UUID.randomUUID();
+        connectionManager.registerConnection(connectionId, "192.168.1.100", 50001);
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+        // Act
+        connectionManager.addDataPacket(connectionId, new DataPacket(
+                start, Direction.CLIENT_TO_SERVER, "request".getBytes(), DataType.TEXT, "request"));
+        connectionManager.addDataPacket(connectionId, new DataPacket(
+                start.plusSeconds(1), Direction.SERVER_TO_CLIENT, "response".getBytes(), DataType.TEXT, "response"));
+        connectionManager.addDataPacket(connectionId, new DataPacket(
+                start.plusSeconds(2), Direction.SERVER_TO_CLIENT, "more".getBytes(), DataType.TEXT, "more"));
+
+        // Assert
+        ConnectionInfo connection = connectionManager.getConnection(connectionId);
+        DirectionStats sent = connection.getStats(Direction.CLIENT_TO_SERVER);
+        DirectionStats received = connection.getStats(Direction.SERVER_TO_CLIENT);
+        assertEquals(1, sent.getPacketCount());
+        assertEquals(7, sent.getBytes());
+        assertEquals(start, sent.getFirstActivity());
+        assertEquals(2, received.getPacketCount());
+        assertEquals(12, received.getBytes());
+        assertEquals(start.plusSeconds(1), received.getFirstActivity());
+        assertEquals(start.plusSeconds(2), received.getLastActivity());
+        assertEquals(19, connection.totalBytesProperty().get());
+        assertEquals(3, connection.totalPacketsProperty().get());
+        assertEquals(start.plusSeconds(2), connection.lastActivityProperty().get());
+    }
+
+    @Test
+    void testTotalsIncludeEvictedPackets() {
+        // Arrange
+        connectionManager = new ConnectionManager(mockPlatformWrapper,
+                new PacketRetention(1, 0, 0, 0, new MetricsRegistry()), null, null);
+        UUID connectionId = UUID.randomUUID();
+        connectionManager.registerConnection(connectionId, "192.168.1.100", 50001);
+
+        // Act
+        for (int i = 0; i < 3; i++) {
+            connectionManager.addDataPacket(connectionId, new DataPacket(
+                    LocalDateTime.now(), Direction.SERVER_TO_CLIENT, "data".getBytes(), DataType.TEXT, "data"));
+        }
+
+        // Assert
+        ConnectionInfo connection = connectionManager.getConnection(connectionId);
+        assertEquals(1, connection.getRetainedPacketCount());
+        assertEquals(3, connection.getStats(Direction.SERVER_TO_CLIENT).getPacketCount());
+        assertEquals(12, connection.totalBytesProperty().get());
+        assertEquals(0, connection.getStats(Direction.CLIENT_TO_SERVER).getPacketCount());
+    }
+
+    @Test
+    void testConnectionListNotifiedWhenTotalsChange() {
+        // Arrange
+        UUID connectionId = UUID.randomUUID();
+        connectionManager.registerConnection(connectionId, "192.168.1.100", 50001);
+        List<Boolean> updates = new ArrayList<>();
+        connectionManager.getConnectionList().addListener((ListChangeListener<ConnectionInfo>) change -> {
+            while (change.next()) {
+                updates.add(change.wasUpdated());
+            }
+        });
+
+        // Act
+        connectionManager.addDataPacket(connectionId, new DataPacket(
+                LocalDateTime.now(), Direction.CLIENT_TO_SERVER, "data".getBytes(), DataType.TEXT, "data"));
+
+        // Assert
+        assertEquals(List.of(true), updates);
+    }
+
+    @Test
+    void testTlsHandshakesRecordedAndCounted() {
+        // Arrange
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        connectionManager.registerConnection(first, "192.168.1.100", 50001);
+        connectionManager.registerConnection(second, "192.168.1.100", 50002);
+        TlsHandshake full = new TlsHandshake("TLSv1.3", "TLS_AES_128_GCM_SHA256", false, 4200);
+        TlsHandshake resumed = new TlsHandshake("TLSv1.3", "TLS_AES_128_GCM_SHA256", true, 800);
+
+        // Act
+        connectionManager.setTlsHandshakes(first, full, full);
+        connectionManager.setTlsHandshakes(second, resumed, full);
+
+        // Assert
+        ConnectionInfo connection = connectionManager.getConnection(second);
+        assertSame(resumed, connection.getClientHandshake());
+        assertSame(full, connection.getServerHandshake());
+        assertEquals(3, connectionManager.getFullHandshakeCount());
+        assertEquals(1, connectionManager.getResumedHandshakeCount());
+
+        connectionManager.clear();
+        assertEquals(0, connectionManager.getFullHandshakeCount());
+        assertEquals(0, connectionManager.getResumedHandshakeCount());
+    }
+
+    @Test
+    void testTlsHandshakesOfUnknownConnectionIgnored() {
+        TlsHandshake handshake = new TlsHandshake("TLSv1.2", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", false, 4200);
+
+        connectionManager.setTlsHandshakes(UUID.randomUUID(), handshake, handshake);
+
+        assertEquals(0, connectionManager.getFullHandshakeCount());
+        verify(mockPlatformWrapper, never()).runLater(any(Runnable.class));
+    }
+
     @Test
     void testAddDataPacketToUnknownConnection() {
         // Arrange
@@ -271,6 +499,108 @@ class ConnectionManagerTest {
         assertEquals(3, connectionManager.getTotalConnectionCount());
     }
 
+    @Test
+    void testCloseConnectionTwiceCountsOnce() {
+        // Arrange
+        UUID connectionId = UUID.randomUUID();
+        connectionManager.registerConnection(connectionId, "192.168.1.100", 50001);
+
+        // Act
+        connectionManager.closeConnection(connectionId);
+        connectionManager.closeConnection(connectionId);
+
+        // Assert
+        assertEquals(0, connectionManager.getActiveConnectionCount());
+        assertEquals(1, connectionManager.getClosedConnectionCount());
+    }
+
+    @Test
+    void testReaperRemovesClosedConnectionsOverLimit() {
+        // Arrange
+        PacketRetention retention = new PacketRetention(0, 0, 100, 0, new MetricsRegistry());
+        connectionManager = new ConnectionManager(mockPlatformWrapper, retention,
+                new ConnectionReaper(1, 0, TimeUnit.SECONDS, new MetricsRegistry()), null);
+        UUID id1 = UUID.randomUUID();
+        UUID id2 = UUID.randomUUID();
+        UUID id3 = UUID.randomUUID();
+        connectionManager.registerConnection(id1, "192.168.1.100", 50001);
+        connectionManager.registerConnection(id2, "192.168.1.101", 50002);
+        connectionManager.registerConnection(id3, "192.168.1.102", 50003);
+        connectionManager.addDataPacket(id1, new DataPacket(
+                LocalDateTime.now(), Direction.CLIENT_TO_SERVER, "data".getBytes(), DataType.TEXT, "data"));
+        ConnectionInfo first = connectionManager.getConnection(id1);
+
+        // Act
+        connectionManager.closeConnection(id1);
+        connectionManager.closeConnection(id2);
+
+        // Assert - only the most recently closed connection is kept
+        assertNull(connectionManager.getConnection(id1));
+        assertFalse(connectionManager.getConnectionList().contains(first));
+        assertEquals(2, connectionManager.getConnectionList().size());
+        assertEquals(1, connectionManager.getActiveConnectionCount());
+        assertEquals(1, connectionManager.getClosedConnectionCount());
+        assertEquals(2, connectionManager.getTotalConnectionCount());
+        assertEquals(0, retention.getRetainedPackets());
+    }
+
+    @Test
+    void testReaperRemovesClosedConnectionsByAge() throws Exception {
+        // Arrange
+        TimerWheel timerWheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, new DefaultThreadFactory());
+        try {
+            connectionManager = new ConnectionManager(mockPlatformWrapper, null,
+                    new ConnectionReaper(0, 20, TimeUnit.MILLISECONDS, new MetricsRegistry()), timerWheel);
+            UUID connectionId = UUID.randomUUID();
+            connectionManager.registerConnection(connectionId, "192.168.1.100", 50001);
+
+            // Act
+            connectionManager.closeConnection(connectionId);
+
+            // Assert
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (connectionManager.getConnection(connectionId) != null && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertNull(connectionManager.getConnection(connectionId));
+            assertEquals(0, connectionManager.getTotalConnectionCount());
+        } finally {
+            timerWheel.stop();
+        }
+    }
+
+    @Test
+    void testReaperKeepsOneAgeCheckPendingAndCancelsItOnClear() {
+        // Arrange
+        List<TimerWheel.Timeout> scheduled = new ArrayList<>();
+        TimerWheel timerWheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, new DefaultThreadFactory()) {
+            @Override
+            public Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+                Timeout timeout = super.schedule(task, delay, unit);
+                scheduled.add(timeout);
+                return timeout;
+            }
+        };
+        try {
+            connectionManager = new ConnectionManager(mockPlatformWrapper, null,
+                    new ConnectionReaper(0, 1, TimeUnit.HOURS, new MetricsRegistry()), timerWheel);
+            for (int i = 0; i < 3; i++) {
+                UUID connectionId = UUID.randomUUID();
+                connectionManager.registerConnection(connectionId, "192.168.1.100", 50001 + i);
+                connectionManager.closeConnection(connectionId);
+            }
+
+            // Act
+            connectionManager.clear();
+
+            // Assert
+            assertEquals(1, scheduled.size());
+            assertTrue(scheduled.get(0).isCancelled());
+        } finally {
+            timerWheel.stop();
+        }
+    }
+
     @Test
     void testGetTotalConnectionCount() {
         // Arrange
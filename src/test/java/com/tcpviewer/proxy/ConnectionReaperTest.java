@@ -0,0 +1,79 @@
+package com.tcpviewer.proxy;
+
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.model.ConnectionInfo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for ConnectionReaper.
+ */
+class ConnectionReaperTest {
+
+    private MetricsRegistry metrics;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new MetricsRegistry();
+    }
+
+    private static ConnectionInfo connection(int port) {
+        return new ConnectionInfo(UUID.randomUUID(), "192.168.1.100", port);
+    }
+
+    @Test
+    void testCountLimitReapsOldestClosedFirst() {
+        ConnectionReaper reaper = new ConnectionReaper(2, 0, TimeUnit.SECONDS, metrics);
+        ConnectionInfo first = connection(50001);
+        ConnectionInfo second = connection(50002);
+        ConnectionInfo third = connection(50003);
+
+        reaper.closed(first);
+        reaper.closed(second);
+        assertTrue(reaper.reap().isEmpty());
+
+        reaper.closed(third);
+        assertEquals(List.of(first), reaper.reap());
+        assertEquals(1L, metrics.snapshot().get("connections.reaped"));
+    }
+
+    @Test
+    void testAgeLimitReapsExpiredConnections() throws Exception {
+        ConnectionReaper reaper = new ConnectionReaper(0, 20, TimeUnit.MILLISECONDS, metrics);
+        ConnectionInfo old = connection(50001);
+        reaper.closed(old);
+        Thread.sleep(30);
+        ConnectionInfo recent = connection(50002);
+        reaper.closed(recent);
+
+        assertEquals(List.of(old), reaper.reap());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(20), reaper.getMaxAgeNanos());
+    }
+
+    @Test
+    void testNoLimitsKeepAllConnections() {
+        ConnectionReaper reaper = new ConnectionReaper(0, 0, TimeUnit.SECONDS, metrics);
+        for (int i = 0; i < 100; i++) {
+            reaper.closed(connection(50000 + i));
+        }
+
+        assertTrue(reaper.reap().isEmpty());
+    }
+
+    @Test
+    void testClearForgetsClosedConnections() {
+        ConnectionReaper reaper = new ConnectionReaper(1, 0, TimeUnit.SECONDS, metrics);
+        reaper.closed(connection(50001));
+
+        reaper.clear();
+        reaper.closed(connection(50002));
+
+        assertTrue(reaper.reap().isEmpty());
+    }
+}
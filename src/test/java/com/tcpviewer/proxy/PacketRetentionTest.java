@@ -0,0 +1,269 @@
+package com.tcpviewer.proxy;
+
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.model.ConnectionInfo;
+import com.tcpviewer.model.DataPacket;
+import com.tcpviewer.model.DataType;
+import com.tcpviewer.model.Direction;
+import com.tcpviewer.model.PacketPayload;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PacketRetention.
+ */
+class PacketRetentionTest {
+
+    private MetricsRegistry metrics;
+    private ConnectionInfo first;
+    private ConnectionInfo second;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new MetricsRegistry();
+        first = new ConnectionInfo(UUID.randomUUID(), "192.168.1.100", 50001);
+        second = new ConnectionInfo(UUID.randomUUID(), "192.168.1.101", 50002);
+    }
+
+    private static DataPacket packet(String text) {
+        return new DataPacket(LocalDateTime.now(), Direction.CLIENT_TO_SERVER,
+                text.getBytes(), DataType.TEXT, text);
+    }
+
+    /**
+     * Payload standing in for one kept by a capture store.
+     */
+    private static class StoredPayload implements PacketPayload {
+        private final byte[] data;
+        private boolean released;
+
+        StoredPayload(String text) {
+            this.data = text.getBytes();
+        }
+
+        @Override
+        public int size() {
+            return data.length;
+        }
+
+        @Override
+        public ByteBuffer read() {
+            return ByteBuffer.wrap(data).asReadOnlyBuffer();
+        }
+
+        @Override
+        public boolean isStored() {
+            return true;
+        }
+
+        @Override
+        public void release() {
+            released = true;
+        }
+    }
+
+    private static DataPacket storedPacket(StoredPayload payload) {
+        return new DataPacket(LocalDateTime.now(), Direction.CLIENT_TO_SERVER, payload, DataType.TEXT,
+                p -> "stored");
+    }
+
+    @Test
+    void testPerConnectionPacketLimitEvictsOldest() {
+        PacketRetention retention = new PacketRetention(3, 0, 0, 0, metrics);
+
+        for (int i = 1; i <= 5; i++) {
+            retention.add(first, packet("p" + i));
+        }
+
+        assertEquals(3, first.getRetainedPacketCount());
+        assertEquals("p3", first.getDataPackets().get(0).getDisplayText());
+        assertEquals(2, first.getEvictedPacketCount());
+        assertEquals(4, first.getEvictedBytes());
+        assertEquals(10, first.getTotalBytes());
+        assertEquals(2L, metrics.snapshot().get("retention.evicted.packets"));
+        assertEquals(3L, metrics.snapshot().get("retention.packets"));
+    }
+
+    @Test
+    void testPerConnectionByteLimitEvictsOldest() {
+        PacketRetention retention = new PacketRetention(0, 10, 0, 0, metrics);
+
+        retention.add(first, packet("aaaa"));
+        retention.add(first, packet("bbbb"));
+        retention.add(first, packet("cccc"));
+
+        assertEquals(2, first.getRetainedPacketCount());
+        assertEquals(8, first.getRetainedBytes());
+        assertEquals(4, first.getEvictedBytes());
+    }
+
+    @Test
+    void testNewestPacketKeptEvenIfOverBudget() {
+        PacketRetention retention = new PacketRetention(0, 4, 0, 4, metrics);
+
+        retention.add(first, packet("small"));
+        retention.add(first, packet("much too large"));
+
+        assertEquals(1, first.getRetainedPacketCount());
+        assertEquals("much too large", first.getDataPackets().get(0).getDisplayText());
+    }
+
+    @Test
+    void testGlobalLimitEvictsOldestAcrossConnections() {
+        PacketRetention retention = new PacketRetention(0, 0, 3, 0, metrics);
+
+        retention.add(first, packet("f1"));
+        retention.add(second, packet("s1"));
+        retention.add(first, packet("f2"));
+        retention.add(second, packet("s2"));
+        retention.add(second, packet("s3"));
+
+        // f1 and s1 were the two oldest packets overall
+        assertEquals(1, first.getRetainedPacketCount());
+        assertEquals("f2", first.getDataPackets().get(0).getDisplayText());
+        assertEquals(2, second.getRetainedPacketCount());
+        assertEquals("s2", second.getDataPackets().get(0).getDisplayText());
+        assertEquals(3, retention.getRetainedPackets());
+    }
+
+    @Test
+    void testGlobalLimitSkipsPacketsAlreadyEvictedPerConnection() {
+        PacketRetention retention = new PacketRetention(2, 0, 4, 0, metrics);
+
+        retention.add(first, packet("f1"));
+        retention.add(first, packet("f2"));
+        retention.add(first, packet("f3")); // evicts f1 per connection
+        retention.add(second, packet("s1"));
+        retention.add(second, packet("s2"));
+        retention.add(second, packet("s3")); // evicts s1 per connection
+        retention.add(second, packet("s4")); // evicts s2 per connection
+        retention.add(first, packet("f4")); // evicts f2 per connection
+        retention.add(second, packet("s5")); // evicts s3 per connection, 4 packets retained
+
+        assertEquals(4, retention.getRetainedPackets());
+        assertEquals("f3", first.getDataPackets().get(0).getDisplayText());
+        assertEquals("s4", second.getDataPackets().get(0).getDisplayText());
+
+        // Over the global limit now: stale entries for f1 and f2 are skipped, f3 is the oldest
+        ConnectionInfo third = new ConnectionInfo(UUID.randomUUID(), "192.168.1.102", 50003);
+        retention.add(third, packet("t1"));
+
+        assertEquals(4, retention.getRetainedPackets());
+        assertEquals(2, second.getRetainedPacketCount());
+        assertEquals(1, first.getRetainedPacketCount());
+        assertEquals("f4", first.getDataPackets().get(0).getDisplayText());
+    }
+
+    @Test
+    void testGlobalByteLimit() {
+        PacketRetention retention = new PacketRetention(0, 0, 0, 6, metrics);
+
+        retention.add(first, packet("aaa"));
+        retention.add(second, packet("bbb"));
+        retention.add(first, packet("ccc"));
+
+        assertEquals(6, retention.getRetainedBytes());
+        assertEquals("ccc", first.getDataPackets().get(0).getDisplayText());
+        assertEquals(3L, metrics.snapshot().get("retention.evicted.bytes"));
+    }
+
+    @Test
+    void testClearResetsTotals() {
+        PacketRetention retention = new PacketRetention(0, 0, 2, 0, metrics);
+        retention.add(first, packet("f1"));
+        retention.add(first, packet("f2"));
+
+        retention.clear();
+        retention.add(second, packet("s1"));
+        retention.add(second, packet("s2"));
+
+        assertEquals(2, retention.getRetainedPackets());
+        assertEquals(2, first.getRetainedPacketCount());
+        assertEquals(2, second.getRetainedPacketCount());
+    }
+
+    @Test
+    void testAddAllAppliesLimitsToBatch() {
+        PacketRetention retention = new PacketRetention(3, 0, 4, 0, metrics);
+        retention.add(second, packet("s1"));
+        retention.add(second, packet("s2"));
+
+        retention.addAll(first, List.of(packet("f1"), packet("f2"), packet("f3"), packet("f4")));
+
+        // f1 exceeds the connection limit, then s1 is the oldest packet over the global limit
+        assertEquals(List.of("f2", "f3", "f4"),
+                first.getDataPackets().stream().map(DataPacket::getDisplayText).toList());
+        assertEquals(1, second.getRetainedPacketCount());
+        assertEquals("s2", second.getDataPackets().get(0).getDisplayText());
+        assertEquals(4, retention.getRetainedPackets());
+        assertEquals(2L, metrics.snapshot().get("retention.evicted.packets"));
+    }
+
+    @Test
+    void testRemovedConnectionNoLongerCounted() {
+        PacketRetention retention = new PacketRetention(0, 0, 3, 0, metrics);
+        retention.add(first, packet("f1"));
+        retention.add(first, packet("f2"));
+        retention.add(second, packet("s1"));
+
+        retention.remove(first);
+        retention.add(second, packet("s2"));
+        retention.add(second, packet("s3"));
+
+        // The entries of the removed connection are skipped instead of evicting s1
+        assertEquals(3, retention.getRetainedPackets());
+        assertEquals(3, second.getRetainedPacketCount());
+        assertEquals(0L, metrics.snapshot().get("retention.evicted.packets"));
+    }
+
+    @Test
+    void testStoredPayloadsExemptFromHeapByteLimits() {
+        PacketRetention retention = new PacketRetention(0, 4, 0, 4, 0, metrics);
+
+        for (int i = 0; i < 3; i++) {
+            retention.add(first, storedPacket(new StoredPayload("stored" + i)));
+        }
+        retention.add(first, packet("heap"));
+
+        assertEquals(4, first.getRetainedPacketCount());
+        assertEquals(4, retention.getRetainedBytes());
+        assertEquals(21, retention.getRetainedStoredBytes());
+        assertEquals(21L, metrics.snapshot().get("retention.stored.bytes"));
+    }
+
+    @Test
+    void testStoredByteLimitEvictsAndReleasesOldest() {
+        PacketRetention retention = new PacketRetention(0, 0, 0, 0, 14, metrics);
+        StoredPayload oldest = new StoredPayload("stored0");
+
+        retention.add(first, storedPacket(oldest));
+        retention.add(second, storedPacket(new StoredPayload("stored1")));
+        retention.add(first, storedPacket(new StoredPayload("stored2")));
+
+        assertEquals(1, first.getRetainedPacketCount());
+        assertEquals(1, second.getRetainedPacketCount());
+        assertEquals(14, retention.getRetainedStoredBytes());
+        assertTrue(oldest.released);
+    }
+
+    @Test
+    void testRemovedConnectionReleasesStoredPayloads() {
+        PacketRetention retention = new PacketRetention(0, 0, 0, 0, 100, metrics);
+        StoredPayload payload = new StoredPayload("stored");
+        retention.add(first, storedPacket(payload));
+
+        retention.remove(first);
+        first.discardPackets();
+
+        assertEquals(0, retention.getRetainedStoredBytes());
+        assertEquals(0, first.getRetainedStoredBytes());
+        assertTrue(payload.released);
+    }
+}
@@ -6,6 +6,7 @@ import com.tcpviewer.io.wrapper.SocketWrapper;
 import com.tcpviewer.io.wrapper.factory.SocketFactory;
 import com.tcpviewer.lang.wrapper.ThreadWrapper;
 import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
+import com.tcpviewer.model.TlsHandshake;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,6 +14,7 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
+import java.nio.channels.SocketChannel;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -35,6 +37,8 @@ class ProxyConnectionHandlerTest {
         private boolean closed = false;
         private boolean tcpNoDelay = false;
         private IOException closeException;
+        private String requestedServerName;
+        private TlsHandshake handshake;
 
         public TestSocketWrapper(InputStreamWrapper inputStream, OutputStreamWrapper outputStream) {
             this.inputStream = inputStream;
@@ -45,6 +49,24 @@ class ProxyConnectionHandlerTest {
             this.closeException = ex;
         }
 
+        public void setRequestedServerName(String requestedServerName) {
+            this.requestedServerName = requestedServerName;
+        }
+
+        @Override
+        public String getRequestedServerName() {
+            return requestedServerName;
+        }
+
+        public void setHandshake(TlsHandshake handshake) {
+            this.handshake = handshake;
+        }
+
+        @Override
+        public TlsHandshake startHandshake() {
+            return handshake;
+        }
+
         @Override
         public InputStreamWrapper getInputStream() throws IOException {
             return inputStream;
@@ -74,6 +96,11 @@ class ProxyConnectionHandlerTest {
             return 0; // Not needed for these tests
         }
 
+        @Override
+        public SocketChannel getChannel() {
+            return null;
+        }
+
         @Override
         public boolean isClosed() {
             return closed;
@@ -197,6 +224,11 @@ class ProxyConnectionHandlerTest {
             return false;
         }
 
+        @Override
+        public boolean isVirtual() {
+            return false;
+        }
+
         public boolean wasStarted() {
             return started;
         }
@@ -283,6 +315,70 @@ class ProxyConnectionHandlerTest {
         verify(mockListener).onConnectionClosed(connectionId);
     }
 
+    @Test
+    void testSslTargetRequestsHostNameOfClientWithoutConfiguredName() throws Exception {
+        // Arrange
+        clientSocket.setRequestedServerName("api.example.com");
+        when(mockSocketFactory.createSocket(targetHost, targetPort, true, "api.example.com")).thenReturn(targetSocket);
+        when(mockThreadFactory.createThread(any(Runnable.class), anyString()))
+                .thenReturn(testThread1, testThread2);
+
+        ProxyConnectionHandler handler = new ProxyConnectionHandler(
+                clientSocket, targetHost, targetPort, mockListener,
+                connectionId, mockSocketFactory, mockThreadFactory, true, null
+        );
+
+        // Act
+        handler.run();
+
+        // Assert
+        verify(mockSocketFactory).createSocket(targetHost, targetPort, true, "api.example.com");
+        assertTrue(testThread1.wasStarted());
+    }
+
+    @Test
+    void testSslConnectionReportsHandshakesOfBothSides() throws Exception {
+        // Arrange
+        TlsHandshake clientHandshake = new TlsHandshake("TLSv1.3", "TLS_AES_128_GCM_SHA256", true, 900);
+        TlsHandshake serverHandshake = new TlsHandshake("TLSv1.2", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256", false, 5200);
+        clientSocket.setHandshake(clientHandshake);
+        targetSocket.setHandshake(serverHandshake);
+        when(mockSocketFactory.createSocket(targetHost, targetPort, true, "www.example.com")).thenReturn(targetSocket);
+        when(mockThreadFactory.createThread(any(Runnable.class), anyString()))
+                .thenReturn(testThread1, testThread2);
+
+        ProxyConnectionHandler handler = new ProxyConnectionHandler(
+                clientSocket, targetHost, targetPort, mockListener,
+                connectionId, mockSocketFactory, mockThreadFactory, true, "www.example.com"
+        );
+
+        // Act
+        handler.run();
+
+        // Assert
+        verify(mockListener).onTlsHandshake(connectionId, clientHandshake, serverHandshake);
+    }
+
+    @Test
+    void testSslTargetKeepsConfiguredHostName() throws Exception {
+        // Arrange
+        clientSocket.setRequestedServerName("api.example.com");
+        when(mockSocketFactory.createSocket(targetHost, targetPort, true, "www.example.com")).thenReturn(targetSocket);
+        when(mockThreadFactory.createThread(any(Runnable.class), anyString()))
+                .thenReturn(testThread1, testThread2);
+
+        ProxyConnectionHandler handler = new ProxyConnectionHandler(
+                clientSocket, targetHost, targetPort, mockListener,
+                connectionId, mockSocketFactory, mockThreadFactory, true, "www.example.com"
+        );
+
+        // Act
+        handler.run();
+
+        // Assert
+        verify(mockSocketFactory).createSocket(targetHost, targetPort, true, "www.example.com");
+    }
+
     @Test
     void testIOExceptionDuringTargetConnection() throws Exception {
         // Arrange
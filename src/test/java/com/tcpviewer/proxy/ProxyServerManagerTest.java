@@ -5,9 +5,17 @@ import com.tcpviewer.io.wrapper.factory.ServerSocketFactory;
 import com.tcpviewer.io.wrapper.factory.SocketFactory;
 import com.tcpviewer.lang.wrapper.ExecutorServiceWrapper;
 import com.tcpviewer.lang.wrapper.ThreadWrapper;
+import com.tcpviewer.io.wrapper.factory.DefaultServerSocketFactory;
+import com.tcpviewer.io.wrapper.factory.DefaultSocketFactory;
+import com.tcpviewer.lang.wrapper.factory.DefaultExecutorServiceFactory;
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
 import com.tcpviewer.lang.wrapper.factory.ExecutorServiceFactory;
 import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
+import com.tcpviewer.lang.wrapper.factory.ThreadMode;
+import com.tcpviewer.model.ForwardingMode;
 import com.tcpviewer.model.ProxySession;
+import com.tcpviewer.proxy.nio.NioEventLoopGroup;
+import com.tcpviewer.proxy.nio.NioForwardingEngine;
 import com.tcpviewer.ssl.ServerCertificateGeneratorService;
 import com.tcpviewer.ui.error.ErrorDialogService;
 import org.junit.jupiter.api.BeforeEach;
@@ -156,6 +164,11 @@ class ProxyServerManagerTest {
             return interrupted;
         }
 
+        @Override
+        public boolean isVirtual() {
+            return false;
+        }
+
         public boolean wasStarted() {
             return started;
         }
@@ -228,7 +241,13 @@ class ProxyServerManagerTest {
                 mockThreadFactory,
                 mockExecutorServiceFactory,
                 testErrorHandlerService,
-                new ServerCertificateGeneratorService()
+                new ServerCertificateGeneratorService(null, null),
+                new NioEventLoopGroup(1, mockThreadFactory),
+                null,
+                null,
+                null,
+                null,
+                null
         );
 
 
@@ -266,6 +285,48 @@ class ProxyServerManagerTest {
 
 
 
+    @Test
+    void testStartServerWithVirtualThreadsUsesThreadPerTaskExecutor() {
+        when(mockThreadFactory.isVirtual()).thenReturn(true);
+        when(mockExecutorServiceFactory.createThreadPerTaskExecutor(mockThreadFactory))
+                .thenReturn(testConnectionExecutor);
+
+        // Act
+        manager.startServer(testSession, mockDataListener, mockConnectionCallback);
+
+        // Assert - virtual threads are created per task instead of being pooled
+        verify(mockExecutorServiceFactory).createThreadPerTaskExecutor(mockThreadFactory);
+        verify(mockExecutorServiceFactory, never()).createCachedThreadPool(any());
+        assertTrue(testSession.isActive());
+    }
+
+    @Test
+    void testStartServerWithNioModeUsesNioEngine() {
+        ProxySession nioSession = new ProxySession("127.0.0.1", 8080, "example.com", 80, false, null, ForwardingMode.NIO);
+
+        // Act
+        manager.startServer(nioSession, mockDataListener, mockConnectionCallback);
+
+        // Assert - no per-session executor is needed for NIO forwarding
+        verify(mockExecutorServiceFactory, never()).createCachedThreadPool(any());
+        assertTrue(manager.getCurrentServer().getForwardingEngine() instanceof NioForwardingEngine);
+        assertTrue(testServerThread.wasStarted());
+        assertTrue(nioSession.isActive());
+    }
+
+    @Test
+    void testStartServerWithNioModeFallsBackToBlockingForSSL() {
+        ProxySession nioSession = new ProxySession("127.0.0.1", 8080, "10.20.30.40", 80, true, "www.example.com",
+                ForwardingMode.NIO);
+
+        // Act
+        manager.startServer(nioSession, mockDataListener, mockConnectionCallback);
+
+        // Assert
+        verify(mockExecutorServiceFactory).createCachedThreadPool(mockThreadFactory);
+        assertTrue(manager.getCurrentServer().getForwardingEngine() instanceof ThreadedForwardingEngine);
+    }
+
     @Test
     void testStopServerStopsProxyAndCleansUp() {
         // Arrange - start server first
@@ -455,4 +516,95 @@ class ProxyServerManagerTest {
         // Assert - second stop should not cause NPE (references are null)
         assertDoesNotThrow(() -> manager.stopServer());
     }
+
+    @Test
+    void testListenersRunIndependently() {
+        ProxySession secondSession = new ProxySession("127.0.0.1", 8081, "example.org", 443, false, null);
+        TestThreadWrapper secondThread = new TestThreadWrapper("ProxyServer");
+        TestExecutorServiceWrapper secondExecutor = new TestExecutorServiceWrapper();
+        when(mockThreadFactory.createThread(any(Runnable.class), eq("ProxyServer")))
+                .thenReturn(testServerThread, secondThread);
+        when(mockExecutorServiceFactory.createCachedThreadPool(mockThreadFactory))
+                .thenReturn(testConnectionExecutor, secondExecutor);
+
+        // Act
+        manager.startServer(testSession, mockDataListener, mockConnectionCallback);
+        manager.startServer(secondSession, mockDataListener, mockConnectionCallback);
+
+        // Assert - both listeners are started with servers of their own
+        assertEquals(List.of(testSession, secondSession), manager.getSessions());
+        assertNotSame(manager.getServer(testSession), manager.getServer(secondSession));
+        assertSame(manager.getServer(secondSession), manager.getCurrentServer());
+
+        // Act - stop the first listener only
+        manager.stopServer(testSession);
+
+        // Assert
+        assertTrue(testServerThread.isInterrupted());
+        assertTrue(testConnectionExecutor.isShutdown());
+        assertFalse(testSession.isActive());
+        assertFalse(secondThread.isInterrupted());
+        assertFalse(secondExecutor.isShutdown());
+        assertTrue(secondSession.isActive());
+        assertEquals(List.of(secondSession), manager.getSessions());
+
+        // Act - stop all
+        manager.stopServer();
+
+        // Assert
+        assertTrue(secondExecutor.isShutdown());
+        assertTrue(manager.getSessions().isEmpty());
+    }
+
+    @Test
+    void testStartServerReplacesEndedListenerOnSameAddress() {
+        // Arrange - the first listener never runs, as its server thread is a stub
+        manager.startServer(testSession, mockDataListener, mockConnectionCallback);
+        ProxySession sameAddress = new ProxySession("127.0.0.1", 8080, "example.org", 443, false, null);
+
+        // Act
+        manager.startServer(sameAddress, mockDataListener, mockConnectionCallback);
+
+        // Assert
+        assertEquals(List.of(sameAddress), manager.getSessions());
+        assertFalse(testSession.isActive());
+    }
+
+    @Test
+    void testStartServerWithVirtualThreadFactory() throws Exception {
+        // Arrange - real threads; on Java 21+ the listener thread is a virtual thread
+        ThreadFactory threadFactory = new DefaultThreadFactory(ThreadMode.VIRTUAL);
+        ProxyServerManager virtualManager = new ProxyServerManager(
+                testProxyExecutor,
+                new DefaultSocketFactory(),
+                new DefaultServerSocketFactory(new DefaultSocketFactory()),
+                threadFactory,
+                new DefaultExecutorServiceFactory(),
+                testErrorHandlerService,
+                new ServerCertificateGeneratorService(null, null),
+                new NioEventLoopGroup(1, threadFactory),
+                null,
+                null,
+                null,
+                null,
+                null
+        );
+        ProxySession session = new ProxySession("127.0.0.1", 0, "example.com", 80, false, null);
+
+        try {
+            // Act
+            virtualManager.startServer(session, mockDataListener, mockConnectionCallback);
+
+            // Assert
+            assertTrue(session.isActive());
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!virtualManager.isRunning() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(virtualManager.isRunning());
+        } finally {
+            virtualManager.stopServer();
+        }
+        assertFalse(session.isActive());
+    }
 }
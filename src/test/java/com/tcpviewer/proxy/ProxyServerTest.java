@@ -5,10 +5,13 @@ import com.tcpviewer.io.wrapper.InputStreamWrapper;
 import com.tcpviewer.io.wrapper.OutputStreamWrapper;
 import com.tcpviewer.io.wrapper.ServerSocketWrapper;
 import com.tcpviewer.io.wrapper.SocketWrapper;
+import com.tcpviewer.io.wrapper.factory.DefaultServerSocketFactory;
+import com.tcpviewer.io.wrapper.factory.DefaultSocketFactory;
 import com.tcpviewer.io.wrapper.factory.ServerSocketFactory;
 import com.tcpviewer.io.wrapper.factory.SocketFactory;
 import com.tcpviewer.lang.wrapper.ExecutorServiceWrapper;
 import com.tcpviewer.lang.wrapper.ThreadWrapper;
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
 import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
 import com.tcpviewer.ssl.ServerCertificateGeneratorService;
 import com.tcpviewer.ui.error.ErrorDialogService;
@@ -21,12 +24,16 @@ import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
 import java.net.SocketAddress;
 import java.net.SocketException;
+import java.nio.channels.SocketChannel;
 import java.security.KeyStore;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -139,6 +146,11 @@ class ProxyServerTest {
             return port;
         }
 
+        @Override
+        public SocketChannel getChannel() {
+            return null;
+        }
+
         @Override
         public boolean isClosed() {
             return closed;
@@ -241,6 +253,11 @@ class ProxyServerTest {
         public boolean isInterrupted() {
             return interrupted;
         }
+
+        @Override
+        public boolean isVirtual() {
+            return false;
+        }
     }
 
     @Mock
@@ -329,7 +346,7 @@ class ProxyServerTest {
         ProxyServer server = new ProxyServer(true,
                 localIp, localPort, targetHost,"www.example.com",  targetPort,
                 mockDataListener, mockConnectionCallback,
-                testExecutor, mockSocketFactory, mockServerSocketFactory, mockThreadFactory, testErrorHandlerService,new ServerCertificateGeneratorService()
+                testExecutor, mockSocketFactory, mockServerSocketFactory, mockThreadFactory, testErrorHandlerService,new ServerCertificateGeneratorService(null, null)
         );
 
         // Act
@@ -405,7 +422,7 @@ class ProxyServerTest {
         ProxyServer server = new ProxyServer(true,
                 localIp, localPort, targetHost,"www.example.com", targetPort,
                 mockDataListener, mockConnectionCallback,
-                testExecutor, mockSocketFactory, mockServerSocketFactory, mockThreadFactory, testErrorHandlerService, new ServerCertificateGeneratorService()
+                testExecutor, mockSocketFactory, mockServerSocketFactory, mockThreadFactory, testErrorHandlerService, new ServerCertificateGeneratorService(null, null)
         );
 
         // Act
@@ -608,4 +625,79 @@ class ProxyServerTest {
         // Assert - loop exits immediately, no connections handled
         assertEquals(0, testExecutor.submittedTasks.size());
     }
+
+    @Test
+    void testAdditionalAcceptorsShareSocketWithoutReusePort() throws Exception {
+        // Arrange - the stub socket does not support SO_REUSEPORT
+        when(mockServerSocketFactory.createServerSocket(any())).thenReturn(testServerSocket);
+        when(mockThreadFactory.currentThread()).thenReturn(testCurrentThread);
+        when(mockThreadFactory.createDaemonThread(any(), anyString())).thenReturn(new TestThreadWrapper());
+
+        ProxyServer server = new ProxyServer(false, false,
+                localIp, localPort, targetHost, null, targetPort,
+                mockDataListener, mockConnectionCallback,
+                (connectionId, clientSocket, listener) -> { },
+                mockServerSocketFactory, mockThreadFactory, testErrorHandlerService, null, 3, 128
+        );
+
+        // Act
+        server.run();
+
+        // Assert - one socket, two more acceptor threads
+        verify(mockServerSocketFactory, times(1)).createServerSocket(any());
+        verify(mockThreadFactory).createDaemonThread(any(), eq("ProxyAcceptor-1"));
+        verify(mockThreadFactory).createDaemonThread(any(), eq("ProxyAcceptor-2"));
+    }
+
+    @Test
+    void testInvalidAcceptorCountRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new ProxyServer(false, false,
+                localIp, localPort, targetHost, null, targetPort,
+                mockDataListener, mockConnectionCallback,
+                (connectionId, clientSocket, listener) -> { },
+                mockServerSocketFactory, mockThreadFactory, testErrorHandlerService, null, 0, 0));
+    }
+
+    @Test
+    void testMultipleAcceptorsAcceptOnLoopback() throws Exception {
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        int clients = 50;
+        CountDownLatch forwarded = new CountDownLatch(clients);
+        ForwardingEngine closingEngine = (connectionId, clientSocket, listener) -> {
+            try {
+                clientSocket.close();
+            } catch (IOException ignored) {
+            }
+            forwarded.countDown();
+        };
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory();
+        ProxyServer server = new ProxyServer(false, false,
+                "127.0.0.1", port, targetHost, null, targetPort,
+                mockDataListener, null, closingEngine,
+                new DefaultServerSocketFactory(new DefaultSocketFactory()), threadFactory,
+                testErrorHandlerService, null, 4, 256);
+        ThreadWrapper serverThread = threadFactory.createDaemonThread(server, "ProxyServer");
+        serverThread.start();
+        try {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!server.isRunning() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(server.isRunning());
+
+            for (int i = 0; i < clients; i++) {
+                new Socket("127.0.0.1", port).close();
+            }
+
+            assertTrue(forwarded.await(5, TimeUnit.SECONDS));
+            assertEquals(clients, server.getAcceptedCount());
+        } finally {
+            server.stop();
+            serverThread.join(5000);
+        }
+        assertFalse(server.isRunning());
+    }
 }
@@ -1,5 +1,6 @@
 package com.tcpviewer.proxy;
 
+import com.tcpviewer.capture.HeapCaptureStore;
 import com.tcpviewer.error.ErrorCategory;
 import com.tcpviewer.error.ErrorHandlerService;
 import com.tcpviewer.io.wrapper.InputStreamWrapper;
@@ -8,6 +9,7 @@ import com.tcpviewer.io.wrapper.SocketWrapper;
 import com.tcpviewer.model.ConnectionInfo;
 import com.tcpviewer.model.DataPacket;
 import com.tcpviewer.model.Direction;
+import com.tcpviewer.model.ForwardingMode;
 import com.tcpviewer.model.ProxySession;
 import com.tcpviewer.ui.error.ErrorDialogService;
 import com.tcpviewer.util.DataProcessor;
@@ -18,6 +20,8 @@ import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.channels.SocketChannel;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -36,10 +40,12 @@ class ProxyServiceTest {
         public int startServerCallCount = 0;
         public int stopServerCallCount = 0;
         public ProxySession lastStartSession = null;
+        public ProxySession lastStopSession = null;
+        public ConnectionAcceptedCallback lastAcceptedCallback = null;
         public boolean isRunning = false;
 
         public TestProxyServerManager() {
-            super(null, null, null, null, null, null, null);
+            super(null, null, null, null, null, null, null, null, null, null, null, null, null);
         }
 
         @Override
@@ -48,6 +54,7 @@ class ProxyServiceTest {
                               com.tcpviewer.proxy.ConnectionAcceptedCallback connectionAcceptedCallback) {
             startServerCallCount++;
             lastStartSession = session;
+            lastAcceptedCallback = connectionAcceptedCallback;
             session.setActive(true); // Match real ProxyServerManager behavior
             isRunning = true;
         }
@@ -58,10 +65,22 @@ class ProxyServiceTest {
             isRunning = false;
         }
 
+        @Override
+        public void stopServer(ProxySession session) {
+            stopServerCallCount++;
+            lastStopSession = session;
+            session.setActive(false);
+        }
+
         @Override
         public boolean isRunning() {
             return isRunning;
         }
+
+        @Override
+        public boolean isRunning(ProxySession session) {
+            return isRunning;
+        }
     }
 
     /**
@@ -73,12 +92,13 @@ class ProxyServiceTest {
         public int addDataPacketCallCount = 0;
         public int closeConnectionCallCount = 0;
         public int getConnectionCallCount = 0;
+        public String lastListenerName = null;
         private final ObservableList<ConnectionInfo> connectionList;
         private ConnectionInfo connectionToReturn = null;
         private int activeConnectionCount = 0;
 
         public TestConnectionManager(ObservableList<ConnectionInfo> connectionList) {
-            super(null);
+            super(null, null, null, null);
             this.connectionList = connectionList;
         }
 
@@ -101,6 +121,13 @@ class ProxyServiceTest {
             return null;
         }
 
+        @Override
+        public ConnectionInfo registerConnection(UUID connectionId, SocketWrapper socket, String listenerName) {
+            registerConnectionCallCount++;
+            lastListenerName = listenerName;
+            return connectionToReturn;
+        }
+
         @Override
         public void addDataPacket(UUID connectionId, DataPacket packet) {
             addDataPacketCallCount++;
@@ -194,6 +221,11 @@ class ProxyServiceTest {
             return port;
         }
 
+        @Override
+        public SocketChannel getChannel() {
+            return null;
+        }
+
         @Override
         public boolean isClosed() {
             return false;
@@ -220,10 +252,10 @@ class ProxyServiceTest {
         // Use test stubs for service classes and real instance for DataProcessor
         testServerManager = new TestProxyServerManager();
         testConnectionManager = new TestConnectionManager(testConnectionList);
-        realDataProcessor = new DataProcessor(new com.tcpviewer.util.TextFormatter());
+        realDataProcessor = new DataProcessor(new com.tcpviewer.util.TextFormatter(), new HeapCaptureStore(), null);
         testErrorHandlerService = new TestErrorHandlerService();
 
-        service = new ProxyService(testServerManager, testConnectionManager, realDataProcessor, testErrorHandlerService);
+        service = new ProxyService(testServerManager, testConnectionManager, realDataProcessor, testErrorHandlerService, null);
     }
 
     @Test
@@ -254,17 +286,88 @@ class ProxyServiceTest {
     }
 
     @Test
-    void testStartProxySessionThrowsExceptionIfAlreadyActive() {
+    void testStartProxySessionThrowsExceptionIfAlreadyActiveOnSameAddress() {
         // Arrange
         service.startProxySession(testSession);
 
-        // Create new session for second call
-        ProxySession newSession = new ProxySession("127.0.0.1", 8081, "example.com", 80, false, null);
+        // Create new session for the same local address
+        ProxySession newSession = new ProxySession("127.0.0.1", 8080, "example.org", 443, false, null);
 
         // Act & Assert
         assertThrows(IllegalStateException.class, () ->
                 service.startProxySession(newSession)
         );
+        assertEquals(1, testServerManager.startServerCallCount);
+    }
+
+    @Test
+    void testSessionsOnDifferentAddressesRunTogether() {
+        // Arrange
+        service.startProxySession(testSession);
+        ProxySession secondSession = new ProxySession("127.0.0.1", 8081, "example.org", 443, false, null);
+
+        // Act
+        service.startProxySession(secondSession);
+
+        // Assert - the second listener keeps the connections of the first
+        assertEquals(1, testConnectionManager.clearCallCount);
+        assertEquals(2, testServerManager.startServerCallCount);
+        assertEquals(List.of(testSession, secondSession), service.getActiveSessions());
+        assertSame(secondSession, service.getCurrentSession());
+    }
+
+    @Test
+    void testAcceptedConnectionsAreTaggedWithListener() {
+        // Arrange
+        service.startProxySession(testSession);
+
+        // Act
+        testServerManager.lastAcceptedCallback.onConnectionAccepted(UUID.randomUUID(),
+                new TestSocketWrapper("192.168.1.100", 50001));
+
+        // Assert
+        assertEquals(1, testConnectionManager.registerConnectionCallCount);
+        assertEquals("127.0.0.1:8080", testConnectionManager.lastListenerName);
+    }
+
+    @Test
+    void testPassthroughSessionRegistersConnectionsWithCaptureOff() {
+        // Arrange
+        UUID connectionId = UUID.randomUUID();
+        ConnectionInfo connection = new ConnectionInfo(connectionId, "192.168.1.100", 50001);
+        testConnectionManager.setConnectionToReturn(connection);
+        service.startProxySession(new ProxySession("127.0.0.1", 8080, "example.com", 80, false, null,
+                ForwardingMode.BLOCKING, false, false));
+
+        // Act
+        testServerManager.lastAcceptedCallback.onConnectionAccepted(connectionId,
+                new TestSocketWrapper("192.168.1.100", 50001));
+
+        // Assert
+        assertFalse(connection.isCaptureEnabled());
+        assertSame(connection.getCaptureSwitch(), service.getCaptureSwitch(connectionId));
+    }
+
+    @Test
+    void testGetCaptureSwitchReturnsNullForUnknownConnection() {
+        assertNull(service.getCaptureSwitch(UUID.randomUUID()));
+    }
+
+    @Test
+    void testStopOneSessionKeepsOthersActive() {
+        // Arrange
+        service.startProxySession(testSession);
+        ProxySession secondSession = new ProxySession("127.0.0.1", 8081, "example.org", 443, false, null);
+        service.startProxySession(secondSession);
+
+        // Act
+        service.stopProxySession(testSession);
+
+        // Assert
+        assertSame(testSession, testServerManager.lastStopSession);
+        assertFalse(testSession.isActive());
+        assertTrue(secondSession.isActive());
+        assertEquals(List.of(secondSession), service.getActiveSessions());
     }
 
     @Test
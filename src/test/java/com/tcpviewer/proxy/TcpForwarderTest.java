@@ -1,11 +1,21 @@
 package com.tcpviewer.proxy;
 
+import com.tcpviewer.buffer.BufferPool;
+import com.tcpviewer.buffer.ReadBufferAllocator;
+import com.tcpviewer.capture.CaptureStream;
+import com.tcpviewer.capture.PacketCoalescer;
 import com.tcpviewer.io.wrapper.InputStreamWrapper;
 import com.tcpviewer.io.wrapper.OutputStreamWrapper;
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.model.CaptureSwitch;
 import com.tcpviewer.model.Direction;
+import com.tcpviewer.util.TimerWheel;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Answers;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -14,6 +24,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -140,13 +151,16 @@ class TcpForwarderTest {
         }
     }
 
-    @Mock
+    // Real default methods, so pooled buffers reach the byte[] callback like in production
+    @Mock(answer = Answers.CALLS_REAL_METHODS)
     private DataCaptureListener mockListener;
 
     private UUID connectionId;
     private TestInputStreamWrapper testSource;
     private TestOutputStreamWrapper testDestination;
 
+    private TimerWheel timerWheel;
+
     @BeforeEach
     void setUp() {
         connectionId = UUID.randomUUID();
@@ -154,6 +168,18 @@ class TcpForwarderTest {
         testDestination = new TestOutputStreamWrapper();
     }
 
+    @AfterEach
+    void tearDown() {
+        if (timerWheel != null) {
+            timerWheel.stop();
+        }
+    }
+
+    private PacketCoalescer coalescer(long idleGapMillis, int maxPacketSize) {
+        timerWheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, new DefaultThreadFactory());
+        return new PacketCoalescer(timerWheel, idleGapMillis, maxPacketSize);
+    }
+
     @Test
     void testForwardsDataFromSourceToDestination() throws IOException {
         // Arrange
@@ -230,6 +256,37 @@ class TcpForwarderTest {
         assertEquals(testData.length, capturedData.length);
     }
 
+    @Test
+    void testCountsInsteadOfCapturingWhileSwitchIsOff() throws IOException {
+        // Arrange
+        testSource.addData("Skipped".getBytes());
+        testSource.addData("Kept".getBytes());
+        CaptureSwitch captureSwitch = new CaptureSwitch(false);
+        TestOutputStreamWrapper switchingDestination = new TestOutputStreamWrapper() {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                super.write(b, off, len);
+                // Capture is turned on while the connection runs
+                captureSwitch.setEnabled(writeCallCount > 1);
+            }
+        };
+
+        TcpForwarder forwarder = new TcpForwarder(
+                testSource, switchingDestination,
+                CaptureStream.perChunk(connectionId, Direction.SERVER_TO_CLIENT, mockListener), null,
+                captureSwitch, Direction.SERVER_TO_CLIENT, "Test");
+
+        // Act
+        forwarder.run();
+
+        // Assert - both chunks are forwarded, only the second one is captured
+        assertEquals(2, switchingDestination.writtenData.size());
+        verify(mockListener).onDataCaptured(connectionId, "Kept".getBytes(), Direction.SERVER_TO_CLIENT);
+        verify(mockListener, never()).onDataCaptured(connectionId, "Skipped".getBytes(), Direction.SERVER_TO_CLIENT);
+        assertEquals(7, captureSwitch.getPassedThroughBytes(Direction.SERVER_TO_CLIENT));
+        assertEquals(0, captureSwitch.getPassedThroughBytes(Direction.CLIENT_TO_SERVER));
+    }
+
     @Test
     void testForwardsMultipleChunks() throws IOException {
         // Arrange
@@ -417,18 +474,16 @@ class TcpForwarderTest {
     }
 
     @Test
-    void testDrainThePipe_MultipleChunksConsolidated() throws Exception {
-        // Arrange - multiple chunks with available() eventually returning 0
-        byte[] chunk1 = "Hello ".getBytes();
-        byte[] chunk2 = "World".getBytes();
-        byte[] chunk3 = "!".getBytes();
-        testSource.addData(chunk1, 100); // more data available
-        testSource.addData(chunk2, 50);  // more data available
-        testSource.addData(chunk3, 0);   // no more data, will trigger packet
+    void testCoalescing_MultipleChunksConsolidated() throws Exception {
+        // Arrange - chunks arrive back to back, well within the idle gap
+        testSource.addData("Hello ".getBytes());
+        testSource.addData("World".getBytes());
+        testSource.addData("!".getBytes());
 
         TcpForwarder forwarder = new TcpForwarder(
-                testSource, testDestination, mockListener,
-                connectionId, Direction.CLIENT_TO_SERVER, "Test");
+                testSource, testDestination,
+                coalescer(1000, 65536).openStream(connectionId, Direction.CLIENT_TO_SERVER, mockListener),
+                "Test");
 
         // Act
         forwarder.run();
@@ -438,26 +493,22 @@ class TcpForwarderTest {
         assertEquals(3, testDestination.writeCallCount);
         assertEquals(3, testDestination.flushCount);
 
-        // Verify single consolidated packet
         ArgumentCaptor<byte[]> dataCaptor = ArgumentCaptor.forClass(byte[].class);
         verify(mockListener, times(1)).onDataCaptured(
                 eq(connectionId), dataCaptor.capture(), eq(Direction.CLIENT_TO_SERVER)
         );
-
-        byte[] capturedData = dataCaptor.getValue();
-        String expected = "Hello World!";
-        assertArrayEquals(expected.getBytes(), capturedData);
+        assertArrayEquals("Hello World!".getBytes(), dataCaptor.getValue());
     }
 
     @Test
-    void testDrainThePipe_TimeoutWaitsForMoreData() throws Exception {
-        // Arrange - single chunk with available() returning 0, timeout should occur
-        byte[] testData = "Single chunk".getBytes();
-        testSource.addData(testData, 0);
+    void testCoalescing_DoesNotDelayForwarding() throws Exception {
+        // Arrange - idle gap far longer than the test may take
+        testSource.addData("Single chunk".getBytes());
 
         TcpForwarder forwarder = new TcpForwarder(
-                testSource, testDestination, mockListener,
-                connectionId, Direction.CLIENT_TO_SERVER, "Test");
+                testSource, testDestination,
+                coalescer(10_000, 65536).openStream(connectionId, Direction.CLIENT_TO_SERVER, mockListener),
+                "Test");
 
         long startTime = System.currentTimeMillis();
 
@@ -466,137 +517,99 @@ class TcpForwarderTest {
 
         long elapsedTime = System.currentTimeMillis() - startTime;
 
-        // Assert - timeout should have occurred (at least 50ms)
-        assertTrue(elapsedTime >= 50, "Expected at least 50ms delay, got: " + elapsedTime);
-
+        // Assert - EOF completes the packet without waiting for the idle gap
+        assertTrue(elapsedTime < 5_000, "Forwarding waited for the idle gap: " + elapsedTime + "ms");
         verify(mockListener, times(1)).onDataCaptured(
                 eq(connectionId), any(byte[].class), eq(Direction.CLIENT_TO_SERVER)
         );
     }
 
     @Test
-    void testDrainThePipe_SingleChunkImmediate() throws Exception {
-        // Arrange - single chunk, should still work with drain logic
-        byte[] testData = "Test Data".getBytes();
-        testSource.addData(testData, 0);
-
-        TcpForwarder forwarder = new TcpForwarder(
-                testSource, testDestination, mockListener,
-                connectionId, Direction.CLIENT_TO_SERVER, "Test");
-
-        // Act
-        forwarder.run();
-
-        // Assert
-        assertEquals(1, testDestination.writeCallCount);
-        verify(mockListener, times(1)).onDataCaptured(
-                eq(connectionId), any(byte[].class), eq(Direction.CLIENT_TO_SERVER)
-        );
-    }
-
-    @Test
-    void testDrainThePipe_EOFWithAccumulated() throws Exception {
-        // Arrange - multiple chunks accumulated, then EOF
-        byte[] chunk1 = "First".getBytes();
-        byte[] chunk2 = "Second".getBytes();
-        testSource.addData(chunk1, 100); // more data indicated
-        testSource.addData(chunk2, 100); // more data indicated but EOF follows
+    void testCoalescing_ErrorWithAccumulated() throws Exception {
+        // Arrange - first chunk forwarded and buffered, then error on read
+        testSource.addData("Data1".getBytes());
+        testSource.setReadException(new IOException("Connection reset"));
 
         TcpForwarder forwarder = new TcpForwarder(
-                testSource, testDestination, mockListener,
-                connectionId, Direction.CLIENT_TO_SERVER, "Test");
+                testSource, testDestination,
+                coalescer(1000, 65536).openStream(connectionId, Direction.CLIENT_TO_SERVER, mockListener),
+                "Test");
 
         // Act
-        forwarder.run();
-
-        // Assert - accumulated data sent at EOF
-        assertEquals(3, testSource.readCallCount); // 2 reads with data, 1 EOF
-        assertEquals(2, testDestination.writeCallCount);
+        assertDoesNotThrow(() -> forwarder.run());
 
+        // Assert - buffered chunk delivered before the forwarder finishes
         ArgumentCaptor<byte[]> dataCaptor = ArgumentCaptor.forClass(byte[].class);
         verify(mockListener, times(1)).onDataCaptured(
                 eq(connectionId), dataCaptor.capture(), eq(Direction.CLIENT_TO_SERVER)
         );
-
-        byte[] capturedData = dataCaptor.getValue();
-        String expected = "FirstSecond";
-        assertArrayEquals(expected.getBytes(), capturedData);
+        assertArrayEquals("Data1".getBytes(), dataCaptor.getValue());
     }
 
     @Test
-    void testDrainThePipe_ErrorWithAccumulated() throws Exception {
-        // Arrange - successfully forward and accumulate first chunk, then error on read
-        byte[] chunk1 = "Data1".getBytes();
-        testSource.addData(chunk1, 100); // Indicates more data available
-
-        // Set read exception for second read - this allows first chunk to be accumulated
-        testSource.setReadException(new IOException("Connection reset"));
+    void testCoalescing_MaxPacketSizeSplitsPackets() throws Exception {
+        // Arrange
+        testSource.addData("abcdef".getBytes());
+        testSource.addData("ghij".getBytes());
 
         TcpForwarder forwarder = new TcpForwarder(
-                testSource, testDestination, mockListener,
-                connectionId, Direction.CLIENT_TO_SERVER, "Test");
+                testSource, testDestination,
+                coalescer(1000, 4).openStream(connectionId, Direction.CLIENT_TO_SERVER, mockListener),
+                "Test");
 
         // Act
-        assertDoesNotThrow(() -> forwarder.run());
+        forwarder.run();
 
-        // Assert - first chunk should be captured in catch block before closing
+        // Assert - packets never exceed the maximum size and keep their order
         ArgumentCaptor<byte[]> dataCaptor = ArgumentCaptor.forClass(byte[].class);
-        verify(mockListener, times(1)).onDataCaptured(
+        verify(mockListener, times(3)).onDataCaptured(
                 eq(connectionId), dataCaptor.capture(), eq(Direction.CLIENT_TO_SERVER)
         );
-
-        byte[] capturedData = dataCaptor.getValue();
-        assertArrayEquals("Data1".getBytes(), capturedData);
+        List<byte[]> packets = dataCaptor.getAllValues();
+        assertArrayEquals("abcd".getBytes(), packets.get(0));
+        assertArrayEquals("efgh".getBytes(), packets.get(1));
+        assertArrayEquals("ij".getBytes(), packets.get(2));
     }
 
     @Test
-    void testDrainThePipe_AvailableThrowsException() throws Exception {
-        // Arrange - available() throws IOException
-        byte[] testData = "Test".getBytes();
-        testSource.addData(testData, 0);
-        testSource.setAvailableException(new IOException("Available failed"));
+    void testDoesNotPollAvailable() throws Exception {
+        // Arrange
+        testSource.addData("Hello".getBytes());
+        testSource.addData("World".getBytes());
 
         TcpForwarder forwarder = new TcpForwarder(
-                testSource, testDestination, mockListener,
-                connectionId, Direction.CLIENT_TO_SERVER, "Test");
+                testSource, testDestination,
+                coalescer(1000, 65536).openStream(connectionId, Direction.CLIENT_TO_SERVER, mockListener),
+                "Test");
 
-        // Act - should handle gracefully and create packet
-        assertDoesNotThrow(() -> forwarder.run());
+        // Act
+        forwarder.run();
 
-        // Assert - data still forwarded and captured (treating as available==0)
-        assertEquals(1, testDestination.writeCallCount);
-        verify(mockListener, times(1)).onDataCaptured(
-                eq(connectionId), any(byte[].class), eq(Direction.CLIENT_TO_SERVER)
-        );
+        // Assert - packet boundaries come from the coalescer, not from available()
+        assertEquals(0, testSource.availableCallCount);
     }
 
     @Test
-    void testDrainThePipe_InterruptedDuringSleep() throws Exception {
+    void testSingleChunkCapturedWithoutCoalescer() throws Exception {
         // Arrange
-        byte[] testData = "Test".getBytes();
-        testSource.addData(testData, 0);
+        testSource.addData("Test Data".getBytes());
 
         TcpForwarder forwarder = new TcpForwarder(
                 testSource, testDestination, mockListener,
                 connectionId, Direction.CLIENT_TO_SERVER, "Test");
 
-        // Act - run in thread and interrupt during sleep
-        Thread forwarderThread = new Thread(forwarder);
-        forwarderThread.start();
-        Thread.sleep(25); // Interrupt during the 50ms timeout
-        forwarderThread.interrupt();
-        forwarderThread.join(1000); // Wait up to 1 second
+        // Act
+        forwarder.run();
 
-        // Assert - should complete gracefully despite interrupt
-        assertTrue(testSource.wasClosed);
-        assertTrue(testDestination.wasClosed);
+        // Assert
+        assertEquals(1, testDestination.writeCallCount);
         verify(mockListener, times(1)).onDataCaptured(
                 eq(connectionId), any(byte[].class), eq(Direction.CLIENT_TO_SERVER)
         );
     }
 
     @Test
-    void testDrainThePipe_NullListenerNoException() throws Exception {
+    void testMultipleChunksWithNullListenerNoException() throws Exception {
         // Arrange - multiple chunks with null listener
         byte[] chunk1 = "Hello".getBytes();
         byte[] chunk2 = "World".getBytes();
@@ -614,4 +627,54 @@ class TcpForwarderTest {
         assertEquals(2, testDestination.writeCallCount);
         assertEquals(2, testDestination.flushCount);
     }
+
+    @Test
+    void testPooledBuffersReturnedAfterForwarding() throws Exception {
+        // Arrange - read buffer and capture slab both come from the pool
+        testSource.addData("Hello ".getBytes());
+        testSource.addData("World".getBytes());
+        BufferPool bufferPool = new BufferPool(65536, 1024 * 1024, new MetricsRegistry());
+        timerWheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 64, new DefaultThreadFactory());
+        PacketCoalescer coalescer = new PacketCoalescer(timerWheel, bufferPool, 1000, 65536);
+
+        TcpForwarder forwarder = new TcpForwarder(
+                testSource, testDestination,
+                coalescer.openStream(connectionId, Direction.CLIENT_TO_SERVER, mockListener),
+                new ReadBufferAllocator(bufferPool, 8192, new MetricsRegistry()), "Test");
+
+        // Act
+        forwarder.run();
+
+        // Assert - listener saw the data and every slab went back to the pool
+        ArgumentCaptor<byte[]> dataCaptor = ArgumentCaptor.forClass(byte[].class);
+        verify(mockListener, times(1)).onDataCaptured(
+                eq(connectionId), dataCaptor.capture(), eq(Direction.CLIENT_TO_SERVER)
+        );
+        assertArrayEquals("Hello World".getBytes(), dataCaptor.getValue());
+        assertEquals(0, bufferPool.getInUseCount());
+        assertEquals(2, bufferPool.getIdleCount());
+    }
+
+    @Test
+    void testAdaptiveReadBufferGrowsWhileReadsFillIt() throws Exception {
+        // Arrange - every read fills the buffer it was given
+        testSource.addData(new byte[1024]);
+        testSource.addData(new byte[2048]);
+        testSource.addData(new byte[4096]);
+        MetricsRegistry metrics = new MetricsRegistry();
+        BufferPool bufferPool = new BufferPool(65536, 1024 * 1024, metrics);
+        ReadBufferAllocator readBuffers = new ReadBufferAllocator(bufferPool, 1024, 1024, 4096, true, metrics);
+
+        TcpForwarder forwarder = new TcpForwarder(testSource, testDestination, null, readBuffers, "Test");
+
+        // Act
+        forwarder.run();
+
+        // Assert - buffer doubled twice, capped at the max size, and returned to the pool
+        assertEquals(3, testDestination.writeCallCount);
+        assertEquals(4096, testDestination.writtenData.get(2).length);
+        assertEquals(2L, metrics.snapshot().get("buffer.read.grown"));
+        assertEquals(1L, metrics.snapshot().get("buffer.read.size.4096"));
+        assertEquals(0, bufferPool.getInUseCount());
+    }
 }
@@ -0,0 +1,158 @@
+package com.tcpviewer.proxy;
+
+import com.tcpviewer.io.wrapper.factory.DefaultSocketFactory;
+import com.tcpviewer.io.wrapper.impl.DefaultSocketWrapper;
+import com.tcpviewer.lang.wrapper.ExecutorServiceWrapper;
+import com.tcpviewer.lang.wrapper.factory.DefaultExecutorServiceFactory;
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
+import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
+import com.tcpviewer.lang.wrapper.factory.ThreadMode;
+import com.tcpviewer.lang.wrapper.impl.VirtualThreads;
+import com.tcpviewer.model.Direction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Load test comparing platform and virtual thread modes of the blocking forwarding engine.
+ * Opens many idle proxied connections over loopback and reports live platform threads and RSS.
+ * Disabled by default; run with:
+ * <pre>
+ * mvn test -Dtest=ThreadModeLoadTest -Dtcpviewer.loadtest=true [-Dtcpviewer.loadtest.connections=2000]
+ * </pre>
+ * Each connection uses four file descriptors. Virtual threads need a Java 21+ runtime.
+ */
+@EnabledIfSystemProperty(named = "tcpviewer.loadtest", matches = "true")
+class ThreadModeLoadTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThreadModeLoadTest.class);
+
+    /**
+     * Resource usage observed while all connections were open.
+     */
+    private record Sample(ThreadMode mode, int connections, int platformThreads, long rssKb, long elapsedMillis) {
+    }
+
+    @Test
+    void testCompareThreadModes() throws Exception {
+        int connections = Integer.getInteger("tcpviewer.loadtest.connections", 2000);
+
+        Sample platform = run(ThreadMode.PLATFORM, connections);
+        Sample virtual = run(ThreadMode.VIRTUAL, connections);
+
+        logger.info("Thread mode load test with {} connections (Java {})", connections, Runtime.version());
+        for (Sample sample : List.of(platform, virtual)) {
+            logger.info("{}: {} platform threads, RSS {} MB, setup {} ms",
+                    sample.mode(), sample.platformThreads(), sample.rssKb() / 1024, sample.elapsedMillis());
+        }
+
+        if (VirtualThreads.isSupported()) {
+            assertTrue(virtual.platformThreads() < platform.platformThreads(),
+                    "Virtual mode should need fewer platform threads");
+        }
+    }
+
+    private Sample run(ThreadMode mode, int connections) throws Exception {
+        ThreadFactory threadFactory = new DefaultThreadFactory(mode);
+        ExecutorServiceWrapper executor = threadFactory.isVirtual()
+                ? new DefaultExecutorServiceFactory().createThreadPerTaskExecutor(threadFactory)
+                : new DefaultExecutorServiceFactory().createCachedThreadPool(threadFactory);
+        CountDownLatch captured = new CountDownLatch(connections);
+        DataCaptureListener listener = new DataCaptureListener() {
+            @Override
+            public void onDataCaptured(UUID connectionId, byte[] data, Direction direction) {
+                captured.countDown();
+            }
+
+            @Override
+            public void onConnectionClosed(UUID connectionId) {
+            }
+        };
+
+        List<Socket> sockets = new ArrayList<>();
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        try (ServerSocket target = new ServerSocket(0, connections, loopback);
+             ServerSocket proxy = new ServerSocket(0, connections, loopback)) {
+            // Target accepts and holds connections without answering, so forwarders stay blocked
+            Thread targetAcceptor = new Thread(() -> {
+                try {
+                    while (!target.isClosed()) {
+                        Socket socket = target.accept();
+                        synchronized (sockets) {
+                            sockets.add(socket);
+                        }
+                    }
+                } catch (IOException e) {
+                    // Closed at end of run
+                }
+            }, "LoadTest-Target");
+            targetAcceptor.start();
+
+            ThreadedForwardingEngine engine = new ThreadedForwardingEngine(executor, new DefaultSocketFactory(),
+                    threadFactory, "127.0.0.1", target.getLocalPort(), false, null);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                Socket client = new Socket(loopback, proxy.getLocalPort());
+                Socket accepted = proxy.accept();
+                synchronized (sockets) {
+                    sockets.add(client);
+                    sockets.add(accepted);
+                }
+                engine.forward(UUID.randomUUID(), new DefaultSocketWrapper(accepted), listener);
+                client.getOutputStream().write("ping".getBytes(StandardCharsets.US_ASCII));
+            }
+            assertTrue(captured.await(2, TimeUnit.MINUTES), "Not all connections forwarded data");
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            System.gc();
+            Sample sample = new Sample(mode, connections,
+                    ManagementFactory.getThreadMXBean().getThreadCount(), readRssKb(), elapsedMillis);
+
+            target.close();
+            targetAcceptor.join(5000);
+            return sample;
+        } finally {
+            synchronized (sockets) {
+                for (Socket socket : sockets) {
+                    socket.close();
+                }
+            }
+            executor.shutdown();
+            executor.awaitTermination(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Reads the resident set size of this process, or -1 where /proc is unavailable.
+     */
+    private static long readRssKb() throws IOException {
+        Path status = Path.of("/proc/self/status");
+        if (!Files.exists(status)) {
+            return -1;
+        }
+        for (String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        return -1;
+    }
+}
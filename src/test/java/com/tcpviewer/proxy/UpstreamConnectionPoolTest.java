@@ -0,0 +1,258 @@
+package com.tcpviewer.proxy;
+
+import com.tcpviewer.io.wrapper.InputStreamWrapper;
+import com.tcpviewer.io.wrapper.OutputStreamWrapper;
+import com.tcpviewer.io.wrapper.SocketWrapper;
+import com.tcpviewer.io.wrapper.factory.SocketFactory;
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
+import com.tcpviewer.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for UpstreamConnectionPool.
+ */
+class UpstreamConnectionPoolTest {
+
+    /**
+     * Test stub for SocketWrapper recording its target and whether it was closed.
+     */
+    private static class TestSocketWrapper implements SocketWrapper {
+        private final String host;
+        private volatile boolean closed;
+
+        TestSocketWrapper(String host) {
+            this.host = host;
+        }
+
+        @Override
+        public InputStreamWrapper getInputStream() {
+            return null;
+        }
+
+        @Override
+        public OutputStreamWrapper getOutputStream() {
+            return null;
+        }
+
+        @Override
+        public void setTcpNoDelay(boolean on) {
+        }
+
+        @Override
+        public InetAddress getInetAddress() {
+            return null;
+        }
+
+        @Override
+        public int getPort() {
+            return 0;
+        }
+
+        @Override
+        public SocketChannel getChannel() {
+            return null;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * Test stub for SocketFactory recording the sockets it created.
+     */
+    private static class TestSocketFactory implements SocketFactory {
+        private final List<TestSocketWrapper> created = new CopyOnWriteArrayList<>();
+        private volatile boolean failing;
+        private volatile CountDownLatch connecting;
+        private volatile CountDownLatch gate;
+
+        @Override
+        public SocketWrapper createSocket(String host, int port, boolean ssl, String sniHostName) throws IOException {
+            if (failing) {
+                throw new IOException("Connection refused");
+            }
+            CountDownLatch currentGate = gate;
+            if (currentGate != null) {
+                connecting.countDown();
+                awaitUninterruptibly(currentGate);
+            }
+            TestSocketWrapper socket = new TestSocketWrapper(host);
+            created.add(socket);
+            return socket;
+        }
+
+        @Override
+        public SocketWrapper wrapSocket(Socket socket) {
+            return null;
+        }
+    }
+
+    private TestSocketFactory delegate;
+    private MetricsRegistry metrics;
+    private UpstreamConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        delegate = new TestSocketFactory();
+        metrics = new MetricsRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void testIdleConnectionsOpenedAheadAndHandedOut() throws Exception {
+        pool = new UpstreamConnectionPool(delegate, 2, 30, TimeUnit.SECONDS, new DefaultThreadFactory(), metrics);
+        pool.start("target", 443, true, "www.example.com");
+        awaitCondition(() -> pool.getIdleCount() == 2);
+
+        SocketWrapper socket = pool.createSocket("target", 443, true, "www.example.com");
+
+        assertTrue(delegate.created.contains(socket));
+        assertFalse(socket.isClosed());
+        assertEquals(1L, metrics.snapshot().get("upstream.pool.hits"));
+        assertEquals(1L, metrics.snapshot().get("upstream.setup.count"));
+        // Refilled after the connection was taken
+        awaitCondition(() -> pool.getIdleCount() == 2);
+        assertEquals(3, delegate.created.size());
+    }
+
+    @Test
+    void testOtherTargetsConnectOnDemand() throws Exception {
+        pool = new UpstreamConnectionPool(delegate, 1, 30, TimeUnit.SECONDS, new DefaultThreadFactory(), metrics);
+        pool.start("target", 443, true, "www.example.com");
+        awaitCondition(() -> pool.getIdleCount() == 1);
+
+        TestSocketWrapper socket = (TestSocketWrapper) pool.createSocket("target", 443, true, "api.example.com");
+
+        assertEquals("target", socket.host);
+        assertEquals(1, pool.getIdleCount());
+        assertEquals(0L, metrics.snapshot().get("upstream.pool.hits"));
+        assertEquals(1L, metrics.snapshot().get("upstream.setup.count"));
+    }
+
+    @Test
+    void testSizeZeroOnlyMeasuresSetup() throws Exception {
+        pool = new UpstreamConnectionPool(delegate, 0, 30, TimeUnit.SECONDS, new DefaultThreadFactory(), metrics);
+        pool.start("target", 80, false, null);
+
+        pool.createSocket("target", 80, false, null);
+        pool.createSocket("target", 80, false, null);
+
+        assertEquals(2, delegate.created.size());
+        assertEquals(0, pool.getIdleCount());
+        assertEquals(2L, metrics.snapshot().get("upstream.setup.count"));
+        assertEquals(0L, metrics.snapshot().get("upstream.pool.misses"));
+    }
+
+    @Test
+    void testClosedIdleConnectionsNotHandedOut() throws Exception {
+        pool = new UpstreamConnectionPool(delegate, 1, 30, TimeUnit.SECONDS, new DefaultThreadFactory(), metrics);
+        pool.start("target", 80, false, null);
+        awaitCondition(() -> pool.getIdleCount() == 1);
+        delegate.failing = true;
+        delegate.created.get(0).close();
+
+        assertThrows(IOException.class, () -> pool.createSocket("target", 80, false, null));
+        assertEquals(1L, metrics.snapshot().get("upstream.pool.discarded"));
+        assertEquals(1L, metrics.snapshot().get("upstream.pool.misses"));
+    }
+
+    @Test
+    void testExpiredIdleConnectionsReplaced() throws Exception {
+        pool = new UpstreamConnectionPool(delegate, 1, 50, TimeUnit.MILLISECONDS, new DefaultThreadFactory(), metrics);
+        pool.start("target", 80, false, null);
+        awaitCondition(() -> delegate.created.size() >= 2);
+
+        assertTrue(delegate.created.get(0).isClosed());
+        assertTrue(metrics.snapshot().get("upstream.pool.discarded") >= 1);
+    }
+
+    @Test
+    void testStopClosesIdleConnections() throws Exception {
+        pool = new UpstreamConnectionPool(delegate, 2, 30, TimeUnit.SECONDS, new DefaultThreadFactory(), metrics);
+        pool.start("target", 80, false, null);
+        awaitCondition(() -> pool.getIdleCount() == 2);
+
+        pool.stop();
+        SocketWrapper socket = pool.createSocket("target", 80, false, null);
+
+        assertEquals(0, pool.getIdleCount());
+        assertTrue(delegate.created.get(0).isClosed());
+        assertTrue(delegate.created.get(1).isClosed());
+        assertFalse(socket.isClosed());
+    }
+
+    @Test
+    void testNegativeSizeRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new UpstreamConnectionPool(
+                delegate, -1, 30, TimeUnit.SECONDS, new DefaultThreadFactory(), metrics));
+    }
+
+    @Test
+    void testConnectionOpenedWhileStoppingIsClosed() throws Exception {
+        pool = new UpstreamConnectionPool(delegate, 1, 30, TimeUnit.SECONDS, new DefaultThreadFactory(), metrics);
+        delegate.connecting = new CountDownLatch(1);
+        delegate.gate = new CountDownLatch(1);
+        pool.start("target", 443, true, "www.example.com");
+        assertTrue(delegate.connecting.await(5, TimeUnit.SECONDS));
+
+        // Like a blocking connect or handshake, the filler does not return on interrupt
+        pool.stop();
+        delegate.gate.countDown();
+
+        awaitCondition(() -> delegate.created.size() == 1 && delegate.created.get(0).isClosed());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    /**
+     * Waits like a blocking connect, which an interrupt does not end.
+     */
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
@@ -0,0 +1,272 @@
+package com.tcpviewer.proxy.nio;
+
+import com.tcpviewer.io.resolver.HostResolver;
+import com.tcpviewer.io.wrapper.SocketWrapper;
+import com.tcpviewer.io.wrapper.impl.DefaultSocketWrapper;
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
+import com.tcpviewer.model.CaptureSwitch;
+import com.tcpviewer.model.Direction;
+import com.tcpviewer.proxy.DataCaptureListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for NioForwardingEngine.
+ * Uses real loopback sockets, as the engine works directly on NIO channels.
+ */
+class NioForwardingEngineTest {
+
+    /**
+     * Listener collecting captured bytes per direction.
+     */
+    private static class CollectingListener implements DataCaptureListener {
+        private final Map<Direction, ByteArrayOutputStream> captured = new ConcurrentHashMap<>();
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private CaptureSwitch captureSwitch;
+
+        @Override
+        public CaptureSwitch getCaptureSwitch(UUID connectionId) {
+            return captureSwitch;
+        }
+
+        @Override
+        public void onDataCaptured(UUID connectionId, byte[] data, Direction direction) {
+            ByteArrayOutputStream stream = captured.computeIfAbsent(direction, d -> new ByteArrayOutputStream());
+            synchronized (stream) {
+                stream.write(data, 0, data.length);
+            }
+        }
+
+        @Override
+        public void onConnectionClosed(UUID connectionId) {
+            closed.countDown();
+        }
+
+        String capturedText(Direction direction) {
+            ByteArrayOutputStream stream = captured.get(direction);
+            return stream == null ? "" : stream.toString(StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    private NioEventLoopGroup eventLoopGroup;
+    private ServerSocketChannel proxyChannel;
+    private ServerSocket echoServer;
+    private Thread echoThread;
+    private CollectingListener listener;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        eventLoopGroup = new NioEventLoopGroup(1, new DefaultThreadFactory());
+        proxyChannel = ServerSocketChannel.open();
+        proxyChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        listener = new CollectingListener();
+
+        echoServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        echoThread = new Thread(() -> {
+            try (Socket socket = echoServer.accept()) {
+                InputStream in = socket.getInputStream();
+                OutputStream out = socket.getOutputStream();
+                byte[] buffer = new byte[1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    out.flush();
+                }
+            } catch (IOException e) {
+                // Test server stops with the test
+            }
+        }, "EchoServer");
+        echoThread.setDaemon(true);
+        echoThread.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        eventLoopGroup.shutdown();
+        proxyChannel.close();
+        echoServer.close();
+    }
+
+    @Test
+    void testForwardsAndCapturesBothDirections() throws Exception {
+        NioForwardingEngine engine = new NioForwardingEngine(eventLoopGroup, "127.0.0.1", echoServer.getLocalPort());
+
+        try (Socket client = new Socket(InetAddress.getLoopbackAddress(), proxyChannel.socket().getLocalPort())) {
+            engine.forward(UUID.randomUUID(), acceptClient(), listener);
+
+            client.getOutputStream().write("Hello NIO".getBytes(StandardCharsets.ISO_8859_1));
+            client.getOutputStream().flush();
+
+            byte[] echoed = client.getInputStream().readNBytes(9);
+            assertEquals("Hello NIO", new String(echoed, StandardCharsets.ISO_8859_1));
+
+            client.shutdownOutput();
+            assertEquals(-1, client.getInputStream().read());
+        }
+
+        assertTrue(listener.closed.await(5, TimeUnit.SECONDS));
+        assertEquals("Hello NIO", listener.capturedText(Direction.CLIENT_TO_SERVER));
+        assertEquals("Hello NIO", listener.capturedText(Direction.SERVER_TO_CLIENT));
+    }
+
+    @Test
+    void testForwardsWithoutCaptureWhileSwitchIsOff() throws Exception {
+        NioForwardingEngine engine = new NioForwardingEngine(eventLoopGroup, "127.0.0.1", echoServer.getLocalPort());
+        listener.captureSwitch = new CaptureSwitch(false);
+
+        try (Socket client = new Socket(InetAddress.getLoopbackAddress(), proxyChannel.socket().getLocalPort())) {
+            engine.forward(UUID.randomUUID(), acceptClient(), listener);
+
+            client.getOutputStream().write("Passthrough".getBytes(StandardCharsets.ISO_8859_1));
+            client.getOutputStream().flush();
+            assertEquals("Passthrough",
+                    new String(client.getInputStream().readNBytes(11), StandardCharsets.ISO_8859_1));
+
+            // Capture resumes for data read after the switch is turned on
+            listener.captureSwitch.setEnabled(true);
+            client.getOutputStream().write("Captured".getBytes(StandardCharsets.ISO_8859_1));
+            client.getOutputStream().flush();
+            assertEquals("Captured",
+                    new String(client.getInputStream().readNBytes(8), StandardCharsets.ISO_8859_1));
+
+            client.shutdownOutput();
+            assertEquals(-1, client.getInputStream().read());
+        }
+
+        assertTrue(listener.closed.await(5, TimeUnit.SECONDS));
+        assertEquals("Captured", listener.capturedText(Direction.CLIENT_TO_SERVER));
+        assertEquals("Captured", listener.capturedText(Direction.SERVER_TO_CLIENT));
+        assertEquals(11, listener.captureSwitch.getPassedThroughBytes(Direction.CLIENT_TO_SERVER));
+        assertEquals(11, listener.captureSwitch.getPassedThroughBytes(Direction.SERVER_TO_CLIENT));
+    }
+
+    @Test
+    void testUnreachableTargetClosesConnection() throws Exception {
+        int closedPort;
+        try (ServerSocket unused = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            closedPort = unused.getLocalPort();
+        }
+        NioForwardingEngine engine = new NioForwardingEngine(eventLoopGroup, "127.0.0.1", closedPort);
+
+        try (Socket client = new Socket(InetAddress.getLoopbackAddress(), proxyChannel.socket().getLocalPort())) {
+            engine.forward(UUID.randomUUID(), acceptClient(), listener);
+
+            assertTrue(listener.closed.await(5, TimeUnit.SECONDS));
+            assertEquals(-1, client.getInputStream().read());
+        }
+    }
+
+    @Test
+    void testCloseAllClosesOpenConnections() throws Exception {
+        NioForwardingEngine engine = new NioForwardingEngine(eventLoopGroup, "127.0.0.1", echoServer.getLocalPort());
+
+        try (Socket client = new Socket(InetAddress.getLoopbackAddress(), proxyChannel.socket().getLocalPort())) {
+            engine.forward(UUID.randomUUID(), acceptClient(), listener);
+            client.getOutputStream().write("Open".getBytes(StandardCharsets.ISO_8859_1));
+            client.getOutputStream().flush();
+            assertEquals("Open", new String(client.getInputStream().readNBytes(4), StandardCharsets.ISO_8859_1));
+            assertEquals(1, engine.getConnectionCount());
+
+            engine.closeAll();
+
+            assertTrue(listener.closed.await(5, TimeUnit.SECONDS));
+            assertEquals(-1, client.getInputStream().read());
+            assertEquals(0, engine.getConnectionCount());
+        }
+    }
+
+    @Test
+    void testConnectionForwardedAfterCloseAllIsClosed() throws Exception {
+        NioForwardingEngine engine = new NioForwardingEngine(eventLoopGroup, "127.0.0.1", echoServer.getLocalPort());
+        engine.closeAll();
+
+        try (Socket client = new Socket(InetAddress.getLoopbackAddress(), proxyChannel.socket().getLocalPort())) {
+            engine.forward(UUID.randomUUID(), acceptClient(), listener);
+
+            assertTrue(listener.closed.await(5, TimeUnit.SECONDS));
+            assertEquals(-1, client.getInputStream().read());
+        }
+    }
+
+    @Test
+    void testConnectsOnceTargetResolves() throws Exception {
+        CompletableFuture<InetAddress> lookup = new CompletableFuture<>();
+        HostResolver resolver = new HostResolver() {
+            @Override
+            public InetAddress[] resolveAll(String host) {
+                throw new AssertionError("Blocking lookup for " + host);
+            }
+
+            @Override
+            public CompletableFuture<InetAddress> resolveAsync(String host) {
+                return lookup;
+            }
+        };
+        NioForwardingEngine engine = new NioForwardingEngine(eventLoopGroup, null, null,
+                "target.example", echoServer.getLocalPort(), resolver);
+
+        try (Socket client = new Socket(InetAddress.getLoopbackAddress(), proxyChannel.socket().getLocalPort())) {
+            // Returns to the accept loop while the lookup is still running
+            engine.forward(UUID.randomUUID(), acceptClient(), listener);
+            assertEquals(0, engine.getConnectionCount());
+
+            lookup.complete(InetAddress.getLoopbackAddress());
+            client.getOutputStream().write("Resolved".getBytes(StandardCharsets.ISO_8859_1));
+            client.getOutputStream().flush();
+            assertEquals("Resolved", new String(client.getInputStream().readNBytes(8), StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    @Test
+    void testUnresolvableTargetClosesConnection() throws Exception {
+        HostResolver resolver = host -> {
+            throw new UnknownHostException(host);
+        };
+        NioForwardingEngine engine = new NioForwardingEngine(eventLoopGroup, null, null,
+                "missing.example", echoServer.getLocalPort(), resolver);
+
+        try (Socket client = new Socket(InetAddress.getLoopbackAddress(), proxyChannel.socket().getLocalPort())) {
+            engine.forward(UUID.randomUUID(), acceptClient(), listener);
+
+            assertTrue(listener.closed.await(5, TimeUnit.SECONDS));
+            assertEquals(-1, client.getInputStream().read());
+            assertEquals(0, engine.getConnectionCount());
+        }
+    }
+
+    @Test
+    void testRejectsSocketWithoutChannel() throws Exception {
+        NioForwardingEngine engine = new NioForwardingEngine(eventLoopGroup, "127.0.0.1", echoServer.getLocalPort());
+
+        try (Socket plainSocket = new Socket()) {
+            SocketWrapper wrapper = new DefaultSocketWrapper(plainSocket);
+            assertThrows(IllegalStateException.class,
+                    () -> engine.forward(UUID.randomUUID(), wrapper, listener));
+        }
+    }
+
+    private SocketWrapper acceptClient() throws IOException {
+        return new DefaultSocketWrapper(proxyChannel.accept().socket());
+    }
+}
@@ -0,0 +1,51 @@
+package com.tcpviewer.ssl;
+
+import com.tcpviewer.metrics.MetricsRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Measures the certificate step of an SSL session start with a cold and a warm certificate cache.
+ * A cold start generates a key pair and signs a certificate; a warm start reuses the cached one.
+ * Disabled by default; run with:
+ * <pre>
+ * mvn test -Dtest=CertificateCacheBenchmarkTest -Dtcpviewer.benchmark=true
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "tcpviewer.benchmark", matches = "true")
+class CertificateCacheBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(CertificateCacheBenchmarkTest.class);
+    private static final int SESSIONS = 20;
+
+    @Test
+    void testSessionStartWithColdAndWarmCache() throws Exception {
+        long coldNanos = 0;
+        long warmNanos = 0;
+        for (int i = 0; i < SESSIONS; i++) {
+            ServerCertificateGeneratorService service = new ServerCertificateGeneratorService(
+                    new CertificateCache(16, 1, TimeUnit.HOURS, null, new MetricsRegistry()), null);
+            String hostName = "host" + i + ".example.com";
+
+            long start = System.nanoTime();
+            service.getServerCertificate(hostName, 365);
+            coldNanos += System.nanoTime() - start;
+
+            start = System.nanoTime();
+            service.getServerCertificate(hostName, 365);
+            warmNanos += System.nanoTime() - start;
+        }
+
+        double coldMillis = coldNanos / 1e6 / SESSIONS;
+        double warmMillis = warmNanos / 1e6 / SESSIONS;
+        logger.info("Certificate for session start: cold cache {} ms, warm cache {} ms",
+                String.format("%.3f", coldMillis), String.format("%.3f", warmMillis));
+        assertTrue(warmNanos < coldNanos);
+    }
+}
@@ -0,0 +1,244 @@
+package com.tcpviewer.ssl;
+
+import com.tcpviewer.lang.wrapper.ExecutorServiceWrapper;
+import com.tcpviewer.metrics.MetricsRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPairGenerator;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CertificateCache.
+ */
+class CertificateCacheTest {
+
+    /**
+     * Executor stub keeping submitted tasks until the test runs them.
+     */
+    private static class RecordingExecutor implements ExecutorServiceWrapper {
+        final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void submit(Runnable task) {
+            tasks.add(task);
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return tasks;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+    }
+
+    private static ServerCertificateGeneratorService generator;
+    private static ServerCertificateGeneratorService.GeneratedCertificate first;
+    private static ServerCertificateGeneratorService.GeneratedCertificate second;
+    private static ServerCertificateGeneratorService.GeneratedCertificate third;
+
+    @TempDir
+    Path tempDir;
+
+    private MetricsRegistry metrics;
+
+    @BeforeAll
+    static void generateCertificates() throws Exception {
+        generator = new ServerCertificateGeneratorService(null, null);
+        first = generator.generateServerCertificate("first.example.com", 365);
+        second = generator.generateServerCertificate("second.example.com", 365);
+        third = generator.generateServerCertificate("third.example.com", 365);
+    }
+
+    @BeforeEach
+    void setUp() {
+        metrics = new MetricsRegistry();
+    }
+
+    @Test
+    void testCachedByHostName() {
+        CertificateCache cache = new CertificateCache(10, 1, TimeUnit.HOURS, null, metrics);
+
+        assertNull(cache.get("first.example.com"));
+        cache.put("first.example.com", first);
+
+        assertSame(first, cache.get("first.example.com"));
+        assertSame(first, cache.get("FIRST.example.com"));
+        assertNull(cache.get("second.example.com"));
+        assertEquals(2L, metrics.snapshot().get("ssl.certificate.cache.hits"));
+        assertEquals(2L, metrics.snapshot().get("ssl.certificate.cache.misses"));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEvictedWhenFull() {
+        CertificateCache cache = new CertificateCache(2, 1, TimeUnit.HOURS, null, metrics);
+        cache.put("first.example.com", first);
+        cache.put("second.example.com", second);
+        cache.get("first.example.com");
+
+        cache.put("third.example.com", third);
+
+        assertEquals(2, cache.size());
+        assertSame(first, cache.get("first.example.com"));
+        assertNull(cache.get("second.example.com"));
+        assertEquals(1L, metrics.snapshot().get("ssl.certificate.cache.evictions"));
+    }
+
+    @Test
+    void testExpiredAfterTimeToLive() {
+        // Generated certificates are valid from one minute before their generation
+        CertificateCache cache = new CertificateCache(10, 30, TimeUnit.SECONDS, null, metrics);
+        cache.put("first.example.com", first);
+
+        assertNull(cache.get("first.example.com"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testPersistedCertificatesReloaded() throws Exception {
+        Path file = tempDir.resolve("certificates.p12");
+        CertificateCache cache = new CertificateCache(10, 1, TimeUnit.HOURS, file, metrics);
+        cache.put("first.example.com", first);
+        cache.put("second.example.com", second);
+        assertTrue(Files.exists(file));
+
+        CertificateCache reloaded = new CertificateCache(10, 1, TimeUnit.HOURS, file, new MetricsRegistry());
+        reloaded.load(generator.getCaCertificate().getPublicKey());
+
+        assertEquals(2, reloaded.size());
+        ServerCertificateGeneratorService.GeneratedCertificate certificate = reloaded.get("first.example.com");
+        assertEquals(first.certificate(), certificate.certificate());
+        assertEquals(first.privateKey(), certificate.privateKey());
+        assertNotNull(certificate.keyStore().getKey("server", "changeit".toCharArray()));
+    }
+
+    @Test
+    void testCertificatesOfOtherIssuerNotReloaded() throws Exception {
+        Path file = tempDir.resolve("certificates.p12");
+        new CertificateCache(10, 1, TimeUnit.HOURS, file, metrics).put("first.example.com", first);
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        CertificateCache reloaded = new CertificateCache(10, 1, TimeUnit.HOURS, file, new MetricsRegistry());
+        reloaded.load(keyPairGenerator.generateKeyPair().getPublic());
+
+        assertEquals(0, reloaded.size());
+    }
+
+    @Test
+    void testUnreadableFileKeepsCacheInMemory() throws Exception {
+        Path file = Files.writeString(tempDir.resolve("certificates.p12"), "not a key store");
+        CertificateCache cache = new CertificateCache(10, 1, TimeUnit.HOURS, file, metrics);
+
+        cache.load(generator.getCaCertificate().getPublicKey());
+        cache.put("first.example.com", first);
+
+        assertSame(first, cache.get("first.example.com"));
+    }
+
+    @Test
+    void testServiceReusesCachedCertificate() throws Exception {
+        ServerCertificateGeneratorService service = new ServerCertificateGeneratorService(
+                new CertificateCache(10, 1, TimeUnit.HOURS, null, metrics), null);
+
+        ServerCertificateGeneratorService.GeneratedCertificate generated =
+                service.getServerCertificate("cached.example.com", 365);
+
+        assertSame(generated, service.getServerCertificate("cached.example.com", 365));
+        assertEquals(1L, metrics.snapshot().get("ssl.certificate.cache.hits"));
+    }
+
+    @Test
+    void testPersistedOnExecutorInOneWrite() throws Exception {
+        Path file = tempDir.resolve("certificates.p12");
+        RecordingExecutor executor = new RecordingExecutor();
+        CertificateCache cache = new CertificateCache(10, 1, TimeUnit.HOURS, file, executor, metrics);
+
+        cache.put("first.example.com", first);
+        cache.put("second.example.com", second);
+
+        // The certificates are cached at once, the file is written later and only once
+        assertSame(first, cache.get("first.example.com"));
+        assertFalse(Files.exists(file));
+        assertEquals(1, executor.tasks.size());
+
+        executor.tasks.get(0).run();
+        CertificateCache reloaded = new CertificateCache(10, 1, TimeUnit.HOURS, file, new MetricsRegistry());
+        reloaded.load(generator.getCaCertificate().getPublicKey());
+        assertEquals(2, reloaded.size());
+
+        // A write is scheduled again for certificates added afterwards
+        cache.put("third.example.com", third);
+        assertEquals(2, executor.tasks.size());
+    }
+
+    @Test
+    void testConcurrentRequestsGenerateOnce() throws Exception {
+        CertificateCache cache = new CertificateCache(10, 1, TimeUnit.HOURS, null, metrics);
+        AtomicInteger generated = new AtomicInteger();
+        CountDownLatch generating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<ServerCertificateGeneratorService.GeneratedCertificate>> results = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                results.add(threads.submit(() -> cache.getOrGenerate("first.example.com", certificate -> true, () -> {
+                    generated.incrementAndGet();
+                    generating.countDown();
+                    release.await();
+                    return first;
+                })));
+            }
+            assertTrue(generating.await(5, TimeUnit.SECONDS));
+            Thread.sleep(50);
+            release.countDown();
+
+            for (Future<ServerCertificateGeneratorService.GeneratedCertificate> result : results) {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, generated.get());
+            assertSame(first, cache.get("first.example.com"));
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    void testUnusableCertificateGeneratedAgain() throws Exception {
+        CertificateCache cache = new CertificateCache(10, 1, TimeUnit.HOURS, null, metrics);
+        cache.put("first.example.com", first);
+
+        assertSame(second, cache.getOrGenerate("first.example.com", certificate -> false, () -> second));
+        assertSame(second, cache.get("first.example.com"));
+    }
+}
@@ -8,6 +8,7 @@ import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.bouncycastle.operator.ContentSigner;
 import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
+import com.tcpviewer.metrics.MetricsRegistry;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 
@@ -19,6 +20,9 @@ import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.time.Instant;
 import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -34,7 +38,7 @@ class CertificateCertificateGeneratorServiceTest {
 
 
         ServerCertificateGeneratorService service =
-                new ServerCertificateGeneratorService();
+                new ServerCertificateGeneratorService(null, null);
 
         String serverName = "test.example.com";
 
@@ -88,5 +92,50 @@ class CertificateCertificateGeneratorServiceTest {
         assertTrue(eku.contains(KeyPurposeId.id_kp_serverAuth.getId()));
     }
 
-}
+    @Test
+    void generatesEcServerCertificateFromKeyPairPool() throws Exception {
+        KeyPairPool pool = new KeyPairPool(KeyAlgorithm.EC, 0, null, new MetricsRegistry());
+        ServerCertificateGeneratorService service = new ServerCertificateGeneratorService(null, pool);
+
+        ServerCertificateGeneratorService.GeneratedCertificate result =
+                service.generateServerCertificate("ec.example.com", 365);
+
+        assertEquals(KeyAlgorithm.EC, service.getKeyAlgorithm());
+        assertTrue(KeyAlgorithm.EC.matches(result.certificate().getPublicKey()));
+        result.certificate().verify(service.getCaCertificate().getPublicKey());
+
+        // EC keys sign, they do not encipher keys
+        boolean[] keyUsage = result.certificate().getKeyUsage();
+        assertTrue(keyUsage[0]);
+        assertFalse(keyUsage[2]);
+    }
 
+    @Test
+    void generatesDistinctPositiveSerialsWithinTheSameMillisecond() throws Exception {
+        KeyPairPool pool = new KeyPairPool(KeyAlgorithm.EC, 0, null, new MetricsRegistry());
+        ServerCertificateGeneratorService service = new ServerCertificateGeneratorService(null, pool);
+
+        Set<BigInteger> serials = new HashSet<>();
+        for (int i = 0; i < 20; i++) {
+            BigInteger serial = service.generateServerCertificate("host" + i + ".example.com", 365)
+                    .certificate().getSerialNumber();
+            assertEquals(1, serial.signum());
+            assertTrue(serials.add(serial), "Serial numbers must not repeat");
+        }
+    }
+
+    @Test
+    void replacesCachedCertificateWithOtherKeyAlgorithm() throws Exception {
+        CertificateCache cache = new CertificateCache(10, 1, TimeUnit.HOURS, null, new MetricsRegistry());
+        ServerCertificateGeneratorService rsaService = new ServerCertificateGeneratorService(cache, null);
+        ServerCertificateGeneratorService ecService = new ServerCertificateGeneratorService(cache,
+                new KeyPairPool(KeyAlgorithm.EC, 0, null, new MetricsRegistry()));
+
+        ServerCertificateGeneratorService.GeneratedCertificate rsa = rsaService.getServerCertificate("a.example.com", 365);
+        ServerCertificateGeneratorService.GeneratedCertificate ec = ecService.getServerCertificate("a.example.com", 365);
+
+        assertTrue(KeyAlgorithm.RSA.matches(rsa.certificate().getPublicKey()));
+        assertTrue(KeyAlgorithm.EC.matches(ec.certificate().getPublicKey()));
+        assertSame(ec, ecService.getServerCertificate("a.example.com", 365));
+    }
+}
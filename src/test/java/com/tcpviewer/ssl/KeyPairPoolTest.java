@@ -0,0 +1,88 @@
+package com.tcpviewer.ssl;
+
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
+import com.tcpviewer.lang.wrapper.factory.ThreadFactory;
+import com.tcpviewer.metrics.MetricsRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.security.interfaces.ECPublicKey;
+import java.security.interfaces.RSAPublicKey;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for KeyPairPool and KeyAlgorithm.
+ */
+class KeyPairPoolTest {
+
+    private MetricsRegistry metrics;
+
+    @BeforeEach
+    void setUp() {
+        metrics = new MetricsRegistry();
+    }
+
+    @Test
+    void testKeyAlgorithms() throws Exception {
+        KeyPair ec = KeyAlgorithm.EC.generateKeyPair();
+        KeyPair rsa = KeyAlgorithm.RSA.generateKeyPair();
+
+        assertEquals(256, ((ECPublicKey) ec.getPublic()).getParams().getCurve().getField().getFieldSize());
+        assertEquals(2048, ((RSAPublicKey) rsa.getPublic()).getModulus().bitLength());
+        assertTrue(KeyAlgorithm.EC.matches(ec.getPublic()));
+        assertFalse(KeyAlgorithm.EC.matches(rsa.getPublic()));
+        assertTrue(KeyAlgorithm.RSA.matches(rsa.getPublic()));
+    }
+
+    @Test
+    void testEmptyPoolGeneratesOnDemand() throws Exception {
+        ThreadFactory threadFactory = mock(ThreadFactory.class);
+        KeyPairPool pool = new KeyPairPool(KeyAlgorithm.EC, 0, threadFactory, metrics);
+
+        KeyPair keyPair = pool.take();
+
+        assertTrue(KeyAlgorithm.EC.matches(keyPair.getPublic()));
+        assertEquals(0, pool.size());
+        assertEquals(1L, metrics.snapshot().get("ssl.keypair.pool.misses"));
+        assertTrue(metrics.snapshot().get("ssl.keypair.generate.max.micros") > 0);
+        verify(threadFactory, never()).createDaemonThread(any(Runnable.class), anyString());
+    }
+
+    @Test
+    void testPoolFilledInBackgroundAndRefilled() throws Exception {
+        KeyPairPool pool = new KeyPairPool(KeyAlgorithm.EC, 3, new DefaultThreadFactory(), metrics);
+        try {
+            awaitDepth(pool, 3);
+
+            KeyPair first = pool.take();
+            KeyPair second = pool.take();
+
+            assertNotSame(first, second);
+            assertEquals(2L, metrics.snapshot().get("ssl.keypair.pool.hits"));
+            assertEquals(0L, metrics.snapshot().get("ssl.keypair.pool.misses"));
+            awaitDepth(pool, 3);
+            assertEquals(3L, metrics.snapshot().get("ssl.keypair.pool.depth"));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void testNegativeSizeRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new KeyPairPool(KeyAlgorithm.EC, -1, mock(ThreadFactory.class), metrics));
+    }
+
+    private static void awaitDepth(KeyPairPool pool, int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (pool.size() < depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(depth, pool.size());
+    }
+}
@@ -0,0 +1,170 @@
+package com.tcpviewer.ssl;
+
+import com.tcpviewer.io.wrapper.ServerSocketWrapper;
+import com.tcpviewer.io.wrapper.SocketWrapper;
+import com.tcpviewer.io.wrapper.factory.DefaultServerSocketFactory;
+import com.tcpviewer.io.wrapper.factory.DefaultSocketFactory;
+import com.tcpviewer.metrics.MetricsRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.net.ssl.SNIHostName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.security.cert.X509Certificate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for SniKeyManager, using TLS handshakes over the loopback interface.
+ */
+class SniKeyManagerTest {
+
+    private static ServerCertificateGeneratorService certificateService;
+
+    private ServerSocketWrapper serverSocket;
+    private int port;
+
+    @BeforeAll
+    static void setUpService() {
+        certificateService = new ServerCertificateGeneratorService(
+                new CertificateCache(16, 1, TimeUnit.HOURS, null, new MetricsRegistry()), null);
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        DefaultServerSocketFactory factory = new DefaultServerSocketFactory(new DefaultSocketFactory());
+        serverSocket = factory.createSslServerSocket(new SniKeyManager(certificateService, "default.example.com", 365));
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        serverSocket.bind(new InetSocketAddress("127.0.0.1", port));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        serverSocket.close();
+    }
+
+    @Test
+    void testCertificateMatchesRequestedHostName() throws Exception {
+        CompletableFuture<String> requested = acceptOne();
+
+        X509Certificate certificate = connect("api.example.com");
+
+        assertTrue(certificate.getSubjectX500Principal().getName().contains("CN=api.example.com"));
+        certificate.verify(certificateService.getCaCertificate().getPublicKey());
+        assertEquals("api.example.com", requested.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testDifferentHostsOnSameListener() throws Exception {
+        acceptOne();
+        X509Certificate first = connect("one.example.com");
+        acceptOne();
+        X509Certificate second = connect("two.example.com");
+
+        assertTrue(first.getSubjectX500Principal().getName().contains("CN=one.example.com"));
+        assertTrue(second.getSubjectX500Principal().getName().contains("CN=two.example.com"));
+    }
+
+    @Test
+    void testDefaultHostNameWithoutSni() throws Exception {
+        CompletableFuture<String> requested = acceptOne();
+
+        X509Certificate certificate = connect(null);
+
+        assertTrue(certificate.getSubjectX500Principal().getName().contains("CN=default.example.com"));
+        assertNull(requested.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testEcCertificate() throws Exception {
+        ServerCertificateGeneratorService ecService = new ServerCertificateGeneratorService(null,
+                new KeyPairPool(KeyAlgorithm.EC, 0, null, new MetricsRegistry()));
+        serverSocket.close();
+        serverSocket = new DefaultServerSocketFactory(new DefaultSocketFactory())
+                .createSslServerSocket(new SniKeyManager(ecService, "default.example.com", 365));
+        serverSocket.bind(new InetSocketAddress("127.0.0.1", port));
+        acceptOne();
+
+        X509Certificate certificate = connect("ec.example.com");
+
+        assertEquals("EC", certificate.getPublicKey().getAlgorithm());
+        assertTrue(certificate.getSubjectX500Principal().getName().contains("CN=ec.example.com"));
+    }
+
+    @Test
+    void testKeepsOnlyRecentlyServedCertificates() throws Exception {
+        SniKeyManager keyManager = new SniKeyManager(certificateService, "default.example.com", 365, 2);
+        serverSocket.close();
+        serverSocket = new DefaultServerSocketFactory(new DefaultSocketFactory()).createSslServerSocket(keyManager);
+        serverSocket.bind(new InetSocketAddress("127.0.0.1", port));
+
+        for (String hostName : List.of("one.example.com", "two.example.com", "three.example.com")) {
+            acceptOne();
+            connect(hostName);
+        }
+
+        String keyType = certificateService.getKeyAlgorithm().getKeyType();
+        assertEquals(2, keyManager.getServerAliases(keyType, null).length);
+        assertNull(keyManager.getCertificateChain("one.example.com"));
+        assertNotNull(keyManager.getPrivateKey("three.example.com"));
+    }
+
+    /**
+     * Accepts one connection and completes its handshake, returning the host name the client requested.
+     */
+    private CompletableFuture<String> acceptOne() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                SocketWrapper socket = serverSocket.accept();
+                try {
+                    return socket.getRequestedServerName();
+                } finally {
+                    socket.close();
+                }
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private X509Certificate connect(String hostName) throws Exception {
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, new TrustManager[]{new TrustAllManager()}, null);
+        try (SSLSocket socket = (SSLSocket) context.getSocketFactory().createSocket("127.0.0.1", port)) {
+            SSLParameters parameters = socket.getSSLParameters();
+            // A connection to an IP address sends no SNI unless it is set explicitly
+            parameters.setServerNames(hostName != null ? List.of(new SNIHostName(hostName)) : List.of());
+            socket.setSSLParameters(parameters);
+            socket.startHandshake();
+            return (X509Certificate) socket.getSession().getPeerCertificates()[0];
+        }
+    }
+
+    private static class TrustAllManager implements X509TrustManager {
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain, String authType) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.tcpviewer.ui.viewer;
+
+import com.tcpviewer.util.TextFormatter;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for PayloadLines.
+ */
+class PayloadLinesTest {
+
+    private final TextFormatter textFormatter = new TextFormatter();
+
+    private PayloadLines lines(String payload, PayloadLines.Mode mode) {
+        return new PayloadLines(ByteBuffer.wrap(payload.getBytes(StandardCharsets.ISO_8859_1)), mode, textFormatter);
+    }
+
+    @Test
+    void testHexLines() {
+        PayloadLines lines = lines("0123456789abcdefXY\u0001", PayloadLines.Mode.HEX);
+
+        assertEquals(2, lines.getLineCount());
+        assertEquals("00000000  30 31 32 33 34 35 36 37  38 39 61 62 63 64 65 66  |0123456789abcdef|",
+                lines.getLine(0));
+        assertEquals("00000010  58 59 01                                          |XY.|", lines.getLine(1));
+        assertEquals(16, lines.getLineStart(1));
+        assertEquals(1, lines.getLineOf(17));
+    }
+
+    @Test
+    void testTextLinesEndAtLineFeeds() {
+        PayloadLines lines = lines("GET / HTTP/1.1\r\nHost: x\r\n\r\nbody\u0000", PayloadLines.Mode.TEXT);
+
+        assertEquals(4, lines.getLineCount());
+        assertEquals("GET / HTTP/1.1", lines.getLine(0));
+        assertEquals("Host: x", lines.getLine(1));
+        assertEquals("", lines.getLine(2));
+        assertEquals("body?", lines.getLine(3));
+        assertEquals(16, lines.getLineStart(1));
+        assertEquals(1, lines.getLineOf(20));
+        assertEquals(3, lines.getLineOf(27));
+    }
+
+    @Test
+    void testLongTextLinesAreWrapped() {
+        PayloadLines lines = lines("x".repeat(PayloadLines.TEXT_BYTES_PER_LINE * 2 + 5), PayloadLines.Mode.TEXT);
+
+        assertEquals(3, lines.getLineCount());
+        assertEquals(PayloadLines.TEXT_BYTES_PER_LINE, lines.getLine(0).length());
+        assertEquals(5, lines.getLine(2).length());
+        assertEquals(2, lines.getLineOf(PayloadLines.TEXT_BYTES_PER_LINE * 2));
+    }
+
+    @Test
+    void testLargePayloadRendersSingleLines() {
+        byte[] data = new byte[8 * 1024 * 1024];
+        data[data.length - 1] = 'Z';
+        PayloadLines lines = new PayloadLines(ByteBuffer.wrap(data), PayloadLines.Mode.HEX, textFormatter);
+
+        assertEquals(data.length / PayloadLines.HEX_BYTES_PER_LINE, lines.getLineCount());
+        String last = lines.getLine(lines.getLineOf(data.length - 1));
+        assertTrue(last.startsWith("007ffff0  00"));
+        assertTrue(last.endsWith("...............Z|"));
+    }
+
+    @Test
+    void testReadsFromBufferPositionWithoutModifyingIt() {
+        ByteBuffer buffer = ByteBuffer.wrap("skipline\n".getBytes(StandardCharsets.ISO_8859_1));
+        buffer.position(4);
+
+        PayloadLines lines = new PayloadLines(buffer, PayloadLines.Mode.TEXT, textFormatter);
+
+        assertEquals("line", lines.getLine(0));
+        assertEquals(4, buffer.position());
+    }
+
+    @Test
+    void testEmptyPayloadHasNoLines() {
+        assertEquals(0, lines("", PayloadLines.Mode.HEX).getLineCount());
+        assertEquals(0, lines("", PayloadLines.Mode.TEXT).getLineCount());
+        assertThrows(IndexOutOfBoundsException.class, () -> lines("", PayloadLines.Mode.TEXT).getLineOf(0));
+    }
+
+    @Test
+    void testParseOffset() {
+        assertEquals(8000, PayloadLines.parseOffset("8000"));
+        assertEquals(0x1f40, PayloadLines.parseOffset(" 0x1F40 "));
+        assertEquals(1_000_000, PayloadLines.parseOffset("1_000_000"));
+        assertEquals(-1, PayloadLines.parseOffset("-5"));
+        assertEquals(-1, PayloadLines.parseOffset("0xZZ"));
+        assertEquals(-1, PayloadLines.parseOffset(""));
+        assertEquals(-1, PayloadLines.parseOffset(null));
+    }
+}
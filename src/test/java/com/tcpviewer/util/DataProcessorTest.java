@@ -1,12 +1,21 @@
 package com.tcpviewer.util;
 
+import com.tcpviewer.capture.HeapCaptureStore;
+import com.tcpviewer.capture.MappedCaptureStore;
+import com.tcpviewer.metrics.MetricsRegistry;
 import com.tcpviewer.model.DataPacket;
 import com.tcpviewer.model.DataType;
 import com.tcpviewer.model.Direction;
+import com.tcpviewer.model.PacketIndex;
+import com.tcpviewer.model.PacketPayload;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -23,7 +32,7 @@ class DataProcessorTest {
     void setUp() {
         // Use real utility instances as per guideline
         textFormatter = new TextFormatter();
-        dataProcessor = new DataProcessor(textFormatter);
+        dataProcessor = new DataProcessor(textFormatter, new HeapCaptureStore(), null);
     }
 
     @Test
@@ -86,6 +95,36 @@ class DataProcessorTest {
         assertNotSame(data, packet.getRawData());
     }
 
+    @Test
+    void testPayloadIsReadOnlyViewWithoutCopy() {
+        byte[] data = "payload".getBytes();
+
+        DataPacket packet = dataProcessor.process(data, Direction.CLIENT_TO_SERVER);
+        ByteBuffer payload = packet.getPayload();
+
+        assertTrue(payload.isReadOnly());
+        assertFalse(payload.hasArray(), "Backing array must not be reachable");
+        assertThrows(ReadOnlyBufferException.class, () -> payload.put(0, (byte) 'X'));
+        assertEquals(data.length, payload.remaining());
+        assertEquals(data.length, packet.getSize());
+
+        // Handed-over array is shared, not copied
+        data[0] = 'P';
+        assertEquals('P', packet.getPayload().get(0));
+    }
+
+    @Test
+    void testPayloadViewsAreIndependent() {
+        DataPacket packet = dataProcessor.process("abc".getBytes(), Direction.SERVER_TO_CLIENT);
+
+        ByteBuffer first = packet.getPayload();
+        first.get();
+        first.get();
+
+        assertEquals(0, packet.getPayload().position());
+        assertEquals(3, packet.getPayload().remaining());
+    }
+
     @Test
     void testProcessWithTypeText() {
         // Binary data but force TEXT type
@@ -236,4 +275,74 @@ class DataProcessorTest {
         assertEquals(DataType.TEXT, packet.getDataType());
         assertEquals("Hello?\tWorld", packet.getDisplayText());
     }
+
+    @Test
+    void testStoredPayloadRendersDisplayTextOnDemand(@TempDir Path tempDir) {
+        MappedCaptureStore store = new MappedCaptureStore(tempDir, 4096, new MetricsRegistry());
+        DataProcessor storingProcessor = new DataProcessor(textFormatter, store, null);
+        try {
+            DataPacket packet = storingProcessor.process(new byte[]{'H', 'i', 0x01}, Direction.CLIENT_TO_SERVER);
+
+            assertEquals(3, packet.getSize());
+            assertEquals("Hi?", packet.getDisplayText());
+            assertArrayEquals(new byte[]{'H', 'i', 0x01}, packet.getRawData());
+            assertEquals(1, store.getSegmentCount());
+        } finally {
+            store.close();
+        }
+    }
+
+    @Test
+    void testDisplayTextIsCachedAfterFirstRendering() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        DisplayTextCache cache = new DisplayTextCache(16, metrics);
+        DataProcessor cachingProcessor = new DataProcessor(textFormatter, new HeapCaptureStore(), cache);
+        DataPacket packet = cachingProcessor.process("cached".getBytes(), Direction.CLIENT_TO_SERVER);
+
+        // Nothing is rendered until the text is requested
+        assertEquals(0, cache.size());
+
+        String first = packet.getDisplayText();
+        String second = packet.getDisplayText();
+
+        assertEquals("cached", first);
+        assertSame(first, second);
+        assertEquals(1L, metrics.snapshot().get("display.text.cache.misses"));
+        assertEquals(1L, metrics.snapshot().get("display.text.cache.hits"));
+
+        cachingProcessor.reset();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testCachedTextFoundAfterViewMaterializedAgainAndDroppedWithItsPacket() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        DisplayTextCache cache = new DisplayTextCache(16, metrics);
+        DataProcessor cachingProcessor = new DataProcessor(textFormatter, new HeapCaptureStore(), cache);
+        PacketIndex index = new PacketIndex();
+        for (int i = 0; i < 300; i++) {
+            index.add(cachingProcessor.process(("packet" + i).getBytes(), Direction.CLIENT_TO_SERVER));
+        }
+        assertEquals("packet0", index.get(0).getDisplayText());
+
+        // Requesting more views than the index keeps materializes the first view again
+        for (int i = 1; i < 300; i++) {
+            index.get(i);
+        }
+        assertEquals("packet0", index.get(0).getDisplayText());
+        assertEquals(1L, metrics.snapshot().get("display.text.cache.hits"));
+
+        index.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testHeapPayloadRenderedFromItsBackingArray() {
+        byte[] chunk = "xxab\u0001cyy".getBytes(StandardCharsets.ISO_8859_1);
+        PacketPayload payload = PacketPayload.of(ByteBuffer.wrap(chunk, 2, 4));
+
+        assertSame(chunk, payload.applyToBytes((data, offset, length) -> data));
+        assertEquals(2, (int) payload.applyToBytes((data, offset, length) -> offset));
+        assertEquals("ab?c", payload.applyToBytes(textFormatter::convertToDisplayText));
+    }
 }
@@ -0,0 +1,116 @@
+package com.tcpviewer.util;
+
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.model.PacketPayload;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for DisplayTextCache.
+ */
+class DisplayTextCacheTest {
+
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final AtomicInteger renderings = new AtomicInteger();
+    private final Function<PacketPayload, String> renderer = payload -> {
+        renderings.incrementAndGet();
+        return "text" + payload.size();
+    };
+
+    private static PacketPayload payload(int size) {
+        return PacketPayload.of(ByteBuffer.allocate(size));
+    }
+
+    @Test
+    void testRendersOncePerPayload() {
+        DisplayTextCache cache = new DisplayTextCache(4, metrics);
+        PacketPayload payload = payload(3);
+
+        assertEquals("text3", cache.get(payload, renderer));
+        assertEquals("text3", cache.get(payload, renderer));
+
+        assertEquals(1, renderings.get());
+        assertEquals(1L, metrics.snapshot().get("display.text.cache.size"));
+    }
+
+    @Test
+    void testPayloadsWithEqualBytesAreCachedSeparately() {
+        DisplayTextCache cache = new DisplayTextCache(4, metrics);
+
+        cache.get(payload(3), renderer);
+        cache.get(payload(3), renderer);
+
+        assertEquals(2, renderings.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedText() {
+        DisplayTextCache cache = new DisplayTextCache(2, metrics);
+        PacketPayload first = payload(1);
+        PacketPayload second = payload(2);
+        PacketPayload third = payload(3);
+
+        cache.get(first, renderer);
+        cache.get(second, renderer);
+        cache.get(first, renderer);
+        cache.get(third, renderer);
+        assertEquals(3, renderings.get());
+
+        // The second payload was used least recently and had to go
+        cache.get(first, renderer);
+        assertEquals(3, renderings.get());
+        cache.get(second, renderer);
+        assertEquals(4, renderings.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    void testDiscardDropsMatchingTexts() {
+        DisplayTextCache cache = new DisplayTextCache(4, metrics);
+        PacketPayload kept = payload(1);
+        PacketPayload discarded = payload(2);
+        cache.get(kept, renderer);
+        cache.get(discarded, renderer);
+
+        cache.discard(payload -> payload == discarded);
+
+        assertEquals(1, cache.size());
+        cache.get(kept, renderer);
+        assertEquals(2, renderings.get());
+    }
+
+    @Test
+    void testPayloadsOverTheSameBytesShareTheirText() {
+        DisplayTextCache cache = new DisplayTextCache(4, metrics);
+        byte[] chunk = new byte[16];
+
+        cache.get(PacketPayload.of(ByteBuffer.wrap(chunk, 4, 8)), renderer);
+        cache.get(PacketPayload.of(ByteBuffer.wrap(chunk, 4, 8)), renderer);
+        cache.get(PacketPayload.of(ByteBuffer.wrap(chunk, 0, 8)), renderer);
+
+        assertEquals(2, renderings.get());
+    }
+
+    @Test
+    void testZeroSizeRendersEveryTime() {
+        DisplayTextCache cache = new DisplayTextCache(0, metrics);
+        PacketPayload payload = payload(1);
+
+        cache.get(payload, renderer);
+        cache.get(payload, renderer);
+
+        assertEquals(2, renderings.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testRejectsNegativeSize() {
+        assertThrows(IllegalArgumentException.class, () -> new DisplayTextCache(-1, metrics));
+    }
+}
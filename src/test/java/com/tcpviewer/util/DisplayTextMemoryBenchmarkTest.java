@@ -0,0 +1,85 @@
+package com.tcpviewer.util;
+
+import com.tcpviewer.capture.HeapCaptureStore;
+import com.tcpviewer.metrics.MetricsRegistry;
+import com.tcpviewer.model.DataPacket;
+import com.tcpviewer.model.DataType;
+import com.tcpviewer.model.Direction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.ByteBuffer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the heap retained by captured packets whose display text is rendered at capture time
+ * with packets rendering it on demand, while the UI shows a few of them.
+ * Captures 256 MB by default, as eager rendering retains twice the traffic; to capture 1 GB, run with:
+ * <pre>
+ * mvn test -Dtest=DisplayTextMemoryBenchmarkTest -Dtcpviewer.benchmark=true \
+ *     -Dtcpviewer.benchmark.capture-mb=1024 -DargLine=-Xmx4g
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "tcpviewer.benchmark", matches = "true")
+class DisplayTextMemoryBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(DisplayTextMemoryBenchmarkTest.class);
+    private static final int PACKET_SIZE = 16 * 1024;
+    private static final int DISPLAYED_PACKETS = 100;
+
+    private final MemoryMXBean memoryBean = ManagementFactory.getMemoryMXBean();
+    private final TextFormatter textFormatter = new TextFormatter();
+
+    @Test
+    void testHeapRetainedByCapturedPackets() {
+        int megabytes = Integer.getInteger("tcpviewer.benchmark.capture-mb", 256);
+        int packets = megabytes * (1024 * 1024 / PACKET_SIZE);
+
+        long eager = retainedHeap(packets, data -> new DataPacket(LocalDateTime.now(), Direction.SERVER_TO_CLIENT,
+                ByteBuffer.wrap(data), DataType.TEXT, textFormatter.convertToDisplayText(data)));
+
+        DataProcessor dataProcessor = new DataProcessor(textFormatter, new HeapCaptureStore(),
+                new DisplayTextCache(512, new MetricsRegistry()));
+        long lazy = retainedHeap(packets, data -> dataProcessor.process(data, Direction.SERVER_TO_CLIENT));
+
+        logger.info("Heap retained by {} MB of captured traffic: eager text {} MB, lazy text {} MB",
+                megabytes, eager >> 20, lazy >> 20);
+        assertTrue(lazy < eager * 3 / 4, "Lazy rendering should retain much less heap");
+    }
+
+    /**
+     * Captures the packets, displays the latest ones, and returns the heap they retain.
+     */
+    private long retainedHeap(int packets, Function<byte[], DataPacket> capture) {
+        long before = usedHeap();
+        List<DataPacket> captured = new ArrayList<>(packets);
+        for (int i = 0; i < packets; i++) {
+            byte[] data = new byte[PACKET_SIZE];
+            Arrays.fill(data, (byte) ('a' + i % 26));
+            captured.add(capture.apply(data));
+        }
+        for (int i = packets - DISPLAYED_PACKETS; i < packets; i++) {
+            assertEquals(PACKET_SIZE, captured.get(i).getDisplayText().length());
+        }
+        long retained = usedHeap() - before;
+        assertEquals(packets, captured.size());
+        return retained;
+    }
+
+    private long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memoryBean.getHeapMemoryUsage().getUsed();
+    }
+}
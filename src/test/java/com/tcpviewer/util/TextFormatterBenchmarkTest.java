@@ -0,0 +1,85 @@
+package com.tcpviewer.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Compares the table-driven display text conversion with the former decode, toCharArray
+ * and StringBuilder conversion, for small, medium and large payloads of mostly printable data.
+ * Disabled by default; run with:
+ * <pre>
+ * mvn test -Dtest=TextFormatterBenchmarkTest -Dtcpviewer.benchmark=true
+ * </pre>
+ */
+@EnabledIfSystemProperty(named = "tcpviewer.benchmark", matches = "true")
+class TextFormatterBenchmarkTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(TextFormatterBenchmarkTest.class);
+    private static final long BYTES_PER_RUN = 64L * 1024 * 1024;
+
+    private final TextFormatter formatter = new TextFormatter();
+
+    @Test
+    void testConversionThroughput() {
+        for (int size : new int[]{64, 8 * 1024, 1024 * 1024}) {
+            byte[] data = payload(size);
+            assertEquals(legacyConvert(data), formatter.convertToDisplayText(data));
+
+            // Warm up both paths before measuring
+            measure(data, false);
+            measure(data, true);
+            double legacyMbPerSecond = measure(data, false);
+            double tableMbPerSecond = measure(data, true);
+
+            logger.info("{} byte payloads: legacy {} MB/s, table {} MB/s", size,
+                    String.format("%.0f", legacyMbPerSecond), String.format("%.0f", tableMbPerSecond));
+            assertTrue(tableMbPerSecond > legacyMbPerSecond);
+        }
+    }
+
+    private double measure(byte[] data, boolean table) {
+        long iterations = Math.max(1, BYTES_PER_RUN / data.length);
+        long checksum = 0;
+        long start = System.nanoTime();
+        for (long i = 0; i < iterations; i++) {
+            String text = table ? formatter.convertToDisplayText(data) : legacyConvert(data);
+            checksum += text.length();
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(iterations * data.length, checksum);
+        return (double) iterations * data.length / (1024 * 1024) / (elapsed / 1e9);
+    }
+
+    /**
+     * Text protocol payload with an occasional control character.
+     */
+    private static byte[] payload(int size) {
+        Random random = new Random(size);
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = random.nextInt(200) == 0 ? (byte) random.nextInt(0x20) : (byte) (0x20 + random.nextInt(0x5F));
+        }
+        return data;
+    }
+
+    /**
+     * The conversion TextFormatter used before the lookup table.
+     */
+    private static String legacyConvert(byte[] data) {
+        String decoded = new String(data, StandardCharsets.ISO_8859_1);
+        StringBuilder result = new StringBuilder(decoded.length());
+        for (char c : decoded.toCharArray()) {
+            boolean replace = (c <= 0x1F && c != 0x09 && c != 0x0A && c != 0x0D)
+                    || c == 0x7F || (c >= 0x80 && c <= 0x9F);
+            result.append(replace ? '?' : c);
+        }
+        return result.toString();
+    }
+}
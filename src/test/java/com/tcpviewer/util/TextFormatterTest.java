@@ -162,4 +162,33 @@ class TextFormatterTest {
         assertEquals(1000, result.length(), "Long data should be fully converted");
         assertFalse(result.contains("?"), "Printable ASCII should not be replaced");
     }
+
+    @Test
+    void testConvertToDisplayTextRange() {
+        byte[] data = {0x00, 0x41, 0x01, 0x42, 0x00};
+
+        assertEquals("A?B", formatter.convertToDisplayText(data, 1, 3));
+        assertEquals("AB", formatter.convertToDisplayText(new byte[]{0x00, 0x41, 0x42}, 1, 2));
+        assertEquals("", formatter.convertToDisplayText(data, 2, 0));
+    }
+
+    @Test
+    void testConvertToDisplayTextEveryByteValue() {
+        // Every byte value in one payload, so the copy starts after printable bytes
+        byte[] data = new byte[512];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i + 0x20);
+        }
+
+        String result = formatter.convertToDisplayText(data);
+
+        assertEquals(data.length, result.length());
+        for (int i = 0; i < data.length; i++) {
+            int value = data[i] & 0xFF;
+            boolean replaced = (value <= 0x1F && value != 0x09 && value != 0x0A && value != 0x0D)
+                    || (value >= 0x7F && value <= 0x9F);
+            assertEquals(replaced ? '?' : (char) value, result.charAt(i),
+                    String.format("Byte 0x%02X at index %d", value, i));
+        }
+    }
 }
@@ -0,0 +1,91 @@
+package com.tcpviewer.util;
+
+import com.tcpviewer.lang.wrapper.factory.DefaultThreadFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for TimerWheel.
+ */
+class TimerWheelTest {
+
+    private TimerWheel timerWheel;
+
+    @BeforeEach
+    void setUp() {
+        timerWheel = new TimerWheel(1, TimeUnit.MILLISECONDS, 8, new DefaultThreadFactory());
+    }
+
+    @AfterEach
+    void tearDown() {
+        timerWheel.stop();
+    }
+
+    @Test
+    void testTaskRunsAfterDelay() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        timerWheel.schedule(latch::countDown, 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30));
+    }
+
+    @Test
+    void testDelayLongerThanOneRotation() throws Exception {
+        // 8 buckets of 1 ms: a 50 ms timeout needs several rounds
+        CountDownLatch latch = new CountDownLatch(1);
+        long start = System.nanoTime();
+
+        timerWheel.schedule(latch::countDown, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void testTasksRunInDeadlineOrder() throws Exception {
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(3);
+
+        timerWheel.schedule(() -> { order.add(3); latch.countDown(); }, 40, TimeUnit.MILLISECONDS);
+        timerWheel.schedule(() -> { order.add(1); latch.countDown(); }, 0, TimeUnit.MILLISECONDS);
+        timerWheel.schedule(() -> { order.add(2); latch.countDown(); }, 20, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertEquals(List.of(1, 2, 3), order);
+    }
+
+    @Test
+    void testCancelledTaskDoesNotRun() throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CountDownLatch marker = new CountDownLatch(1);
+
+        TimerWheel.Timeout timeout = timerWheel.schedule(cancelled::countDown, 10, TimeUnit.MILLISECONDS);
+        timeout.cancel();
+        timerWheel.schedule(marker::countDown, 30, TimeUnit.MILLISECONDS);
+
+        assertTrue(marker.await(2, TimeUnit.SECONDS));
+        assertTrue(timeout.isCancelled());
+        assertEquals(1, cancelled.getCount());
+    }
+
+    @Test
+    void testFailingTaskDoesNotStopWheel() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+
+        timerWheel.schedule(() -> { throw new IllegalStateException("boom"); }, 0, TimeUnit.MILLISECONDS);
+        timerWheel.schedule(latch::countDown, 5, TimeUnit.MILLISECONDS);
+
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+    }
+}